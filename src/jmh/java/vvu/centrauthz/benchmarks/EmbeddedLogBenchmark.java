@@ -0,0 +1,65 @@
+package vvu.centrauthz.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import vvu.centrauthz.storages.keyvalue.embedded.utilities.SegmentedLog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the embedded log engine for 512-byte values over 100k keys.
+ * Writes are serialized by the log, so the write benchmark measures one writer at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EmbeddedLogBenchmark {
+
+    static final int KEYS = 100_000;
+    static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    @Param({"false", "true"})
+    boolean syncWrites;
+
+    private Path directory;
+    private SegmentedLog log;
+    private final byte[] value = new byte[512];
+
+    static void deleteDirectory(Path directory) throws IOException {
+        try (var files = Files.walk(directory)) {
+            for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("embedded-log-benchmark");
+        log = SegmentedLog.open(directory, SEGMENT_SIZE, syncWrites);
+        for (int i = 0; i < KEYS; i++) {
+            log.put("benchmark:" + i, value);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        log.close();
+        deleteDirectory(directory);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public byte[] get() {
+        return log.get("benchmark:" + ThreadLocalRandom.current().nextInt(KEYS));
+    }
+
+    @Benchmark
+    public void put() {
+        log.put("benchmark:" + ThreadLocalRandom.current().nextInt(KEYS), value);
+    }
+}
@@ -0,0 +1,50 @@
+package vvu.centrauthz.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import vvu.centrauthz.storages.keyvalue.embedded.utilities.SegmentedLog;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to reopen an embedded log, that is to scan every segment and rebuild the index,
+ * for a given number of 512-byte records, a fifth of them overwrites.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class EmbeddedLogRecoveryBenchmark {
+
+    @Param({"100000", "1000000"})
+    int records;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("embedded-log-recovery");
+        var value = new byte[512];
+        var keys = records - records / 5;
+        try (var log = SegmentedLog.open(directory, EmbeddedLogBenchmark.SEGMENT_SIZE, false)) {
+            for (int i = 0; i < records; i++) {
+                log.put("benchmark:" + (i % keys), value);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        EmbeddedLogBenchmark.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public int open() {
+        try (var log = SegmentedLog.open(directory, EmbeddedLogBenchmark.SEGMENT_SIZE, false)) {
+            return log.size();
+        }
+    }
+}
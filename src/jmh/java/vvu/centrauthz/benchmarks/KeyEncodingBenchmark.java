@@ -0,0 +1,54 @@
+package vvu.centrauthz.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import vvu.centrauthz.storages.codecs.KeyBuilder;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.RedisKeyEncoder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning an application key and a resource ID into the bytes of a Redis key, as every
+ * GET does: the former {@code String.format} and UTF-8 encoding against the cached prefix and
+ * hex UUID writer. Run with the gc profiler for the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KeyEncodingBenchmark {
+
+    static final String APP = "benchmark";
+    static final int IDS = 1024;
+
+    private final UUID[] ids = new UUID[IDS];
+    private final KeyBuilder keys = new KeyBuilder();
+    private final RedisKeyEncoder namespaced = new RedisKeyEncoder("centrauthz:resources");
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < IDS; i++) {
+            ids[i] = UUID.randomUUID();
+        }
+    }
+
+    private UUID anyId() {
+        return ids[ThreadLocalRandom.current().nextInt(IDS)];
+    }
+
+    @Benchmark
+    public byte[] formatted() {
+        return String.format("%s:%s", APP, anyId()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] built() {
+        return RedisKeyEncoder.NONE.encode(keys.build(APP, anyId()));
+    }
+
+    @Benchmark
+    public byte[] builtInNamespace() {
+        return namespaced.encode(keys.build(APP, anyId()));
+    }
+}
@@ -0,0 +1,74 @@
+package vvu.centrauthz.benchmarks;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.support.AsyncConnectionPoolSupport;
+import io.lettuce.core.support.BoundedAsyncPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import vvu.centrauthz.storages.keyvalue.redis.configurations.RedisPoolConfig;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.AsyncConnContext;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.CommandContext;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.ConnectionPool;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.MultiplexedConnContext;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Compares single GETs through the bounded pool against GETs over shared connections.
+ * Run with {@code ./gradlew jmh} against a local Redis server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(32)
+public class RedisConnectionModeBenchmark {
+
+    @Param({"pooled", "multiplexed"})
+    String mode;
+
+    private RedisClient client;
+    private BoundedAsyncPool<StatefulRedisConnection<byte[], byte[]>> pool;
+    private CommandContext context;
+    private final byte[] key = "benchmark:connection-mode".getBytes(StandardCharsets.UTF_8);
+    private final byte[] value = new byte[512];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var uri = RedisURI.create(System.getenv().getOrDefault("REDIS_URI", "redis://localhost:6379"));
+        client = RedisClient.create(uri);
+        Supplier<CompletionStage<StatefulRedisConnection<byte[], byte[]>>> connector =
+            () -> client.connectAsync(ByteArrayCodec.INSTANCE, uri);
+
+        if ("multiplexed".equals(mode)) {
+            context = new MultiplexedConnContext(connector, new RedisPoolConfig().sharedConnections());
+        } else {
+            var config = new RedisPoolConfig();
+            var poolFuture = AsyncConnectionPoolSupport
+                .createBoundedObjectPoolAsync(connector, config.toBoundedPoolConfig());
+            pool = poolFuture.toCompletableFuture().join();
+            context = new AsyncConnContext(new ConnectionPool(
+                "benchmark", poolFuture, config.maxActive(), config.maxActive(), config.maxWait(), new SimpleMeterRegistry()));
+        }
+        context.execute(command -> command.set(key, value).toCompletableFuture()).join();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        if (pool != null) {
+            pool.close();
+        }
+        client.shutdown();
+    }
+
+    @Benchmark
+    public byte[] get() {
+        return context.execute(command -> command.get(key).toCompletableFuture()).join();
+    }
+}
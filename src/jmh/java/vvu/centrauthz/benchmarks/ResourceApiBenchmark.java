@@ -0,0 +1,78 @@
+package vvu.centrauthz.benchmarks;
+
+import io.micronaut.context.ApplicationContext;
+import io.micronaut.http.HttpResponse;
+import org.openjdk.jmh.annotations.*;
+import vvu.centrauthz.domains.resources.controllers.ResourceController;
+import vvu.centrauthz.domains.resources.models.Resource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the whole resource path, controller to storage, on the in-memory engine.
+ * No Redis server is needed; {@code latency} stands in for the round trip to one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(16)
+public class ResourceApiBenchmark {
+
+    static final int RESOURCES = 10_000;
+    static final String APP = "benchmark";
+
+    @Param({"0ms", "1ms"})
+    String latency;
+
+    private ApplicationContext context;
+    private ResourceController controller;
+    private final UUID userId = UUID.randomUUID();
+    private final UUID[] ids = new UUID[RESOURCES];
+
+    private Resource resource(UUID id) {
+        return Resource.builder()
+            .id(id)
+            .applicationKey(APP)
+            .type("document")
+            .ownerId(userId)
+            .tags(List.of("alpha", "beta"))
+            .build();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = ApplicationContext.run(Map.of(
+            "storage.engine", "memory",
+            "storage.memory.latency", latency,
+            "redis.enabled", false));
+        controller = context.getBean(ResourceController.class);
+        for (int i = 0; i < RESOURCES; i++) {
+            ids[i] = UUID.randomUUID();
+            controller.createResource(userId, APP, resource(ids[i])).block();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private UUID anyId() {
+        return ids[ThreadLocalRandom.current().nextInt(RESOURCES)];
+    }
+
+    @Benchmark
+    public HttpResponse<Resource> get() {
+        return controller.getResource(userId, APP, anyId(), null, null).block();
+    }
+
+    @Benchmark
+    public HttpResponse<Resource> put() {
+        var id = anyId();
+        return controller.updateResource(userId, APP, id, null, resource(id)).block();
+    }
+}
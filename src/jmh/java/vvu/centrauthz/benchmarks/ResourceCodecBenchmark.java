@@ -0,0 +1,69 @@
+package vvu.centrauthz.benchmarks;
+
+import io.micronaut.json.JsonMapper;
+import io.micronaut.serde.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.storages.codecs.JsonValueCodec;
+import vvu.centrauthz.storages.interfaces.ValueCodec;
+import vvu.centrauthz.utilities.JsonTools;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old storage path, which goes through a {@code JsonNode} tree, with the
+ * direct byte codec. Run with {@code ./gradlew jmh}; the gc profiler reports allocations
+ * per operation next to the latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ResourceCodecBenchmark {
+
+    private JsonMapper mapper;
+    private ValueCodec<Resource> codec;
+    private Resource resource;
+    private byte[] bytes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mapper = ObjectMapper.getDefault();
+        codec = new JsonValueCodec<>(mapper, Resource.class);
+        resource = Resource.builder()
+            .id(UUID.randomUUID())
+            .applicationKey("benchmark")
+            .type("document")
+            .ownerId(UUID.randomUUID())
+            .parentId(UUID.randomUUID())
+            .sharedWith(List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()))
+            .tags(List.of("alpha", "beta", "gamma"))
+            .details(JsonTools.toJson(mapper, Map.of("title", "Quarterly report", "pages", 42)))
+            .createdAt(System.currentTimeMillis())
+            .createdBy(UUID.randomUUID())
+            .build();
+        bytes = codec.encode(resource);
+    }
+
+    @Benchmark
+    public byte[] encodeThroughTree() {
+        return JsonTools.toBytes(mapper, JsonTools.toJson(mapper, resource));
+    }
+
+    @Benchmark
+    public byte[] encodeDirect() {
+        return codec.encode(resource);
+    }
+
+    @Benchmark
+    public Resource decodeThroughTree() {
+        return JsonTools.toValue(mapper, JsonTools.fromBytes(mapper, bytes), Resource.class);
+    }
+
+    @Benchmark
+    public Resource decodeDirect() {
+        return codec.decode(bytes);
+    }
+}
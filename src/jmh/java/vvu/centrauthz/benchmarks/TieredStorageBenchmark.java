@@ -0,0 +1,103 @@
+package vvu.centrauthz.benchmarks;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import vvu.centrauthz.storages.interfaces.VersionedWritable;
+import vvu.centrauthz.storages.keyvalue.memory.InMemoryStorage;
+import vvu.centrauthz.storages.keyvalue.memory.configurations.InMemoryStorageConfig;
+import vvu.centrauthz.storages.keyvalue.tiered.TieredStorage;
+import vvu.centrauthz.storages.keyvalue.tiered.configurations.TieringConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Reads of 512-byte values over 100k keys through the hot and cold tiers, with the hot tier
+ * capped at {@code hotShare} of the data. Keys are picked from a Zipf distribution of exponent
+ * {@code skew}, as a few recent resources get most of the reads; the hot tier is the in-memory
+ * engine with a 200µs round trip, and is swept every second. The tier hit rates are printed on
+ * tear down.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(8)
+public class TieredStorageBenchmark {
+
+    static final int KEYS = 100_000;
+    static final int VALUE_SIZE = 512;
+
+    @Param({"0.8", "1.1"})
+    double skew;
+
+    @Param({"0.1", "0.3"})
+    double hotShare;
+
+    private Path directory;
+    private SimpleMeterRegistry registry;
+    private TieredStorage storage;
+    private double[] cumulative;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("tiered-benchmark");
+        registry = new SimpleMeterRegistry();
+        var engine = new InMemoryStorage(new InMemoryStorageConfig(64, Duration.ofNanos(200_000), Duration.ZERO));
+        var maxHotBytes = (long) (KEYS * VALUE_SIZE * hotShare);
+        var config = new TieringConfig(
+            true, directory.toString(), 64 * 1024 * 1024, Duration.ofDays(1), Duration.ofSeconds(1), maxHotBytes, Map.of());
+        storage = new TieredStorage(config, engine, engine, engine, engine, registry);
+
+        // written in random order, so that popularity is unrelated to write order
+        var ranks = IntStream.range(0, KEYS).boxed().collect(Collectors.toList());
+        Collections.shuffle(ranks);
+        var value = new byte[VALUE_SIZE];
+        for (var rank : ranks) {
+            storage.write(key(rank), VersionedWritable.Mode.UPSERT, null, value).block();
+        }
+
+        cumulative = new double[KEYS];
+        var total = 0.0;
+        for (int rank = 0; rank < KEYS; rank++) {
+            total += 1 / Math.pow(rank + 1, skew);
+            cumulative[rank] = total;
+        }
+        for (int rank = 0; rank < KEYS; rank++) {
+            cumulative[rank] /= total;
+        }
+        storage.sweep().block();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        var hot = registry.get("storage.tier.reads").tag("tier", "hot").counter().count();
+        var cold = registry.get("storage.tier.reads").tag("tier", "cold").counter().count();
+        System.out.printf("%nhot tier hit rate: %.3f, cold reads: %.0f, demotions: %.0f%n",
+            hot / Math.max(1, hot + cold), cold, registry.get("storage.tier.demotions").counter().count());
+        storage.close();
+        EmbeddedLogBenchmark.deleteDirectory(directory);
+    }
+
+    private static String key(int rank) {
+        return "benchmark:" + rank;
+    }
+
+    private int anyRank() {
+        var rank = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+        return rank >= 0 ? rank : Math.min(-rank - 1, KEYS - 1);
+    }
+
+    @Benchmark
+    public byte[] get() {
+        return storage.get(key(anyRank())).block();
+    }
+}
@@ -2,16 +2,26 @@ package vvu.centrauthz.domains.resources.controllers;
 
 import io.micronaut.core.annotation.NonNull;
 import io.micronaut.core.annotation.Nullable;
+import io.micronaut.http.HttpHeaders;
 import io.micronaut.http.HttpResponse;
+import io.micronaut.http.MutableHttpResponse;
 import io.micronaut.http.annotation.*;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.domains.resources.models.ResourceBatch;
+import vvu.centrauthz.domains.resources.models.ResourceBatchGet;
+import vvu.centrauthz.domains.resources.models.ResourceBatchGetItem;
 import vvu.centrauthz.domains.resources.models.ResourceForPatch;
+import vvu.centrauthz.domains.resources.models.ResourceOperationResult;
 import vvu.centrauthz.domains.resources.services.ResourceService;
 import vvu.centrauthz.utilities.ConstantValues;
 import vvu.centrauthz.utilities.Context;
 import vvu.centrauthz.exceptions.BadRequestError;
+import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -20,9 +30,15 @@ import java.util.UUID;
  * All endpoints currently return NOT_IMPLEMENTED errors.
  * Validation is handled by Micronaut validation framework.
  */
-@Controller("/v0/applications/{applicationKey}/resources")
+@Controller("/v0/applications/{applicationKey}")
 public class ResourceController {
 
+    // shared: expected errors carry no stack trace, so nothing ties them to one request
+    private static final BadRequestError INVALID_IF_MATCH =
+        new BadRequestError("INVALID_IF_MATCH", "If-Match must hold one resource ETag");
+    private static final BadRequestError MISMATCHED_ID =
+        new BadRequestError("INVALID_ID", "Resource ID in path does not match resource ID in body");
+
     private final ResourceService service;
 
     public ResourceController(ResourceService service) {
@@ -34,46 +50,169 @@ public class ResourceController {
      *
      * @param applicationKey Application key (minimum 3 characters)
      * @param id             Unique identifier for the resource
+     * @param fields         Fields to return, all of them when absent
+     * @param consistencyToken Token returned by an earlier write that this read must see
      * @return Mono containing the resource
      */
-    @Get("/{id}")
+    @Get("/resources/{id}")
     public Mono<HttpResponse<Resource>> getResource(
             @Header(ConstantValues.X_USER_ID_HEADER) @Nullable UUID userId,
             @PathVariable @NonNull String applicationKey,
-            @PathVariable @NonNull UUID id) {
+            @PathVariable @NonNull UUID id,
+            @QueryValue @Nullable List<String> fields,
+            @Header(ConstantValues.X_CONSISTENCY_TOKEN_HEADER) @Nullable String consistencyToken) {
 
-        return service.get(applicationKey, id, context(userId, applicationKey)).map(HttpResponse::ok);
+        return service.get(applicationKey, id, fields, context(userId, applicationKey, consistencyToken))
+                .map(ResourceController::withETag);
     }
 
     private static Context context(UUID userId, String appKey) {
         return Context.from(userId, appKey);
     }
 
+    private static Context context(UUID userId, String appKey, @Nullable String consistencyToken) {
+        return Context.from(userId, appKey).toBuilder().consistencyToken(consistencyToken).build();
+    }
+
+    /**
+     * Adds the consistency token of the application to the response of a write, when the
+     * storage has replicas that could serve a later read before they have the write.
+     */
+    private <T> Mono<HttpResponse<T>> withConsistencyToken(String appKey, MutableHttpResponse<T> response) {
+        return service.consistencyToken(appKey)
+                .<HttpResponse<T>>map(token -> response.header(ConstantValues.X_CONSISTENCY_TOKEN_HEADER, token))
+                .defaultIfEmpty(response);
+    }
+
+    private static HttpResponse<Resource> withETag(Resource resource) {
+        var response = HttpResponse.ok(resource);
+        if (Objects.nonNull(resource.version())) {
+            response.header(HttpHeaders.ETAG, "\"" + resource.version() + "\"");
+        }
+        return response;
+    }
+
+    /**
+     * The version a conditional request expects, from an If-Match header holding one ETag.
+     * A weak tag is accepted as its version; {@code *} or no header means any version.
+     *
+     * @return the expected version, or {@code null} for any version
+     */
+    static Long expectedVersion(@Nullable String ifMatch) {
+        if (Objects.isNull(ifMatch) || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        var tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() > 1 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try {
+            return Long.parseLong(tag);
+        } catch (NumberFormatException e) {
+            throw INVALID_IF_MATCH;
+        }
+    }
+
+    /**
+     * List the resources of an owner, oldest first.
+     * Resources are streamed back as they are read; when there may be more, the response
+     * carries the cursor of the next page in {@code X-Next-Cursor}.
+     *
+     * @param applicationKey Application key (minimum 3 characters)
+     * @param ownerId        Owner of the resources
+     * @param after          Cursor from the previous page, the first page when absent
+     * @param limit          Most resources to return
+     * @param consistencyToken Token returned by an earlier write that this read must see
+     * @return Mono containing the response streaming the resources
+     */
+    @Get("/resources")
+    public Mono<HttpResponse<Flux<Resource>>> listResourcesByOwner(
+            @Header(ConstantValues.X_USER_ID_HEADER) @Nullable UUID userId,
+            @PathVariable @NonNull String applicationKey,
+            @QueryValue @NonNull UUID ownerId,
+            @QueryValue @Nullable String after,
+            @QueryValue(defaultValue = "100") @Min(1) @Max(1000) int limit,
+            @Header(ConstantValues.X_CONSISTENCY_TOKEN_HEADER) @Nullable String consistencyToken) {
+
+        return service.listOwned(applicationKey, ownerId, after, limit, context(userId, applicationKey, consistencyToken))
+                .<HttpResponse<Flux<Resource>>>map(page -> {
+                    var response = HttpResponse.ok(page.resources());
+                    if (Objects.nonNull(page.next())) {
+                        response.header(ConstantValues.X_NEXT_CURSOR_HEADER, page.next());
+                    }
+                    return response;
+                });
+    }
+
+    /**
+     * Get many resources by ID in one request.
+     * Items are streamed back in request order as they are decoded; unknown IDs are
+     * returned with {@code found = false}.
+     *
+     * @param applicationKey Application key (minimum 3 characters)
+     * @param consistencyToken Token returned by an earlier write that this read must see
+     * @param request        IDs of the resources to get
+     * @return Flux of one item per distinct requested ID
+     */
+    @Post("/resources:batchGet")
+    public Flux<ResourceBatchGetItem> batchGetResources(
+            @Header(ConstantValues.X_USER_ID_HEADER) @Nullable UUID userId,
+            @PathVariable @NonNull String applicationKey,
+            @Header(ConstantValues.X_CONSISTENCY_TOKEN_HEADER) @Nullable String consistencyToken,
+            @Body @Valid @NonNull ResourceBatchGet request) {
+
+        return service.getAll(applicationKey, request.ids(), context(userId, applicationKey, consistencyToken));
+    }
+
+    /**
+     * Run many create/put/patch/delete operations in one request.
+     * Each operation gets its own status code, in request order; a failing operation
+     * does not abort the batch.
+     *
+     * @param applicationKey Application key (minimum 3 characters)
+     * @param batch          Operations to run
+     * @return Flux of one result per operation
+     */
+    @Post("/resources:batch")
+    public Flux<ResourceOperationResult> batchResources(
+            @Header(ConstantValues.X_USER_ID_HEADER) @Nullable UUID userId,
+            @PathVariable @NonNull String applicationKey,
+            @Body @Valid @NonNull ResourceBatch batch) {
+
+        return service.batch(applicationKey, batch.operations(), context(userId, applicationKey));
+    }
+
     /**
-     * Update a resource.
+     * Update a resource. The body replaces the stored resource, except for its creation time
+     * and creator, which are kept.
      *
      * @param applicationKey Application key (minimum 3 characters)
      * @param id             Unique identifier for the resource
      * @param resource       Resource data to update
      * @return Mono containing the updated resource
      */
-    @Put("/{id}")
+    @Put("/resources/{id}")
     public Mono<HttpResponse<Resource>> updateResource(
             @Header(ConstantValues.X_USER_ID_HEADER) @Nullable UUID userId,
             @PathVariable @NonNull String applicationKey,
             @PathVariable @NonNull UUID id,
+            @Header(HttpHeaders.IF_MATCH) @Nullable String ifMatch,
             @Body @Valid @NonNull Resource resource) {
 
         if (Objects.nonNull(resource.id()) && !resource.id().equals(id)) {
-            return Mono.error(new BadRequestError("INVALID_ID", "Resource ID in path does not match resource ID in body"));
+            return Mono.error(MISMATCHED_ID);
         }
 
 
 
         return Mono.just(resource)
                 .map(r -> r.toBuilder().id(id).build())
-                .flatMap(r -> service.save(applicationKey, r, context(userId, applicationKey)))
-                .map( v -> HttpResponse.noContent());
+                .flatMap(r -> service.save(
+                        applicationKey, r, expectedVersion(ifMatch), context(userId, applicationKey)))
+                .flatMap(v -> withConsistencyToken(applicationKey, HttpResponse.<Resource>noContent()));
     }
 
     /**
@@ -84,16 +223,18 @@ public class ResourceController {
      * @param resourcePatch  Resource patch data
      * @return Mono containing the updated resource
      */
-    @Patch("/{id}")
+    @Patch("/resources/{id}")
     public Mono<HttpResponse<Resource>> patchResource(
             @Header(ConstantValues.X_USER_ID_HEADER) @Nullable UUID userId,
             @PathVariable @NonNull String applicationKey,
             @PathVariable @NonNull UUID id,
+            @Header(HttpHeaders.IF_MATCH) @Nullable String ifMatch,
             @Body @Valid @NonNull ResourceForPatch resourcePatch) {
 
         return Mono.just(resourcePatch)
-                .flatMap(patcher -> service.patch(applicationKey, id, patcher, context(userId, applicationKey)))
-                .map( v -> HttpResponse.noContent());
+                .flatMap(patcher -> service.patch(
+                        applicationKey, id, patcher, expectedVersion(ifMatch), context(userId, applicationKey)))
+                .flatMap(v -> withConsistencyToken(applicationKey, HttpResponse.<Resource>noContent()));
     }
 
     /**
@@ -103,13 +244,16 @@ public class ResourceController {
      * @param id             Unique identifier for the resource
      * @return Mono indicating completion
      */
-    @Delete("/{id}")
+    @Delete("/resources/{id}")
     public Mono<HttpResponse<Void>> deleteResource(
             @Header(ConstantValues.X_USER_ID_HEADER) @Nullable UUID userId,
             @PathVariable @NonNull String applicationKey,
-            @PathVariable @NonNull UUID id) {
+            @PathVariable @NonNull UUID id,
+            @Header(HttpHeaders.IF_MATCH) @Nullable String ifMatch) {
 
-        return service.remove(applicationKey, id, context(userId, applicationKey)).map(v -> HttpResponse.noContent());
+        return Mono.defer(() -> service.remove(
+                        applicationKey, id, expectedVersion(ifMatch), context(userId, applicationKey)))
+                .flatMap(v -> withConsistencyToken(applicationKey, HttpResponse.<Void>noContent()));
     }
 
     /**
@@ -119,7 +263,7 @@ public class ResourceController {
      * @param resource       Resource data to create
      * @return Mono containing the created resource
      */
-    @Post
+    @Post("/resources")
     public Mono<HttpResponse<Resource>> createResource(
             @Header(ConstantValues.X_USER_ID_HEADER) @Nullable UUID userId,
             @PathVariable @NonNull String applicationKey,
@@ -127,6 +271,6 @@ public class ResourceController {
         return Mono.just(resource)
             .flatMap(r -> service
                         .create(applicationKey, r, context(userId, applicationKey)))
-                .map(HttpResponse::created);
+                .flatMap(created -> withConsistencyToken(applicationKey, HttpResponse.created(created)));
     }
 }
@@ -57,8 +57,19 @@ public record Resource(
     Long updatedAt,
     
     @Nullable
-    UUID updatedBy
+    UUID updatedBy,
+
+    @Nullable
+    Long version
 ) {
+
+    /**
+     * Names of the stored fields of a resource, the ones a projection can select.
+     */
+    public static final List<String> FIELDS = List.of(
+        "id", "applicationKey", "type", "ownerId", "parentId", "sharedWith", "tags", "details",
+        "createdAt", "createdBy", "updatedAt", "updatedBy");
+
     public Resource patch(ResourceForPatch patchValue) {
         // Apply the patch to this resource
         var builder = this.toBuilder();
@@ -0,0 +1,23 @@
+package vvu.centrauthz.domains.resources.models;
+
+import io.micronaut.core.annotation.Introspected;
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Builder;
+
+import java.util.List;
+
+/**
+ * Request body of a batch write.
+ */
+@Serdeable
+@Introspected
+@Builder(toBuilder = true)
+public record ResourceBatch(
+    @NotNull(message = "Operations are required")
+    @Size(max = 1000, message = "At most 1000 operations can be sent at once")
+    List<@Valid ResourceOperation> operations
+) {
+}
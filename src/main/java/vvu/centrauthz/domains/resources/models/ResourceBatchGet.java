@@ -0,0 +1,23 @@
+package vvu.centrauthz.domains.resources.models;
+
+import io.micronaut.core.annotation.Introspected;
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Builder;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Request body of a bulk resource lookup.
+ */
+@Serdeable
+@Introspected
+@Builder(toBuilder = true)
+public record ResourceBatchGet(
+    @NotNull(message = "IDs are required")
+    @Size(max = 1000, message = "At most 1000 IDs can be requested at once")
+    List<@NotNull(message = "IDs cannot be null") UUID> ids
+) {
+}
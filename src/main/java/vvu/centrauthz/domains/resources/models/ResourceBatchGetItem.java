@@ -0,0 +1,27 @@
+package vvu.centrauthz.domains.resources.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.micronaut.core.annotation.Introspected;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.serde.annotation.Serdeable;
+import lombok.Builder;
+
+import java.util.UUID;
+
+/**
+ * One entry of a bulk resource lookup. Missing resources are reported with {@code found = false}.
+ */
+@Serdeable
+@Introspected
+@JsonInclude(value = JsonInclude.Include.NON_NULL)
+@Builder(toBuilder = true)
+public record ResourceBatchGetItem(
+    UUID id,
+    boolean found,
+    @Nullable
+    Resource resource
+) {
+    public static ResourceBatchGetItem of(UUID id, @Nullable Resource resource) {
+        return new ResourceBatchGetItem(id, resource != null, resource);
+    }
+}
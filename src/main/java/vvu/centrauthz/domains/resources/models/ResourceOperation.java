@@ -0,0 +1,54 @@
+package vvu.centrauthz.domains.resources.models;
+
+import io.micronaut.core.annotation.Introspected;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.serde.annotation.Serdeable;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import lombok.Builder;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * One operation of a batch write.
+ * CREATE and PUT carry a {@code resource}, PATCH carries a {@code patch}, DELETE only needs an {@code id}.
+ */
+@Serdeable
+@Introspected
+@Builder(toBuilder = true)
+public record ResourceOperation(
+    @NotNull(message = "Operation type is required")
+    Type op,
+
+    @Nullable
+    UUID id,
+
+    @Nullable
+    @Valid
+    Resource resource,
+
+    @Nullable
+    @Valid
+    ResourceForPatch patch
+) {
+
+    @Serdeable
+    public enum Type {
+        CREATE,
+        PUT,
+        PATCH,
+        DELETE
+    }
+
+    /**
+     * The ID this operation targets: the explicit ID if any, otherwise the ID of the resource.
+     */
+    @Nullable
+    public UUID targetId() {
+        if (Objects.nonNull(id) || Objects.isNull(resource)) {
+            return id;
+        }
+        return resource.id();
+    }
+}
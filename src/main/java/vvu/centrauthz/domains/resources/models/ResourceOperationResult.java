@@ -0,0 +1,32 @@
+package vvu.centrauthz.domains.resources.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.micronaut.core.annotation.Introspected;
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.serde.annotation.Serdeable;
+import lombok.Builder;
+import vvu.centrauthz.models.Error;
+
+import java.util.UUID;
+
+/**
+ * Outcome of one operation of a batch write, with the HTTP status the operation would have
+ * returned on its own.
+ */
+@Serdeable
+@Introspected
+@JsonInclude(value = JsonInclude.Include.NON_NULL)
+@Builder(toBuilder = true)
+public record ResourceOperationResult(
+    int status,
+
+    @Nullable
+    UUID id,
+
+    @Nullable
+    Resource resource,
+
+    @Nullable
+    Error error
+) {
+}
@@ -0,0 +1,59 @@
+package vvu.centrauthz.domains.resources.repositories;
+
+import io.micronaut.core.annotation.Nullable;
+import reactor.core.publisher.Mono;
+import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.models.Void;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Secondary index of the resources of an application by owner, oldest first.
+ *
+ * <p>The index is not written atomically with the resources: an entry may point to a resource
+ * that no longer exists or has another owner, so readers check the resources they list.
+ */
+public interface ResourceOwnerIndex {
+
+    /**
+     * A resource in the index of its owner.
+     */
+    record Entry(UUID id, long createdAt) {
+    }
+
+    /**
+     * Entries of an owner, with the cursor of the next page, or {@code null} on the last one.
+     */
+    record Page(List<Entry> entries, @Nullable String next) {
+    }
+
+    /**
+     * Adds resources to the index of their owner, in one storage round trip.
+     *
+     * @param appKey the application key
+     * @param resources the resources, with their ID, owner and creation time
+     * @return a Mono indicating completion
+     */
+    Mono<Void> index(String appKey, List<Resource> resources);
+
+    /**
+     * Removes resources from the index of their owner, in one storage round trip.
+     *
+     * @param appKey the application key
+     * @param resources the resources as they were indexed
+     * @return a Mono indicating completion
+     */
+    Mono<Void> unindex(String appKey, List<Resource> resources);
+
+    /**
+     * Reads a page of the index of an owner.
+     *
+     * @param appKey the application key
+     * @param ownerId the owner
+     * @param after the cursor of a previous page, or {@code null} for the first page
+     * @param limit the most entries to read
+     * @return a Mono with the page; fails with a bad request error when the cursor is invalid
+     */
+    Mono<Page> owned(String appKey, UUID ownerId, @Nullable String after, int limit);
+}
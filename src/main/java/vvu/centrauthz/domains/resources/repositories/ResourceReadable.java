@@ -1,10 +1,33 @@
 package vvu.centrauthz.domains.resources.repositories;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.domains.resources.models.ResourceBatchGetItem;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 public interface ResourceReadable {
     Mono<Resource> get(String appKey, UUID id);
+
+    /**
+     * Reads only some fields of a resource.
+     *
+     * @param appKey the application key
+     * @param id the ID of the resource to read
+     * @param fields the names of the fields to read, from {@link Resource#FIELDS}
+     * @return the resource with the selected fields, its ID and its version; other fields are null
+     */
+    Mono<Resource> get(String appKey, UUID id, Collection<String> fields);
+
+    /**
+     * Reads many resources in one storage round trip.
+     *
+     * @param appKey the application key
+     * @param ids the IDs of the resources to read
+     * @return one item per ID, in the order of {@code ids}, emitted as each resource is decoded
+     */
+    Flux<ResourceBatchGetItem> getAll(String appKey, List<UUID> ids);
 }
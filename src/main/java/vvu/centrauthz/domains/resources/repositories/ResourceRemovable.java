@@ -3,6 +3,8 @@ package vvu.centrauthz.domains.resources.repositories;
 import reactor.core.publisher.Mono;
 import vvu.centrauthz.models.Void;
 
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public interface ResourceRemovable {
@@ -15,4 +17,24 @@ public interface ResourceRemovable {
      * @return a Mono indicating completion
      */
     Mono<Void> remove(String appKey, UUID id);
+
+    /**
+     * Deletes a resource only if it still has the expected version, in one storage round trip.
+     *
+     * @param appKey the application key
+     * @param id the ID of the resource to delete
+     * @param expectedVersion the version the stored resource must have
+     * @return a Mono with {@code true} when deleted, {@code false} when there is no such resource;
+     *     fails with a precondition error when the stored version is not the expected one
+     */
+    Mono<Boolean> remove(String appKey, UUID id, long expectedVersion);
+
+    /**
+     * Deletes many resources in one storage round trip.
+     *
+     * @param appKey the application key
+     * @param ids the IDs of the resources to delete
+     * @return a Mono with the error of every resource that could not be deleted, keyed by resource ID
+     */
+    Mono<Map<UUID, Throwable>> removeAll(String appKey, List<UUID> ids);
 }
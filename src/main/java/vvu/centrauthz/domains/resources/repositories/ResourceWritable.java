@@ -1,10 +1,34 @@
 package vvu.centrauthz.domains.resources.repositories;
 
+import io.micronaut.core.annotation.Nullable;
 import reactor.core.publisher.Mono;
 import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.domains.resources.models.ResourceForPatch;
 import vvu.centrauthz.models.Void;
+import vvu.centrauthz.storages.interfaces.PatchResult;
+import vvu.centrauthz.storages.interfaces.VersionedWritable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 public interface ResourceWritable {
+
+    /**
+     * A write of a batch: a {@link VersionedWritable.Mode#CREATE} of a resource that must not
+     * exist yet, or a {@link VersionedWritable.Mode#REPLACE} of one that must still exist, at
+     * {@code expectedVersion} unless it is {@code null}.
+     */
+    record Write(Resource resource, VersionedWritable.Mode mode, @Nullable Long expectedVersion) {
+        public static Write create(Resource resource) {
+            return new Write(resource, VersionedWritable.Mode.CREATE, null);
+        }
+
+        public static Write replace(Resource resource, @Nullable Long expectedVersion) {
+            return new Write(resource, VersionedWritable.Mode.REPLACE, expectedVersion);
+        }
+    }
+
     /**
      * Saves a resource to the repository.
      *
@@ -14,4 +38,63 @@ public interface ResourceWritable {
      */
     Mono<Void> save(String appKey, Resource resource);
 
+    /**
+     * Saves a resource only if no resource with its ID exists, in one storage round trip.
+     * The created resource is stored with version 1.
+     *
+     * @param appKey the application key
+     * @param resource the resource to create
+     * @return a Mono with {@code true} when created, {@code false} when the ID is already taken
+     */
+    Mono<Boolean> create(String appKey, Resource resource);
+
+    /**
+     * Saves a resource only if a resource with its ID exists, in one storage round trip.
+     *
+     * @param appKey the application key
+     * @param resource the resource to replace
+     * @param expectedVersion the version the stored resource must have, or {@code null} for any version
+     * @return a Mono with {@code true} when replaced, {@code false} when there is no such resource;
+     *     fails with a precondition error when the stored version is not the expected one
+     */
+    Mono<Boolean> replace(String appKey, Resource resource, @Nullable Long expectedVersion);
+
+    /**
+     * Merges a patch into a stored resource without reading it, when the storage supports it.
+     *
+     * @param appKey the application key
+     * @param id the ID of the resource to patch
+     * @param patch the fields to change
+     * @param updatedBy the user patching the resource
+     * @param updatedAt the time of the patch
+     * @param expectedVersion the version the stored resource must have, or {@code null} for any version
+     * @return a Mono with {@link PatchResult#UNSUPPORTED} when the resource has to be patched by the caller;
+     *     fails with a precondition error when the stored version is not the expected one
+     */
+    Mono<PatchResult> patch(
+            String appKey, UUID id, ResourceForPatch patch, UUID updatedBy, long updatedAt,
+            @Nullable Long expectedVersion);
+
+    /**
+     * Writes many resources in one storage round trip, each under its own conditions.
+     *
+     * @param appKey the application key
+     * @param writes the resources to write
+     * @return a Mono with the error of every resource that could not be written, keyed by resource
+     *     ID: a conflict error when a created one exists, a not found error when a replaced one is
+     *     gone, a precondition error when a replaced one is at another version
+     */
+    Mono<Map<UUID, Throwable>> saveAll(String appKey, List<Write> writes);
+
+    /**
+     * A token that lets later reads see every write to the application made so far, see
+     * {@link vvu.centrauthz.storages.interfaces.Replicated}.
+     *
+     * @param appKey the application key
+     * @return a Mono with the token, or empty when reads always see the latest writes
+     */
+    default Mono<String> consistencyToken(String appKey) {
+        return Mono.empty();
+    }
+
 }
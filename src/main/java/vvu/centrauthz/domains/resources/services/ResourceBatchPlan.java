@@ -0,0 +1,235 @@
+package vvu.centrauthz.domains.resources.services;
+
+import io.micronaut.http.HttpStatus;
+import reactor.core.publisher.Flux;
+import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.domains.resources.models.ResourceOperation;
+import vvu.centrauthz.domains.resources.models.ResourceOperationResult;
+import vvu.centrauthz.domains.resources.repositories.ResourceWritable;
+import vvu.centrauthz.errorhandlers.ErrorStatus;
+import vvu.centrauthz.exceptions.AppError;
+import vvu.centrauthz.exceptions.BadRequestError;
+import vvu.centrauthz.exceptions.ConflictError;
+import vvu.centrauthz.utilities.Context;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Applies the operations of a batch, in request order, to the resources read for it.
+ *
+ * <p>Later operations see the effect of earlier ones on the same ID, and only the final state
+ * of every touched resource is written back: created if it did not exist when read, replaced at
+ * the version read otherwise, so that a resource created, changed or deleted by someone else
+ * meanwhile fails the operations on it. An operation that fails does not stop the others.
+ * The owner index gains the new owners of touched resources before the writes, and loses the
+ * old ones after them, deleted resources included.
+ */
+class ResourceBatchPlan {
+
+    private static final BadRequestError MISMATCHED_ID =
+        new BadRequestError("INVALID_ID", "Resource ID in operation does not match resource ID in body");
+
+    private final String appKey;
+    private final Context context;
+    private final long now = System.currentTimeMillis();
+    private final Map<UUID, Resource> existing;
+    // a null value marks a resource deleted earlier in the batch
+    private final Map<UUID, Resource> current;
+    private final Set<UUID> touched = new LinkedHashSet<>();
+    private final List<Step> steps = new ArrayList<>();
+
+    private record Step(UUID id, HttpStatus status, Resource resource, Throwable error) {
+    }
+
+    ResourceBatchPlan(String appKey, Map<UUID, Resource> existing, Context context) {
+        this.appKey = appKey;
+        this.context = context;
+        this.existing = existing;
+        this.current = new HashMap<>(existing);
+    }
+
+    /**
+     * IDs that must be read before the batch can be planned, deleted ones included for the
+     * owner index entries they leave.
+     */
+    static List<UUID> idsToRead(List<ResourceOperation> operations) {
+        return operations.stream()
+                .map(ResourceOperation::targetId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+    }
+
+    ResourceBatchPlan apply(List<ResourceOperation> operations) {
+        for (var operation : operations) {
+            try {
+                steps.add(switch (operation.op()) {
+                    case CREATE -> create(operation);
+                    case PUT -> put(operation);
+                    case PATCH -> patch(operation);
+                    case DELETE -> delete(operation);
+                });
+            } catch (AppError e) {
+                steps.add(new Step(operation.targetId(), ErrorStatus.of(e), null, e));
+            }
+        }
+        return this;
+    }
+
+    List<ResourceWritable.Write> toSave() {
+        return touched.stream()
+                .filter(this::exists)
+                .map(id -> existing.containsKey(id)
+                        ? ResourceWritable.Write.replace(current.get(id), existing.get(id).version())
+                        : ResourceWritable.Write.create(current.get(id)))
+                .toList();
+    }
+
+    List<UUID> toRemove() {
+        return touched.stream()
+                .filter(id -> Objects.isNull(current.get(id)))
+                .toList();
+    }
+
+    private static boolean sameOwner(Resource before, Resource after) {
+        return Objects.equals(before.ownerId(), after.ownerId());
+    }
+
+    /**
+     * Resources to add to the index of their owner before the writes: the created ones and
+     * those given to another owner.
+     */
+    List<Resource> toIndex() {
+        return touched.stream()
+                .filter(id -> exists(id) && !(existing.containsKey(id) && sameOwner(existing.get(id), current.get(id))))
+                .map(current::get)
+                .toList();
+    }
+
+    /**
+     * Resources to remove from the index once written: from the index of their former owner,
+     * those given to another owner and the deleted ones; from the index of their new owner,
+     * those whose write certainly did not happen.
+     *
+     * @param failures errors of the writes that failed, keyed by resource ID; a resource whose
+     *     write failed keeps its former entry
+     */
+    List<Resource> toUnindex(Map<UUID, Throwable> failures) {
+        var former = touched.stream()
+                .filter(id -> !failures.containsKey(id) && existing.containsKey(id))
+                .filter(id -> !exists(id) || !sameOwner(existing.get(id), current.get(id)))
+                .map(existing::get);
+        var unwritten = toIndex().stream()
+                .filter(r -> failures.containsKey(r.id()) && ResourceService.notWritten(failures.get(r.id())));
+        return Stream.concat(former, unwritten).toList();
+    }
+
+    /**
+     * One result per operation, in request order, taking the failed writes into account.
+     *
+     * @param writeFailures errors of the writes that failed, keyed by resource ID
+     */
+    Flux<ResourceOperationResult> results(Map<UUID, Throwable> writeFailures) {
+        return Flux.fromIterable(steps).map(step -> {
+            var error = Objects.nonNull(step.error()) ? step.error() : writeFailures.get(step.id());
+            if (Objects.nonNull(error)) {
+                return ResourceOperationResult.builder()
+                        .id(step.id())
+                        .status(ErrorStatus.of(error).getCode())
+                        .error(ErrorStatus.bodyOf(error))
+                        .build();
+            }
+            return ResourceOperationResult.builder()
+                    .id(step.id())
+                    .status(step.status().getCode())
+                    .resource(step.resource())
+                    .build();
+        });
+    }
+
+    private boolean exists(UUID id) {
+        return Objects.nonNull(current.get(id));
+    }
+
+    private Resource existing(UUID id) {
+        if (!exists(id)) {
+            throw ResourceService.resourceNotFound(appKey, id);
+        }
+        return current.get(id);
+    }
+
+    private void write(UUID id, Resource resource) {
+        current.put(id, resource);
+        touched.add(id);
+    }
+
+    private static UUID requireId(ResourceOperation operation) {
+        var id = operation.targetId();
+        if (Objects.isNull(id)) {
+            throw new BadRequestError("MISSING_ID", "Operation " + operation.op() + " requires an ID");
+        }
+        if (Objects.nonNull(operation.resource())
+                && Objects.nonNull(operation.resource().id())
+                && !operation.resource().id().equals(id)) {
+            throw MISMATCHED_ID;
+        }
+        return id;
+    }
+
+    private static <T> T requirePayload(T payload, ResourceOperation operation) {
+        if (Objects.isNull(payload)) {
+            throw new BadRequestError("MISSING_PAYLOAD", "Operation " + operation.op() + " requires a payload");
+        }
+        return payload;
+    }
+
+    private Step create(ResourceOperation operation) {
+        var resource = requirePayload(operation.resource(), operation);
+        var id = Objects.isNull(operation.targetId()) ? UUID.randomUUID() : requireId(operation);
+        if (exists(id)) {
+            throw new ConflictError(String.format("Resource with ID %s is existing", id));
+        }
+        var created = resource.toBuilder()
+                .id(id)
+                .createdBy(context.user().id())
+                .createdAt(now)
+                .build();
+        write(id, created);
+        return new Step(id, HttpStatus.CREATED, created, null);
+    }
+
+    private Step put(ResourceOperation operation) {
+        var resource = requirePayload(operation.resource(), operation);
+        var id = requireId(operation);
+        var updated = ResourceService.replaced(existing(id), resource.toBuilder().id(id).build(), context, now);
+        write(id, updated);
+        return new Step(id, HttpStatus.NO_CONTENT, null, null);
+    }
+
+    private Step patch(ResourceOperation operation) {
+        var patcher = requirePayload(operation.patch(), operation);
+        var id = requireId(operation);
+        var patched = existing(id)
+                .patch(patcher)
+                .toBuilder()
+                .updatedBy(context.user().id())
+                .updatedAt(now)
+                .build();
+        write(id, patched);
+        return new Step(id, HttpStatus.NO_CONTENT, null, null);
+    }
+
+    private Step delete(ResourceOperation operation) {
+        var id = requireId(operation);
+        write(id, null);
+        return new Step(id, HttpStatus.NO_CONTENT, null, null);
+    }
+}
@@ -1,21 +1,35 @@
 package vvu.centrauthz.domains.resources.services;
 
 
+import io.micronaut.core.annotation.Nullable;
 import jakarta.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+import reactor.util.retry.Retry;
 import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.domains.resources.models.ResourceBatchGetItem;
 import vvu.centrauthz.domains.resources.models.ResourceForPatch;
+import vvu.centrauthz.domains.resources.models.ResourceOperation;
+import vvu.centrauthz.domains.resources.models.ResourceOperationResult;
+import vvu.centrauthz.domains.resources.repositories.ResourceOwnerIndex;
 import vvu.centrauthz.domains.resources.repositories.ResourceReadable;
 import vvu.centrauthz.domains.resources.repositories.ResourceRemovable;
 import vvu.centrauthz.domains.resources.repositories.ResourceWritable;
+import vvu.centrauthz.exceptions.BadRequestError;
 import vvu.centrauthz.exceptions.ConflictError;
 import vvu.centrauthz.exceptions.EUtils;
 import vvu.centrauthz.exceptions.NotFoundError;
+import vvu.centrauthz.exceptions.PreconditionFailedError;
 import vvu.centrauthz.models.Void;
+import vvu.centrauthz.storages.interfaces.Replicated;
 import vvu.centrauthz.utilities.Context;
 import vvu.centrauthz.utilities.Executor;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -23,17 +37,49 @@ import java.util.UUID;
 @Slf4j
 public class ResourceService {
 
+    /**
+     * Attempts of a read-modify-write PATCH that lost a race against another writer.
+     */
+    static final int MAX_PATCH_ATTEMPTS = 3;
+
+    /**
+     * Age after which an owner index entry of a missing resource is removed when listed;
+     * younger ones may belong to a create in flight.
+     */
+    static final long STALE_ENTRY_AGE_MILLIS = 60_000;
+
+    /**
+     * Reads made to write: a replica may not have the version a conditional write is checked against.
+     */
+    // the fields an owner index entry is made of
+    private static final List<String> INDEXED_FIELDS = List.of("ownerId", "createdAt");
+
+    private static final ContextView PRIMARY_READS =
+            reactor.util.context.Context.of(Replicated.CONSISTENCY_TOKEN, Replicated.PRIMARY);
+
     private final ResourceReadable resourceReadable;
     private final ResourceWritable resourceWritable;
     private final ResourceRemovable resourceRemovable;
+    private final ResourceOwnerIndex ownerIndex;
+
+    /**
+     * A page of the resources of an owner.
+     *
+     * @param next the cursor of the next page, or {@code null} on the last one
+     * @param resources the resources, oldest first, streamed as they are read
+     */
+    public record OwnedResources(@Nullable String next, Flux<Resource> resources) {
+    }
 
     public ResourceService(
             ResourceReadable resourceReadable,
             ResourceWritable resourceWritable,
-            ResourceRemovable resourceRemovable) {
+            ResourceRemovable resourceRemovable,
+            ResourceOwnerIndex ownerIndex) {
         this.resourceReadable = Objects.requireNonNull(resourceReadable);
         this.resourceWritable = Objects.requireNonNull(resourceWritable);
         this.resourceRemovable = Objects.requireNonNull(resourceRemovable);
+        this.ownerIndex = Objects.requireNonNull(ownerIndex);
     }
 
     static NotFoundError resourceNotFound(String appKey, UUID id) {
@@ -41,50 +87,161 @@ public class ResourceService {
         return EUtils.createNotFoundError(eMess);
     }
 
+    static PreconditionFailedError versionMismatch(String appKey, UUID id, long expectedVersion) {
+        String eMess = String.format(
+                "Resource with ID %s for application %s is not at version %d", id, appKey, expectedVersion);
+        return new PreconditionFailedError(eMess);
+    }
+
+    /**
+     * Fails fast when an If-Match version cannot match the resource just read.
+     */
+    private static Mono<Resource> checkVersion(String appKey, Resource resource, @Nullable Long expectedVersion) {
+        if (Objects.isNull(expectedVersion) || expectedVersion.equals(resource.version())) {
+            return Mono.just(resource);
+        }
+        return Mono.error(versionMismatch(appKey, resource.id(), expectedVersion));
+    }
+
+    /**
+     * Reads with the consistency token of the request, if any, see {@link Replicated}.
+     */
+    private static ContextView readConsistency(Context context) {
+        var token = context.consistencyToken();
+        return Objects.isNull(token) || token.isBlank()
+                ? reactor.util.context.Context.empty()
+                : reactor.util.context.Context.of(Replicated.CONSISTENCY_TOKEN, token);
+    }
+
+    /**
+     * Whether a write certainly did not happen, so that the index entries made for it can go.
+     */
+    static boolean notWritten(Throwable e) {
+        return e instanceof NotFoundError || e instanceof PreconditionFailedError || e instanceof ConflictError;
+    }
+
+    /**
+     * Reports a failed batch write in the terms of the resource rather than of its storage key.
+     */
+    private static Throwable batchFailure(String appKey, UUID id, Throwable e) {
+        if (e instanceof ConflictError) {
+            return new ConflictError(String.format("Resource with ID %s is existing", id));
+        }
+        if (e instanceof NotFoundError) {
+            return resourceNotFound(appKey, id);
+        }
+        return e;
+    }
+
+    /**
+     * Removes owner index entries once their resources were written. A failure only leaves
+     * entries that listings skip, so it does not fail the write.
+     */
+    private Mono<Void> unindex(String appKey, List<Resource> resources) {
+        if (resources.isEmpty()) {
+            return Mono.just(Void.create());
+        }
+        return ownerIndex.unindex(appKey, resources)
+                .onErrorResume(e -> {
+                    log.warn("Removing {} owner index entries of {} failed", resources.size(), appKey, e);
+                    return Mono.empty();
+                })
+                .then(Mono.fromCallable(Void::create));
+    }
+
+    /**
+     * Writes a resource that may change owner: the new owner indexes it before the write, so
+     * listings never miss it, and the former owner stops indexing it after the write.
+     */
+    private Mono<Void> reindexed(String appKey, Resource before, Resource after, Mono<Void> write) {
+        if (Objects.equals(before.ownerId(), after.ownerId())) {
+            return write;
+        }
+        return ownerIndex.index(appKey, List.of(after))
+                .then(write)
+                .onErrorResume(e -> notWritten(e)
+                        ? unindex(appKey, List.of(after)).then(Mono.<Void>error(e))
+                        : Mono.error(e))
+                .flatMap(v -> unindex(appKey, List.of(before)).thenReturn(v));
+    }
+
     private Mono<Resource> getResource(String appKey, UUID id) {
         return resourceReadable
                 .get(appKey, id)
-                .switchIfEmpty(Mono.error(resourceNotFound(appKey, id)));
+                .switchIfEmpty(Mono.error(() -> resourceNotFound(appKey, id)));
     }
 
     public Mono<Resource> get(String appKey, UUID id, Context context) {
-        return Executor.mono(() -> getResource(appKey, id))
+        return Executor.mono(() -> getResource(appKey, id).contextWrite(readConsistency(context)))
             .withLogger(log)
             .withContext(context)
             .execute();
     }
 
-    private Mono<Resource> saveNewResource(String appKey, Resource resource, Context context) {
-        var newRes = resource
-                .toBuilder()
-                .createdBy(context.user().id())
-                .createdAt(System.currentTimeMillis()).build();
-        return resourceWritable.save(appKey, newRes).map(v -> newRes);
+    private Mono<Resource> getProjection(String appKey, UUID id, List<String> fields) {
+        var unknown = fields.stream().filter(f -> !Resource.FIELDS.contains(f)).toList();
+        if (!unknown.isEmpty()) {
+            return Mono.error(new BadRequestError("INVALID_FIELDS", "Unknown resource fields " + unknown));
+        }
+        return resourceReadable
+                .get(appKey, id, fields)
+                .switchIfEmpty(Mono.error(() -> resourceNotFound(appKey, id)));
     }
 
-    private Mono<Resource> createResource(String appKey, final Resource resource, Context context) {
-
-        if (Objects.isNull(resource.id())) {
-            var r = resource
-                    .toBuilder()
-                    .id(UUID.randomUUID())
-                    .build();
-            return saveNewResource(appKey, r, context);
+    /**
+     * Gets only some fields of a resource, plus its ID and version.
+     *
+     * @param fields the fields to return, or {@code null} or empty for all of them
+     */
+    public Mono<Resource> get(String appKey, UUID id, @Nullable List<String> fields, Context context) {
+        if (Objects.isNull(fields) || fields.isEmpty()) {
+            return get(appKey, id, context);
         }
+        return Executor.mono(() -> getProjection(appKey, id, fields).contextWrite(readConsistency(context)))
+            .withLogger(log)
+            .withContext(context)
+            .execute();
+    }
+
+    public Flux<ResourceBatchGetItem> getAll(String appKey, List<UUID> ids, Context context) {
+        return Executor.flux(() -> resourceReadable.getAll(appKey, ids.stream().distinct().toList())
+                .contextWrite(readConsistency(context)))
+            .withLogger(log)
+            .withContext(context)
+            .execute();
+    }
 
-        String eMess = String.format("Resource with ID %s is existing", resource.id());
+    private Mono<Resource> createResource(String appKey, final Resource resource, Context context) {
+        var newRes = resource
+                .toBuilder()
+                .id(Objects.isNull(resource.id()) ? UUID.randomUUID() : resource.id())
+                .createdBy(context.user().id())
+                .createdAt(System.currentTimeMillis())
+                .build();
 
-        return getResource(appKey, resource.id())
-                .flatMap(r -> Mono.<Resource>error(new ConflictError(eMess)))
-                .doOnNext( r -> log.info("Resource already exists: {}", r))
-                .onErrorResume( throwable -> {
-                    if (throwable instanceof NotFoundError) {
-                        return saveNewResource(appKey, resource, context);
+        return ownerIndex.index(appKey, List.of(newRes))
+                .then(resourceWritable.create(appKey, newRes))
+                .flatMap(created -> {
+                    if (Boolean.TRUE.equals(created)) {
+                        return Mono.just(newRes.toBuilder().version(1L).build());
                     }
-                    return Mono.error(throwable);
+                    String eMess = String.format("Resource with ID %s is existing", newRes.id());
+                    return unindex(appKey, List.of(newRes)).then(Mono.<Resource>error(new ConflictError(eMess)));
                 });
     }
 
+    /**
+     * Replaces an existing resource; a resource removed in the meantime is not brought back,
+     * and one changed in the meantime is not overwritten when a version is expected.
+     */
+    private Mono<Void> replaceResource(String appKey, Resource resource, @Nullable Long expectedVersion) {
+        return resourceWritable
+                .replace(appKey, resource, expectedVersion)
+                .flatMap(replaced -> Boolean.TRUE.equals(replaced)
+                        ? Mono.just(Void.create())
+                        : Mono.<Void>error(resourceNotFound(appKey, resource.id())));
+    }
+
     public Mono<Resource> create(String appKey, final Resource resource, Context context) {
         return Executor
                 .mono(() -> createResource(appKey, resource, context))
@@ -93,50 +250,275 @@ public class ResourceService {
                 .execute();
     }
 
-    private Mono<Void> saveResource(String appKey, Resource resource, Context context) {
+    /**
+     * The stored state of a resource replaced by a PUT: the new content, with the creation
+     * audit of the existing resource and a fresh update audit.
+     */
+    static Resource replaced(Resource existing, Resource replacement, Context context, long now) {
+        return replacement.toBuilder()
+                .createdAt(existing.createdAt())
+                .createdBy(existing.createdBy())
+                .updatedBy(context.user().id())
+                .updatedAt(now)
+                .build();
+    }
+
+    private Mono<Void> saveResource(String appKey, Resource resource, @Nullable Long expectedVersion, Context context) {
         return getResource(appKey, resource.id())
+                .contextWrite(PRIMARY_READS)
+                .flatMap(r -> checkVersion(appKey, r, expectedVersion))
                 .flatMap(r -> {
-                    r = r.toBuilder()
-                            .updatedBy(context.user().id())
-                            .updatedAt(System.currentTimeMillis())
-                            .build();
-                    return resourceWritable.save(appKey, r);
+                    var replacement = replaced(r, resource, context, System.currentTimeMillis());
+                    return reindexed(appKey, r, replacement, replaceResource(appKey, replacement, expectedVersion));
                 });
     }
 
     public Mono<Void> save(String appKey, Resource resource, Context context) {
+        return save(appKey, resource, null, context);
+    }
+
+    /**
+     * Replaces a resource.
+     *
+     * @param expectedVersion the version from If-Match, or {@code null} to replace any version
+     */
+    public Mono<Void> save(String appKey, Resource resource, @Nullable Long expectedVersion, Context context) {
         return Executor
-                .mono(() -> saveResource(appKey, resource, context))
+                .mono(() -> saveResource(appKey, resource, expectedVersion, context))
                 .withLogger(log)
                 .withContext(context)
                 .execute();
     }
 
-    private Mono<Void> patchResource(String appKey, UUID id, ResourceForPatch patcher, Context context) {
+    /**
+     * Read-modify-write PATCH. The write is conditional on the version that was read, so a
+     * concurrent writer is never overwritten; without If-Match the PATCH is retried on a
+     * fresh read instead of failing.
+     */
+    private Mono<Void> patchFetchedResource(
+            String appKey, UUID id, ResourceForPatch patcher, @Nullable Long expectedVersion, Context context, long now) {
 
-        return getResource(appKey, id)
+        var attempt = Mono.defer(() -> getResource(appKey, id)
+                .contextWrite(PRIMARY_READS)
+                .flatMap(resource -> checkVersion(appKey, resource, expectedVersion))
                 .flatMap(resource -> {
                     var patchedResource = resource.patch(patcher);
                     patchedResource = patchedResource
                             .toBuilder()
                             .updatedBy(context.user().id())
-                            .updatedAt(System.currentTimeMillis())
+                            .updatedAt(now)
                             .build();
-                    return resourceWritable.save(appKey, patchedResource);
+                    return reindexed(
+                            appKey, resource, patchedResource, replaceResource(appKey, patchedResource, resource.version()));
+                }));
+
+        if (Objects.nonNull(expectedVersion)) {
+            return attempt;
+        }
+        return attempt.retryWhen(Retry.max(MAX_PATCH_ATTEMPTS - 1L)
+                .filter(PreconditionFailedError.class::isInstance)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    private Mono<Void> patchResource(
+            String appKey, UUID id, ResourceForPatch patcher, @Nullable Long expectedVersion, Context context) {
+        var now = System.currentTimeMillis();
+        if (patcher.updatedFields().contains("ownerId")) {
+            // the owner index needs the owner the resource had, so the patch is made here
+            return patchFetchedResource(appKey, id, patcher, expectedVersion, context, now);
+        }
+        return resourceWritable
+                .patch(appKey, id, patcher, context.user().id(), now, expectedVersion)
+                .flatMap(result -> switch (result) {
+                    case PATCHED -> Mono.just(Void.create());
+                    case NOT_FOUND -> Mono.<Void>error(resourceNotFound(appKey, id));
+                    case UNSUPPORTED -> patchFetchedResource(appKey, id, patcher, expectedVersion, context, now);
                 });
     }
 
     public Mono<Void> patch(String appKey, UUID id, ResourceForPatch patcher, Context context) {
+        return patch(appKey, id, patcher, null, context);
+    }
+
+    /**
+     * Patches a resource.
+     *
+     * @param expectedVersion the version from If-Match, or {@code null} to patch any version
+     */
+    public Mono<Void> patch(
+            String appKey, UUID id, ResourceForPatch patcher, @Nullable Long expectedVersion, Context context) {
         return Executor
-                .mono(() -> patchResource(appKey, id, patcher, context))
+                .mono(() -> patchResource(appKey, id, patcher, expectedVersion, context))
                 .withLogger(log)
                 .withContext(context)
                 .execute();
     }
 
+    private Flux<ResourceOperationResult> runBatch(String appKey, List<ResourceOperation> operations, Context context) {
+        return resourceReadable
+                .getAll(appKey, ResourceBatchPlan.idsToRead(operations))
+                .contextWrite(PRIMARY_READS)
+                .filter(ResourceBatchGetItem::found)
+                .collectMap(ResourceBatchGetItem::id, ResourceBatchGetItem::resource)
+                .flatMapMany(existing -> {
+                    var plan = new ResourceBatchPlan(appKey, existing, context).apply(operations);
+                    return ownerIndex.index(appKey, plan.toIndex())
+                            .then(Mono.zip(
+                                    resourceWritable.saveAll(appKey, plan.toSave()),
+                                    resourceRemovable.removeAll(appKey, plan.toRemove())))
+                            .flatMapMany(failures -> {
+                                var all = new HashMap<UUID, Throwable>();
+                                failures.getT1().forEach((id, e) -> all.put(id, batchFailure(appKey, id, e)));
+                                all.putAll(failures.getT2());
+                                return unindex(appKey, plan.toUnindex(all)).thenMany(plan.results(all));
+                            });
+                });
+    }
+
+    /**
+     * Runs a batch of create/put/patch/delete operations.
+     * All reads go to storage in one round trip and all writes in another, with one more on
+     * each side for the owner index; one failing operation does not abort the others.
+     *
+     * @return one result per operation, in request order
+     */
+    public Flux<ResourceOperationResult> batch(String appKey, List<ResourceOperation> operations, Context context) {
+        return Executor
+                .flux(() -> runBatch(appKey, operations, context))
+                .withLogger(log)
+                .withContext(context)
+                .execute();
+    }
+
+    /**
+     * A token for the {@code X-Consistency-Token} header of a write response; reads carrying
+     * it see the write.
+     *
+     * @return a Mono with the token, or empty when every read sees the latest writes anyway
+     */
+    public Mono<String> consistencyToken(String appKey) {
+        return Executor.mono(() -> resourceWritable.consistencyToken(appKey))
+            .withLogger(log)
+            .execute();
+    }
+
+    /**
+     * Deletes a resource, then its owner index entry, found from the owner and creation time
+     * read first. An entry missed because the owner changed in between is left to a later
+     * listing of the owner.
+     */
+    private Mono<Void> removeResource(String appKey, UUID id, @Nullable Long expectedVersion) {
+        return resourceReadable.get(appKey, id, INDEXED_FIELDS)
+                .contextWrite(PRIMARY_READS)
+                .map(List::of)
+                .defaultIfEmpty(List.of())
+                .flatMap(indexed -> removeStored(appKey, id, expectedVersion)
+                        .flatMap(v -> unindex(appKey, indexed).thenReturn(v)));
+    }
+
+    private Mono<Void> removeStored(String appKey, UUID id, @Nullable Long expectedVersion) {
+        if (Objects.isNull(expectedVersion)) {
+            return resourceRemovable.remove(appKey, id);
+        }
+        return resourceRemovable
+                .remove(appKey, id, expectedVersion)
+                .flatMap(removed -> Boolean.TRUE.equals(removed)
+                        ? Mono.just(Void.create())
+                        : Mono.<Void>error(resourceNotFound(appKey, id)));
+    }
+
     public Mono<Void> remove(String appKey, UUID id, Context context) {
+        return remove(appKey, id, null, context);
+    }
+
+    /**
+     * Deletes a resource and its owner index entry.
+     *
+     * @param expectedVersion the version from If-Match, or {@code null} to delete any version
+     */
+    public Mono<Void> remove(String appKey, UUID id, @Nullable Long expectedVersion, Context context) {
+        return Executor
+                .mono(() -> removeResource(appKey, id, expectedVersion))
+                .withLogger(log)
+                .withContext(context)
+                .execute();
+    }
+
+    /**
+     * Whether a resource is still the one an owner index entry was made for.
+     */
+    private static boolean indexedAs(Resource resource, UUID ownerId, ResourceOwnerIndex.Entry entry) {
+        var createdAt = Objects.isNull(resource.createdAt()) ? 0 : Math.max(0, resource.createdAt());
+        return ownerId.equals(resource.ownerId()) && createdAt == entry.createdAt();
+    }
+
+    /**
+     * Whether an entry outlived its resource: the resource was deleted, or deleted and created
+     * again, which gives it another creation time.
+     */
+    private static boolean orphaned(ResourceBatchGetItem item, ResourceOwnerIndex.Entry entry) {
+        if (!item.found()) {
+            return true;
+        }
+        var createdAt = item.resource().createdAt();
+        return Objects.isNull(createdAt) || Math.max(0, createdAt) != entry.createdAt();
+    }
+
+    /**
+     * Reads the resources of one page of the owner index in one round trip. Entries of
+     * resources that are gone, or that have another owner, are skipped. A delete racing an owner
+     * change, or whose unindex failed, leaves its entry behind, so the old orphaned ones are
+     * removed from the index once the page is streamed; recent ones may belong to a create
+     * still in flight.
+     */
+    private Flux<Resource> ownedResources(
+            String appKey, UUID ownerId, List<ResourceOwnerIndex.Entry> entries, Context context) {
+        if (entries.isEmpty()) {
+            return Flux.empty();
+        }
+        return Flux.defer(() -> {
+            var staleBefore = System.currentTimeMillis() - STALE_ENTRY_AGE_MILLIS;
+            var stale = new ArrayList<Resource>();
+            return resourceReadable
+                    .getAll(appKey, entries.stream().map(ResourceOwnerIndex.Entry::id).toList())
+                    .contextWrite(readConsistency(context))
+                    .zipWithIterable(entries)
+                    .filter(t -> {
+                        var entry = t.getT2();
+                        if (orphaned(t.getT1(), entry)) {
+                            if (entry.createdAt() < staleBefore) {
+                                stale.add(Resource.builder().id(entry.id()).ownerId(ownerId).createdAt(entry.createdAt()).build());
+                            }
+                            return false;
+                        }
+                        return indexedAs(t.getT1().resource(), ownerId, entry);
+                    })
+                    .map(t -> t.getT1().resource())
+                    .concatWith(Mono.defer(() -> unindex(appKey, stale)).then(Mono.empty()));
+        });
+    }
+
+    private Mono<OwnedResources> readOwned(
+            String appKey, UUID ownerId, @Nullable String after, int limit, Context context) {
+        return ownerIndex
+                .owned(appKey, ownerId, after, limit)
+                .map(page -> new OwnedResources(page.next(), Executor
+                        .flux(() -> ownedResources(appKey, ownerId, page.entries(), context))
+                        .withLogger(log)
+                        .withContext(context)
+                        .execute()));
+    }
+
+    /**
+     * Lists the resources of an owner, oldest first, a page at a time.
+     *
+     * @param after the cursor of the previous page, or {@code null} for the first page
+     * @param limit the most resources in the page; stale index entries make it shorter
+     */
+    public Mono<OwnedResources> listOwned(
+            String appKey, UUID ownerId, @Nullable String after, int limit, Context context) {
         return Executor
-                .mono(() -> resourceRemovable.remove(appKey, id))
+                .mono(() -> readOwned(appKey, ownerId, after, limit, context))
                 .withLogger(log)
                 .withContext(context)
                 .execute();
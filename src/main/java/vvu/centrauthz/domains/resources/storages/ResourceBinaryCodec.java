@@ -0,0 +1,228 @@
+package vvu.centrauthz.domains.resources.storages;
+
+import io.micronaut.json.JsonMapper;
+import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.domains.resources.models.ResourceForPatch;
+import vvu.centrauthz.exceptions.IllegalStoredValue;
+import vvu.centrauthz.storages.codecs.ByteReader;
+import vvu.centrauthz.storages.codecs.ByteWriter;
+import vvu.centrauthz.storages.interfaces.ValueCodec;
+import vvu.centrauthz.utilities.JsonTools;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Compact binary format of resources.
+ *
+ * <p>Layout: a 3-byte header ({@code 0xC7}, {@code 'R'}, version), then one section per
+ * non-null field: a tag byte, a varint payload length and the payload. UUIDs are 16 raw bytes,
+ * timestamps zig-zag varints, strings UTF-8, {@code tags} a sequence of length-prefixed strings
+ * and {@code details} its JSON bytes. Unknown tags are skipped, so fields can be added without
+ * a version bump.
+ */
+public class ResourceBinaryCodec implements ValueCodec<Resource> {
+
+    static final byte MAGIC = (byte) 0xC7;
+    static final byte KIND = 'R';
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = 3;
+
+    static final int TAG_ID = 1;
+    static final int TAG_APPLICATION_KEY = 2;
+    static final int TAG_TYPE = 3;
+    static final int TAG_OWNER_ID = 4;
+    static final int TAG_PARENT_ID = 5;
+    static final int TAG_SHARED_WITH = 6;
+    static final int TAG_TAGS = 7;
+    static final int TAG_DETAILS = 8;
+    static final int TAG_CREATED_AT = 9;
+    static final int TAG_CREATED_BY = 10;
+    static final int TAG_UPDATED_AT = 11;
+    static final int TAG_UPDATED_BY = 12;
+
+    private final JsonMapper mapper;
+
+    /**
+     * Sections replacing the patched fields of a stored resource.
+     *
+     * @param tags     the tags of every patched field; a field set to null has a tag but no section
+     * @param sections the encoded sections of the non-null patched fields
+     */
+    public record Patch(List<Integer> tags, byte[] sections) {
+    }
+
+    public ResourceBinaryCodec(JsonMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    static byte[] header() {
+        return new byte[]{MAGIC, KIND, VERSION};
+    }
+
+    /**
+     * Whether the bytes start with the header of this format.
+     * JSON values start with {@code '{'}, so the two never collide.
+     */
+    public static boolean matches(byte[] bytes) {
+        return bytes.length >= HEADER_SIZE && bytes[0] == MAGIC && bytes[1] == KIND;
+    }
+
+    @Override
+    public byte[] encode(Resource resource) {
+        var out = new ByteWriter(256);
+        out.writeByte(MAGIC).writeByte(KIND).writeByte(VERSION);
+        writeUuid(out, TAG_ID, resource.id());
+        writeString(out, TAG_APPLICATION_KEY, resource.applicationKey());
+        writeString(out, TAG_TYPE, resource.type());
+        writeUuid(out, TAG_OWNER_ID, resource.ownerId());
+        writeUuid(out, TAG_PARENT_ID, resource.parentId());
+        writeUuids(out, TAG_SHARED_WITH, resource.sharedWith());
+        writeStrings(out, TAG_TAGS, resource.tags());
+        if (Objects.nonNull(resource.details())) {
+            writeSection(out, TAG_DETAILS, JsonTools.toBytes(mapper, resource.details()));
+        }
+        writeLong(out, TAG_CREATED_AT, resource.createdAt());
+        writeUuid(out, TAG_CREATED_BY, resource.createdBy());
+        writeLong(out, TAG_UPDATED_AT, resource.updatedAt());
+        writeUuid(out, TAG_UPDATED_BY, resource.updatedBy());
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes a patch as sections, with the same field rules as {@link Resource#patch}.
+     */
+    public Patch patchOf(ResourceForPatch patch, UUID updatedBy, long updatedAt) {
+        var out = new ByteWriter(64);
+        var tags = new ArrayList<Integer>();
+        var fields = patch.updatedFields();
+        var data = patch.data();
+        if (fields.contains("ownerId")) {
+            tags.add(TAG_OWNER_ID);
+            writeUuid(out, TAG_OWNER_ID, data.ownerId());
+        }
+        if (fields.contains("parentId")) {
+            tags.add(TAG_PARENT_ID);
+            writeUuid(out, TAG_PARENT_ID, data.parentId());
+        }
+        if (fields.contains("sharedWith")) {
+            tags.add(TAG_SHARED_WITH);
+            writeUuids(out, TAG_SHARED_WITH, data.sharedWith());
+        }
+        if (fields.contains("tags")) {
+            tags.add(TAG_TAGS);
+            writeStrings(out, TAG_TAGS, data.tags());
+        }
+        if (fields.contains("details")) {
+            tags.add(TAG_DETAILS);
+            if (Objects.nonNull(data.details())) {
+                writeSection(out, TAG_DETAILS, JsonTools.toBytes(mapper, data.details()));
+            }
+        }
+        tags.add(TAG_UPDATED_BY);
+        writeUuid(out, TAG_UPDATED_BY, updatedBy);
+        tags.add(TAG_UPDATED_AT);
+        writeLong(out, TAG_UPDATED_AT, updatedAt);
+        return new Patch(tags, out.toByteArray());
+    }
+
+    @Override
+    public Resource decode(byte[] bytes) {
+        if (!matches(bytes)) {
+            throw new IllegalStoredValue("Not a binary resource value");
+        }
+        if (bytes[2] > VERSION) {
+            throw new IllegalStoredValue("Unsupported binary resource version " + bytes[2]);
+        }
+        var in = new ByteReader(bytes, HEADER_SIZE, bytes.length);
+        var builder = Resource.builder();
+        while (in.hasRemaining()) {
+            var tag = in.readByte();
+            var section = in.slice(in.readLength());
+            switch (tag) {
+                case TAG_ID -> builder.id(section.readUuid());
+                case TAG_APPLICATION_KEY -> builder.applicationKey(readString(section));
+                case TAG_TYPE -> builder.type(readString(section));
+                case TAG_OWNER_ID -> builder.ownerId(section.readUuid());
+                case TAG_PARENT_ID -> builder.parentId(section.readUuid());
+                case TAG_SHARED_WITH -> builder.sharedWith(readUuids(section));
+                case TAG_TAGS -> builder.tags(readStrings(section));
+                case TAG_DETAILS -> builder.details(JsonTools.fromBytes(mapper, readRemaining(section)));
+                case TAG_CREATED_AT -> builder.createdAt(ByteReader.unZigZag(section.readVarLong()));
+                case TAG_CREATED_BY -> builder.createdBy(section.readUuid());
+                case TAG_UPDATED_AT -> builder.updatedAt(ByteReader.unZigZag(section.readVarLong()));
+                case TAG_UPDATED_BY -> builder.updatedBy(section.readUuid());
+                default -> {
+                    // written by a newer version, not known here
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static void writeSection(ByteWriter out, int tag, byte[] payload) {
+        out.writeByte(tag).writeLengthPrefixed(payload);
+    }
+
+    private static void writeUuid(ByteWriter out, int tag, UUID value) {
+        if (Objects.nonNull(value)) {
+            out.writeByte(tag).writeVarLong(16).writeUuid(value);
+        }
+    }
+
+    private static void writeString(ByteWriter out, int tag, String value) {
+        if (Objects.nonNull(value)) {
+            writeSection(out, tag, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void writeLong(ByteWriter out, int tag, Long value) {
+        if (Objects.nonNull(value)) {
+            var encoded = ByteWriter.zigZag(value);
+            out.writeByte(tag).writeVarLong(ByteWriter.varLongSize(encoded)).writeVarLong(encoded);
+        }
+    }
+
+    private static void writeUuids(ByteWriter out, int tag, List<UUID> values) {
+        if (Objects.nonNull(values)) {
+            out.writeByte(tag).writeVarLong(16L * values.size());
+            values.forEach(out::writeUuid);
+        }
+    }
+
+    private static void writeStrings(ByteWriter out, int tag, List<String> values) {
+        if (Objects.nonNull(values)) {
+            var encoded = values.stream().map(v -> v.getBytes(StandardCharsets.UTF_8)).toList();
+            var length = encoded.stream().mapToLong(v -> ByteWriter.varLongSize(v.length) + (long) v.length).sum();
+            out.writeByte(tag).writeVarLong(length);
+            encoded.forEach(out::writeLengthPrefixed);
+        }
+    }
+
+    private static byte[] readRemaining(ByteReader in) {
+        return in.readBytes(in.remaining());
+    }
+
+    private static String readString(ByteReader in) {
+        return new String(readRemaining(in), StandardCharsets.UTF_8);
+    }
+
+    private static List<UUID> readUuids(ByteReader in) {
+        var values = new ArrayList<UUID>(in.remaining() / 16);
+        while (in.hasRemaining()) {
+            values.add(in.readUuid());
+        }
+        return values;
+    }
+
+    private static List<String> readStrings(ByteReader in) {
+        var values = new ArrayList<String>();
+        while (in.hasRemaining()) {
+            values.add(new String(in.readBytes(in.readLength()), StandardCharsets.UTF_8));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,39 @@
+package vvu.centrauthz.domains.resources.storages;
+
+import io.micronaut.json.JsonMapper;
+import jakarta.inject.Singleton;
+import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.storages.codecs.JsonValueCodec;
+import vvu.centrauthz.storages.interfaces.ValueCodec;
+
+/**
+ * Stored form of resources.
+ * Writes use the configured {@link ResourceValueFormat}; reads detect the binary header and
+ * fall back to JSON, so keys written before a format switch stay readable.
+ */
+@Singleton
+public class ResourceCodec implements ValueCodec<Resource> {
+
+    private final ValueCodec<Resource> json;
+    private final ValueCodec<Resource> binary;
+    private final ResourceValueFormat writeFormat;
+
+    public ResourceCodec(JsonMapper jsonMapper, ResourceStorageConfig config) {
+        this.json = new JsonValueCodec<>(jsonMapper, Resource.class);
+        this.binary = new ResourceBinaryCodec(jsonMapper);
+        this.writeFormat = config.writeFormat();
+    }
+
+    @Override
+    public byte[] encode(Resource resource) {
+        return switch (writeFormat) {
+            case JSON -> json.encode(resource);
+            case BINARY -> binary.encode(resource);
+        };
+    }
+
+    @Override
+    public Resource decode(byte[] bytes) {
+        return ResourceBinaryCodec.matches(bytes) ? binary.decode(bytes) : json.decode(bytes);
+    }
+}
@@ -0,0 +1,158 @@
+package vvu.centrauthz.domains.resources.storages;
+
+import io.micronaut.json.JsonMapper;
+import io.micronaut.json.tree.JsonNode;
+import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.domains.resources.models.ResourceForPatch;
+import vvu.centrauthz.exceptions.IllegalStoredValue;
+import vvu.centrauthz.utilities.JsonTools;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Hash layout of resources: one hash field per resource field, named after it.
+ *
+ * <p>UUIDs, strings and timestamps are stored as text, so hashes stay readable with redis-cli;
+ * {@code sharedWith} and {@code tags} are JSON arrays and {@code details} its JSON bytes.
+ * Null fields are not stored. The version is kept by the storage, not by this codec.
+ */
+public class ResourceHashCodec {
+
+    // the fields a PATCH can change, see Resource#patch
+    private static final List<String> PATCHABLE = List.of("ownerId", "parentId", "sharedWith", "tags", "details");
+
+    private final JsonMapper mapper;
+
+    /**
+     * Fields replacing the patched fields of a stored resource.
+     *
+     * @param changed the new values of the patched fields that are not null
+     * @param removed the patched fields set to null
+     */
+    public record Patch(Map<String, byte[]> changed, List<String> removed) {
+    }
+
+    public ResourceHashCodec(JsonMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    public Map<String, byte[]> encode(Resource resource) {
+        var fields = new LinkedHashMap<String, byte[]>();
+        put(fields, "id", resource.id());
+        put(fields, "applicationKey", resource.applicationKey());
+        put(fields, "type", resource.type());
+        put(fields, "ownerId", resource.ownerId());
+        put(fields, "parentId", resource.parentId());
+        putJson(fields, "sharedWith", resource.sharedWith());
+        putJson(fields, "tags", resource.tags());
+        putJson(fields, "details", resource.details());
+        put(fields, "createdAt", resource.createdAt());
+        put(fields, "createdBy", resource.createdBy());
+        put(fields, "updatedAt", resource.updatedAt());
+        put(fields, "updatedBy", resource.updatedBy());
+        return fields;
+    }
+
+    /**
+     * Encodes a patch as fields, with the same field rules as {@link Resource#patch}.
+     */
+    public Patch patchOf(ResourceForPatch patch, UUID updatedBy, long updatedAt) {
+        var patched = new HashMap<String, byte[]>();
+        var fields = patch.updatedFields();
+        var data = patch.data();
+        if (fields.contains("ownerId")) {
+            put(patched, "ownerId", data.ownerId());
+        }
+        if (fields.contains("parentId")) {
+            put(patched, "parentId", data.parentId());
+        }
+        if (fields.contains("sharedWith")) {
+            putJson(patched, "sharedWith", data.sharedWith());
+        }
+        if (fields.contains("tags")) {
+            putJson(patched, "tags", data.tags());
+        }
+        if (fields.contains("details")) {
+            putJson(patched, "details", data.details());
+        }
+        var removed = fields.stream()
+            .filter(PATCHABLE::contains)
+            .filter(f -> !patched.containsKey(f))
+            .distinct()
+            .toList();
+        put(patched, "updatedBy", updatedBy);
+        put(patched, "updatedAt", updatedAt);
+        return new Patch(patched, removed);
+    }
+
+    /**
+     * Decodes the fields read from a hash; fields missing from the map are null.
+     */
+    public Resource decode(Map<String, byte[]> fields) {
+        try {
+            return Resource.builder()
+                .id(read(fields, "id", UUID::fromString))
+                .applicationKey(read(fields, "applicationKey", Function.identity()))
+                .type(read(fields, "type", Function.identity()))
+                .ownerId(read(fields, "ownerId", UUID::fromString))
+                .parentId(read(fields, "parentId", UUID::fromString))
+                .sharedWith(readList(fields, "sharedWith", UUID::fromString))
+                .tags(readList(fields, "tags", Function.identity()))
+                .details(Objects.isNull(fields.get("details")) ? null : JsonTools.fromBytes(mapper, fields.get("details")))
+                .createdAt(read(fields, "createdAt", Long::valueOf))
+                .createdBy(read(fields, "createdBy", UUID::fromString))
+                .updatedAt(read(fields, "updatedAt", Long::valueOf))
+                .updatedBy(read(fields, "updatedBy", UUID::fromString))
+                .build();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStoredValue(e);
+        }
+    }
+
+    /**
+     * The resource with only the given fields, as a projection read from a hash would return it.
+     */
+    public Resource project(Resource resource, Collection<String> names) {
+        var fields = encode(resource);
+        fields.keySet().retainAll(names);
+        return decode(fields).toBuilder().version(resource.version()).build();
+    }
+
+    private static void put(Map<String, byte[]> fields, String name, Object value) {
+        if (Objects.nonNull(value)) {
+            fields.put(name, value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void putJson(Map<String, byte[]> fields, String name, Object value) {
+        if (Objects.nonNull(value)) {
+            fields.put(name, JsonTools.toBytes(mapper, value));
+        }
+    }
+
+    private static <T> T read(Map<String, byte[]> fields, String name, Function<String, T> parser) {
+        var value = fields.get(name);
+        return Objects.isNull(value) ? null : parser.apply(new String(value, StandardCharsets.UTF_8));
+    }
+
+    private <T> List<T> readList(Map<String, byte[]> fields, String name, Function<String, T> parser) {
+        var value = fields.get(name);
+        if (Objects.isNull(value)) {
+            return null;
+        }
+        var items = new ArrayList<T>();
+        for (JsonNode item : JsonTools.fromBytes(mapper, value).values()) {
+            items.add(parser.apply(item.getStringValue()));
+        }
+        return items;
+    }
+}
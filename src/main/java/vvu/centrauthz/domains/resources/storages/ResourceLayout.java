@@ -0,0 +1,17 @@
+package vvu.centrauthz.domains.resources.storages;
+
+/**
+ * How a resource is laid out under its Redis key.
+ */
+public enum ResourceLayout {
+    /**
+     * One string value holding the whole encoded resource; every write rewrites all of it.
+     */
+    STRING,
+    /**
+     * One hash with a field per resource field; a PATCH writes only the patched fields and a
+     * projection reads only the selected ones. String values left from {@link #STRING} are
+     * still read and become hashes on their next full write.
+     */
+    HASH
+}
@@ -0,0 +1,16 @@
+package vvu.centrauthz.domains.resources.storages;
+
+/**
+ * Where a PATCH is merged into the stored resource.
+ */
+public enum ResourcePatchMode {
+    /**
+     * Read the resource, patch it in the application and write it back.
+     */
+    CLIENT,
+    /**
+     * Send only the patched fields to a Lua script that merges them in Redis.
+     * Applies to values in the binary format; others are patched as with {@link #CLIENT}.
+     */
+    SERVER
+}
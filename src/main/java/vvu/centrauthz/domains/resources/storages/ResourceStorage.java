@@ -1,41 +1,269 @@
 package vvu.centrauthz.domains.resources.storages;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.core.annotation.Nullable;
 import io.micronaut.json.JsonMapper;
-import io.micronaut.json.tree.JsonNode;
 import jakarta.inject.Singleton;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.domains.resources.models.ResourceBatchGetItem;
+import vvu.centrauthz.domains.resources.models.ResourceForPatch;
+import vvu.centrauthz.domains.resources.repositories.ResourceOwnerIndex;
 import vvu.centrauthz.domains.resources.repositories.ResourceReadable;
 import vvu.centrauthz.domains.resources.repositories.ResourceRemovable;
 import vvu.centrauthz.domains.resources.repositories.ResourceWritable;
+import vvu.centrauthz.exceptions.BadRequestError;
+import vvu.centrauthz.exceptions.NotImplementedError;
 import vvu.centrauthz.models.Void;
+import vvu.centrauthz.storages.codecs.KeyBuilder;
+import vvu.centrauthz.storages.codecs.VersionEnvelope;
+import vvu.centrauthz.storages.interfaces.FieldStorable;
+import vvu.centrauthz.storages.interfaces.OrderedSetStorable;
+import vvu.centrauthz.storages.interfaces.PatchResult;
 import vvu.centrauthz.storages.interfaces.Readable;
 import vvu.centrauthz.storages.interfaces.Removable;
-import vvu.centrauthz.storages.interfaces.Writable;
-import vvu.centrauthz.utilities.JsonTools;
+import vvu.centrauthz.storages.interfaces.Replicated;
+import vvu.centrauthz.storages.interfaces.SectionPatchable;
+import vvu.centrauthz.storages.interfaces.StoredFields;
+import vvu.centrauthz.storages.interfaces.StoredValue;
+import vvu.centrauthz.storages.interfaces.ValueCodec;
+import vvu.centrauthz.storages.interfaces.VersionedWritable;
+import vvu.centrauthz.storages.interfaces.WriteResult;
+import vvu.centrauthz.storages.keyvalue.nearcache.NearCachedStorage;
+import vvu.centrauthz.storages.keyvalue.tiered.TieredStorage;
+import vvu.centrauthz.storages.keyvalue.writebehind.WriteBehindStorage;
+import vvu.centrauthz.utilities.SingleFlight;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Singleton
-public class ResourceStorage implements ResourceReadable, ResourceRemovable, ResourceWritable {
+public class ResourceStorage implements ResourceReadable, ResourceRemovable, ResourceWritable, ResourceOwnerIndex {
 
-    private final Readable<JsonNode> readable;
-    private final Writable<JsonNode> writable;
+    private final Readable<byte[]> readable;
+    private final VersionedWritable writable;
     private final Removable removable;
-    private final JsonMapper jsonMapper;
+    private final ValueCodec<Resource> codec;
+    private final ResourceBinaryCodec binaryCodec;
+    private final SectionPatchable patchable;
+    private final ResourcePatchMode patchMode;
+    private final ResourceStorageConfig config;
+    private final ResourceHashCodec hashCodec;
+    private final FieldStorable fields;
+    private final Replicated replicated;
+    private final WriteBehindStorage writeBehind;
+    private final TieredStorage tiers;
+    private final NearCachedStorage nearCache;
+    private final OrderedSetStorable sets;
+    private final SingleFlight<Read, Resource> reads;
+
+    /**
+     * A read of a resource, coalesced with the concurrent reads of the same key that need the
+     * same consistency.
+     */
+    private record Read(String key, @Nullable String consistencyToken) {
+    }
+
+    private static final KeyBuilder KEYS = new KeyBuilder();
+    // the owner index of an application is on the node of its resources
+    private static final String OWNER_INDEX = ":owner";
+    private static final int CREATED_AT_DIGITS = 16;
+    private static final BadRequestError INVALID_CURSOR = new BadRequestError("INVALID_CURSOR", "Invalid page cursor");
 
     static String buildKey(String appKey, UUID id) {
-        return String.format("%s:%s", appKey, id);
+        return KEYS.build(appKey, id);
+    }
+
+    static String ownerIndexKey(String appKey, UUID ownerId) {
+        return KEYS.build(appKey + OWNER_INDEX, ownerId);
+    }
+
+    /**
+     * Members of an owner index are {@code <createdAt>:<id>}, the creation time zero-padded, so
+     * that their order is the order of creation.
+     */
+    static String ownerIndexMember(Resource resource) {
+        var createdAt = Objects.isNull(resource.createdAt()) ? 0 : Math.max(0, resource.createdAt());
+        var digits = Long.toString(createdAt);
+        return new StringBuilder(CREATED_AT_DIGITS + 37)
+            .repeat('0', Math.max(0, CREATED_AT_DIGITS - digits.length()))
+            .append(digits)
+            .append(':')
+            .append(resource.id())
+            .toString();
+    }
 
+    private static Entry entryOf(String member) {
+        if (member.length() <= CREATED_AT_DIGITS || member.charAt(CREATED_AT_DIGITS) != ':') {
+            throw new IllegalArgumentException("Invalid owner index member " + member);
+        }
+        return new Entry(
+            UUID.fromString(member.substring(CREATED_AT_DIGITS + 1)),
+            Long.parseLong(member.substring(0, CREATED_AT_DIGITS)));
     }
 
-    public ResourceStorage(JsonMapper jsonMapper,
-                           Readable<JsonNode> readable,
-                           Writable<JsonNode> writable,
-                           Removable removable) {
+    static String cursorOf(String member) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(member.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static String memberOfCursor(String cursor) {
+        try {
+            var member = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            entryOf(member);
+            return member;
+        } catch (IllegalArgumentException e) {
+            throw INVALID_CURSOR;
+        }
+    }
+
+    public ResourceStorage(ValueCodec<Resource> codec,
+                           JsonMapper jsonMapper,
+                           ResourceStorageConfig config,
+                           Readable<byte[]> readable,
+                           VersionedWritable writable,
+                           Removable removable,
+                           MeterRegistry registry,
+                           @Nullable SectionPatchable patchable,
+                           @Nullable FieldStorable fields,
+                           @Nullable Replicated replicated,
+                           @Nullable WriteBehindStorage writeBehind,
+                           @Nullable TieredStorage tiers,
+                           @Nullable NearCachedStorage nearCache,
+                           @Nullable OrderedSetStorable sets) {
         this.readable = readable;
         this.writable = writable;
         this.removable = removable;
-        this.jsonMapper = jsonMapper;
+        this.codec = codec;
+        this.binaryCodec = new ResourceBinaryCodec(jsonMapper);
+        this.patchable = patchable;
+        this.patchMode = config.patchMode();
+        this.config = config;
+        this.hashCodec = new ResourceHashCodec(jsonMapper);
+        this.fields = fields;
+        this.replicated = replicated;
+        this.writeBehind = writeBehind;
+        this.tiers = tiers;
+        this.nearCache = nearCache;
+        this.sets = sets;
+        this.reads = new SingleFlight<>("resources.reads", registry);
+        var hashLayout = config.layout() == ResourceLayout.HASH || config.layouts().containsValue(ResourceLayout.HASH);
+        if (hashLayout && Objects.isNull(fields)) {
+            throw new IllegalStateException("The hash layout of resources needs a storage engine with field storage");
+        }
+        if (!config.writeBehind().isEmpty() && Objects.isNull(writeBehind)) {
+            throw new IllegalStateException("Write-behind applications need storage.write-behind.enabled");
+        }
+        config.writeBehind().stream()
+            .filter(appKey -> config.layoutOf(appKey) == ResourceLayout.HASH)
+            .findAny()
+            .ifPresent(appKey -> {
+                throw new IllegalStateException("Write-behind application " + appKey + " must use the string layout");
+            });
+        if (!config.tiered().isEmpty() && Objects.isNull(tiers)) {
+            throw new IllegalStateException("Tiered applications need storage.tiering.enabled");
+        }
+        config.tiered().stream()
+            .filter(appKey -> config.layoutOf(appKey) == ResourceLayout.HASH || config.isWriteBehind(appKey))
+            .findAny()
+            .ifPresent(appKey -> {
+                throw new IllegalStateException("Tiered application " + appKey + " must use the string layout without write-behind");
+            });
+    }
+
+    private boolean hashed(String appKey) {
+        return config.layoutOf(appKey) == ResourceLayout.HASH;
+    }
+
+    private boolean writtenBehind(String appKey) {
+        return config.isWriteBehind(appKey);
+    }
+
+    private boolean tiered(String appKey) {
+        return config.isTiered(appKey);
+    }
+
+    /**
+     * Whether reads of an application go through the near-cache; write-behind and tiered
+     * applications have their own store, and the hash layout is read by fields.
+     */
+    private boolean nearCached(String appKey) {
+        return Objects.nonNull(nearCache) && !config.isUncached(appKey);
+    }
+
+    /**
+     * Reads of a key that started before a write of it completed may have missed the write:
+     * once it completes, later reads start their own instead of joining those.
+     */
+    private <T> Mono<T> writing(String key, Mono<T> write) {
+        return write.doFinally(signal -> reads.forget(read -> read.key().equals(key)));
+    }
+
+    private <T> Mono<T> writingAll(List<String> keys, Mono<T> write) {
+        var written = Set.copyOf(keys);
+        return write.doFinally(signal -> reads.forget(read -> written.contains(read.key())));
+    }
+
+    private Readable<byte[]> readable(String appKey) {
+        if (writtenBehind(appKey)) {
+            return writeBehind;
+        }
+        if (tiered(appKey)) {
+            return tiers;
+        }
+        return nearCached(appKey) ? nearCache : readable;
+    }
+
+    private VersionedWritable writable(String appKey) {
+        if (writtenBehind(appKey)) {
+            return writeBehind;
+        }
+        if (tiered(appKey)) {
+            return tiers;
+        }
+        return nearCached(appKey) ? nearCache : writable;
+    }
+
+    private Removable removable(String appKey) {
+        if (writtenBehind(appKey)) {
+            return writeBehind;
+        }
+        if (tiered(appKey)) {
+            return tiers;
+        }
+        return nearCached(appKey) ? nearCache : removable;
+    }
+
+    /**
+     * The stored payload of a resource; its version lives in the envelope the storage adds.
+     */
+    private byte[] encode(Resource resource) {
+        return codec.encode(Objects.isNull(resource.version()) ? resource : resource.toBuilder().version(null).build());
+    }
+
+    private Resource decode(byte[] stored) {
+        var envelope = VersionEnvelope.of(stored);
+        var payload = envelope.isPresent()
+            ? Arrays.copyOfRange(stored, envelope.payloadOffset(), stored.length)
+            : stored;
+        return codec.decode(payload).toBuilder().version(envelope.version()).build();
+    }
+
+    private Resource decode(StoredFields stored) {
+        if (stored.isWhole()) {
+            return decode(stored.value());
+        }
+        return hashCodec.decode(stored.fields()).toBuilder().version(stored.version()).build();
     }
 
     /**
@@ -47,7 +275,25 @@ public class ResourceStorage implements ResourceReadable, ResourceRemovable, Res
      */
     @Override
     public Mono<Void> remove(String appKey, UUID id) {
-        return removable.remove(buildKey(appKey, id));
+        var key = buildKey(appKey, id);
+        return writing(key, removable(appKey).remove(key));
+    }
+
+    /**
+     * All resources of an application live on one storage node, so any key of it will do.
+     */
+    @Override
+    public Mono<String> consistencyToken(String appKey) {
+        if (Objects.isNull(replicated)) {
+            return Mono.empty();
+        }
+        return replicated.consistencyToken(buildKey(appKey, new UUID(0, 0)));
+    }
+
+    @Override
+    public Mono<Boolean> remove(String appKey, UUID id, long expectedVersion) {
+        var key = buildKey(appKey, id);
+        return writing(key, writable(appKey).remove(key, expectedVersion));
     }
 
     /**
@@ -59,14 +305,225 @@ public class ResourceStorage implements ResourceReadable, ResourceRemovable, Res
      */
     @Override
     public Mono<Void> save(String appKey, Resource resource) {
-        var data = JsonTools.toJson(jsonMapper, resource);
-        return writable.save(buildKey(appKey, resource.id()), data);
+        var key = buildKey(appKey, resource.id());
+        if (hashed(appKey)) {
+            return writing(key, fields
+                .writeFields(key, VersionedWritable.Mode.UPSERT, null, hashCodec.encode(resource))
+                .map(v -> Void.INSTANCE));
+        }
+        var data = encode(resource);
+        return writing(key, writable(appKey)
+            .write(key, VersionedWritable.Mode.UPSERT, null, data)
+            .map(v -> Void.INSTANCE));
+    }
+
+    @Override
+    public Mono<Boolean> create(String appKey, Resource resource) {
+        var key = buildKey(appKey, resource.id());
+        if (hashed(appKey)) {
+            return writing(key, fields
+                .writeFields(key, VersionedWritable.Mode.CREATE, null, hashCodec.encode(resource))
+                .map(version -> version > 0));
+        }
+        var data = encode(resource);
+        return writing(key, writable(appKey)
+            .write(key, VersionedWritable.Mode.CREATE, null, data)
+            .map(version -> version > 0));
+    }
+
+    @Override
+    public Mono<Boolean> replace(String appKey, Resource resource, Long expectedVersion) {
+        var key = buildKey(appKey, resource.id());
+        if (hashed(appKey)) {
+            return writing(key, fields
+                .writeFields(key, VersionedWritable.Mode.REPLACE, expectedVersion, hashCodec.encode(resource))
+                .map(version -> version > 0));
+        }
+        var data = encode(resource);
+        return writing(key, writable(appKey)
+            .write(key, VersionedWritable.Mode.REPLACE, expectedVersion, data)
+            .map(version -> version > 0));
+    }
+
+    @Override
+    public Mono<PatchResult> patch(
+            String appKey, UUID id, ResourceForPatch patch, UUID updatedBy, long updatedAt, Long expectedVersion) {
+        var key = buildKey(appKey, id);
+        if (hashed(appKey)) {
+            var changes = hashCodec.patchOf(patch, updatedBy, updatedAt);
+            return writing(key, fields.updateFields(key, expectedVersion, changes.changed(), changes.removed()));
+        }
+        if (patchMode != ResourcePatchMode.SERVER || Objects.isNull(patchable) || writtenBehind(appKey) || tiered(appKey)) {
+            return Mono.just(PatchResult.UNSUPPORTED);
+        }
+        var sections = binaryCodec.patchOf(patch, updatedBy, updatedAt);
+        if (!nearCached(appKey)) {
+            return writing(key, patchable.patchSections(
+                key, ResourceBinaryCodec.header(), sections.tags(), sections.sections(), expectedVersion));
+        }
+        // the patch runs on the server, past the near-cache
+        return writing(key, Mono.defer(() -> {
+            nearCache.evict(key);
+            return patchable.patchSections(
+                key, ResourceBinaryCodec.header(), sections.tags(), sections.sections(), expectedVersion);
+        }).doFinally(signal -> nearCache.evict(key)));
     }
 
+    /**
+     * Collects the failed writes of a batch, keyed by resource ID.
+     * A batch that fails as a whole is reported as a failure of every resource in it.
+     */
+    private static Mono<Map<UUID, Throwable>> failures(List<UUID> ids, Flux<WriteResult> results) {
+        if (ids.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return Flux.zip(Flux.fromIterable(ids), results)
+            .filter(t -> !t.getT2().isSuccess())
+            .collectMap(t -> t.getT1(), t -> t.getT2().error())
+            .onErrorResume(e -> {
+                var all = new HashMap<UUID, Throwable>();
+                ids.forEach(id -> all.put(id, e));
+                return Mono.just(all);
+            });
+    }
+
+    @Override
+    public Mono<Map<UUID, Throwable>> removeAll(String appKey, List<UUID> ids) {
+        var keys = ids.stream().map(id -> buildKey(appKey, id)).toList();
+        return writingAll(keys, failures(ids, removable(appKey).removeAll(keys)));
+    }
+
+    @Override
+    public Mono<Map<UUID, Throwable>> saveAll(String appKey, List<Write> writes) {
+        var ids = writes.stream().map(w -> w.resource().id()).toList();
+        var keys = ids.stream().map(id -> buildKey(appKey, id)).toList();
+        if (hashed(appKey)) {
+            var hashes = IntStream.range(0, keys.size())
+                .mapToObj(i -> {
+                    var write = writes.get(i);
+                    return new FieldStorable.FieldsWrite(
+                        keys.get(i), write.mode(), write.expectedVersion(), hashCodec.encode(write.resource()));
+                })
+                .toList();
+            return writingAll(keys, failures(ids, Flux.defer(() -> fields.writeAllFields(hashes))));
+        }
+        var values = IntStream.range(0, keys.size())
+            .mapToObj(i -> {
+                var write = writes.get(i);
+                return new VersionedWritable.Write(
+                    keys.get(i), write.mode(), write.expectedVersion(), encode(write.resource()));
+            })
+            .toList();
+        return writingAll(keys, failures(ids, Flux.defer(() -> writable(appKey).writeAll(values))));
+    }
+
+    /**
+     * Concurrent reads of a resource share one storage read and its decoded resource, unless a
+     * write of it completed since that read started.
+     */
     @Override
     public Mono<Resource> get(String appKey, UUID id) {
-        return readable
-            .get(buildKey(appKey, id))
-            .map( node -> JsonTools.toValue(jsonMapper,node, Resource.class));
+        return Mono.deferContextual(context -> {
+            var key = buildKey(appKey, id);
+            var read = new Read(key, context.getOrDefault(Replicated.CONSISTENCY_TOKEN, null));
+            return reads.run(read, () -> read(appKey, key));
+        });
+    }
+
+    private Mono<Resource> read(String appKey, String key) {
+        if (hashed(appKey)) {
+            return fields
+                .readFields(key, List.of())
+                .filter(StoredFields::exists)
+                .map(this::decode);
+        }
+        return readable(appKey)
+            .get(key)
+            .map(this::decode);
+    }
+
+    /**
+     * Reads only some fields of a resource: with HMGET in the hash layout, by trimming the
+     * whole resource otherwise. The ID and version are always returned.
+     */
+    @Override
+    public Mono<Resource> get(String appKey, UUID id, Collection<String> projection) {
+        var names = Stream.concat(Stream.of("id"), projection.stream()).distinct().toList();
+        if (!hashed(appKey)) {
+            return get(appKey, id).map(r -> hashCodec.project(r, names));
+        }
+        return fields
+            .readFields(buildKey(appKey, id), names)
+            .filter(StoredFields::exists)
+            .map(stored -> stored.isWhole() ? hashCodec.project(decode(stored), names) : decode(stored));
+    }
+
+    @Override
+    public Flux<ResourceBatchGetItem> getAll(String appKey, List<UUID> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        var keys = ids.stream().map(id -> buildKey(appKey, id)).toList();
+        if (hashed(appKey)) {
+            return Flux.zip(Flux.fromIterable(ids), fields.readAllFields(keys))
+                .map(t -> ResourceBatchGetItem.of(t.getT1(), t.getT2().exists() ? decode(t.getT2()) : null));
+        }
+        return Flux.zip(Flux.fromIterable(ids), readable(appKey).getAll(keys))
+            .map(t -> {
+                var stored = t.getT2();
+                return ResourceBatchGetItem.of(t.getT1(), stored.exists() ? decode(stored.value()) : null);
+            });
+    }
+
+    private List<StoredValue<String>> ownerIndexMembers(String appKey, List<Resource> resources) {
+        return resources.stream()
+            .filter(r -> Objects.nonNull(r.id()) && Objects.nonNull(r.ownerId()))
+            .map(r -> new StoredValue<>(ownerIndexKey(appKey, r.ownerId()), ownerIndexMember(r)))
+            .toList();
+    }
+
+    /**
+     * Without a storage engine for ordered sets there is no index to maintain.
+     */
+    @Override
+    public Mono<Void> index(String appKey, List<Resource> resources) {
+        if (Objects.isNull(sets)) {
+            return Mono.just(Void.INSTANCE);
+        }
+        return Mono.defer(() -> sets.addMembers(ownerIndexMembers(appKey, resources)));
+    }
+
+    @Override
+    public Mono<Void> unindex(String appKey, List<Resource> resources) {
+        if (Objects.isNull(sets)) {
+            return Mono.just(Void.INSTANCE);
+        }
+        return Mono.defer(() -> sets.removeMembers(ownerIndexMembers(appKey, resources)));
+    }
+
+    @Override
+    public Mono<Page> owned(String appKey, UUID ownerId, String after, int limit) {
+        if (Objects.isNull(sets)) {
+            return Mono.error(new NotImplementedError("Listing resources by owner needs a storage engine with ordered sets"));
+        }
+        return Mono.defer(() -> {
+                var from = Objects.isNull(after) ? null : memberOfCursor(after);
+                return sets.members(ownerIndexKey(appKey, ownerId), from, limit).collectList();
+            })
+            .map(members -> new Page(
+                members.stream().map(ResourceStorage::entryOf).toList(),
+                members.size() < limit ? null : cursorOf(members.getLast())));
+    }
+
+    private Flux<ResourceBatchGetItem> readAll(String appKey, List<UUID> ids, List<String> keys) {
+        if (hashed(appKey)) {
+            return Flux.zip(Flux.fromIterable(ids), fields.readAllFields(keys))
+                .map(t -> ResourceBatchGetItem.of(t.getT1(), t.getT2().exists() ? decode(t.getT2()) : null));
+        }
+        return Flux.zip(Flux.fromIterable(ids), readable(appKey).getAll(keys))
+            .map(t -> {
+                var stored = t.getT2();
+                return ResourceBatchGetItem.of(t.getT1(), stored.exists() ? decode(stored.value()) : null);
+            });
     }
 }
@@ -0,0 +1,69 @@
+package vvu.centrauthz.domains.resources.storages;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+import lombok.Builder;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Storage settings of resources.
+ * {@code writeFormat} only affects new writes, so it can be switched on a running fleet:
+ * every node reads both formats. {@code patchMode} only pays off with the binary format.
+ * {@code layout} is the layout of every application not listed in {@code layouts}, which maps
+ * application keys to their own layout. Switching an application from string to hash is safe
+ * on a running fleet; switching back is not, as hashes are only read in the hash layout.
+ * {@code writeBehind} lists the application keys whose writes are acknowledged from the local
+ * journal of {@code storage.write-behind} and flushed later; they must use the string layout
+ * and be written by one node only. {@code tiered} lists the application keys whose idle resources
+ * are moved out of the storage engine to the local cold tier of {@code storage.tiering}, under
+ * the same constraints. {@code uncached} lists the application keys kept out of the
+ * {@code storage.near-cache}, when it is enabled; it only caches the string layout, without
+ * write-behind or tiering.
+ */
+@ConfigurationProperties("resources.storage")
+@Builder(toBuilder = true)
+public record ResourceStorageConfig(ResourceValueFormat writeFormat,
+                                    ResourcePatchMode patchMode,
+                                    ResourceLayout layout,
+                                    Map<String, ResourceLayout> layouts,
+                                    Set<String> writeBehind,
+                                    Set<String> tiered,
+                                    Set<String> uncached) {
+    public ResourceStorageConfig {
+        if (Objects.isNull(writeFormat)) {
+            writeFormat = ResourceValueFormat.JSON;
+        }
+        if (Objects.isNull(patchMode)) {
+            patchMode = ResourcePatchMode.CLIENT;
+        }
+        if (Objects.isNull(layout)) {
+            layout = ResourceLayout.STRING;
+        }
+        layouts = Objects.isNull(layouts) ? Map.of() : Map.copyOf(layouts);
+        writeBehind = Objects.isNull(writeBehind) ? Set.of() : Set.copyOf(writeBehind);
+        tiered = Objects.isNull(tiered) ? Set.of() : Set.copyOf(tiered);
+        uncached = Objects.isNull(uncached) ? Set.of() : Set.copyOf(uncached);
+    }
+
+    public ResourceStorageConfig() {
+        this(ResourceValueFormat.JSON, ResourcePatchMode.CLIENT, ResourceLayout.STRING, Map.of(), Set.of(), Set.of(), Set.of());
+    }
+
+    public ResourceLayout layoutOf(String appKey) {
+        return layouts.getOrDefault(appKey, layout);
+    }
+
+    public boolean isWriteBehind(String appKey) {
+        return writeBehind.contains(appKey);
+    }
+
+    public boolean isTiered(String appKey) {
+        return tiered.contains(appKey);
+    }
+
+    public boolean isUncached(String appKey) {
+        return uncached.contains(appKey);
+    }
+}
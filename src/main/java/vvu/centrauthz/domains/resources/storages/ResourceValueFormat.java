@@ -0,0 +1,9 @@
+package vvu.centrauthz.domains.resources.storages;
+
+/**
+ * Format used to write resources to storage. Reads accept both.
+ */
+public enum ResourceValueFormat {
+    JSON,
+    BINARY
+}
@@ -0,0 +1,35 @@
+package vvu.centrauthz.errorhandlers;
+
+import io.micronaut.http.HttpStatus;
+import vvu.centrauthz.exceptions.*;
+import vvu.centrauthz.models.Error;
+
+/**
+ * Maps errors to the HTTP status and body returned for them.
+ */
+public class ErrorStatus {
+    ErrorStatus() {
+        throw new IllegalStateException();
+    }
+
+    public static HttpStatus of(Throwable throwable) {
+        return switch (throwable) {
+            case NotFoundError notFoundError -> HttpStatus.NOT_FOUND;
+            case ConflictError conflictError -> HttpStatus.CONFLICT;
+            case PreconditionFailedError preconditionFailedError -> HttpStatus.PRECONDITION_FAILED;
+            case BadRequestError badRequestError -> HttpStatus.BAD_REQUEST;
+            case NotImplementedError notImplementedError -> HttpStatus.NOT_IMPLEMENTED;
+            default -> HttpStatus.INTERNAL_SERVER_ERROR;
+        };
+    }
+
+    public static Error bodyOf(Throwable throwable) {
+        if (throwable instanceof AppError appError) {
+            return appError.getError();
+        }
+        return Error.builder()
+                .code("INTERNAL_SERVER_ERROR")
+                .message(throwable.getMessage())
+                .build();
+    }
+}
@@ -11,7 +11,7 @@ import io.micronaut.web.router.exceptions.UnsatisfiedHeaderRouteException;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
-import vvu.centrauthz.exceptions.*;
+import vvu.centrauthz.exceptions.AppError;
 import vvu.centrauthz.utilities.StringTools;
 
 /**
@@ -88,39 +88,14 @@ public class GlobalExceptionHandler {
 
     @Error(global = true)
     public Mono<HttpResponse<vvu.centrauthz.models.Error>> handleException(HttpRequest<?> request, AppError exception) {
-        log.error("AppError: {}", exception.toString(), exception);
-
-        switch (exception) {
-            case NotFoundError notFoundError -> {
-                return Mono.just(
-                    HttpResponse.status(HttpStatus.NOT_FOUND)
-                        .body(notFoundError.getError())
-                );
-            }
-            case ConflictError conflictError -> {
-                return Mono.just(
-                    HttpResponse.status(HttpStatus.CONFLICT)
-                        .body(conflictError.getError())
-                );
-            }
-            case BadRequestError badRequestError -> {
-                return Mono.just(
-                    HttpResponse.status(HttpStatus.BAD_REQUEST)
-                        .body(badRequestError.getError())
-                );
-            }
-            case NotImplementedError notImplementedError -> {
-                return Mono.just(
-                    HttpResponse.status(HttpStatus.NOT_IMPLEMENTED)
-                        .body(notImplementedError.getError())
-                );
-            }
-            default -> {
-            }
+        if (exception.isExpected()) {
+            log.debug("AppError: {}", exception);
+        } else {
+            log.error("AppError: {}", exception.toString(), exception);
         }
 
         return Mono.just(
-                HttpResponse.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                HttpResponse.status(ErrorStatus.of(exception))
                         .body(exception.getError())
         );
     }
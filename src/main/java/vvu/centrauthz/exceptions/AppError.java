@@ -5,14 +5,20 @@ import vvu.centrauthz.models.Error;
 
 /**
  * Application-specific error exception that carries an Error response.
+ *
+ * <p>Errors that are expected outcomes of a request, such as a missing resource or a conflict,
+ * are built without a stack trace: filling it in cost more than serving the request, and they
+ * are answered to the client rather than investigated.
  */
 @Getter
 public class AppError extends RuntimeException {
     private final Error error;
+    private final boolean expected;
 
     public AppError(Error error) {
         super(error.message());
         this.error = error;
+        this.expected = false;
     }
 
     public AppError(String code) {
@@ -20,6 +26,7 @@ public class AppError extends RuntimeException {
         this.error = Error.builder()
             .code(code)
             .build();
+        this.expected = false;
     }
 
     public AppError(String code, Throwable e) {
@@ -28,6 +35,7 @@ public class AppError extends RuntimeException {
             .code(code)
             .message(e.getMessage())
             .build();
+        this.expected = false;
     }
 
     public AppError(String code, String message) {
@@ -36,6 +44,23 @@ public class AppError extends RuntimeException {
                 .code(code)
                 .message(message)
                 .build();
+        this.expected = false;
+    }
+
+    /**
+     * @param expected whether the error is an expected outcome, built without a stack trace
+     */
+    protected AppError(String message, Error error, boolean expected) {
+        super(message, null, !expected, !expected);
+        this.error = error;
+        this.expected = expected;
+    }
+
+    static Error errorOf(String code, String message) {
+        return Error.builder()
+                .code(code)
+                .message(message)
+                .build();
     }
 
     @Override
@@ -4,18 +4,18 @@ import vvu.centrauthz.models.Error;
 
 public class BadRequestError extends AppError {
     public BadRequestError(String code, String message) {
-        super(code, message);
+        super(message, errorOf(code, message), true);
     }
 
     public BadRequestError(String message) {
-        super("BAD_REQUEST", message);
+        this("BAD_REQUEST", message);
     }
 
     public BadRequestError(Error e) {
-        super(e);
+        super(e.message(), e, true);
     }
 
     public BadRequestError() {
-        super("BAD_REQUEST");
+        super("BAD_REQUEST", errorOf("BAD_REQUEST", null), true);
     }
 }
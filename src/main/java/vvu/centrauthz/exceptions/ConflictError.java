@@ -2,14 +2,14 @@ package vvu.centrauthz.exceptions;
 
 public class ConflictError extends AppError {
     public ConflictError(String code, String message) {
-        super(code, message);
+        super(message, errorOf(code, message), true);
     }
 
     public ConflictError(String message) {
-        super("CONFLICT", message);
+        this("CONFLICT", message);
     }
 
     public ConflictError() {
-        super("CONFLICT");
+        super("CONFLICT", errorOf("CONFLICT", null), true);
     }
 }
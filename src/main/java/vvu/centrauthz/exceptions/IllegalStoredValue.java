@@ -0,0 +1,14 @@
+package vvu.centrauthz.exceptions;
+
+/**
+ * A value read from storage that cannot be decoded.
+ */
+public class IllegalStoredValue extends AppError {
+    public IllegalStoredValue(String message) {
+        super("ILLEGAL_STORED_VALUE", message);
+    }
+
+    public IllegalStoredValue(Throwable e) {
+        super("ILLEGAL_STORED_VALUE", e);
+    }
+}
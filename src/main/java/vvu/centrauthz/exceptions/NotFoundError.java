@@ -4,14 +4,14 @@ import vvu.centrauthz.models.Error;
 
 public class NotFoundError extends AppError {
     public NotFoundError(Error error) {
-        super(error);
+        super(error.message(), error, true);
     }
 
     public NotFoundError(String code, String message) {
-        super(code, message);
+        super(message, errorOf(code, message), true);
     }
 
     public NotFoundError(String code) {
-        super(code);
+        super(code, errorOf(code, null), true);
     }
 }
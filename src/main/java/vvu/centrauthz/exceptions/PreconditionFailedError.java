@@ -0,0 +1,10 @@
+package vvu.centrauthz.exceptions;
+
+/**
+ * A conditional write whose expected version no longer matches the stored one.
+ */
+public class PreconditionFailedError extends AppError {
+    public PreconditionFailedError(String message) {
+        super(message, errorOf("PRECONDITION_FAILED", message), true);
+    }
+}
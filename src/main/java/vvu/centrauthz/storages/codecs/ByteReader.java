@@ -0,0 +1,109 @@
+package vvu.centrauthz.storages.codecs;
+
+import vvu.centrauthz.exceptions.IllegalStoredValue;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Reads the primitives written by {@link ByteWriter}.
+ * Reading past the end of the input raises {@link IllegalStoredValue}.
+ */
+public class ByteReader {
+
+    private final byte[] buffer;
+    private final int limit;
+    private int position;
+
+    public ByteReader(byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    public ByteReader(byte[] buffer, int offset, int limit) {
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = limit;
+    }
+
+    public static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private void require(int length) {
+        if (length < 0 || length > limit - position) {
+            throw new IllegalStoredValue("Truncated value at offset " + position);
+        }
+    }
+
+    public boolean hasRemaining() {
+        return position < limit;
+    }
+
+    public int position() {
+        return position;
+    }
+
+    public int remaining() {
+        return limit - position;
+    }
+
+    public int readByte() {
+        require(1);
+        return buffer[position++] & 0xFF;
+    }
+
+    public long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            var b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStoredValue("Malformed varint at offset " + position);
+    }
+
+    public int readLength() {
+        var length = readVarLong();
+        if (length > limit - position) {
+            throw new IllegalStoredValue("Truncated value at offset " + position);
+        }
+        return (int) length;
+    }
+
+    public byte[] readBytes(int length) {
+        require(length);
+        var value = Arrays.copyOfRange(buffer, position, position + length);
+        position += length;
+        return value;
+    }
+
+    public UUID readUuid() {
+        require(16);
+        return new UUID(readLong(), readLong());
+    }
+
+    private long readLong() {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (buffer[position++] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * A reader over the next {@code length} bytes; this reader moves past them.
+     */
+    public ByteReader slice(int length) {
+        require(length);
+        var slice = new ByteReader(buffer, position, position + length);
+        position += length;
+        return slice;
+    }
+
+    public void skip(int length) {
+        require(length);
+        position += length;
+    }
+}
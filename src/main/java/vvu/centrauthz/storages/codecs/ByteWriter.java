@@ -0,0 +1,95 @@
+package vvu.centrauthz.storages.codecs;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Growable byte buffer with the primitives of the compact binary formats:
+ * unsigned and zig-zag varints, raw UUIDs and length-prefixed byte strings.
+ */
+public class ByteWriter {
+
+    private byte[] buffer;
+    private int size;
+
+    public ByteWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    public static int varLongSize(long value) {
+        var bytes = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    public static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+
+    public ByteWriter writeByte(int value) {
+        ensure(1);
+        buffer[size++] = (byte) value;
+        return this;
+    }
+
+    public ByteWriter writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+        return this;
+    }
+
+    public ByteWriter writeBytes(byte[] value) {
+        ensure(value.length);
+        System.arraycopy(value, 0, buffer, size, value.length);
+        size += value.length;
+        return this;
+    }
+
+    public ByteWriter writeBytes(byte[] value, int offset, int length) {
+        ensure(length);
+        System.arraycopy(value, offset, buffer, size, length);
+        size += length;
+        return this;
+    }
+
+    public ByteWriter writeUuid(UUID value) {
+        ensure(16);
+        writeLong(value.getMostSignificantBits());
+        writeLong(value.getLeastSignificantBits());
+        return this;
+    }
+
+    private void writeLong(long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[size++] = (byte) (value >>> shift);
+        }
+    }
+
+    /**
+     * Writes a varint length followed by the bytes.
+     */
+    public ByteWriter writeLengthPrefixed(byte[] value) {
+        return writeVarLong(value.length).writeBytes(value);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+}
@@ -0,0 +1,32 @@
+package vvu.centrauthz.storages.codecs;
+
+import io.micronaut.json.JsonMapper;
+import vvu.centrauthz.storages.interfaces.ValueCodec;
+import vvu.centrauthz.utilities.JsonTools;
+
+/**
+ * Serializes values straight to JSON bytes and back with the Serde mapper,
+ * without building an intermediate {@code JsonNode} tree.
+ *
+ * @param <T> the type of the values
+ */
+public class JsonValueCodec<T> implements ValueCodec<T> {
+
+    private final JsonMapper mapper;
+    private final Class<T> type;
+
+    public JsonValueCodec(JsonMapper mapper, Class<T> type) {
+        this.mapper = mapper;
+        this.type = type;
+    }
+
+    @Override
+    public byte[] encode(T value) {
+        return JsonTools.toBytes(mapper, value);
+    }
+
+    @Override
+    public T decode(byte[] bytes) {
+        return JsonTools.fromBytes(mapper, bytes, type);
+    }
+}
@@ -0,0 +1,84 @@
+package vvu.centrauthz.storages.codecs;
+
+import io.micronaut.core.annotation.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds storage keys {@code <prefix>:<uuid>}.
+ *
+ * <p>The bytes of {@code <prefix>:} are cached per prefix, and the UUID is written as hex
+ * digits straight after them, so a key costs one array and its string. Prefixes that are not
+ * ASCII, and prefixes seen once the cache is full, take the plain concatenation instead.
+ */
+public class KeyBuilder {
+
+    static final int UUID_LENGTH = 36;
+    private static final int MAX_CACHED_PREFIXES = 1024;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final Map<String, byte[]> prefixes = new ConcurrentHashMap<>();
+
+    public String build(String prefix, UUID id) {
+        var head = headOf(prefix);
+        if (Objects.isNull(head)) {
+            return prefix + ':' + id;
+        }
+        var key = Arrays.copyOf(head, head.length + UUID_LENGTH);
+        writeUuid(id, key, head.length);
+        return new String(key, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @return the bytes of {@code <prefix>:}, or {@code null} when the prefix is not ASCII or
+     * cannot be cached
+     */
+    @Nullable
+    private byte[] headOf(String prefix) {
+        var head = prefixes.get(prefix);
+        if (Objects.nonNull(head) || prefixes.size() >= MAX_CACHED_PREFIXES) {
+            return head;
+        }
+        var length = prefix.length();
+        head = new byte[length + 1];
+        for (int i = 0; i < length; i++) {
+            var c = prefix.charAt(i);
+            if (c >= 0x80) {
+                return null;
+            }
+            head[i] = (byte) c;
+        }
+        head[length] = ':';
+        prefixes.putIfAbsent(prefix, head);
+        return head;
+    }
+
+    /**
+     * Writes the 36 characters of {@link UUID#toString()} as ASCII bytes.
+     */
+    public static void writeUuid(UUID id, byte[] target, int offset) {
+        var most = id.getMostSignificantBits();
+        var least = id.getLeastSignificantBits();
+        writeHex(most >>> 32, 8, target, offset);
+        target[offset + 8] = '-';
+        writeHex(most >>> 16, 4, target, offset + 9);
+        target[offset + 13] = '-';
+        writeHex(most, 4, target, offset + 14);
+        target[offset + 18] = '-';
+        writeHex(least >>> 48, 4, target, offset + 19);
+        target[offset + 23] = '-';
+        writeHex(least, 12, target, offset + 24);
+    }
+
+    private static void writeHex(long value, int digits, byte[] target, int offset) {
+        for (int i = digits - 1; i >= 0; i--) {
+            target[offset + i] = HEX[(int) (value & 0xf)];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package vvu.centrauthz.storages.codecs;
+
+import vvu.centrauthz.exceptions.IllegalStoredValue;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Version prefix of stored values: {@code 0xA7 'V'}, the version in ASCII decimal, {@code ';'},
+ * then the payload. The prefix is readable from Lua, so versions can be compared and bumped in
+ * Redis scripts without decoding the payload. Values without the prefix have version 0.
+ *
+ * @param version       the version of the value
+ * @param payloadOffset where the payload starts
+ */
+public record VersionEnvelope(long version, int payloadOffset) {
+
+    static final byte MAGIC = (byte) 0xA7;
+    static final byte KIND = 'V';
+    static final byte END = ';';
+    private static final VersionEnvelope NONE = new VersionEnvelope(0, 0);
+
+    public static boolean matches(byte[] value) {
+        return value.length >= 2 && value[0] == MAGIC && value[1] == KIND;
+    }
+
+    public static VersionEnvelope of(byte[] value) {
+        if (!matches(value)) {
+            return NONE;
+        }
+        long version = 0;
+        for (int i = 2; i < value.length && i < 22; i++) {
+            var b = value[i];
+            if (b == END && i > 2) {
+                return new VersionEnvelope(version, i + 1);
+            }
+            if (b < '0' || b > '9') {
+                break;
+            }
+            version = version * 10 + (b - '0');
+        }
+        throw new IllegalStoredValue("Malformed version envelope");
+    }
+
+    public static byte[] wrap(long version, byte[] payload) {
+        var digits = Long.toString(version).getBytes(StandardCharsets.US_ASCII);
+        var value = new byte[digits.length + 3 + payload.length];
+        value[0] = MAGIC;
+        value[1] = KIND;
+        System.arraycopy(digits, 0, value, 2, digits.length);
+        value[digits.length + 2] = END;
+        System.arraycopy(payload, 0, value, digits.length + 3, payload.length);
+        return value;
+    }
+
+    public boolean isPresent() {
+        return payloadOffset > 0;
+    }
+}
@@ -0,0 +1,70 @@
+package vvu.centrauthz.storages.interfaces;
+
+import io.micronaut.core.annotation.Nullable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage of values as named fields under one key, so that a change writes only the fields it
+ * touches. Fields are versioned as {@link VersionedWritable} values are, and a version mismatch
+ * fails with {@link vvu.centrauthz.exceptions.PreconditionFailedError}.
+ *
+ * <p>A key still holding a whole value is read as such, and the next full write stores it as
+ * fields, so keys migrate on write.
+ */
+public interface FieldStorable {
+
+    /**
+     * A write of {@link #writeAllFields}, under the same conditions as {@link #writeFields}.
+     *
+     * @param expectedVersion the version the stored value must have, or {@code null} for any
+     */
+    record FieldsWrite(
+        String key, VersionedWritable.Mode mode, @Nullable Long expectedVersion, Map<String, byte[]> fields) {
+    }
+
+    /**
+     * Reads the fields of a key.
+     *
+     * @param fields the fields to read, or none for all of them
+     * @return the stored fields, never empty; check {@link StoredFields#exists()}
+     */
+    Mono<StoredFields> readFields(String key, Collection<String> fields);
+
+    /**
+     * Reads all fields of many keys in one round trip.
+     *
+     * @return one item per key, in the order of {@code keys}
+     */
+    Flux<StoredFields> readAllFields(List<String> keys);
+
+    /**
+     * Replaces all fields of a key under the next version.
+     *
+     * @param expectedVersion the version the stored value must have, or {@code null} for any
+     * @return the new version, or {@code 0} when the key does not satisfy {@code mode}
+     */
+    Mono<Long> writeFields(
+        String key, VersionedWritable.Mode mode, @Nullable Long expectedVersion, Map<String, byte[]> fields);
+
+    /**
+     * Sets some fields and deletes others under the next version, leaving the rest untouched.
+     *
+     * @param expectedVersion the version the stored value must have, or {@code null} for any
+     * @return {@link PatchResult#UNSUPPORTED} when the key still holds a whole value
+     */
+    Mono<PatchResult> updateFields(
+        String key, @Nullable Long expectedVersion, Map<String, byte[]> changed, Collection<String> removed);
+
+    /**
+     * Replaces all fields of many keys in one round trip, each under its own conditions.
+     *
+     * @return one result per write, in the order of {@code writes}; failures are those of
+     *     {@link VersionedWritable#writeAll}
+     */
+    Flux<WriteResult> writeAllFields(List<FieldsWrite> writes);
+}
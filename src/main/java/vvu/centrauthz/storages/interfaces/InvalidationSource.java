@@ -0,0 +1,34 @@
+package vvu.centrauthz.storages.interfaces;
+
+/**
+ * Storage that tells when keys are changed, by any client, so that copies of their values kept
+ * elsewhere can be dropped.
+ */
+public interface InvalidationSource {
+
+    interface Listener {
+
+        void invalidated(String key);
+
+        /**
+         * Any key may have changed, for instance while changes could not be reported.
+         */
+        void invalidatedAll();
+    }
+
+    void addListener(Listener listener);
+
+    /**
+     * Whether changes are being reported. A value read while they are not may never be
+     * invalidated, so it must not be kept.
+     */
+    boolean isListening();
+
+    /**
+     * Whether changes of the key are reported at all; a value of a key that is not covered must
+     * not be kept.
+     */
+    default boolean covers(String key) {
+        return true;
+    }
+}
@@ -0,0 +1,40 @@
+package vvu.centrauthz.storages.interfaces;
+
+import io.micronaut.core.annotation.Nullable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import vvu.centrauthz.models.Void;
+
+import java.util.List;
+
+/**
+ * Storage of sets of strings kept in lexicographic order under one key, such as secondary
+ * indexes whose members start with their sort key.
+ */
+public interface OrderedSetStorable {
+
+    /**
+     * Adds members to their sets in one round trip; members already there are left as they are.
+     *
+     * @param members the key of a set with the member to add to it
+     * @return a Mono failing when any member could not be added
+     */
+    Mono<Void> addMembers(List<StoredValue<String>> members);
+
+    /**
+     * Removes members from their sets in one round trip; absent members are ignored.
+     *
+     * @param members the key of a set with the member to remove from it
+     * @return a Mono failing when any member could not be removed
+     */
+    Mono<Void> removeMembers(List<StoredValue<String>> members);
+
+    /**
+     * Reads members of a set in lexicographic order.
+     *
+     * @param after the member to start after, or {@code null} to start with the first one
+     * @param limit the most members to read
+     * @return the members, an empty Flux when the set does not exist
+     */
+    Flux<String> members(String key, @Nullable String after, int limit);
+}
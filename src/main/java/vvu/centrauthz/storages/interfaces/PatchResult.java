@@ -0,0 +1,13 @@
+package vvu.centrauthz.storages.interfaces;
+
+/**
+ * Outcome of a patch applied by the storage itself.
+ */
+public enum PatchResult {
+    PATCHED,
+    NOT_FOUND,
+    /**
+     * The stored value cannot be patched in place; the caller has to read, patch and write it.
+     */
+    UNSUPPORTED
+}
@@ -1,7 +1,26 @@
 package vvu.centrauthz.storages.interfaces;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 public interface Readable<T> {
+
+    /**
+     * Reads one key. A miss is an empty result rather than an error: misses are common, and
+     * building an error for each costs more than the read.
+     *
+     * @param key the key to read
+     * @return the value, or empty when the key does not exist
+     */
     Mono<T> get(String key);
+
+    /**
+     * Reads many keys in one round trip.
+     *
+     * @param keys the keys to read
+     * @return one entry per key, in the order of {@code keys}
+     */
+    Flux<StoredValue<T>> getAll(List<String> keys);
 }
@@ -1,8 +1,19 @@
 package vvu.centrauthz.storages.interfaces;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import vvu.centrauthz.models.Void;
 
+import java.util.List;
+
 public interface Removable {
     Mono<Void> remove(String appKey);
+
+    /**
+     * Removes many keys in one round trip.
+     *
+     * @param keys the keys to remove
+     * @return one result per key, in the order of {@code keys}
+     */
+    Flux<WriteResult> removeAll(List<String> keys);
 }
@@ -0,0 +1,31 @@
+package vvu.centrauthz.storages.interfaces;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Storage that serves reads from replicas of the node a key lives on.
+ *
+ * <p>Replicas apply writes a little after the primary acknowledged them. A caller that must
+ * read its own writes keeps the token returned after writing, and puts it in the Reactor
+ * context of the read under {@link #CONSISTENCY_TOKEN}: the read then goes to a replica that
+ * has caught up with the token, or to the primary. Reads without a token go to any replica.
+ */
+public interface Replicated {
+
+    /**
+     * Reactor context key of the consistency token a read must honour.
+     */
+    String CONSISTENCY_TOKEN = "storage.consistency-token";
+
+    /**
+     * Token of reads that must go to the primary, such as the read of a read-modify-write.
+     */
+    String PRIMARY = "primary";
+
+    /**
+     * A token covering every write to the node of a key acknowledged so far.
+     *
+     * @return the token, or empty when the node has no replicas
+     */
+    Mono<String> consistencyToken(String key);
+}
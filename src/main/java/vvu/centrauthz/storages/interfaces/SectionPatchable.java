@@ -0,0 +1,26 @@
+package vvu.centrauthz.storages.interfaces;
+
+import io.micronaut.core.annotation.Nullable;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * Storage able to patch values in the tagged-section layout without sending them back and forth:
+ * a fixed header followed by sections of a tag byte, a varint length and a payload.
+ * Patching bumps the version of the value, as {@link VersionedWritable} does.
+ */
+public interface SectionPatchable {
+    /**
+     * Atomically drops the sections with the given tags and appends the new ones.
+     *
+     * @param key      the key of the value
+     * @param header   the header the value must start with
+     * @param tags     the tags of the sections to drop
+     * @param sections the encoded sections to append
+     * @param expectedVersion the version the stored value must have, or {@code null} for any
+     * @return {@link PatchResult#UNSUPPORTED} when the value does not start with {@code header}
+     */
+    Mono<PatchResult> patchSections(
+        String key, byte[] header, Collection<Integer> tags, byte[] sections, @Nullable Long expectedVersion);
+}
@@ -0,0 +1,32 @@
+package vvu.centrauthz.storages.interfaces;
+
+import io.micronaut.core.annotation.Nullable;
+
+import java.util.Map;
+
+/**
+ * A key read from a field storage: its fields and version when stored as fields, its value when
+ * still stored whole (written before the key was switched to fields), or neither when the key
+ * does not exist.
+ */
+public record StoredFields(String key,
+                           @Nullable Map<String, byte[]> fields,
+                           long version,
+                           @Nullable byte[] value) {
+
+    public static StoredFields missing(String key) {
+        return new StoredFields(key, null, 0, null);
+    }
+
+    public static StoredFields whole(String key, byte[] value) {
+        return new StoredFields(key, null, 0, value);
+    }
+
+    public boolean exists() {
+        return fields != null || value != null;
+    }
+
+    public boolean isWhole() {
+        return value != null;
+    }
+}
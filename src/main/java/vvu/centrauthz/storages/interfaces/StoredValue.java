@@ -0,0 +1,12 @@
+package vvu.centrauthz.storages.interfaces;
+
+import io.micronaut.core.annotation.Nullable;
+
+/**
+ * A key read from storage with its value, or a {@code null} value when the key does not exist.
+ */
+public record StoredValue<T>(String key, @Nullable T value) {
+    public boolean exists() {
+        return value != null;
+    }
+}
@@ -0,0 +1,12 @@
+package vvu.centrauthz.storages.interfaces;
+
+/**
+ * Converts stored values to and from the bytes kept by a byte-level storage.
+ *
+ * @param <T> the type of the values
+ */
+public interface ValueCodec<T> {
+    byte[] encode(T value);
+
+    T decode(byte[] bytes);
+}
@@ -0,0 +1,70 @@
+package vvu.centrauthz.storages.interfaces;
+
+import io.micronaut.core.annotation.Nullable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import vvu.centrauthz.exceptions.AppError;
+import vvu.centrauthz.exceptions.ConflictError;
+import vvu.centrauthz.exceptions.NotFoundError;
+
+import java.util.List;
+
+/**
+ * Writes values under a version that the storage bumps on every write, with compare-and-set
+ * in the same round trip as the write. A version mismatch fails with
+ * {@link vvu.centrauthz.exceptions.PreconditionFailedError}.
+ */
+public interface VersionedWritable {
+
+    enum Mode {
+        /** Write only if the key does not exist. */
+        CREATE,
+        /** Write only if the key exists. */
+        REPLACE,
+        /** Write whether the key exists or not. */
+        UPSERT
+    }
+
+    /**
+     * A write of {@link #writeAll}, under the same conditions as {@link #write}.
+     *
+     * @param expectedVersion the version the stored value must have, or {@code null} for any
+     */
+    record Write(String key, Mode mode, @Nullable Long expectedVersion, byte[] payload) {
+    }
+
+    /**
+     * The error of a write of a batch whose key does not satisfy its mode: a conflict for
+     * {@link Mode#CREATE}, not found for the others.
+     */
+    static AppError unmet(String key, Mode mode) {
+        if (mode == Mode.CREATE) {
+            return new ConflictError(String.format("Key %s exists", key));
+        }
+        return new NotFoundError("NOT_FOUND", String.format("Key %s does not exist", key));
+    }
+
+    /**
+     * Writes a payload under the next version.
+     *
+     * @param expectedVersion the version the stored value must have, or {@code null} for any
+     * @return the new version, or {@code 0} when the key does not satisfy {@code mode}
+     */
+    Mono<Long> write(String key, Mode mode, @Nullable Long expectedVersion, byte[] payload);
+
+    /**
+     * Writes many payloads in one round trip, each under its own conditions.
+     *
+     * @return one result per write, in the order of {@code writes}; a write whose key does not
+     *     satisfy its mode fails with {@link #unmet}, one that meets another version with a
+     *     precondition error
+     */
+    Flux<WriteResult> writeAll(List<Write> writes);
+
+    /**
+     * Deletes a value if it has the expected version.
+     *
+     * @return {@code true} when deleted, {@code false} when the key does not exist
+     */
+    Mono<Boolean> remove(String key, long expectedVersion);
+}
@@ -0,0 +1,17 @@
+package vvu.centrauthz.storages.interfaces;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Storage that has work to finish before it serves requests at full speed, such as opening
+ * its connections.
+ */
+public interface Warmable {
+
+    /**
+     * Finishes the work; calling it again waits for the same work instead of starting it over.
+     *
+     * @return completes once the storage is warm
+     */
+    Mono<Void> warmUp();
+}
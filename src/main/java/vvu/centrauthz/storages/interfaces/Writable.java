@@ -1,8 +1,33 @@
 package vvu.centrauthz.storages.interfaces;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import vvu.centrauthz.models.Void;
 
+import java.util.List;
+
 public interface Writable<T> {
     Mono<Void> save(String key, T object);
+
+    /**
+     * Writes a value only if the key does not exist yet.
+     *
+     * @return {@code true} when the value was written, {@code false} when the key already existed
+     */
+    Mono<Boolean> create(String key, T object);
+
+    /**
+     * Writes a value only if the key already exists.
+     *
+     * @return {@code true} when the value was written, {@code false} when the key did not exist
+     */
+    Mono<Boolean> replace(String key, T object);
+
+    /**
+     * Writes many values in one round trip.
+     *
+     * @param values the keys and values to write
+     * @return one result per value, in the order of {@code values}
+     */
+    Flux<WriteResult> saveAll(List<StoredValue<T>> values);
 }
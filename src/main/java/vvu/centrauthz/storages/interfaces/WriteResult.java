@@ -0,0 +1,12 @@
+package vvu.centrauthz.storages.interfaces;
+
+import io.micronaut.core.annotation.Nullable;
+
+/**
+ * Outcome of one write of a batch, with the error that made it fail if any.
+ */
+public record WriteResult(String key, @Nullable Throwable error) {
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,217 @@
+package vvu.centrauthz.storages.keyvalue.embedded;
+
+import io.micronaut.context.annotation.Requires;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import vvu.centrauthz.exceptions.PreconditionFailedError;
+import vvu.centrauthz.models.Void;
+import vvu.centrauthz.storages.codecs.VersionEnvelope;
+import vvu.centrauthz.storages.interfaces.Readable;
+import vvu.centrauthz.storages.interfaces.Removable;
+import vvu.centrauthz.storages.interfaces.StoredValue;
+import vvu.centrauthz.storages.interfaces.VersionedWritable;
+import vvu.centrauthz.storages.interfaces.Writable;
+import vvu.centrauthz.storages.interfaces.WriteResult;
+import vvu.centrauthz.storages.keyvalue.embedded.configurations.EmbeddedStorageConfig;
+import vvu.centrauthz.storages.keyvalue.embedded.utilities.SegmentedLog;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Storage engine for single-node installs without Redis: a {@link SegmentedLog} in a local
+ * directory, selected with {@code storage.engine: embedded}.
+ *
+ * <p>Values are versioned with the same {@link VersionEnvelope} as in Redis, and conditional
+ * writes check and bump the version under the write lock of the log.
+ *
+ * <p>Every call reads or writes memory-mapped segments, may wait for the write lock and, with
+ * {@code sync-writes}, forces the segment to disk, so all of them run on the
+ * {@code embedded-io} threads instead of the event loop of the caller.
+ */
+@Singleton
+@Requires(property = "storage.engine", value = "embedded")
+@Slf4j
+public class EmbeddedLogStorage implements Readable<byte[]>, Writable<byte[]>, Removable, VersionedWritable {
+
+    private final SegmentedLog store;
+    private final Scheduler compactionScheduler;
+    private final Scheduler ioScheduler;
+    private final Disposable compaction;
+
+    public EmbeddedLogStorage(EmbeddedStorageConfig config) {
+        this.store = SegmentedLog.open(Path.of(config.directory()), config.segmentSize(), config.syncWrites());
+        this.compactionScheduler = Schedulers.newSingle("embedded-compaction");
+        this.ioScheduler = Schedulers.newBoundedElastic(
+            Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "embedded-io");
+        var interval = config.compactionInterval().toMillis();
+        this.compaction = compactionScheduler.schedulePeriodically(
+            () -> compact(config.compactionThreshold()), interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void compact(double threshold) {
+        try {
+            var deleted = store.compact(threshold);
+            if (deleted > 0) {
+                log.info("Compaction deleted {} segments", deleted);
+            }
+        } catch (RuntimeException e) {
+            log.error("Compaction failed", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        compaction.dispose();
+        compactionScheduler.dispose();
+        ioScheduler.dispose();
+        store.close();
+    }
+
+    private static PreconditionFailedError versionMismatch(String key, Long expectedVersion) {
+        return new PreconditionFailedError(String.format("Version of %s is not %s", key, expectedVersion));
+    }
+
+    private static long versionOf(byte[] value) {
+        return VersionEnvelope.of(value).version();
+    }
+
+    /**
+     * Same rules as redis/versioned-set.lua.
+     */
+    private long versionedWrite(String key, Mode mode, Long expectedVersion, byte[] payload) {
+        return store.atomically(() -> {
+            var current = store.get(key);
+            var version = 0L;
+            if (Objects.nonNull(current)) {
+                if (mode == Mode.CREATE) {
+                    return 0L;
+                }
+                version = versionOf(current);
+            } else if (mode == Mode.REPLACE || Objects.nonNull(expectedVersion)) {
+                return 0L;
+            }
+            if (Objects.nonNull(expectedVersion) && expectedVersion != version) {
+                throw versionMismatch(key, expectedVersion);
+            }
+            store.put(key, VersionEnvelope.wrap(version + 1, payload));
+            return version + 1;
+        });
+    }
+
+    private <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(ioScheduler);
+    }
+
+    private <T> Flux<WriteResult> forEach(List<T> items, Function<T, String> keyOf, Function<T, Object> write) {
+        return Flux.fromIterable(items).map(item -> {
+            var key = keyOf.apply(item);
+            try {
+                write.apply(item);
+                return new WriteResult(key, null);
+            } catch (RuntimeException e) {
+                return new WriteResult(key, e);
+            }
+        }).subscribeOn(ioScheduler);
+    }
+
+    @Override
+    public Mono<byte[]> get(String key) {
+        return blocking(() -> store.get(key));
+    }
+
+    @Override
+    public Flux<StoredValue<byte[]>> getAll(List<String> keys) {
+        return Flux.fromIterable(keys).map(key -> new StoredValue<>(key, store.get(key))).subscribeOn(ioScheduler);
+    }
+
+    @Override
+    public Mono<Void> save(String key, byte[] object) {
+        return blocking(() -> {
+            store.put(key, object);
+            return Void.INSTANCE;
+        });
+    }
+
+    @Override
+    public Mono<Boolean> create(String key, byte[] object) {
+        return blocking(() -> store.atomically(() -> {
+            if (Objects.nonNull(store.get(key))) {
+                return false;
+            }
+            store.put(key, object);
+            return true;
+        }));
+    }
+
+    @Override
+    public Mono<Boolean> replace(String key, byte[] object) {
+        return blocking(() -> store.atomically(() -> {
+            if (Objects.isNull(store.get(key))) {
+                return false;
+            }
+            store.put(key, object);
+            return true;
+        }));
+    }
+
+    @Override
+    public Flux<WriteResult> saveAll(List<StoredValue<byte[]>> values) {
+        return forEach(values, StoredValue::key, v -> {
+            store.put(v.key(), v.value());
+            return null;
+        });
+    }
+
+    @Override
+    public Mono<Void> remove(String key) {
+        return blocking(() -> {
+            store.delete(key);
+            return Void.INSTANCE;
+        });
+    }
+
+    @Override
+    public Flux<WriteResult> removeAll(List<String> keys) {
+        return forEach(keys, Function.identity(), store::delete);
+    }
+
+    @Override
+    public Mono<Long> write(String key, Mode mode, Long expectedVersion, byte[] payload) {
+        return blocking(() -> versionedWrite(key, mode, expectedVersion, payload));
+    }
+
+    @Override
+    public Flux<WriteResult> writeAll(List<Write> writes) {
+        return forEach(writes, Write::key, w -> {
+            if (versionedWrite(w.key(), w.mode(), w.expectedVersion(), w.payload()) == 0) {
+                throw VersionedWritable.unmet(w.key(), w.mode());
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Mono<Boolean> remove(String key, long expectedVersion) {
+        return blocking(() -> store.atomically(() -> {
+            var current = store.get(key);
+            if (Objects.isNull(current)) {
+                return false;
+            }
+            if (versionOf(current) != expectedVersion) {
+                throw versionMismatch(key, expectedVersion);
+            }
+            return store.delete(key);
+        }));
+    }
+}
@@ -0,0 +1,41 @@
+package vvu.centrauthz.storages.keyvalue.embedded.configurations;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Embedded log-structured storage, used instead of Redis when {@code storage.engine} is
+ * {@code embedded}.
+ * Records are appended to memory-mapped segment files of {@code segmentSize} bytes under
+ * {@code directory}. Every {@code compactionInterval}, sealed segments in which at least
+ * {@code compactionThreshold} of the bytes are dead are rewritten and deleted. With
+ * {@code syncWrites}, every write is forced to disk before it completes; otherwise the OS
+ * flushes the mapped pages and a crash may lose the latest writes, never older ones.
+ */
+@ConfigurationProperties("storage.embedded")
+public record EmbeddedStorageConfig(String directory,
+                                    int segmentSize,
+                                    double compactionThreshold,
+                                    Duration compactionInterval,
+                                    boolean syncWrites) {
+    public EmbeddedStorageConfig {
+        if (Objects.isNull(directory) || directory.isBlank()) {
+            directory = "data";
+        }
+        if (segmentSize <= 0) {
+            segmentSize = 64 * 1024 * 1024;
+        }
+        if (compactionThreshold <= 0 || compactionThreshold > 1) {
+            compactionThreshold = 0.5;
+        }
+        if (Objects.isNull(compactionInterval)) {
+            compactionInterval = Duration.ofMinutes(1);
+        }
+    }
+
+    public EmbeddedStorageConfig() {
+        this("data", 64 * 1024 * 1024, 0.5, Duration.ofMinutes(1), false);
+    }
+}
@@ -0,0 +1,16 @@
+package vvu.centrauthz.storages.keyvalue.embedded.utilities;
+
+/**
+ * A record read from a log segment.
+ *
+ * @param type   {@link LogSegment#PUT} or {@link LogSegment#DELETE}
+ * @param key    the key
+ * @param value  the value, empty for a delete
+ * @param offset where the record starts in its segment
+ * @param size   the size of the whole record, header included
+ */
+public record LogRecord(byte type, String key, byte[] value, int offset, int size) {
+    public boolean isDelete() {
+        return type == LogSegment.DELETE;
+    }
+}
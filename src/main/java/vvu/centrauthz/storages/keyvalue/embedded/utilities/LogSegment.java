@@ -0,0 +1,225 @@
+package vvu.centrauthz.storages.keyvalue.embedded.utilities;
+
+import vvu.centrauthz.exceptions.IllegalStoredValue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * One memory-mapped file of a {@link SegmentedLog}.
+ *
+ * <p>Record layout, big-endian: an int length of the rest of the record, an int CRC32C of the
+ * body, then the body: a type byte, an int key length, the UTF-8 key and the value. A zero
+ * length ends the segment, as the file is zero-filled when created.
+ *
+ * <p>Appends are made by one writer at a time; reads use absolute positions only, so they need
+ * no lock and may run concurrently with an append.
+ */
+public class LogSegment implements Closeable {
+
+    public static final byte PUT = 1;
+    public static final byte DELETE = 2;
+    static final int HEADER_SIZE = 8;
+    private static final int BODY_PREFIX_SIZE = 5;
+
+    private final long id;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final AtomicLong deadBytes = new AtomicLong();
+    private volatile int writePosition;
+
+    private LogSegment(long id, Path path, FileChannel channel, MappedByteBuffer buffer, int capacity) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Opens a segment file, creating it with {@code capacity} bytes when missing.
+     */
+    public static LogSegment open(long id, Path path, int capacity) {
+        try {
+            var channel = FileChannel.open(
+                path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            var size = (int) Math.max(channel.size(), capacity);
+            var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return new LogSegment(id, path, channel, buffer, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long id() {
+        return id;
+    }
+
+    public int writePosition() {
+        return writePosition;
+    }
+
+    public long deadBytes() {
+        return deadBytes.get();
+    }
+
+    public void addDeadBytes(int size) {
+        deadBytes.addAndGet(size);
+    }
+
+    /**
+     * Share of the written bytes that belong to overwritten or deleted records.
+     */
+    public double deadRatio() {
+        var written = writePosition;
+        return written == 0 ? 0 : (double) deadBytes.get() / written;
+    }
+
+    private static int checksum(byte type, byte[] key, byte[] value) {
+        var crc = new CRC32C();
+        crc.update(type);
+        crc.update(key.length >>> 24);
+        crc.update(key.length >>> 16);
+        crc.update(key.length >>> 8);
+        crc.update(key.length);
+        crc.update(key);
+        crc.update(value);
+        return (int) crc.getValue();
+    }
+
+    static int recordSize(byte[] key, byte[] value) {
+        return HEADER_SIZE + BODY_PREFIX_SIZE + key.length + value.length;
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @return the offset of the record, or {@code -1} when it does not fit in this segment
+     */
+    public int append(byte type, byte[] key, byte[] value) {
+        var size = recordSize(key, value);
+        var offset = writePosition;
+        // keep room for the zero length that ends the segment
+        if ((long) offset + size + Integer.BYTES > capacity) {
+            return -1;
+        }
+        var position = offset + HEADER_SIZE;
+        buffer.put(position, type);
+        buffer.putInt(position + 1, key.length);
+        buffer.put(position + BODY_PREFIX_SIZE, key);
+        buffer.put(position + BODY_PREFIX_SIZE + key.length, value);
+        buffer.putInt(offset + Integer.BYTES, checksum(type, key, value));
+        // the length goes last: a record without it is not visible to recovery
+        buffer.putInt(offset, size - Integer.BYTES);
+        writePosition = offset + size;
+        return offset;
+    }
+
+    /**
+     * Reads the record at an offset returned by {@link #append} or {@link #scan}.
+     */
+    public LogRecord read(int offset) {
+        var record = readAt(offset);
+        if (record == null) {
+            throw new IllegalStoredValue("Corrupted record at " + offset + " in " + path);
+        }
+        return record;
+    }
+
+    private LogRecord readAt(int offset) {
+        if (offset + HEADER_SIZE + BODY_PREFIX_SIZE > capacity) {
+            return null;
+        }
+        var length = buffer.getInt(offset);
+        if (length < Integer.BYTES + BODY_PREFIX_SIZE || (long) offset + Integer.BYTES + length > capacity) {
+            return null;
+        }
+        var position = offset + HEADER_SIZE;
+        var type = buffer.get(position);
+        var keyLength = buffer.getInt(position + 1);
+        var valueLength = length - Integer.BYTES - BODY_PREFIX_SIZE - keyLength;
+        if ((type != PUT && type != DELETE) || keyLength < 0 || valueLength < 0) {
+            return null;
+        }
+        var key = new byte[keyLength];
+        var value = new byte[valueLength];
+        buffer.get(position + BODY_PREFIX_SIZE, key);
+        buffer.get(position + BODY_PREFIX_SIZE + keyLength, value);
+
+        if (checksum(type, key, value) != buffer.getInt(offset + Integer.BYTES)) {
+            return null;
+        }
+        return new LogRecord(type, new String(key, StandardCharsets.UTF_8), value, offset, Integer.BYTES + length);
+    }
+
+    /**
+     * Reads every record from the start, in order, and moves the write position after the last
+     * valid one. A torn or corrupted record ends the scan and is wiped, so that the next append
+     * cannot be mistaken for its continuation.
+     *
+     * @return {@code true} when the segment ended cleanly
+     */
+    public boolean scan(Consumer<LogRecord> consumer) {
+        var offset = 0;
+        while (offset + Integer.BYTES <= capacity && buffer.getInt(offset) != 0) {
+            var record = readAt(offset);
+            if (record == null) {
+                wipe(offset);
+                writePosition = offset;
+                return false;
+            }
+            consumer.accept(record);
+            offset += record.size();
+        }
+        writePosition = offset;
+        return true;
+    }
+
+    private void wipe(int from) {
+        var zeros = new byte[64 * 1024];
+        for (var position = from; position < capacity; position += zeros.length) {
+            buffer.put(position, zeros, 0, Math.min(zeros.length, capacity - position));
+        }
+    }
+
+    /**
+     * Forces the appended records to disk.
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Closes and deletes the file. Records already read stay valid, as the mapping outlives
+     * the file.
+     */
+    public void delete() {
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package vvu.centrauthz.storages.keyvalue.embedded.utilities;
+
+/**
+ * Where the latest record of a key is: its segment, its offset in the segment and its size.
+ */
+public record RecordLocation(long segment, int offset, int size) {
+}
@@ -0,0 +1,240 @@
+package vvu.centrauthz.storages.keyvalue.embedded.utilities;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Append-only key/value log split into memory-mapped {@link LogSegment segments}, with an
+ * in-memory index of the latest record of every key.
+ *
+ * <p>Every write appends a record to the active segment, which is sealed and replaced by a new
+ * one when full. Writes are serialized by one lock; reads look the key up in the index and read
+ * the mapped segment without locking. On open, the segments are scanned in order to rebuild the
+ * index, and a torn record at the end of a segment is dropped.
+ *
+ * <p>{@link #compact} rewrites the live records of sealed segments with many dead bytes into the
+ * active segment and deletes them.
+ */
+@Slf4j
+public class SegmentedLog implements Closeable {
+
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d+)\\.log");
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean syncWrites;
+    private final Map<String, RecordLocation> index = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile LogSegment active;
+
+    private SegmentedLog(Path directory, int segmentSize, boolean syncWrites) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncWrites = syncWrites;
+    }
+
+    /**
+     * Opens the log stored in a directory, recovering the index from its segments.
+     */
+    public static SegmentedLog open(Path directory, int segmentSize, boolean syncWrites) {
+        var log = new SegmentedLog(directory, segmentSize, syncWrites);
+        log.recover();
+        return log;
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("segment-%012d.log", id));
+    }
+
+    private void recover() {
+        List<Long> ids = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            try (var files = Files.list(directory)) {
+                files.forEach(file -> {
+                    var matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+                    if (matcher.matches()) {
+                        ids.add(Long.parseLong(matcher.group(1)));
+                    }
+                });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ids.sort(Long::compare);
+
+        for (var id : ids) {
+            var segment = LogSegment.open(id, segmentPath(id), segmentSize);
+            segments.put(id, segment);
+            var clean = segment.scan(record -> {
+                if (record.isDelete()) {
+                    segment.addDeadBytes(record.size());
+                    markDead(index.remove(record.key()));
+                } else {
+                    markDead(index.put(record.key(), new RecordLocation(id, record.offset(), record.size())));
+                }
+            });
+            if (!clean) {
+                log.warn("Dropped a torn record at {} in segment {}", segment.writePosition(), id);
+            }
+        }
+        active = segments.isEmpty() ? newSegment(1) : segments.lastEntry().getValue();
+        log.info("Opened log in {} with {} keys in {} segments", directory, index.size(), segments.size());
+    }
+
+    private LogSegment newSegment(long id) {
+        var segment = LogSegment.open(id, segmentPath(id), segmentSize);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private void markDead(RecordLocation location) {
+        if (Objects.nonNull(location)) {
+            var segment = segments.get(location.segment());
+            if (Objects.nonNull(segment)) {
+                segment.addDeadBytes(location.size());
+            }
+        }
+    }
+
+    private RecordLocation append(byte type, String key, byte[] value) {
+        var keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (LogSegment.recordSize(keyBytes, value) + Integer.BYTES > segmentSize) {
+            throw new IllegalArgumentException("Record of " + key + " is larger than a segment");
+        }
+        var offset = active.append(type, keyBytes, value);
+        if (offset < 0) {
+            active.force();
+            active = newSegment(active.id() + 1);
+            offset = active.append(type, keyBytes, value);
+        }
+        if (syncWrites) {
+            active.force();
+        }
+        return new RecordLocation(active.id(), offset, LogSegment.recordSize(keyBytes, value));
+    }
+
+    /**
+     * Runs an action under the write lock, so that it can read and write keys atomically.
+     */
+    public <T> T atomically(Supplier<T> action) {
+        writeLock.lock();
+        try {
+            return action.get();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return the latest value of a key, or {@code null} when it does not exist
+     */
+    public byte[] get(String key) {
+        while (true) {
+            var location = index.get(key);
+            if (Objects.isNull(location)) {
+                return null;
+            }
+            var segment = segments.get(location.segment());
+            if (Objects.nonNull(segment)) {
+                return segment.read(location.offset()).value();
+            }
+            // moved by a compaction since the lookup; the index has its new location
+        }
+    }
+
+    public void put(String key, byte[] value) {
+        atomically(() -> {
+            markDead(index.put(key, append(LogSegment.PUT, key, value)));
+            return null;
+        });
+    }
+
+    /**
+     * @return {@code true} when the key existed
+     */
+    public boolean delete(String key) {
+        return atomically(() -> {
+            var previous = index.get(key);
+            if (Objects.isNull(previous)) {
+                return false;
+            }
+            var tombstone = append(LogSegment.DELETE, key, EMPTY);
+            index.remove(key);
+            markDead(previous);
+            active.addDeadBytes(tombstone.size());
+            return true;
+        });
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Rewrites the sealed segments whose dead ratio reaches a threshold, then deletes them.
+     * A tombstone is kept only while an older segment could still hold the key it deletes.
+     *
+     * @return the number of segments deleted
+     */
+    public int compact(double threshold) {
+        var compacted = 0;
+        for (var segment : List.copyOf(segments.values())) {
+            if (segment == active || segment.deadRatio() < threshold) {
+                continue;
+            }
+            var id = segment.id();
+            segment.scan(record -> atomically(() -> {
+                var location = index.get(record.key());
+                if (record.isDelete()) {
+                    if (Objects.isNull(location) && !segments.headMap(id).isEmpty()) {
+                        active.addDeadBytes(append(LogSegment.DELETE, record.key(), EMPTY).size());
+                    }
+                } else if (Objects.nonNull(location) && location.segment() == id && location.offset() == record.offset()) {
+                    index.put(record.key(), append(LogSegment.PUT, record.key(), record.value()));
+                }
+                return null;
+            }));
+            atomically(() -> {
+                active.force();
+                segments.remove(id);
+                return null;
+            });
+            segment.delete();
+            compacted++;
+        }
+        return compacted;
+    }
+
+    @Override
+    public void close() {
+        atomically(() -> {
+            segments.values().forEach(segment -> {
+                segment.force();
+                segment.close();
+            });
+            return null;
+        });
+    }
+}
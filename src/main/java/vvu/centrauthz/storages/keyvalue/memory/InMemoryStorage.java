@@ -0,0 +1,237 @@
+package vvu.centrauthz.storages.keyvalue.memory;
+
+import io.micronaut.context.annotation.Requires;
+import jakarta.inject.Singleton;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import vvu.centrauthz.exceptions.PreconditionFailedError;
+import vvu.centrauthz.models.Void;
+import vvu.centrauthz.storages.codecs.VersionEnvelope;
+import vvu.centrauthz.storages.interfaces.OrderedSetStorable;
+import vvu.centrauthz.storages.interfaces.Readable;
+import vvu.centrauthz.storages.interfaces.Removable;
+import vvu.centrauthz.storages.interfaces.StoredValue;
+import vvu.centrauthz.storages.interfaces.VersionedWritable;
+import vvu.centrauthz.storages.interfaces.Writable;
+import vvu.centrauthz.storages.interfaces.WriteResult;
+import vvu.centrauthz.storages.keyvalue.memory.configurations.InMemoryStorageConfig;
+import vvu.centrauthz.storages.keyvalue.memory.utilities.StripedMap;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Storage engine that keeps values in the heap of this process, selected with
+ * {@code storage.engine: memory}. Meant for local runs, tests and load tests of the whole
+ * service on one box; nothing survives a restart.
+ *
+ * <p>Values are versioned with the same {@link VersionEnvelope} as in Redis. Each call,
+ * single or batched, is delayed once by the configured latency, as one round trip would be.
+ * Ordered sets live apart from the values, in skip lists.
+ */
+@Singleton
+@Requires(property = "storage.engine", value = "memory")
+public class InMemoryStorage implements Readable<byte[]>, Writable<byte[]>, Removable, VersionedWritable, OrderedSetStorable {
+
+    private final StripedMap store;
+    private final Map<String, ConcurrentSkipListSet<String>> sets = new ConcurrentHashMap<>();
+    private final long latencyNanos;
+    private final long jitterNanos;
+
+    public InMemoryStorage(InMemoryStorageConfig config) {
+        this.store = new StripedMap(config.stripes());
+        this.latencyNanos = config.latency().toNanos();
+        this.jitterNanos = config.jitter().toNanos();
+    }
+
+    private Duration nextDelay() {
+        var jitter = jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(jitterNanos + 1) : 0;
+        return Duration.ofNanos(latencyNanos + jitter);
+    }
+
+    private <T> Mono<T> delayed(Mono<T> call) {
+        if (latencyNanos == 0 && jitterNanos == 0) {
+            return call;
+        }
+        return Mono.delay(nextDelay()).then(call);
+    }
+
+    private <T> Flux<T> delayed(Flux<T> call) {
+        if (latencyNanos == 0 && jitterNanos == 0) {
+            return call;
+        }
+        return Mono.delay(nextDelay()).thenMany(call);
+    }
+
+    private static PreconditionFailedError versionMismatch(String key, Long expectedVersion) {
+        return new PreconditionFailedError(String.format("Version of %s is not %s", key, expectedVersion));
+    }
+
+    private static long versionOf(byte[] value) {
+        return VersionEnvelope.of(value).version();
+    }
+
+    /**
+     * Same rules as redis/versioned-set.lua.
+     */
+    private long versionedWrite(String key, Mode mode, Long expectedVersion, byte[] payload) {
+        return store.atomically(key, slot -> {
+            var current = slot.get();
+            var version = 0L;
+            if (Objects.nonNull(current)) {
+                if (mode == Mode.CREATE) {
+                    return 0L;
+                }
+                version = versionOf(current);
+            } else if (mode == Mode.REPLACE || Objects.nonNull(expectedVersion)) {
+                return 0L;
+            }
+            if (Objects.nonNull(expectedVersion) && expectedVersion != version) {
+                throw versionMismatch(key, expectedVersion);
+            }
+            slot.set(VersionEnvelope.wrap(version + 1, payload));
+            return version + 1;
+        });
+    }
+
+    private static <T> Flux<WriteResult> forEach(List<T> items, Function<T, String> keyOf, Function<T, Object> write) {
+        return Flux.fromIterable(items).map(item -> {
+            var key = keyOf.apply(item);
+            try {
+                write.apply(item);
+                return new WriteResult(key, null);
+            } catch (RuntimeException e) {
+                return new WriteResult(key, e);
+            }
+        });
+    }
+
+    private Mono<Boolean> writeIf(String key, byte[] object, boolean exists) {
+        return delayed(Mono.fromCallable(() -> store.atomically(key, slot -> {
+            if (Objects.nonNull(slot.get()) != exists) {
+                return false;
+            }
+            slot.set(object);
+            return true;
+        })));
+    }
+
+    @Override
+    public Mono<byte[]> get(String key) {
+        return delayed(Mono.fromCallable(() -> store.get(key)));
+    }
+
+    @Override
+    public Flux<StoredValue<byte[]>> getAll(List<String> keys) {
+        return delayed(Flux.fromIterable(keys).map(key -> new StoredValue<>(key, store.get(key))));
+    }
+
+    @Override
+    public Mono<Void> save(String key, byte[] object) {
+        return delayed(Mono.fromCallable(() -> {
+            store.put(key, object);
+            return Void.INSTANCE;
+        }));
+    }
+
+    @Override
+    public Mono<Boolean> create(String key, byte[] object) {
+        return writeIf(key, object, false);
+    }
+
+    @Override
+    public Mono<Boolean> replace(String key, byte[] object) {
+        return writeIf(key, object, true);
+    }
+
+    @Override
+    public Flux<WriteResult> saveAll(List<StoredValue<byte[]>> values) {
+        return delayed(forEach(values, StoredValue::key, v -> {
+            store.put(v.key(), v.value());
+            return null;
+        }));
+    }
+
+    @Override
+    public Mono<Void> remove(String key) {
+        return delayed(Mono.fromCallable(() -> {
+            store.remove(key);
+            return Void.INSTANCE;
+        }));
+    }
+
+    @Override
+    public Flux<WriteResult> removeAll(List<String> keys) {
+        return delayed(forEach(keys, Function.identity(), store::remove));
+    }
+
+    @Override
+    public Mono<Long> write(String key, Mode mode, Long expectedVersion, byte[] payload) {
+        return delayed(Mono.fromCallable(() -> versionedWrite(key, mode, expectedVersion, payload)));
+    }
+
+    @Override
+    public Flux<WriteResult> writeAll(List<Write> writes) {
+        return delayed(forEach(writes, Write::key, w -> {
+            if (versionedWrite(w.key(), w.mode(), w.expectedVersion(), w.payload()) == 0) {
+                throw VersionedWritable.unmet(w.key(), w.mode());
+            }
+            return null;
+        }));
+    }
+
+    @Override
+    public Mono<Boolean> remove(String key, long expectedVersion) {
+        return delayed(Mono.fromCallable(() -> store.atomically(key, slot -> {
+            var current = slot.get();
+            if (Objects.isNull(current)) {
+                return false;
+            }
+            if (versionOf(current) != expectedVersion) {
+                throw versionMismatch(key, expectedVersion);
+            }
+            slot.set(null);
+            return true;
+        })));
+    }
+
+    @Override
+    public Mono<Void> addMembers(List<StoredValue<String>> members) {
+        return delayed(Mono.fromCallable(() -> {
+            members.forEach(m -> sets.computeIfAbsent(m.key(), k -> new ConcurrentSkipListSet<>()).add(m.value()));
+            return Void.INSTANCE;
+        }));
+    }
+
+    /**
+     * An emptied set is dropped, as Redis drops an emptied sorted set.
+     */
+    @Override
+    public Mono<Void> removeMembers(List<StoredValue<String>> members) {
+        return delayed(Mono.fromCallable(() -> {
+            members.forEach(m -> sets.computeIfPresent(m.key(), (k, set) -> {
+                set.remove(m.value());
+                return set.isEmpty() ? null : set;
+            }));
+            return Void.INSTANCE;
+        }));
+    }
+
+    @Override
+    public Flux<String> members(String key, String after, int limit) {
+        return delayed(Flux.defer(() -> {
+            var set = sets.get(key);
+            if (Objects.isNull(set)) {
+                return Flux.empty();
+            }
+            var members = Objects.isNull(after) ? set : set.tailSet(after, false);
+            return Flux.fromIterable(members.stream().limit(limit).toList());
+        }));
+    }
+}
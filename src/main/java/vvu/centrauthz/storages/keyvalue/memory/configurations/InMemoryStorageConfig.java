@@ -0,0 +1,33 @@
+package vvu.centrauthz.storages.keyvalue.memory.configurations;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * In-process storage, used instead of Redis when {@code storage.engine} is {@code memory}.
+ * Values live in {@code stripes} hash maps, each guarded by its own lock, and are lost on
+ * restart. Every call is delayed by {@code latency} plus a random share of {@code jitter}
+ * to stand in for the network round trip of a real server.
+ */
+@ConfigurationProperties("storage.memory")
+public record InMemoryStorageConfig(int stripes,
+                                    Duration latency,
+                                    Duration jitter) {
+    public InMemoryStorageConfig {
+        if (stripes <= 0) {
+            stripes = 64;
+        }
+        if (Objects.isNull(latency) || latency.isNegative()) {
+            latency = Duration.ZERO;
+        }
+        if (Objects.isNull(jitter) || jitter.isNegative()) {
+            jitter = Duration.ZERO;
+        }
+    }
+
+    public InMemoryStorageConfig() {
+        this(64, Duration.ZERO, Duration.ZERO);
+    }
+}
@@ -0,0 +1,129 @@
+package vvu.centrauthz.storages.keyvalue.memory.utilities;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * A map of byte values split into stripes, each a plain {@link HashMap} behind its own
+ * read-write lock. Keys of different stripes never contend, and a read-modify-write of one
+ * key runs under the write lock of its stripe only.
+ */
+public class StripedMap {
+
+    /**
+     * The value of one key, as seen inside {@link #atomically}.
+     */
+    public interface Slot {
+        /**
+         * @return the current value, or {@code null} when the key does not exist
+         */
+        byte[] get();
+
+        /**
+         * Replaces the value; {@code null} deletes the key.
+         */
+        void set(byte[] value);
+    }
+
+    private record Stripe(ReentrantReadWriteLock lock, Map<String, byte[]> values) {
+    }
+
+    private final Stripe[] stripes;
+    private final int mask;
+
+    /**
+     * @param stripes the number of stripes, rounded up to a power of two
+     */
+    public StripedMap(int stripes) {
+        var count = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new Stripe(new ReentrantReadWriteLock(), new HashMap<>());
+        }
+        this.mask = count - 1;
+    }
+
+    private Stripe stripeOf(String key) {
+        var h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & mask];
+    }
+
+    public int stripeCount() {
+        return stripes.length;
+    }
+
+    public byte[] get(String key) {
+        var stripe = stripeOf(key);
+        var lock = stripe.lock().readLock();
+        lock.lock();
+        try {
+            return stripe.values().get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(String key, byte[] value) {
+        atomically(key, slot -> {
+            slot.set(value);
+            return null;
+        });
+    }
+
+    /**
+     * @return {@code true} when the key existed
+     */
+    public boolean remove(String key) {
+        return atomically(key, slot -> {
+            var existed = Objects.nonNull(slot.get());
+            slot.set(null);
+            return existed;
+        });
+    }
+
+    /**
+     * Runs a read-modify-write of one key under the write lock of its stripe.
+     */
+    public <T> T atomically(String key, Function<Slot, T> action) {
+        var stripe = stripeOf(key);
+        var values = stripe.values();
+        var lock = stripe.lock().writeLock();
+        lock.lock();
+        try {
+            return action.apply(new Slot() {
+                @Override
+                public byte[] get() {
+                    return values.get(key);
+                }
+
+                @Override
+                public void set(byte[] value) {
+                    if (Objects.isNull(value)) {
+                        values.remove(key);
+                    } else {
+                        values.put(key, value);
+                    }
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        var size = 0;
+        for (var stripe : stripes) {
+            var lock = stripe.lock().readLock();
+            lock.lock();
+            try {
+                size += stripe.values().size();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,200 @@
+package vvu.centrauthz.storages.keyvalue.nearcache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.context.annotation.Bean;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.annotation.Nullable;
+import jakarta.inject.Singleton;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+import vvu.centrauthz.models.Void;
+import vvu.centrauthz.storages.interfaces.InvalidationSource;
+import vvu.centrauthz.storages.interfaces.Readable;
+import vvu.centrauthz.storages.interfaces.Removable;
+import vvu.centrauthz.storages.interfaces.Replicated;
+import vvu.centrauthz.storages.interfaces.StoredValue;
+import vvu.centrauthz.storages.interfaces.VersionedWritable;
+import vvu.centrauthz.storages.interfaces.WriteResult;
+import vvu.centrauthz.storages.keyvalue.nearcache.configurations.NearCacheConfig;
+import vvu.centrauthz.storages.keyvalue.nearcache.utilities.NearCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A {@link NearCache} in front of the storage engine.
+ *
+ * <p>Reads are served from the cache when they can, and the values read from the engine are
+ * kept. Writes through this store drop their keys before and after they run. Writes by other
+ * nodes drop their keys when the engine reports them, see {@link InvalidationSource}; an engine
+ * that does not is only shared by this process, where every write goes through here. Values
+ * read while the engine cannot report changes, or of keys it does not report, are not kept.
+ *
+ * <p>Reads that carry a {@link Replicated#CONSISTENCY_TOKEN} in their context want a value at
+ * least as recent as a given write; they skip the cache and read the engine.
+ *
+ * <p>Values read from replicas can lag behind the invalidation of their key; such a value is
+ * served until its TTL at most.
+ *
+ * <p>This store is not one of the engine beans, so that it can wrap them; the caller picks it
+ * for the keys that are cached.
+ */
+@Singleton
+@Bean(typed = NearCachedStorage.class)
+@Requires(property = "storage.near-cache.enabled", value = "true")
+public class NearCachedStorage implements Readable<byte[]>, Removable, VersionedWritable, InvalidationSource.Listener {
+
+    private final NearCache cache;
+    private final Readable<byte[]> engine;
+    private final VersionedWritable engineWritable;
+    private final Removable engineRemovable;
+    private final InvalidationSource invalidations;
+
+    public NearCachedStorage(NearCacheConfig config,
+                             Readable<byte[]> engine,
+                             VersionedWritable engineWritable,
+                             Removable engineRemovable,
+                             @Nullable InvalidationSource invalidations,
+                             MeterRegistry registry) {
+        this.cache = new NearCache(config, registry);
+        this.engine = engine;
+        this.engineWritable = engineWritable;
+        this.engineRemovable = engineRemovable;
+        this.invalidations = invalidations;
+        if (Objects.nonNull(invalidations)) {
+            invalidations.addListener(this);
+        }
+    }
+
+    private boolean keepsReads(String key) {
+        return Objects.isNull(invalidations) || (invalidations.isListening() && invalidations.covers(key));
+    }
+
+    private static boolean consistent(ContextView context) {
+        return context.hasKey(Replicated.CONSISTENCY_TOKEN);
+    }
+
+    /**
+     * Drops the value of a key written without this store, such as by a server-side patch.
+     */
+    public void evict(String key) {
+        cache.invalidate(key);
+    }
+
+    @Override
+    public void invalidated(String key) {
+        cache.invalidate(key);
+    }
+
+    @Override
+    public void invalidatedAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public Mono<byte[]> get(String key) {
+        return Mono.deferContextual(context -> {
+            var cached = consistent(context) ? null : cache.get(key);
+            if (Objects.nonNull(cached)) {
+                return Mono.just(cached);
+            }
+            if (!keepsReads(key)) {
+                return engine.get(key);
+            }
+            var token = cache.reserve(key);
+            return engine.get(key)
+                    .doOnNext(value -> cache.fill(key, token, value))
+                    .switchIfEmpty(Mono.fromRunnable(() -> cache.abandon(key, token)))
+                    .doOnError(e -> cache.abandon(key, token));
+        });
+    }
+
+    @Override
+    public Flux<StoredValue<byte[]>> getAll(List<String> keys) {
+        return Flux.deferContextual(context -> {
+            var consistent = consistent(context);
+            var values = new ArrayList<StoredValue<byte[]>>(keys.size());
+            var missed = new ArrayList<String>();
+            for (var key : keys) {
+                var cached = consistent ? null : cache.get(key);
+                values.add(new StoredValue<>(key, cached));
+                if (Objects.isNull(cached)) {
+                    missed.add(key);
+                }
+            }
+            if (missed.isEmpty()) {
+                return Flux.fromIterable(values);
+            }
+            List<Object> tokens = missed.stream().map(key -> keepsReads(key) ? cache.reserve(key) : null).toList();
+            return engine.getAll(missed)
+                    .collectList()
+                    .doOnError(e -> {
+                        for (int i = 0; i < tokens.size(); i++) {
+                            if (Objects.nonNull(tokens.get(i))) {
+                                cache.abandon(missed.get(i), tokens.get(i));
+                            }
+                        }
+                    })
+                    .flatMapIterable(read -> {
+                        var next = 0;
+                        for (int i = 0; i < values.size(); i++) {
+                            if (values.get(i).exists()) {
+                                continue;
+                            }
+                            var stored = read.get(next);
+                            if (Objects.nonNull(tokens.get(next)) && stored.exists()) {
+                                cache.fill(stored.key(), tokens.get(next), stored.value());
+                            }
+                            values.set(i, stored);
+                            next++;
+                        }
+                        return values;
+                    });
+        });
+    }
+
+    private <T> Mono<T> evicting(String key, Mono<T> write) {
+        return Mono.defer(() -> {
+            cache.invalidate(key);
+            return write;
+        }).doFinally(signal -> cache.invalidate(key));
+    }
+
+    private Flux<WriteResult> evicting(List<String> keys, Flux<WriteResult> writes) {
+        return Flux.defer(() -> {
+            keys.forEach(cache::invalidate);
+            return writes;
+        }).doFinally(signal -> keys.forEach(cache::invalidate));
+    }
+
+    @Override
+    public Mono<Long> write(String key, Mode mode, @Nullable Long expectedVersion, byte[] payload) {
+        return evicting(key, engineWritable.write(key, mode, expectedVersion, payload));
+    }
+
+    @Override
+    public Flux<WriteResult> writeAll(List<Write> writes) {
+        return evicting(writes.stream().map(Write::key).toList(), engineWritable.writeAll(writes));
+    }
+
+    @Override
+    public Mono<Boolean> remove(String key, long expectedVersion) {
+        return evicting(key, engineWritable.remove(key, expectedVersion));
+    }
+
+    @Override
+    public Mono<Void> remove(String key) {
+        return evicting(key, engineRemovable.remove(key));
+    }
+
+    @Override
+    public Flux<WriteResult> removeAll(List<String> keys) {
+        return evicting(keys, engineRemovable.removeAll(keys));
+    }
+
+    public NearCache cache() {
+        return cache;
+    }
+}
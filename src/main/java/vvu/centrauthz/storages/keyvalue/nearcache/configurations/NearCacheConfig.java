@@ -0,0 +1,41 @@
+package vvu.centrauthz.storages.keyvalue.nearcache.configurations;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * In-process cache of stored values in front of the storage engine.
+ * At most {@code maxBytes} of values, split over {@code segments} LRU segments, are kept for
+ * at most {@code ttl} each. The TTL bounds how long a value changed behind the cache's back,
+ * such as while invalidations could not be received, can be served.
+ *
+ * <p>{@code trackedPrefixes} are the starts of the storage keys that are cached, such as
+ * {@code my-app:} for the resources of one application; the engine reports changes of those
+ * keys only. When empty, every key of {@code redis.namespace} is cached and tracked.
+ */
+@ConfigurationProperties("storage.near-cache")
+public record NearCacheConfig(boolean enabled,
+                              long maxBytes,
+                              Duration ttl,
+                              int segments,
+                              List<String> trackedPrefixes) {
+    public NearCacheConfig {
+        if (maxBytes <= 0) {
+            maxBytes = 64L * 1024 * 1024;
+        }
+        if (Objects.isNull(ttl) || ttl.isZero() || ttl.isNegative()) {
+            ttl = Duration.ofMinutes(1);
+        }
+        if (segments <= 0) {
+            segments = 16;
+        }
+        trackedPrefixes = Objects.isNull(trackedPrefixes) ? List.of() : List.copyOf(trackedPrefixes);
+    }
+
+    public NearCacheConfig() {
+        this(false, 64L * 1024 * 1024, Duration.ofMinutes(1), 16, List.of());
+    }
+}
@@ -0,0 +1,256 @@
+package vvu.centrauthz.storages.keyvalue.nearcache.utilities;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.core.annotation.Nullable;
+import vvu.centrauthz.storages.keyvalue.nearcache.configurations.NearCacheConfig;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * Stored values kept in the heap, bounded by their size in bytes and by a TTL.
+ *
+ * <p>Keys are split over segments, each an LRU map with its share of the byte limit and its
+ * own lock. A value read from storage is only kept if its key was not invalidated while it was
+ * read: the reader first {@link #reserve reserves} the key, and {@link #fill} keeps the value
+ * only if that reservation is still there.
+ *
+ * <p>Published meters:
+ * <ul>
+ *   <li>{@code storage.near-cache.requests} - lookups, by {@code result}: hit or miss</li>
+ *   <li>{@code storage.near-cache.evictions} - values dropped, by {@code cause}: size, expired or invalidated</li>
+ *   <li>{@code storage.near-cache.bytes} - bytes of the values kept, with an estimate of their keys</li>
+ *   <li>{@code storage.near-cache.entries} - values kept</li>
+ * </ul>
+ */
+public class NearCache {
+
+    // object headers, map node and the chars of a key of about 50 chars
+    static final int ENTRY_OVERHEAD = 160;
+
+    private final Segment[] segments;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter expirations;
+    private final Counter invalidations;
+
+    /**
+     * A value, or the reservation of a key being read when {@code value} is null.
+     */
+    private record Entry(@Nullable byte[] value, long expiresAt, Object token, long weight) {
+    }
+
+    private final class Segment {
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+        private final long maxWeight;
+        private long weight;
+        private int values;
+
+        private Segment(long maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+
+        // guarded by this
+        private void put(String key, Entry entry) {
+            var former = entries.put(key, entry);
+            weight += entry.weight();
+            values += Objects.nonNull(entry.value()) ? 1 : 0;
+            if (Objects.nonNull(former)) {
+                forget(former);
+            }
+        }
+
+        // guarded by this
+        @Nullable
+        private Entry remove(String key) {
+            var removed = entries.remove(key);
+            if (Objects.nonNull(removed)) {
+                forget(removed);
+            }
+            return removed;
+        }
+
+        private void forget(Entry entry) {
+            weight -= entry.weight();
+            values -= Objects.nonNull(entry.value()) ? 1 : 0;
+        }
+
+        // guarded by this
+        private void evict() {
+            var eldest = entries.entrySet().iterator();
+            while (weight > maxWeight && eldest.hasNext()) {
+                var entry = eldest.next().getValue();
+                eldest.remove();
+                forget(entry);
+                if (Objects.nonNull(entry.value())) {
+                    sizeEvictions.increment();
+                }
+            }
+        }
+    }
+
+    public NearCache(NearCacheConfig config, MeterRegistry registry) {
+        this(config, registry, System::nanoTime);
+    }
+
+    NearCache(NearCacheConfig config, MeterRegistry registry, LongSupplier clock) {
+        this.segments = new Segment[config.segments()];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(config.maxBytes() / segments.length);
+        }
+        this.ttlNanos = config.ttl().toNanos();
+        this.clock = clock;
+        this.hits = requestCounter(registry, "hit");
+        this.misses = requestCounter(registry, "miss");
+        this.sizeEvictions = evictionCounter(registry, "size");
+        this.expirations = evictionCounter(registry, "expired");
+        this.invalidations = evictionCounter(registry, "invalidated");
+        Gauge.builder("storage.near-cache.bytes", this, NearCache::bytes)
+                .description("Bytes of the values kept in the near-cache")
+                .register(registry);
+        Gauge.builder("storage.near-cache.entries", this, NearCache::size)
+                .description("Values kept in the near-cache")
+                .register(registry);
+    }
+
+    private static Counter requestCounter(MeterRegistry registry, String result) {
+        return Counter.builder("storage.near-cache.requests")
+                .description("Lookups in the near-cache")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static Counter evictionCounter(MeterRegistry registry, String cause) {
+        return Counter.builder("storage.near-cache.evictions")
+                .description("Values dropped from the near-cache")
+                .tag("cause", cause)
+                .register(registry);
+    }
+
+    private Segment segmentOf(String key) {
+        var hash = key.hashCode();
+        return segments[Math.floorMod(hash ^ (hash >>> 16), segments.length)];
+    }
+
+    private static long weightOf(String key, @Nullable byte[] value) {
+        return ENTRY_OVERHEAD + 2L * key.length() + (Objects.isNull(value) ? 0 : value.length);
+    }
+
+    /**
+     * @return the value of a key, or {@code null} when it is not kept or has expired
+     */
+    @Nullable
+    public byte[] get(String key) {
+        var segment = segmentOf(key);
+        synchronized (segment) {
+            var entry = segment.entries.get(key);
+            if (Objects.isNull(entry) || Objects.isNull(entry.value())) {
+                misses.increment();
+                return null;
+            }
+            if (clock.getAsLong() - entry.expiresAt() >= 0) {
+                segment.remove(key);
+                expirations.increment();
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.value();
+        }
+    }
+
+    /**
+     * Reserves a key about to be read from storage.
+     *
+     * @return the token to {@link #fill} the key with the value read, or to {@link #abandon} it
+     */
+    public Object reserve(String key) {
+        var token = new Object();
+        var segment = segmentOf(key);
+        synchronized (segment) {
+            segment.put(key, new Entry(null, 0, token, weightOf(key, null)));
+            segment.evict();
+        }
+        return token;
+    }
+
+    /**
+     * Keeps the value read for a key, unless the key was invalidated or reserved again since.
+     */
+    public void fill(String key, Object token, byte[] value) {
+        var segment = segmentOf(key);
+        synchronized (segment) {
+            var current = segment.entries.get(key);
+            if (Objects.isNull(current) || current.token() != token) {
+                return;
+            }
+            var entry = new Entry(value, clock.getAsLong() + ttlNanos, token, weightOf(key, value));
+            if (entry.weight() > segment.maxWeight) {
+                segment.remove(key);
+                return;
+            }
+            segment.put(key, entry);
+            segment.evict();
+        }
+    }
+
+    /**
+     * Drops the reservation of a key whose read failed.
+     */
+    public void abandon(String key, Object token) {
+        var segment = segmentOf(key);
+        synchronized (segment) {
+            var current = segment.entries.get(key);
+            if (Objects.nonNull(current) && current.token() == token) {
+                segment.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Drops the value of a key, and any read of it in progress.
+     */
+    public void invalidate(String key) {
+        var segment = segmentOf(key);
+        synchronized (segment) {
+            var removed = segment.remove(key);
+            if (Objects.nonNull(removed) && Objects.nonNull(removed.value())) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        for (var segment : segments) {
+            synchronized (segment) {
+                invalidations.increment(segment.values);
+                segment.entries.clear();
+                segment.weight = 0;
+                segment.values = 0;
+            }
+        }
+    }
+
+    public long bytes() {
+        return Arrays.stream(segments).mapToLong(segment -> {
+            synchronized (segment) {
+                return segment.weight;
+            }
+        }).sum();
+    }
+
+    public int size() {
+        return Arrays.stream(segments).mapToInt(segment -> {
+            synchronized (segment) {
+                return segment.values;
+            }
+        }).sum();
+    }
+}
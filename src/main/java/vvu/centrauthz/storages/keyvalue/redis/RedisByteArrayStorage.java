@@ -1,62 +1,282 @@
 package vvu.centrauthz.storages.keyvalue.redis;
 
-import io.lettuce.core.api.StatefulRedisConnection;
-import io.lettuce.core.support.BoundedAsyncPool;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.Limit;
+import io.lettuce.core.Range;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.micronaut.context.annotation.Primary;
-import io.micronaut.json.JsonMapper;
-import io.micronaut.json.tree.JsonNode;
+import io.micronaut.context.annotation.Requires;
 import jakarta.inject.Named;
 import jakarta.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import vvu.centrauthz.exceptions.EUtils;
+import reactor.util.context.ContextView;
+import vvu.centrauthz.exceptions.AppError;
+import vvu.centrauthz.exceptions.PreconditionFailedError;
 import vvu.centrauthz.models.Void;
+import vvu.centrauthz.storages.codecs.VersionEnvelope;
+import vvu.centrauthz.storages.interfaces.FieldStorable;
+import vvu.centrauthz.storages.interfaces.OrderedSetStorable;
+import vvu.centrauthz.storages.interfaces.PatchResult;
 import vvu.centrauthz.storages.interfaces.Readable;
 import vvu.centrauthz.storages.interfaces.Removable;
+import vvu.centrauthz.storages.interfaces.Replicated;
+import vvu.centrauthz.storages.interfaces.SectionPatchable;
+import vvu.centrauthz.storages.interfaces.StoredFields;
+import vvu.centrauthz.storages.interfaces.StoredValue;
+import vvu.centrauthz.storages.interfaces.VersionedWritable;
 import vvu.centrauthz.storages.interfaces.Writable;
+import vvu.centrauthz.storages.interfaces.WriteResult;
+import vvu.centrauthz.storages.keyvalue.redis.configurations.RedisCompressionConfig;
+import vvu.centrauthz.storages.keyvalue.redis.configurations.RedisVersionsConfig;
 import vvu.centrauthz.storages.keyvalue.redis.exceptions.RedisError;
-import vvu.centrauthz.storages.keyvalue.redis.utilities.AsyncConnContext;
-import vvu.centrauthz.utilities.JsonTools;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.RedisScript;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.RedisShard;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.RedisShards;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.ValueCompressor;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Singleton
+@Requires(property = "storage.engine", value = "redis", defaultValue = "redis")
 @Named("RedisByteArrayStorage")
 @Primary
 @Slf4j
-public class RedisByteArrayStorage implements Readable<JsonNode>, Writable<JsonNode>, Removable {
+public class RedisByteArrayStorage
+    implements Readable<byte[]>, Writable<byte[]>, Removable, SectionPatchable, VersionedWritable, FieldStorable,
+        Replicated, OrderedSetStorable {
 
-    private final JsonMapper mapper;
-    private final AsyncConnContext context;
+    private static final RedisScript PATCH_SECTIONS = RedisScript.fromResource("redis/patch-sections.lua");
+    private static final RedisScript VERSIONED_SET = RedisScript.fromResource("redis/versioned-set.lua");
+    private static final RedisScript VERSIONED_DEL = RedisScript.fromResource("redis/versioned-del.lua");
+    private static final RedisScript HASH_READ = RedisScript.fromResource("redis/hash-read.lua");
+    private static final RedisScript HASH_WRITE = RedisScript.fromResource("redis/hash-write.lua");
+    // hash field holding the version of a value stored as fields
+    private static final String VERSION_FIELD = "_v";
+    private static final String MODE_UPDATE = "update";
+    // replies of the scripts
+    private static final long NOT_IN_LAYOUT = -1;
+    private static final long VERSION_MISMATCH = -2;
+    private static final byte[] ANY_VERSION = new byte[0];
+    private static final byte[] WITH_ENVELOPE = {'1'};
+    private static final byte[] WITHOUT_ENVELOPE = new byte[0];
+
+    private final RedisShards shards;
+    private final ValueCompressor compressor;
+    // whether the scripts write the version envelope, or the version field of a hash, see RedisVersionsConfig
+    private final byte[] envelopeArg;
 
     public RedisByteArrayStorage(
-            JsonMapper mapper,
-            CompletionStage<BoundedAsyncPool<StatefulRedisConnection<byte[], byte[]>>> poolFuture) {
-        this.mapper = mapper;
-        this.context = new AsyncConnContext(poolFuture);
-    }
-
-    private CompletableFuture<JsonNode> getFuture(String key) {
-        return context.execute(command ->
-            command.get(key.getBytes(StandardCharsets.UTF_8))
-            .toCompletableFuture()
-            .exceptionallyCompose( e -> CompletableFuture.failedFuture(new RedisError(e)))
-            .thenApply( v -> {
-                if (Objects.isNull(v)) {
-                    throw EUtils.createNotFoundError(key);
-                }
-                return JsonTools.fromBytes(mapper, v);
-            }));
+            RedisShards shards,
+            RedisCompressionConfig compressionConfig,
+            RedisVersionsConfig versionsConfig,
+            MeterRegistry meterRegistry) {
+        this.shards = shards;
+        this.compressor = new ValueCompressor(compressionConfig, meterRegistry);
+        this.envelopeArg = versionsConfig.enabled() ? WITH_ENVELOPE : WITHOUT_ENVELOPE;
+    }
+
+    /**
+     * The application a key belongs to: keys are {@code <applicationKey>:<id>}.
+     */
+    static String applicationOf(String key) {
+        return RedisShards.hashTagOf(key);
+    }
+
+    /**
+     * The consistency token a read must honour, see {@link Replicated}.
+     */
+    private static String tokenOf(ContextView context) {
+        return context.getOrDefault(CONSISTENCY_TOKEN, null);
+    }
+
+    private static <R> CompletableFuture<R> redisError(Throwable e) {
+        var cause = e instanceof CompletionException ? e.getCause() : e;
+        return CompletableFuture.failedFuture(cause instanceof RedisError ? cause : new RedisError(cause));
+    }
+
+    /**
+     * Runs a command on the node of a key.
+     */
+    private <R> CompletableFuture<R> execute(
+            String key, Function<RedisAsyncCommands<byte[], byte[]>, CompletableFuture<R>> action) {
+        return shards.of(key).execute(action);
+    }
+
+    /**
+     * Runs a command on the node of a key, once the key has been moved there if it is moving.
+     * Commands that depend on the current value or version of a key must go through here.
+     */
+    private <R> CompletableFuture<R> executeSettled(
+            String key, Function<RedisAsyncCommands<byte[], byte[]>, CompletableFuture<R>> action) {
+        return shards.settle(key)
+            .exceptionallyCompose(RedisByteArrayStorage::redisError)
+            .thenCompose(moved -> shards.of(key).execute(action));
+    }
+
+    /**
+     * Runs a delete on the node of a key, once the key has been moved there if it is moving and
+     * a tombstone keeps moves under way from bringing it back.
+     */
+    private <R> CompletableFuture<R> executeDelete(
+            String key, Function<RedisAsyncCommands<byte[], byte[]>, CompletableFuture<R>> action) {
+        return shards.settle(key)
+            .thenCompose(moved -> shards.markDeleted(List.of(key)))
+            .exceptionallyCompose(RedisByteArrayStorage::redisError)
+            .thenCompose(marked -> shards.of(key).execute(action));
+    }
+
+    /**
+     * Issues one command per key, pipelined on each node, and returns their futures in key order.
+     * Fails as a whole when a node cannot run its pipeline.
+     *
+     * @param settle whether moving keys must be moved to their node first
+     */
+    private <R> CompletableFuture<List<CompletableFuture<R>>> pipeline(
+            List<String> keys,
+            boolean settle,
+            BiFunction<RedisAsyncCommands<byte[], byte[]>, Integer, CompletionStage<R>> command) {
+        var settled = settle ? shards.settleAll(keys) : CompletableFuture.completedFuture(null);
+        return settled.thenCompose(v -> pipelineOn(keys, Function.identity(), command));
+    }
+
+    /**
+     * Same as {@link #pipeline}, on the node picked by {@code route} for the node of each key.
+     */
+    private <R> CompletableFuture<List<CompletableFuture<R>>> pipelineOn(
+            List<String> keys,
+            Function<RedisShard, RedisShard> route,
+            BiFunction<RedisAsyncCommands<byte[], byte[]>, Integer, CompletionStage<R>> command) {
+        List<CompletableFuture<R>> results = new ArrayList<>(keys.size());
+        keys.forEach(k -> results.add(null));
+        var batches = shards.groupByShard(keys).entrySet().stream()
+            .map(group -> {
+                var indexes = group.getValue();
+                return route.apply(group.getKey())
+                    .<R>pipeline(c -> indexes.stream().map(i -> command.apply(c, i)).toList())
+                    .thenAccept(futures -> {
+                        for (int j = 0; j < indexes.size(); j++) {
+                            results.set(indexes.get(j), futures.get(j));
+                        }
+                    });
+            })
+            .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(batches).thenApply(done -> results);
+    }
+
+    private static byte[] versionArg(Long version) {
+        return Objects.isNull(version) ? ANY_VERSION : Long.toString(version).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static PreconditionFailedError versionMismatch(String key, Long expectedVersion) {
+        return new PreconditionFailedError(String.format("Version of %s is not %s", key, expectedVersion));
+    }
+
+    /**
+     * Compresses a value to store. A versioned value is compressed behind its envelope, where
+     * the scripts still find its version.
+     */
+    private byte[] compress(String key, byte[] value) {
+        var envelope = VersionEnvelope.of(value);
+        if (!envelope.isPresent()) {
+            return compressor.compress(applicationOf(key), value);
+        }
+        var offset = envelope.payloadOffset();
+        var payload = compressor.compress(applicationOf(key), Arrays.copyOfRange(value, offset, value.length));
+        var stored = Arrays.copyOf(value, offset + payload.length);
+        System.arraycopy(payload, 0, stored, offset, payload.length);
+        return stored;
+    }
+
+    /**
+     * Undoes the compression of a stored value, keeping its version envelope in front.
+     */
+    private byte[] restore(String key, byte[] stored) {
+        var envelope = VersionEnvelope.of(stored);
+        if (!envelope.isPresent()) {
+            return compressor.decompress(applicationOf(key), stored);
+        }
+        var offset = envelope.payloadOffset();
+        if (!ValueCompressor.isCompressed(stored, offset)) {
+            return stored;
+        }
+        var payload = compressor.decompress(applicationOf(key), Arrays.copyOfRange(stored, offset, stored.length));
+        var restored = Arrays.copyOf(stored, offset + payload.length);
+        System.arraycopy(payload, 0, restored, offset, payload.length);
+        return restored;
+    }
+
+    /**
+     * Reads a key from its node, or a replica of it, and from its previous node on a miss
+     * while it is moving.
+     */
+    private CompletableFuture<byte[]> fetch(String key, String token) {
+        var encoded = encodeKey(key);
+        return shards.of(key).reader(token).get(encoded)
+            .thenCompose(v -> Objects.nonNull(v) || !shards.moving(key)
+                ? CompletableFuture.completedFuture(v)
+                : shards.settle(key).thenCompose(moved -> moved
+                    ? shards.of(key).get(encoded)
+                    : CompletableFuture.<byte[]>completedFuture(null)))
+            .exceptionallyCompose(RedisByteArrayStorage::redisError);
+    }
+
+    /**
+     * @return a future completed with the value, or {@code null} on a miss
+     */
+    private CompletableFuture<byte[]> getFuture(String key, String token) {
+        return fetch(key, token).thenApply(v -> Objects.isNull(v) ? null : restore(key, v));
+    }
+
+    /**
+     * One MGET per node; the values come back in key order, {@code null} for a miss.
+     */
+    private CompletableFuture<byte[][]> getAllFuture(List<String> keys, String token) {
+        var values = new byte[keys.size()][];
+        var reads = shards.groupByShard(keys).entrySet().stream()
+            .map(group -> {
+                var indexes = group.getValue();
+                var encodedKeys = indexes.stream()
+                    .map(i -> encodeKey(keys.get(i)))
+                    .toArray(byte[][]::new);
+                return group.getKey().reader(token).<List<KeyValue<byte[], byte[]>>>execute(command ->
+                        command.mget(encodedKeys).toCompletableFuture())
+                    .thenAccept(found -> {
+                        for (int j = 0; j < indexes.size(); j++) {
+                            values[indexes.get(j)] = found.get(j).getValueOrElse(null);
+                        }
+                    });
+            })
+            .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(reads)
+            .thenApply(v -> values)
+            .exceptionallyCompose(RedisByteArrayStorage::redisError);
     }
 
-    private CompletableFuture<Void> saveFuture(String key, JsonNode node) {
+    private CompletableFuture<Void> saveFuture(String key, byte[] object) {
         try {
-            var value = JsonTools.toBytes(mapper, node);
-            return context.execute(command ->
-                command.set(key.getBytes(StandardCharsets.UTF_8), value)
+            var value = compress(key, object);
+            return execute(key, command ->
+                command.set(encodeKey(key), value)
                 .toCompletableFuture()
                 .exceptionallyCompose( e -> CompletableFuture.failedFuture(new RedisError(e)))
                 .thenApply( v -> Void.INSTANCE));
@@ -65,10 +285,121 @@ public class RedisByteArrayStorage implements Readable<JsonNode>, Writable<JsonN
         }
     }
 
+    /**
+     * SET with a condition; Redis answers nil instead of OK when the condition does not hold.
+     */
+    private CompletableFuture<Boolean> conditionalSaveFuture(String key, byte[] object, SetArgs condition) {
+        try {
+            var value = compress(key, object);
+            return executeSettled(key, command ->
+                command.set(encodeKey(key), value, condition)
+                .toCompletableFuture()
+                .exceptionallyCompose( e -> CompletableFuture.failedFuture(new RedisError(e)))
+                .thenApply(Objects::nonNull));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<Long> patchSectionsFuture(
+            String key, byte[] header, Collection<Integer> tags, byte[] sections, Long expectedVersion) {
+        var dropped = tags.stream()
+            .map(String::valueOf)
+            .collect(Collectors.joining(","))
+            .getBytes(StandardCharsets.UTF_8);
+        return executeSettled(key, command ->
+            PATCH_SECTIONS.<Long>run(
+                command, ScriptOutputType.INTEGER, new byte[][]{encodeKey(key)},
+                header, dropped, sections, versionArg(expectedVersion), envelopeArg)
+            .exceptionallyCompose( e -> CompletableFuture.failedFuture(new RedisError(e))));
+    }
+
+    private CompletableFuture<Long> versionedSetFuture(
+            RedisAsyncCommands<byte[], byte[]> command, String key, Mode mode, Long expectedVersion, byte[] payload) {
+        var value = compressor.compress(applicationOf(key), payload);
+        return VERSIONED_SET.<Long>run(
+                command, ScriptOutputType.INTEGER, new byte[][]{encodeKey(key)},
+                modeArg(mode).getBytes(StandardCharsets.US_ASCII),
+                versionArg(expectedVersion),
+                value,
+                envelopeArg)
+            .exceptionallyCompose( e -> CompletableFuture.failedFuture(new RedisError(e)));
+    }
+
+    private CompletableFuture<List<Object>> hashReadFuture(
+            RedisAsyncCommands<byte[], byte[]> command, String key, Collection<String> fields) {
+        var names = fields.stream().map(RedisByteArrayStorage::encodeField).toArray(byte[][]::new);
+        return HASH_READ.<List<Object>>run(command, ScriptOutputType.MULTI, new byte[][]{encodeKey(key)}, names)
+            .exceptionallyCompose( e -> CompletableFuture.failedFuture(new RedisError(e)));
+    }
+
+    /**
+     * Decodes a reply of the hash read script: field/value pairs, one whole value, or nothing.
+     */
+    private StoredFields toStoredFields(String key, List<Object> reply) {
+        if (reply.isEmpty()) {
+            return StoredFields.missing(key);
+        }
+        if (reply.size() == 1) {
+            return StoredFields.whole(key, restore(key, (byte[]) reply.getFirst()));
+        }
+        var fields = new HashMap<String, byte[]>(reply.size());
+        var version = 0L;
+        for (int i = 0; i + 1 < reply.size(); i += 2) {
+            var name = new String((byte[]) reply.get(i), StandardCharsets.UTF_8);
+            var value = (byte[]) reply.get(i + 1);
+            if (VERSION_FIELD.equals(name)) {
+                version = Long.parseLong(new String(value, StandardCharsets.US_ASCII));
+            } else {
+                fields.put(name, value);
+            }
+        }
+        return new StoredFields(key, fields, version, null);
+    }
+
+    private CompletableFuture<Long> hashWriteFuture(
+            RedisAsyncCommands<byte[], byte[]> command,
+            String key,
+            String mode,
+            Long expectedVersion,
+            Map<String, byte[]> fields,
+            Collection<String> removed) {
+        var args = new ArrayList<byte[]>(4 + removed.size() + 2 * fields.size());
+        args.add(mode.getBytes(StandardCharsets.US_ASCII));
+        args.add(versionArg(expectedVersion));
+        args.add(envelopeArg);
+        args.add(Integer.toString(removed.size()).getBytes(StandardCharsets.US_ASCII));
+        removed.forEach(name -> args.add(encodeField(name)));
+        fields.forEach((name, value) -> {
+            args.add(encodeField(name));
+            args.add(value);
+        });
+        return HASH_WRITE.<Long>run(
+                command, ScriptOutputType.INTEGER, new byte[][]{encodeKey(key)}, args.toArray(byte[][]::new))
+            .exceptionallyCompose( e -> CompletableFuture.failedFuture(new RedisError(e)));
+    }
+
+    /**
+     * The new version replied by a conditional write of a batch, or its failure.
+     */
+    private static long checked(String key, Mode mode, Long expectedVersion, long result) {
+        if (result == VERSION_MISMATCH) {
+            throw versionMismatch(key, expectedVersion);
+        }
+        if (result == 0) {
+            throw VersionedWritable.unmet(key, mode);
+        }
+        return result;
+    }
+
+    private static String modeArg(Mode mode) {
+        return mode.name().toLowerCase(Locale.ROOT);
+    }
+
     private CompletableFuture<Void> removeFuture(String key) {
         try {
-            return context.execute(command ->
-                command.del(key.getBytes(StandardCharsets.UTF_8))
+            return executeDelete(key, command ->
+                command.del(encodeKey(key))
                     .toCompletableFuture()
                     .exceptionallyCompose( e -> CompletableFuture.failedFuture(new RedisError(e)))
                     .thenApply( v -> Void.INSTANCE));
@@ -77,9 +408,77 @@ public class RedisByteArrayStorage implements Readable<JsonNode>, Writable<JsonN
         }
     }
 
+    /**
+     * The Redis key of a storage key, in the configured namespace.
+     */
+    private byte[] encodeKey(String key) {
+        return shards.keys().encode(key);
+    }
+
+    private static byte[] encodeField(String name) {
+        return name.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static <R> Flux<WriteResult> toResults(List<String> keys, List<CompletableFuture<R>> futures) {
+        return Flux.fromStream(IntStream.range(0, keys.size()).mapToObj(i -> {
+            var future = futures.get(i);
+            var error = future.isCompletedExceptionally() ? future.exceptionNow() : null;
+            return new WriteResult(
+                keys.get(i),
+                Objects.isNull(error) || error instanceof AppError ? error : new RedisError(error));
+        }));
+    }
+
+    @Override
+    public Flux<WriteResult> saveAll(List<StoredValue<byte[]>> values) {
+        if (values.isEmpty()) {
+            return Flux.empty();
+        }
+        var keys = values.stream().map(StoredValue::key).toList();
+        var encoded = values.stream().map(v -> compress(v.key(), v.value())).toList();
+        // a plain SET needs no move: a copy left on the previous node is dropped when settled
+        return Mono.fromFuture(() -> this.<String>pipeline(keys, false, (command, i) ->
+                command.set(encodeKey(keys.get(i)), encoded.get(i))))
+            .onErrorMap(e -> e instanceof RedisError ? e : new RedisError(e))
+            .flatMapMany(futures -> toResults(keys, futures));
+    }
+
+    @Override
+    public Flux<WriteResult> removeAll(List<String> keys) {
+        if (keys.isEmpty()) {
+            return Flux.empty();
+        }
+        return Mono.fromFuture(() -> shards.settleAll(keys)
+                .thenCompose(settled -> shards.markDeleted(keys))
+                .thenCompose(marked -> this.<Long>pipeline(keys, false, (command, i) ->
+                    command.del(encodeKey(keys.get(i))))))
+            .onErrorMap(e -> e instanceof RedisError ? e : new RedisError(e))
+            .flatMapMany(futures -> toResults(keys, futures));
+    }
+
+    @Override
+    public Mono<byte[]> get(String key) {
+        return Mono.deferContextual(context -> Mono.fromFuture(getFuture(key, tokenOf(context))));
+    }
+
     @Override
-    public Mono<JsonNode> get(String key) {
-        return Mono.fromFuture(getFuture(key));
+    public Flux<StoredValue<byte[]>> getAll(List<String> keys) {
+        if (keys.isEmpty()) {
+            return Flux.empty();
+        }
+        return Flux.deferContextual(context -> {
+            var token = tokenOf(context);
+            return Mono.fromFuture(() -> getAllFuture(keys, token))
+                .flatMapMany(values -> Flux.range(0, keys.size()).concatMap(i -> {
+                    var key = keys.get(i);
+                    if (Objects.isNull(values[i]) && shards.moving(key)) {
+                        return Mono.fromFuture(() -> fetch(key, token))
+                            .map(v -> new StoredValue<>(key, restore(key, v)))
+                            .defaultIfEmpty(new StoredValue<>(key, null));
+                    }
+                    return Mono.just(new StoredValue<>(key, Objects.isNull(values[i]) ? null : restore(key, values[i])));
+                }));
+        });
     }
 
     @Override
@@ -88,7 +487,207 @@ public class RedisByteArrayStorage implements Readable<JsonNode>, Writable<JsonN
     }
 
     @Override
-    public Mono<Void> save(String key, JsonNode object) {
+    public Mono<Void> save(String key, byte[] object) {
         return Mono.fromFuture(saveFuture(key, object));
     }
+
+    @Override
+    public Mono<PatchResult> patchSections(
+            String key, byte[] header, Collection<Integer> tags, byte[] sections, Long expectedVersion) {
+        return Mono.fromFuture(() -> patchSectionsFuture(key, header, tags, sections, expectedVersion))
+            .map(result -> {
+                if (result == VERSION_MISMATCH) {
+                    throw versionMismatch(key, expectedVersion);
+                }
+                if (result == NOT_IN_LAYOUT) {
+                    return PatchResult.UNSUPPORTED;
+                }
+                return result > 0 ? PatchResult.PATCHED : PatchResult.NOT_FOUND;
+            });
+    }
+
+    @Override
+    public Mono<Long> write(String key, Mode mode, Long expectedVersion, byte[] payload) {
+        return Mono.fromFuture(() -> executeSettled(key, command ->
+                versionedSetFuture(command, key, mode, expectedVersion, payload)))
+            .map(result -> {
+                if (result == VERSION_MISMATCH) {
+                    throw versionMismatch(key, expectedVersion);
+                }
+                return result;
+            });
+    }
+
+    @Override
+    public Flux<WriteResult> writeAll(List<Write> writes) {
+        if (writes.isEmpty()) {
+            return Flux.empty();
+        }
+        var keys = writes.stream().map(Write::key).toList();
+        return Mono.fromFuture(() -> this.<Long>pipeline(keys, true, (command, i) -> {
+                var write = writes.get(i);
+                return versionedSetFuture(command, write.key(), write.mode(), write.expectedVersion(), write.payload())
+                    .thenApply(result -> checked(write.key(), write.mode(), write.expectedVersion(), result));
+            }))
+            .onErrorMap(e -> e instanceof RedisError ? e : new RedisError(e))
+            .flatMapMany(futures -> toResults(keys, futures));
+    }
+
+    @Override
+    public Mono<Boolean> remove(String key, long expectedVersion) {
+        return Mono.fromFuture(() -> executeDelete(key, command ->
+                VERSIONED_DEL.<Long>run(
+                    command, ScriptOutputType.INTEGER, new byte[][]{encodeKey(key)}, versionArg(expectedVersion))
+                .exceptionallyCompose( e -> CompletableFuture.failedFuture(new RedisError(e)))))
+            .map(result -> {
+                if (result == VERSION_MISMATCH) {
+                    throw versionMismatch(key, expectedVersion);
+                }
+                return result > 0;
+            });
+    }
+
+    @Override
+    public Mono<Boolean> create(String key, byte[] object) {
+        return Mono.fromFuture(conditionalSaveFuture(key, object, SetArgs.Builder.nx()));
+    }
+
+    @Override
+    public Mono<Boolean> replace(String key, byte[] object) {
+        return Mono.fromFuture(conditionalSaveFuture(key, object, SetArgs.Builder.xx()));
+    }
+
+    @Override
+    public Mono<StoredFields> readFields(String key, Collection<String> fields) {
+        return Mono.deferContextual(context -> Mono.fromFuture(() -> shards.of(key).reader(tokenOf(context))
+                .execute(command -> hashReadFuture(command, key, fields))))
+            .map(reply -> toStoredFields(key, reply))
+            .flatMap(read -> read.exists() || !shards.moving(key)
+                ? Mono.just(read)
+                : Mono.fromFuture(() -> executeSettled(key, command -> hashReadFuture(command, key, fields)))
+                    .map(reply -> toStoredFields(key, reply)));
+    }
+
+    @Override
+    public Flux<StoredFields> readAllFields(List<String> keys) {
+        if (keys.isEmpty()) {
+            return Flux.empty();
+        }
+        return Mono.deferContextual(context -> Mono.fromFuture(() -> this.<List<Object>>pipelineOn(
+                keys, shard -> shard.reader(tokenOf(context)), (command, i) ->
+                hashReadFuture(command, keys.get(i), List.of()))))
+            .onErrorMap(e -> e instanceof RedisError ? e : new RedisError(e))
+            .flatMapMany(futures -> Flux.range(0, keys.size()).concatMap(i -> {
+                var future = futures.get(i);
+                if (future.isCompletedExceptionally()) {
+                    return Mono.<StoredFields>error(new RedisError(future.exceptionNow()));
+                }
+                var read = toStoredFields(keys.get(i), future.resultNow());
+                return read.exists() || !shards.moving(read.key()) ? Mono.just(read) : readFields(read.key(), List.of());
+            }));
+    }
+
+    @Override
+    public Mono<Long> writeFields(String key, Mode mode, Long expectedVersion, Map<String, byte[]> fields) {
+        return Mono.fromFuture(() -> executeSettled(key, command ->
+                hashWriteFuture(command, key, modeArg(mode), expectedVersion, fields, List.of())))
+            .map(result -> {
+                if (result == VERSION_MISMATCH) {
+                    throw versionMismatch(key, expectedVersion);
+                }
+                return result;
+            });
+    }
+
+    @Override
+    public Mono<PatchResult> updateFields(
+            String key, Long expectedVersion, Map<String, byte[]> changed, Collection<String> removed) {
+        return Mono.fromFuture(() -> executeSettled(key, command ->
+                hashWriteFuture(command, key, MODE_UPDATE, expectedVersion, changed, removed)))
+            .map(result -> {
+                if (result == VERSION_MISMATCH) {
+                    throw versionMismatch(key, expectedVersion);
+                }
+                if (result == NOT_IN_LAYOUT) {
+                    return PatchResult.UNSUPPORTED;
+                }
+                return result > 0 ? PatchResult.PATCHED : PatchResult.NOT_FOUND;
+            });
+    }
+
+    @Override
+    public Flux<WriteResult> writeAllFields(List<FieldsWrite> writes) {
+        if (writes.isEmpty()) {
+            return Flux.empty();
+        }
+        var keys = writes.stream().map(FieldsWrite::key).toList();
+        return Mono.fromFuture(() -> this.<Long>pipeline(keys, true, (command, i) -> {
+                var write = writes.get(i);
+                return hashWriteFuture(
+                        command, write.key(), modeArg(write.mode()), write.expectedVersion(), write.fields(), List.of())
+                    .thenApply(result -> checked(write.key(), write.mode(), write.expectedVersion(), result));
+            }))
+            .onErrorMap(e -> e instanceof RedisError ? e : new RedisError(e))
+            .flatMapMany(futures -> toResults(keys, futures));
+    }
+
+    @Override
+    public Mono<String> consistencyToken(String key) {
+        var shard = shards.of(key);
+        if (!shard.hasReplicas()) {
+            return Mono.empty();
+        }
+        return Mono.fromFuture(shard::replicationOffset)
+            .onErrorMap(e -> e instanceof RedisError ? e : new RedisError(e))
+            .map(offset -> offset.token());
+    }
+
+    /**
+     * Ordered sets are sorted sets whose members all score 0, so that they sort by their bytes.
+     */
+    @Override
+    public Mono<Void> addMembers(List<StoredValue<String>> members) {
+        return updateMembers(members, (command, member) -> command.zadd(encodeKey(member.key()), 0, encodeField(member.value())));
+    }
+
+    @Override
+    public Mono<Void> removeMembers(List<StoredValue<String>> members) {
+        return updateMembers(members, (command, member) -> command.zrem(encodeKey(member.key()), encodeField(member.value())));
+    }
+
+    /**
+     * Pipelines one command per member, once moving sets are on their node: a set written on
+     * its new node before being moved would replace the old one when it is.
+     */
+    private Mono<Void> updateMembers(
+            List<StoredValue<String>> members,
+            BiFunction<RedisAsyncCommands<byte[], byte[]>, StoredValue<String>, CompletionStage<Long>> command) {
+        if (members.isEmpty()) {
+            return Mono.just(Void.INSTANCE);
+        }
+        var keys = members.stream().map(StoredValue::key).toList();
+        return Mono.fromFuture(() -> this.<Long>pipeline(keys, true, (c, i) -> command.apply(c, members.get(i))))
+            .onErrorMap(e -> e instanceof RedisError ? e : new RedisError(e))
+            .flatMapMany(futures -> toResults(keys, futures))
+            .filter(result -> !result.isSuccess())
+            .next()
+            .flatMap(failed -> Mono.<Void>error(failed.error()))
+            .defaultIfEmpty(Void.INSTANCE);
+    }
+
+    @Override
+    public Flux<String> members(String key, String after, int limit) {
+        var from = Objects.isNull(after)
+            ? Range.Boundary.<byte[]>unbounded()
+            : Range.Boundary.excluding(encodeField(after));
+        var range = Range.from(from, Range.Boundary.<byte[]>unbounded());
+        Function<RedisAsyncCommands<byte[], byte[]>, CompletableFuture<List<byte[]>>> read = command ->
+            command.zrangebylex(encodeKey(key), range, Limit.create(0, limit)).toCompletableFuture();
+        return Flux.deferContextual(context -> Mono.fromFuture(() -> shards.moving(key)
+                    ? executeSettled(key, read)
+                    : shards.of(key).reader(tokenOf(context)).execute(read))
+                .onErrorMap(e -> e instanceof RedisError ? e : new RedisError(e))
+                .flatMapIterable(Function.identity()))
+            .map(member -> new String(member, StandardCharsets.UTF_8));
+    }
 }
@@ -0,0 +1,29 @@
+package vvu.centrauthz.storages.keyvalue.redis.configurations;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Auto-batching of single-key reads.
+ * Concurrent GETs are collected for at most {@code window} or until {@code maxBatchSize}
+ * keys are pending, then sent to Redis as one MGET.
+ */
+@ConfigurationProperties("redis.batching")
+public record RedisBatchingConfig(boolean enabled,
+                                  int maxBatchSize,
+                                  Duration window) {
+    public RedisBatchingConfig {
+        if (maxBatchSize <= 0) {
+            maxBatchSize = 64;
+        }
+        if (Objects.isNull(window)) {
+            window = Duration.ofNanos(200_000);
+        }
+    }
+
+    public RedisBatchingConfig() {
+        this(false, 64, Duration.ofNanos(200_000));
+    }
+}
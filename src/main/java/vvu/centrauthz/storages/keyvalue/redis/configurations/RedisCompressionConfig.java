@@ -0,0 +1,27 @@
+package vvu.centrauthz.storages.keyvalue.redis.configurations;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+/**
+ * Compression of large values.
+ * Values of at least {@code threshold} bytes are deflated at {@code level} (1 = fastest) before
+ * they are written. Compressed values are always readable, whatever {@code enabled} says, so
+ * compression can be turned off again without losing data.
+ */
+@ConfigurationProperties("redis.compression")
+public record RedisCompressionConfig(boolean enabled,
+                                     int threshold,
+                                     int level) {
+    public RedisCompressionConfig {
+        if (threshold <= 0) {
+            threshold = 8192;
+        }
+        if (level <= 0 || level > 9) {
+            level = 1;
+        }
+    }
+
+    public RedisCompressionConfig() {
+        this(false, 8192, 1);
+    }
+}
@@ -6,25 +6,58 @@ import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.codec.ByteArrayCodec;
 import io.lettuce.core.codec.RedisCodec;
 import io.lettuce.core.support.AsyncConnectionPoolSupport;
-import io.lettuce.core.support.BoundedAsyncPool;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.context.annotation.Bean;
 import io.micronaut.context.annotation.Factory;
 import io.micronaut.context.annotation.Replaces;
+import io.micronaut.context.annotation.Requires;
 import io.micronaut.context.annotation.Value;
 import jakarta.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
+import vvu.centrauthz.storages.keyvalue.nearcache.configurations.NearCacheConfig;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.AsyncConnContext;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.RedisClientTracking;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.CommandContext;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.ConnectionPool;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.MultiplexedConnContext;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.RedisShard;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.RedisKeyEncoder;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.RedisShards;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Factory
+@Requires(property = "storage.engine", value = "redis", defaultValue = "redis")
 @Slf4j
 public class RedisConnectionFactory {
 
+    static final String DEFAULT_SHARD = "default";
+
     private final String redisUri;
     private final RedisPoolConfig config;
+    private final RedisPoolSizingConfig sizingConfig;
+    private final RedisShardingConfig shardingConfig;
+    private final RedisReplicaConfig replicaConfig;
+    private final RedisKeyEncoder keys;
 
-    public RedisConnectionFactory(@Value("${redis.uri}") String redisUri, RedisPoolConfig config) {
+    public RedisConnectionFactory(
+            @Value("${redis.uri}") String redisUri,
+            @Value("${redis.namespace:}") String namespace,
+            RedisPoolConfig config,
+            RedisPoolSizingConfig sizingConfig,
+            RedisShardingConfig shardingConfig,
+            RedisReplicaConfig replicaConfig) {
         this.redisUri = redisUri;
         this.config = config;
+        this.sizingConfig = sizingConfig;
+        this.shardingConfig = shardingConfig;
+        this.replicaConfig = replicaConfig;
+        this.keys = new RedisKeyEncoder(namespace);
     }
 
 
@@ -34,12 +67,106 @@ public class RedisConnectionFactory {
         return ByteArrayCodec.INSTANCE;
     }
 
+    /**
+     * The Redis nodes storage commands go to: the one at {@code redis.uri}, or the nodes of
+     * {@code redis.sharding} when it is enabled.
+     */
+    @Singleton
+    @Bean(preDestroy = "close")
+    public RedisShards redisShards(
+        RedisCodec<byte[], byte[]> codec,
+        RedisClient client,
+        RedisBatchingConfig batchingConfig,
+        MeterRegistry registry) {
+        if (config.mode() == RedisPoolMode.MULTIPLEXED) {
+            log.info("Redis storage uses {} shared connections per node", config.sharedConnections());
+        }
+        if (!shardingConfig.enabled()) {
+            var primary = shard(DEFAULT_SHARD, RedisURI.create(redisUri), codec, client, batchingConfig, registry);
+            var replicas = replicaConfig.uris().stream()
+                .map(RedisURI::create)
+                .map(uri -> shard(shardName(uri), uri, codec, client, batchingConfig, registry))
+                .toList();
+            if (!replicas.isEmpty()) {
+                log.info("Redis storage reads from replicas {}", replicas);
+            }
+            return RedisShards.single(primary.withReplicas(replicas, replicaConfig.pollInterval()), keys);
+        }
+        if (!replicaConfig.uris().isEmpty()) {
+            log.warn("redis.replicas is ignored when redis.sharding is enabled; reads go to the primaries");
+        }
+        if (shardingConfig.nodes().isEmpty()) {
+            throw new IllegalStateException("redis.sharding.nodes must list at least one node");
+        }
 
+        var shards = new LinkedHashMap<String, RedisShard>();
+        for (var node : shardingConfig.previousNodes()) {
+            addShard(shards, node, codec, client, batchingConfig, registry);
+        }
+        for (var node : shardingConfig.nodes()) {
+            addShard(shards, node, codec, client, batchingConfig, registry);
+        }
+        var current = shardingConfig.nodes().stream().map(n -> shards.get(shardName(RedisURI.create(n)))).toList();
+        var previous = shardingConfig.previousNodes().stream().map(n -> shards.get(shardName(RedisURI.create(n)))).toList();
+        log.info("Redis storage is sharded over {}{}", current,
+            previous.isEmpty() ? "" : ", moving keys from " + previous);
+        return new RedisShards(current, previous, shardingConfig.virtualNodes(), keys);
+    }
+
+    /**
+     * Invalidations for the near-cache, tracked on every node writes go to: the one at
+     * {@code redis.uri}, or the current and previous nodes of {@code redis.sharding}, for the
+     * keys of {@code storage.near-cache.tracked-prefixes}.
+     */
     @Singleton
-    public CompletionStage<BoundedAsyncPool<StatefulRedisConnection<byte[], byte[]>>> poolFuture(
-        RedisCodec<byte[], byte[]> codec, RedisClient client) {
-        return AsyncConnectionPoolSupport.createBoundedObjectPoolAsync(
-            () -> client.connectAsync(codec, RedisURI.create(redisUri)), config.toBoundedPoolConfig());
+    @Bean(preDestroy = "close")
+    @Requires(property = "storage.near-cache.enabled", value = "true")
+    public RedisClientTracking redisClientTracking(RedisClient client, NearCacheConfig nearCacheConfig) {
+        var uris = shardingConfig.enabled()
+            ? Stream.concat(shardingConfig.nodes().stream(), shardingConfig.previousNodes().stream()).distinct().toList()
+            : List.of(redisUri);
+        return new RedisClientTracking(client, uris.stream().map(RedisURI::create).toList(), keys,
+            nearCacheConfig.trackedPrefixes());
+    }
+
+    /**
+     * Nodes are named {@code host:port}; the name places a node on the ring, so it must not
+     * change when only credentials or options of the URI do.
+     */
+    static String shardName(RedisURI uri) {
+        return uri.getHost() + ":" + uri.getPort();
+    }
+
+    private void addShard(
+        Map<String, RedisShard> shards,
+        String node,
+        RedisCodec<byte[], byte[]> codec,
+        RedisClient client,
+        RedisBatchingConfig batchingConfig,
+        MeterRegistry registry) {
+        var uri = RedisURI.create(node);
+        shards.computeIfAbsent(shardName(uri), name -> shard(name, uri, codec, client, batchingConfig, registry));
+    }
+
+    /**
+     * Connections to one node, either pooled or shared depending on {@code redis.pool.mode}.
+     */
+    private RedisShard shard(
+        String name,
+        RedisURI uri,
+        RedisCodec<byte[], byte[]> codec,
+        RedisClient client,
+        RedisBatchingConfig batchingConfig,
+        MeterRegistry registry) {
+        Supplier<CompletionStage<StatefulRedisConnection<byte[], byte[]>>> connector =
+            () -> client.connectAsync(codec, uri);
+        var maxTotal = sizingConfig.enabled() ? Math.max(config.maxActive(), sizingConfig.maxActive()) : config.maxActive();
+        var poolFuture = AsyncConnectionPoolSupport.createBoundedObjectPoolAsync(connector, config.toBoundedPoolConfig(maxTotal));
+        var pool = new ConnectionPool(name, poolFuture, maxTotal, config.maxActive(), config.maxWait(), registry);
+        CommandContext context = config.mode() == RedisPoolMode.MULTIPLEXED
+            ? new MultiplexedConnContext(connector, config.sharedConnections())
+            : new AsyncConnContext(pool);
+        return new RedisShard(name, pool, context, batchingConfig, registry);
     }
 
 }
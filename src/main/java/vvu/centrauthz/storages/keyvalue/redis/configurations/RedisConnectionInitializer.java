@@ -1,27 +1,42 @@
 package vvu.centrauthz.storages.keyvalue.redis.configurations;
 
-import io.lettuce.core.api.StatefulRedisConnection;
-import io.lettuce.core.support.BoundedAsyncPool;
+import io.micronaut.context.annotation.Requires;
 import io.micronaut.context.event.ApplicationEventListener;
 import io.micronaut.context.event.StartupEvent;
 import jakarta.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import vvu.centrauthz.storages.interfaces.Warmable;
 import vvu.centrauthz.storages.keyvalue.redis.utilities.AsyncConnContext;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.RedisShard;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.RedisShards;
 
-import java.util.concurrent.CompletionStage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
+/**
+ * Opens the connections to every node at startup: {@code minIdle} concurrent PINGs through the
+ * pool, and one through the connections commands use in multiplexed mode.
+ */
 @Slf4j
 @Singleton
-public class RedisConnectionInitializer implements ApplicationEventListener<StartupEvent> {
+@Requires(property = "storage.engine", value = "redis", defaultValue = "redis")
+public class RedisConnectionInitializer implements ApplicationEventListener<StartupEvent>, Warmable {
 
     private final RedisPoolConfig config;
-    private final AsyncConnContext context;
+    private final List<RedisShard> nodes;
     private static final Long NANOS = 1000000L;
+    private CompletableFuture<Void> initialized;
 
-    public RedisConnectionInitializer(RedisPoolConfig config, CompletionStage<BoundedAsyncPool<StatefulRedisConnection<byte[], byte[]>>> poolFuture) {
+    public RedisConnectionInitializer(RedisPoolConfig config, RedisShards shards) {
         this.config = config;
-        context = new AsyncConnContext(poolFuture)
-                .onComplete( t -> log.info("Redis connection initialized in {} millis", t /NANOS) );
+        this.nodes = Stream.concat(shards.all().stream(), shards.previous().stream())
+                .flatMap(shard -> shard.withItsReplicas().stream())
+                .distinct()
+                .toList();
     }
 
     /**
@@ -31,9 +46,39 @@ public class RedisConnectionInitializer implements ApplicationEventListener<Star
      */
     @Override
     public void onApplicationEvent(StartupEvent event) {
-        for (int i = 0; i < config.minIdle(); i++) {
-            context.execute( command -> command.ping().toCompletableFuture());
+        initialize();
+    }
+
+    @Override
+    public Mono<Void> warmUp() {
+        return Mono.fromFuture(this::initialize, true);
+    }
+
+    private synchronized CompletableFuture<Void> initialize() {
+        if (Objects.isNull(initialized)) {
+            var pings = new ArrayList<CompletableFuture<String>>();
+            for (var node : nodes) {
+                var pool = node.pool();
+                if (Objects.nonNull(pool)) {
+                    var context = new AsyncConnContext(pool)
+                            .onComplete(t -> log.debug("Redis connection to {} initialized in {} millis", node.name(), t / NANOS));
+                    for (int i = 0; i < config.minIdle(); i++) {
+                        pings.add(context.execute(command -> command.ping().toCompletableFuture()));
+                    }
+                }
+                pings.add(node.execute(command -> command.ping().toCompletableFuture()));
+            }
+            var start = System.nanoTime();
+            initialized = CompletableFuture.allOf(pings.toArray(CompletableFuture[]::new))
+                    .whenComplete((v, e) -> {
+                        if (Objects.isNull(e)) {
+                            log.info("Redis connections to {} initialized in {} millis", nodes, (System.nanoTime() - start) / NANOS);
+                        } else {
+                            log.warn("Redis connections to {} could not be initialized", nodes, e);
+                        }
+                    });
         }
+        return initialized;
     }
 
     /**
@@ -4,20 +4,45 @@ import io.lettuce.core.support.BoundedPoolConfig;
 import io.micronaut.context.annotation.ConfigurationProperties;
 
 import java.time.Duration;
+import java.util.Objects;
 
 @ConfigurationProperties("redis.pool")
 public record RedisPoolConfig(boolean enabled,
                               int maxActive,
                               int maxIdle,
                               int minIdle,
-                              Duration maxWait) {
+                              Duration maxWait,
+                              RedisPoolMode mode,
+                              int sharedConnections) {
+    public RedisPoolConfig {
+        if (Objects.isNull(mode)) {
+            mode = RedisPoolMode.POOLED;
+        }
+        if (sharedConnections <= 0) {
+            sharedConnections = 2;
+        }
+        if (Objects.isNull(maxWait) || maxWait.isNegative()) {
+            maxWait = Duration.ofMillis(2000);
+        }
+    }
+
     public RedisPoolConfig() {
-        this(true, 10, 5, 3, Duration.ofMillis(2000));
+        this(true, 10, 5, 3, Duration.ofMillis(2000), RedisPoolMode.POOLED, 2);
     }
 
     public BoundedPoolConfig toBoundedPoolConfig() {
+        return toBoundedPoolConfig(maxActive);
+    }
+
+    /**
+     * The Lettuce pool for a limit of connections in use that may grow up to {@code maxTotal}.
+     * Waiting for a connection, up to {@code maxWait}, is done by
+     * {@link vvu.centrauthz.storages.keyvalue.redis.utilities.ConnectionPool}, as Lettuce's
+     * pool fails at once when exhausted.
+     */
+    public BoundedPoolConfig toBoundedPoolConfig(int maxTotal) {
         return BoundedPoolConfig.builder()
-            .maxTotal(maxActive)
+            .maxTotal(Math.max(maxActive, maxTotal))
             .maxIdle(maxIdle)
             .minIdle(minIdle)
             .build();
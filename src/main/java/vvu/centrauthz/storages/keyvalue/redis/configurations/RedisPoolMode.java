@@ -0,0 +1,16 @@
+package vvu.centrauthz.storages.keyvalue.redis.configurations;
+
+/**
+ * How storage commands get a Redis connection.
+ */
+public enum RedisPoolMode {
+    /**
+     * Acquire a connection from the bounded pool for every command.
+     */
+    POOLED,
+
+    /**
+     * Share a small fixed set of connections between all commands.
+     */
+    MULTIPLEXED
+}
@@ -0,0 +1,81 @@
+package vvu.centrauthz.storages.keyvalue.redis.configurations;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.event.ApplicationEventListener;
+import io.micronaut.context.event.StartupEvent;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.ConnectionPool;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.RedisShard;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.RedisShards;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Grows and shrinks the limit of connections in use of every node, see {@link RedisPoolSizingConfig}.
+ */
+@Slf4j
+@Singleton
+@Requires(property = "storage.engine", value = "redis", defaultValue = "redis")
+@Requires(property = "redis.pool.adaptive.enabled", value = "true")
+public class RedisPoolSizer implements ApplicationEventListener<StartupEvent> {
+
+    private final RedisPoolSizingConfig config;
+    private final List<ConnectionPool> pools;
+    private Disposable sizing;
+
+    public RedisPoolSizer(RedisPoolSizingConfig config, RedisShards shards) {
+        this.config = config;
+        this.pools = Stream.concat(shards.all().stream(), shards.previous().stream())
+                .flatMap(shard -> shard.withItsReplicas().stream())
+                .distinct()
+                .map(RedisShard::pool)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public void onApplicationEvent(StartupEvent event) {
+        pools.forEach(pool -> pool.resize(Math.clamp(pool.limit(), config.minActive(), config.maxActive())));
+        sizing = Flux.interval(config.interval())
+                .onBackpressureDrop()
+                .subscribe(tick -> pools.forEach(this::adjust));
+    }
+
+    @PreDestroy
+    public void close() {
+        if (Objects.nonNull(sizing)) {
+            sizing.dispose();
+        }
+    }
+
+    void adjust(ConnectionPool pool) {
+        var usage = pool.usage(config.percentile());
+        var limit = nextLimit(usage, config);
+        if (limit != usage.limit()) {
+            log.info("Limit of Redis connections to {} moved from {} to {}: acquire wait of {} µs at p{} over {} acquires",
+                    pool.name(), usage.limit(), pool.resize(limit), usage.waitNanos() / 1000,
+                    Math.round(config.percentile() * 100), usage.acquires());
+        }
+    }
+
+    /**
+     * The limit of connections in use after an interval with the given usage.
+     */
+    static int nextLimit(ConnectionPool.Usage usage, RedisPoolSizingConfig config) {
+        var limit = usage.limit();
+        var saturated = usage.peakActive() >= limit;
+        if (saturated && usage.waitNanos() > config.growAbove().toNanos()) {
+            return Math.min(limit + config.step(), config.maxActive());
+        }
+        if (!saturated && usage.waitNanos() <= config.shrinkBelow().toNanos()) {
+            return Math.max(limit - 1, config.minActive());
+        }
+        return limit;
+    }
+}
@@ -0,0 +1,52 @@
+package vvu.centrauthz.storages.keyvalue.redis.configurations;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Adaptive sizing of the connection pools of {@code redis.pool}.
+ * Every {@code interval}, the limit of connections in use of each node grows by {@code step}
+ * when the acquire wait at {@code percentile} was above {@code growAbove} while every connection
+ * was in use, and shrinks by one when that wait was at most {@code shrinkBelow} and some
+ * connections were never used. The limit starts at {@code redis.pool.max-active} and stays
+ * within {@code minActive} and {@code maxActive}.
+ */
+@ConfigurationProperties("redis.pool.adaptive")
+public record RedisPoolSizingConfig(boolean enabled,
+                                    int minActive,
+                                    int maxActive,
+                                    double percentile,
+                                    Duration growAbove,
+                                    Duration shrinkBelow,
+                                    Duration interval,
+                                    int step) {
+    public RedisPoolSizingConfig {
+        if (minActive <= 0) {
+            minActive = 2;
+        }
+        if (maxActive < minActive) {
+            maxActive = Math.max(minActive, 32);
+        }
+        if (percentile <= 0 || percentile > 1) {
+            percentile = 0.99;
+        }
+        if (Objects.isNull(growAbove)) {
+            growAbove = Duration.ofMillis(2);
+        }
+        if (Objects.isNull(shrinkBelow)) {
+            shrinkBelow = Duration.ofNanos(200_000);
+        }
+        if (Objects.isNull(interval) || interval.isZero() || interval.isNegative()) {
+            interval = Duration.ofSeconds(10);
+        }
+        if (step <= 0) {
+            step = 2;
+        }
+    }
+
+    public RedisPoolSizingConfig() {
+        this(false, 2, 32, 0.99, Duration.ofMillis(2), Duration.ofNanos(200_000), Duration.ofSeconds(10), 2);
+    }
+}
@@ -0,0 +1,31 @@
+package vvu.centrauthz.storages.keyvalue.redis.configurations;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Read replicas of the node at {@code redis.uri}.
+ * Reads go to a replica, round-robin, unless they carry a consistency token that no replica
+ * has caught up with, in which case they go to the primary. How far each replica has caught
+ * up is polled every {@code pollInterval}, so a token written just before a read is usually
+ * served by the primary for up to that long.
+ */
+@ConfigurationProperties("redis.replicas")
+public record RedisReplicaConfig(List<String> uris,
+                                 Duration pollInterval) {
+    public RedisReplicaConfig {
+        if (Objects.isNull(uris)) {
+            uris = List.of();
+        }
+        if (Objects.isNull(pollInterval) || pollInterval.isZero() || pollInterval.isNegative()) {
+            pollInterval = Duration.ofMillis(100);
+        }
+    }
+
+    public RedisReplicaConfig() {
+        this(List.of(), Duration.ofMillis(100));
+    }
+}
@@ -0,0 +1,74 @@
+package vvu.centrauthz.storages.keyvalue.redis.configurations;
+
+import io.lettuce.core.KeyScanCursor;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.context.event.ApplicationEventListener;
+import io.micronaut.context.event.StartupEvent;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.RedisShard;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.RedisShards;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Moves, in the background, every key whose node changed with the last change of
+ * {@code redis.sharding.nodes}, so that {@code previous-nodes} can be dropped afterwards.
+ * Each previous node is scanned once; keys touched by requests meanwhile are moved by them.
+ */
+@Slf4j
+@Singleton
+@Requires(property = "storage.engine", value = "redis", defaultValue = "redis")
+@Requires(property = "redis.sharding.rebalance", value = "true")
+public class RedisShardRebalancer implements ApplicationEventListener<StartupEvent> {
+
+    // storage keys are <applicationKey>:<uuid>; anything else on the node is left alone
+    private static final String KEY_PATTERN = "*:????????-????-????-????-????????????";
+    private static final int SCAN_COUNT = 500;
+
+    private final RedisShards shards;
+
+    public RedisShardRebalancer(RedisShards shards) {
+        this.shards = shards;
+    }
+
+    @Override
+    public void onApplicationEvent(StartupEvent event) {
+        if (!shards.rebalancing()) {
+            log.info("Nothing to rebalance: redis.sharding.previous-nodes is empty");
+            return;
+        }
+        for (var shard : shards.previous()) {
+            drain(shard, ScanCursor.INITIAL, 0)
+                .whenComplete((moved, e) -> {
+                    if (Objects.nonNull(e)) {
+                        log.error("Rebalancing keys off {} failed", shard.name(), e);
+                    } else {
+                        log.info("Rebalancing keys off {} done, {} moved", shard.name(), moved);
+                    }
+                });
+        }
+    }
+
+    private CompletableFuture<Long> drain(RedisShard shard, ScanCursor cursor, long moved) {
+        var args = ScanArgs.Builder.matches(shards.keys().pattern(KEY_PATTERN)).limit(SCAN_COUNT);
+        return shard.<KeyScanCursor<byte[]>>execute(command -> command.scan(cursor, args).toCompletableFuture())
+            .thenCompose(page -> {
+                var moves = page.getKeys().stream()
+                    .map(shards.keys()::decode)
+                    .filter(k -> shards.previousOf(k) == shard)
+                    .map(shards::settle)
+                    .toList();
+                return CompletableFuture.allOf(moves.toArray(CompletableFuture[]::new))
+                    .thenCompose(v -> {
+                        var total = moved + moves.stream().filter(CompletableFuture::join).count();
+                        return page.isFinished()
+                            ? CompletableFuture.completedFuture(total)
+                            : drain(shard, page, total);
+                    });
+            });
+    }
+}
@@ -0,0 +1,41 @@
+package vvu.centrauthz.storages.keyvalue.redis.configurations;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Client-side sharding of the keyspace over several Redis nodes.
+ * When enabled, {@code redis.uri} is not used for storage; each key goes to one of
+ * {@code nodes}, picked on a consistent-hash ring with {@code virtualNodes} points per node.
+ * The application key of the storage key is hashed, so all resources of one application
+ * live on the same node.
+ *
+ * <p>To add or remove nodes online, set {@code previousNodes} to the node list before the
+ * change. Keys whose node changed are then read from their new node first and from the old
+ * one on a miss, and moved over on first access. With {@code rebalance}, a background task
+ * also moves every such key; drop {@code previousNodes} once it has finished.
+ */
+@ConfigurationProperties("redis.sharding")
+public record RedisShardingConfig(boolean enabled,
+                                  List<String> nodes,
+                                  List<String> previousNodes,
+                                  int virtualNodes,
+                                  boolean rebalance) {
+    public RedisShardingConfig {
+        if (Objects.isNull(nodes)) {
+            nodes = List.of();
+        }
+        if (Objects.isNull(previousNodes)) {
+            previousNodes = List.of();
+        }
+        if (virtualNodes <= 0) {
+            virtualNodes = 160;
+        }
+    }
+
+    public RedisShardingConfig() {
+        this(false, List.of(), List.of(), 160, false);
+    }
+}
@@ -0,0 +1,20 @@
+package vvu.centrauthz.storages.keyvalue.redis.configurations;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+/**
+ * Versions of stored values, written in an envelope in front of each value, or in the
+ * {@code _v} field of a value stored as a hash.
+ * Without {@code enabled}, values are written bare, at version 0: If-Match and the
+ * compare-and-set of read-modify-write PATCHes then detect no concurrent write. It is on by
+ * default. Nodes that predate versions cannot read the envelope, so a deployment upgrading from
+ * them turns it off until every node runs a version that reads it. Enveloped values are always
+ * readable, whatever {@code enabled} says.
+ */
+@ConfigurationProperties("redis.versions")
+public record RedisVersionsConfig(boolean enabled) {
+
+    public RedisVersionsConfig() {
+        this(true);
+    }
+}
@@ -2,62 +2,94 @@ package vvu.centrauthz.storages.keyvalue.redis.utilities;
 
 import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.api.async.RedisAsyncCommands;
-import io.lettuce.core.support.BoundedAsyncPool;
-import lombok.Builder;
 
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
-public class AsyncConnContext {
+public class AsyncConnContext implements CommandContext {
 
-    private final CompletionStage<BoundedAsyncPool<StatefulRedisConnection<byte[], byte[]>>> poolFuture;
+    private final ConnectionPool pool;
     private Consumer<Long> consumer;
-    public AsyncConnContext(CompletionStage<BoundedAsyncPool<StatefulRedisConnection<byte[], byte[]>>> poolFuture) {
-        this.poolFuture = poolFuture;
+    public AsyncConnContext(ConnectionPool pool) {
+        this.pool = pool;
     }
 
-    private static void release(Context context, Long start, Consumer<Long> consumer) {
-        context.pool.release(context.connection)
+    /**
+     * Gives the connection back, then reports the nanoseconds since {@code start} to the consumer.
+     */
+    private void release(StatefulRedisConnection<byte[], byte[]> connection, long start) {
+        pool.release(connection)
                 .whenComplete((v, e) -> {
-                    var end = System.nanoTime() - start;
+                    var elapsed = System.nanoTime() - start;
                     Optional
                             .ofNullable(consumer)
-                            .ifPresent(c -> c.accept(end));
+                            .ifPresent(c -> c.accept(elapsed));
                 });
     }
 
+    /**
+     * Reports, in nanoseconds, how long each command took from asking for its connection to
+     * giving it back.
+     */
     public AsyncConnContext onComplete(Consumer<Long> consumer) {
         this.consumer = consumer;
         return this;
     }
 
-    private CompletableFuture<Context> acquire() {
-        var builder = Context.builder();
-        return poolFuture.thenCompose(pool ->
-                        pool.acquire().thenApply(
-                                conn ->
-                                        builder.connection(conn).pool(pool).build()))
-                .toCompletableFuture();
-    }
-
+    @Override
     public <R> CompletableFuture<R> execute(Function<RedisAsyncCommands<byte[], byte[]>, CompletableFuture<R>> action) {
-        var start = System.currentTimeMillis();
-        return acquire()
-                .thenCompose(context ->
+        var start = System.nanoTime();
+        return pool.acquire()
+                .thenCompose(connection ->
                         action
-                                .apply(context.connection.async())
-                                .whenComplete((res, err) -> release(context, start, consumer)))
-                .toCompletableFuture();
+                                .apply(connection.async())
+                                .whenComplete((res, err) -> release(connection, start)));
     }
 
-    @Builder(toBuilder = true)
-    private record Context(
-            BoundedAsyncPool<StatefulRedisConnection<byte[], byte[]>> pool,
-            StatefulRedisConnection<byte[], byte[]> connection
-    ) {
+    /**
+     * Runs several commands on one pooled connection and sends them to Redis in a single flush.
+     * The returned future completes once every command has completed, successfully or not.
+     *
+     * @param commands issues the commands and returns their futures
+     * @return the futures of the issued commands, all of them done
+     */
+    public <R> CompletableFuture<List<CompletableFuture<R>>> pipeline(
+            Function<RedisAsyncCommands<byte[], byte[]>, List<? extends CompletionStage<R>>> commands) {
+        var start = System.nanoTime();
+        return pool.acquire().thenCompose(connection -> {
+            List<CompletableFuture<R>> futures = List.of();
+            RuntimeException failure = null;
+
+            connection.setAutoFlushCommands(false);
+            try {
+                futures = commands.apply(connection.async())
+                        .stream()
+                        .map(CompletionStage::toCompletableFuture)
+                        .toList();
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                connection.flushCommands();
+                connection.setAutoFlushCommands(true);
+                // a command issued by a callback between the two calls above would wait forever
+                connection.flushCommands();
+            }
+
+            if (Objects.nonNull(failure)) {
+                release(connection, start);
+                return CompletableFuture.failedFuture(failure);
+            }
+
+            var issued = futures;
+            return CompletableFuture.allOf(issued.toArray(CompletableFuture[]::new))
+                    .handle((v, e) -> issued)
+                    .whenComplete((v, e) -> release(connection, start));
+        });
     }
 
 }
@@ -0,0 +1,22 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import io.lettuce.core.api.async.RedisAsyncCommands;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Runs asynchronous Redis commands on a connection chosen by the implementation.
+ *
+ * <p>Commands that need exclusive use of a connection (MULTI/EXEC, blocking commands,
+ * manual command flushing) must go through {@link AsyncConnContext}, which hands out
+ * pooled connections. Shared connections are only safe for independent commands.
+ */
+public interface CommandContext extends AutoCloseable {
+
+    <R> CompletableFuture<R> execute(Function<RedisAsyncCommands<byte[], byte[]>, CompletableFuture<R>> action);
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,295 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.support.BoundedAsyncPool;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The pooled connections to one Redis node, behind a limit on the connections in use.
+ *
+ * <p>Lettuce's pool fails an acquire at once when all its connections are in use. Here, an
+ * acquire above the limit waits, first come first served, for a connection to be released, and
+ * fails with a {@link TimeoutException} after the max wait. The limit starts at
+ * {@code redis.pool.max-active} and can be moved by {@link #resize} up to the size the pool was
+ * built with.
+ *
+ * <p>Published meters, tagged with the {@code shard} name:
+ * <ul>
+ *   <li>{@code redis.pool.acquire.wait} - time from asking for a connection to getting it</li>
+ *   <li>{@code redis.pool.timeouts} - acquires that gave up after the max wait</li>
+ *   <li>{@code redis.pool.active} - connections in use</li>
+ *   <li>{@code redis.pool.idle} - connections idle in the pool</li>
+ *   <li>{@code redis.pool.pending} - acquires waiting for a connection</li>
+ *   <li>{@code redis.pool.max.active} - the current limit of connections in use</li>
+ * </ul>
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    private static final int MAX_SAMPLES = 4096;
+
+    private final String name;
+    private final CompletionStage<BoundedAsyncPool<StatefulRedisConnection<byte[], byte[]>>> poolFuture;
+    private final int maxLimit;
+    private final long maxWaitNanos;
+    private final Timer acquireWait;
+    private final Counter timeouts;
+
+    private final Object lock = new Object();
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private int limit;
+    private int active;
+    // busiest moment and acquire waits since the last call of usage()
+    private int peakActive;
+    private final long[] waits = new long[MAX_SAMPLES];
+    private int sampled;
+
+    /**
+     * Usage of the pool over an interval.
+     *
+     * @param limit the limit of connections in use at its end
+     * @param peakActive the most connections in use at once
+     * @param acquires the connections handed out
+     * @param waitNanos the acquire wait at the requested percentile, 0 without acquires
+     */
+    public record Usage(int limit, int peakActive, int acquires, long waitNanos) {
+    }
+
+    private record Waiter(CompletableFuture<Boolean> granted) {
+    }
+
+    /**
+     * @param poolFuture the Lettuce pool, whose max total bounds {@link #resize}
+     * @param limit the connections that may be in use at first
+     * @param maxWait how long an acquire waits for a connection before it fails
+     */
+    public ConnectionPool(String name,
+                          CompletionStage<BoundedAsyncPool<StatefulRedisConnection<byte[], byte[]>>> poolFuture,
+                          int maxLimit,
+                          int limit,
+                          Duration maxWait,
+                          MeterRegistry registry) {
+        this.name = Objects.requireNonNull(name);
+        this.poolFuture = Objects.requireNonNull(poolFuture);
+        this.maxLimit = maxLimit;
+        this.limit = Math.clamp(limit, 1, maxLimit);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.acquireWait = Timer.builder("redis.pool.acquire.wait")
+                .description("Time from asking for a pooled connection to getting it")
+                .tag("shard", name)
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(registry);
+        this.timeouts = Counter.builder("redis.pool.timeouts")
+                .description("Acquires that gave up waiting for a pooled connection")
+                .tag("shard", name)
+                .register(registry);
+        Gauge.builder("redis.pool.active", this, ConnectionPool::active)
+                .description("Pooled connections in use")
+                .tag("shard", name)
+                .register(registry);
+        Gauge.builder("redis.pool.idle", this, ConnectionPool::idle)
+                .description("Pooled connections idle")
+                .tag("shard", name)
+                .register(registry);
+        Gauge.builder("redis.pool.pending", this, ConnectionPool::pending)
+                .description("Acquires waiting for a pooled connection")
+                .tag("shard", name)
+                .register(registry);
+        Gauge.builder("redis.pool.max.active", this, ConnectionPool::limit)
+                .description("Limit of pooled connections in use")
+                .tag("shard", name)
+                .register(registry);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Takes a connection, waiting for one to be released when the limit is reached.
+     *
+     * @return a future completed with the connection, to give back with {@link #release}
+     */
+    public CompletableFuture<StatefulRedisConnection<byte[], byte[]>> acquire() {
+        var start = System.nanoTime();
+        Waiter waiter = null;
+        synchronized (lock) {
+            if (active < limit && waiters.isEmpty()) {
+                take();
+            } else {
+                waiter = new Waiter(new CompletableFuture<>());
+                waiters.addLast(waiter);
+            }
+        }
+        if (Objects.isNull(waiter)) {
+            return connect(start);
+        }
+        var queued = waiter;
+        Schedulers.parallel().schedule(() -> expire(queued), maxWaitNanos, TimeUnit.NANOSECONDS);
+        return queued.granted().thenCompose(granted -> connect(start));
+    }
+
+    private CompletableFuture<StatefulRedisConnection<byte[], byte[]>> connect(long start) {
+        return poolFuture.thenCompose(BoundedAsyncPool::acquire)
+                .toCompletableFuture()
+                .whenComplete((connection, e) -> {
+                    if (Objects.nonNull(e)) {
+                        giveBack();
+                    } else {
+                        recordWait(System.nanoTime() - start);
+                    }
+                });
+    }
+
+    private void expire(Waiter waiter) {
+        boolean expired;
+        synchronized (lock) {
+            expired = waiters.remove(waiter);
+        }
+        if (expired) {
+            timeouts.increment();
+            waiter.granted().completeExceptionally(new TimeoutException(String.format(
+                    "No connection to %s within %d ms", name, TimeUnit.NANOSECONDS.toMillis(maxWaitNanos))));
+        }
+    }
+
+    /**
+     * Gives a connection back to the pool.
+     */
+    public CompletableFuture<Void> release(StatefulRedisConnection<byte[], byte[]> connection) {
+        return poolFuture.thenCompose(pool -> pool.release(connection))
+                .toCompletableFuture()
+                .whenComplete((v, e) -> giveBack());
+    }
+
+    // guarded by lock
+    private void take() {
+        active++;
+        peakActive = Math.max(peakActive, active);
+    }
+
+    /**
+     * Hands the slot of a released connection to the first waiter, unless the limit was lowered.
+     */
+    private void giveBack() {
+        Waiter next = null;
+        synchronized (lock) {
+            if (active <= limit) {
+                next = waiters.pollFirst();
+            }
+            if (Objects.isNull(next)) {
+                active--;
+            }
+        }
+        if (Objects.nonNull(next)) {
+            next.granted().complete(true);
+        }
+    }
+
+    private void recordWait(long nanos) {
+        acquireWait.record(nanos, TimeUnit.NANOSECONDS);
+        synchronized (lock) {
+            waits[sampled % MAX_SAMPLES] = nanos;
+            sampled++;
+        }
+    }
+
+    /**
+     * Moves the limit of connections in use, within 1 and the size of the pool. A lower limit
+     * lets the connections in use above it finish; a higher one serves the waiters at once.
+     *
+     * @return the new limit
+     */
+    public int resize(int newLimit) {
+        var granted = new ArrayDeque<Waiter>();
+        int resized;
+        synchronized (lock) {
+            limit = Math.clamp(newLimit, 1, maxLimit);
+            while (active < limit && !waiters.isEmpty()) {
+                take();
+                granted.add(waiters.pollFirst());
+            }
+            resized = limit;
+        }
+        granted.forEach(w -> w.granted().complete(true));
+        return resized;
+    }
+
+    /**
+     * The usage since the previous call, which starts a new interval.
+     *
+     * @param percentile the percentile of acquire waits to report, between 0 and 1
+     */
+    public Usage usage(double percentile) {
+        long[] samples;
+        int acquires;
+        int peak;
+        int current;
+        synchronized (lock) {
+            acquires = sampled;
+            samples = Arrays.copyOf(waits, Math.min(sampled, MAX_SAMPLES));
+            peak = peakActive;
+            current = limit;
+            sampled = 0;
+            peakActive = active;
+        }
+        if (samples.length == 0) {
+            return new Usage(current, peak, 0, 0);
+        }
+        Arrays.sort(samples);
+        var index = (int) Math.ceil(percentile * samples.length) - 1;
+        return new Usage(current, peak, acquires, samples[Math.clamp(index, 0, samples.length - 1)]);
+    }
+
+    public int limit() {
+        synchronized (lock) {
+            return limit;
+        }
+    }
+
+    public int maxLimit() {
+        return maxLimit;
+    }
+
+    public int active() {
+        synchronized (lock) {
+            return active;
+        }
+    }
+
+    public int pending() {
+        synchronized (lock) {
+            return waiters.size();
+        }
+    }
+
+    public int idle() {
+        var future = poolFuture.toCompletableFuture();
+        if (!future.isDone() || future.isCompletedExceptionally()) {
+            return 0;
+        }
+        return future.join().getIdle();
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            waiters.forEach(w -> w.granted().completeExceptionally(new IllegalStateException("Pool closed")));
+            waiters.clear();
+        }
+        poolFuture.thenAccept(BoundedAsyncPool::closeAsync);
+    }
+}
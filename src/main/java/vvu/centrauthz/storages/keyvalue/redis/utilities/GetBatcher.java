@@ -0,0 +1,123 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import io.lettuce.core.KeyValue;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+import vvu.centrauthz.storages.keyvalue.redis.configurations.RedisBatchingConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces concurrent single-key GETs into one MGET.
+ *
+ * <p>A batch is sent as soon as it holds {@code maxBatchSize} keys, or when the first key
+ * of the batch has waited for the configured window, whichever comes first. Each caller
+ * gets its own future, completed with the value for its key or {@code null} on a miss.
+ *
+ * <p>Published meters:
+ * <ul>
+ *   <li>{@code redis.batch.size} - number of keys per MGET</li>
+ *   <li>{@code redis.batch.wait} - latency added by waiting for the batch to be sent</li>
+ * </ul>
+ */
+public class GetBatcher {
+
+    private final CommandContext context;
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private final DistributionSummary batchSize;
+    private final Timer batchWait;
+
+    private final Object lock = new Object();
+    private List<PendingGet> pending = new ArrayList<>();
+    private Disposable scheduledFlush;
+
+    public GetBatcher(CommandContext context, RedisBatchingConfig config, MeterRegistry registry) {
+        this.context = Objects.requireNonNull(context);
+        this.maxBatchSize = config.maxBatchSize();
+        this.windowNanos = config.window().toNanos();
+        this.batchSize = DistributionSummary.builder("redis.batch.size")
+                .description("Number of keys sent in one batched MGET")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(registry);
+        this.batchWait = Timer.builder("redis.batch.wait")
+                .description("Time a GET waited for its batch to be sent")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(registry);
+    }
+
+    /**
+     * Queues a GET for the next batch.
+     *
+     * @param key the key to read
+     * @return a future completed with the value, or {@code null} when the key does not exist
+     */
+    public CompletableFuture<byte[]> get(byte[] key) {
+        var request = new PendingGet(key, new CompletableFuture<>(), System.nanoTime());
+        List<PendingGet> ready = null;
+
+        synchronized (lock) {
+            pending.add(request);
+            if (pending.size() >= maxBatchSize) {
+                ready = drain();
+            } else if (Objects.isNull(scheduledFlush)) {
+                scheduledFlush = Schedulers.parallel().schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        if (Objects.nonNull(ready)) {
+            dispatch(ready);
+        }
+        return request.future();
+    }
+
+    private List<PendingGet> drain() {
+        var ready = pending;
+        pending = new ArrayList<>();
+        if (Objects.nonNull(scheduledFlush)) {
+            scheduledFlush.dispose();
+            scheduledFlush = null;
+        }
+        return ready;
+    }
+
+    private void flush() {
+        List<PendingGet> ready;
+        synchronized (lock) {
+            scheduledFlush = null;
+            ready = drain();
+        }
+        if (!ready.isEmpty()) {
+            dispatch(ready);
+        }
+    }
+
+    private void dispatch(List<PendingGet> batch) {
+        var now = System.nanoTime();
+        batchSize.record(batch.size());
+        batch.forEach(r -> batchWait.record(now - r.enqueuedAt(), TimeUnit.NANOSECONDS));
+
+        var keys = batch.stream().map(PendingGet::key).toArray(byte[][]::new);
+        context.execute(command -> command.mget(keys).toCompletableFuture())
+                .whenComplete((values, err) -> {
+                    if (Objects.nonNull(err)) {
+                        batch.forEach(r -> r.future().completeExceptionally(err));
+                        return;
+                    }
+                    for (int i = 0; i < batch.size(); i++) {
+                        KeyValue<byte[], byte[]> kv = values.get(i);
+                        batch.get(i).future().complete(kv.getValueOrElse(null));
+                    }
+                });
+    }
+
+    private record PendingGet(byte[] key, CompletableFuture<byte[]> future, long enqueuedAt) {
+    }
+}
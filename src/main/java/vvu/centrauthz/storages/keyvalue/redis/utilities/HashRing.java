@@ -0,0 +1,77 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A consistent-hash ring: every node is placed on the ring at {@code virtualNodes} points,
+ * and a key belongs to the node of the first point at or after the hash of the key.
+ * Adding or removing a node only moves the keys of the points it takes or gives back.
+ *
+ * @param <T> the node type
+ */
+public final class HashRing<T> {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long[] points;
+    private final List<T> owners;
+
+    /**
+     * @param nodes        the nodes by name; the names alone decide where a node is placed
+     * @param virtualNodes the number of points per node
+     */
+    public HashRing(Map<String, T> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A hash ring needs at least one node");
+        }
+        var ring = new TreeMap<Long, T>();
+        // on the rare colliding point, the first name in order wins on every client
+        nodes.keySet().stream().sorted().forEach(name -> {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.putIfAbsent(hash(name + "#" + i), nodes.get(name));
+            }
+        });
+        this.points = new long[ring.size()];
+        this.owners = new ArrayList<>(ring.size());
+        var i = 0;
+        for (var point : ring.entrySet()) {
+            points[i++] = point.getKey();
+            owners.add(point.getValue());
+        }
+    }
+
+    /**
+     * The node a key belongs to.
+     */
+    public T locate(String key) {
+        var index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners.get(index == points.length ? 0 : index);
+    }
+
+    /**
+     * 64-bit FNV-1a of the UTF-8 bytes, finished with the MurmurHash3 mixer so that short,
+     * similar strings such as virtual node names still spread over the whole ring.
+     */
+    static long hash(String value) {
+        var h = FNV_OFFSET;
+        for (var b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= FNV_PRIME;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,68 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs commands over a small fixed set of shared connections, picked round-robin.
+ *
+ * <p>Lettuce connections are thread-safe and pipeline concurrent commands over one socket,
+ * so independent commands do not need a connection of their own. This skips the pool
+ * acquire/release around every command. Connections are opened on first use, and a slot
+ * whose connection attempt failed is reconnected by the next command that lands on it.
+ */
+public class MultiplexedConnContext implements CommandContext {
+
+    private final Supplier<CompletionStage<StatefulRedisConnection<byte[], byte[]>>> connector;
+    private final AtomicReferenceArray<CompletableFuture<StatefulRedisConnection<byte[], byte[]>>> connections;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public MultiplexedConnContext(Supplier<CompletionStage<StatefulRedisConnection<byte[], byte[]>>> connector, int size) {
+        this.connector = Objects.requireNonNull(connector);
+        this.connections = new AtomicReferenceArray<>(Math.max(1, size));
+    }
+
+    private CompletableFuture<StatefulRedisConnection<byte[], byte[]>> connection() {
+        var slot = Math.floorMod(next.getAndIncrement(), connections.length());
+        var current = connections.get(slot);
+        if (Objects.nonNull(current) && !current.isCompletedExceptionally()) {
+            return current;
+        }
+
+        var connecting = new CompletableFuture<StatefulRedisConnection<byte[], byte[]>>();
+        if (!connections.compareAndSet(slot, current, connecting)) {
+            return connections.get(slot);
+        }
+        connector.get().whenComplete((conn, err) -> {
+            if (Objects.nonNull(err)) {
+                connecting.completeExceptionally(err);
+            } else {
+                connecting.complete(conn);
+            }
+        });
+        return connecting;
+    }
+
+    @Override
+    public <R> CompletableFuture<R> execute(Function<RedisAsyncCommands<byte[], byte[]>, CompletableFuture<R>> action) {
+        return connection().thenCompose(conn -> action.apply(conn.async()));
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0; i < connections.length(); i++) {
+            var conn = connections.getAndSet(i, null);
+            if (Objects.nonNull(conn)) {
+                conn.thenAccept(StatefulRedisConnection::closeAsync);
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.TrackingArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.push.PushMessage;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.micronaut.core.annotation.Nullable;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.scheduler.Schedulers;
+import vvu.centrauthz.storages.interfaces.InvalidationSource;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invalidations from Redis server-assisted client-side caching, in broadcasting mode.
+ *
+ * <p>One connection per node runs {@code CLIENT TRACKING on BCAST PREFIX <prefix>...} and gets
+ * the keys under those prefixes written by any client as RESP3 {@code invalidate} push messages.
+ * The prefixes are the given key prefixes within the namespace, or the namespace itself when
+ * none are given; tracking every key of the server would report writes that no near-cache
+ * holds, so one of them must be set.
+ * Tracking ends with its connection: from a disconnection until tracking is on again after the
+ * reconnection, {@link #isListening()} is false, and every key is then reported invalidated.
+ * Redis before 6, or a client limited to RESP2, cannot track; the connection stays not
+ * listening and the failure is logged.
+ */
+@Slf4j
+public class RedisClientTracking implements InvalidationSource, RedisConnectionStateListener, AutoCloseable {
+
+    private static final String INVALIDATE = "invalidate";
+    private static final Duration RETRY_INTERVAL = Duration.ofSeconds(5);
+
+    private final RedisClient client;
+    private final RedisKeyEncoder keys;
+    private final List<String> prefixes;
+    private final List<Node> nodes;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    private static final class Node {
+        private final RedisURI uri;
+        private volatile StatefulRedisConnection<byte[], byte[]> connection;
+        private volatile boolean tracking;
+
+        private Node(RedisURI uri) {
+            this.uri = uri;
+        }
+    }
+
+    public RedisClientTracking(RedisClient client, List<RedisURI> uris, RedisKeyEncoder keys, List<String> prefixes) {
+        if (keys.prefix().isEmpty() && (prefixes.isEmpty() || prefixes.contains(""))) {
+            throw new IllegalStateException(
+                    "Client tracking needs redis.namespace or storage.near-cache.tracked-prefixes to be set");
+        }
+        this.client = client;
+        this.keys = keys;
+        this.prefixes = List.copyOf(prefixes);
+        this.nodes = uris.stream().map(Node::new).toList();
+        client.addListener(this);
+        nodes.forEach(this::connect);
+    }
+
+    private void connect(Node node) {
+        client.connectAsync(ByteArrayCodec.INSTANCE, node.uri)
+                .thenAccept(connection -> {
+                    connection.addListener(this::onPushMessage);
+                    node.connection = connection;
+                    track(node);
+                })
+                .exceptionally(e -> {
+                    log.warn("No client tracking connection to {}:{}, retrying in {}",
+                            node.uri.getHost(), node.uri.getPort(), RETRY_INTERVAL, e);
+                    if (!closed) {
+                        Schedulers.parallel().schedule(() -> connect(node), RETRY_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+                    }
+                    return null;
+                });
+    }
+
+    private void track(Node node) {
+        var tracked = prefixes.isEmpty()
+                ? new String[] {keys.prefix()}
+                : prefixes.stream().map(prefix -> keys.prefix() + prefix).toArray(String[]::new);
+        var args = TrackingArgs.Builder.enabled().bcast().prefixes(StandardCharsets.UTF_8, tracked);
+        node.connection.async().clientTracking(args).whenComplete((ok, e) -> {
+            if (Objects.nonNull(e)) {
+                log.warn("Client tracking on {}:{} failed; the near-cache keeps no values",
+                        node.uri.getHost(), node.uri.getPort(), e);
+                return;
+            }
+            node.tracking = true;
+            // values read before tracking was on may have changed unnoticed
+            invalidateAll();
+        });
+    }
+
+    private void onPushMessage(PushMessage message) {
+        if (!INVALIDATE.equals(message.getType())) {
+            return;
+        }
+        var content = message.getContent(this::decode);
+        if (content.size() > 1 && content.get(1) instanceof List<?> invalidated) {
+            invalidated.forEach(key -> listeners.forEach(l -> l.invalidated((String) key)));
+        } else {
+            // FLUSHDB and FLUSHALL come with a null list of keys
+            invalidateAll();
+        }
+    }
+
+    private String decode(ByteBuffer buffer) {
+        var bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return keys.decode(bytes);
+    }
+
+    private void invalidateAll() {
+        listeners.forEach(Listener::invalidatedAll);
+    }
+
+    @Nullable
+    private Node nodeOf(RedisChannelHandler<?, ?> handler) {
+        for (var node : nodes) {
+            if (node.connection == handler) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void onRedisConnected(RedisChannelHandler<?, ?> connection, SocketAddress socketAddress) {
+        var node = nodeOf(connection);
+        if (Objects.nonNull(node)) {
+            track(node);
+        }
+    }
+
+    @Override
+    public void onRedisDisconnected(RedisChannelHandler<?, ?> connection) {
+        var node = nodeOf(connection);
+        if (Objects.nonNull(node)) {
+            node.tracking = false;
+            invalidateAll();
+        }
+    }
+
+    @Override
+    public void onRedisExceptionCaught(RedisChannelHandler<?, ?> connection, Throwable cause) {
+        // failures of the connection are followed by a disconnection
+    }
+
+    @Override
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public boolean covers(String key) {
+        if (prefixes.isEmpty()) {
+            return true;
+        }
+        for (var prefix : prefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isListening() {
+        for (var node : nodes) {
+            if (!node.tracking) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        client.removeListener(this);
+        nodes.forEach(node -> {
+            node.tracking = false;
+            if (Objects.nonNull(node.connection)) {
+                node.connection.closeAsync();
+            }
+        });
+    }
+}
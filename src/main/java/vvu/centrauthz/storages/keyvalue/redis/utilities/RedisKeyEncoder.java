@@ -0,0 +1,72 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import io.micronaut.core.annotation.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Turns storage keys into Redis keys: {@code <namespace>:<key>}, in UTF-8, or the key alone
+ * without a namespace.
+ *
+ * <p>Storage keys are ASCII in practice, so they are copied char by char behind the cached
+ * namespace bytes; other keys go through the UTF-8 encoder.
+ */
+public class RedisKeyEncoder {
+
+    public static final RedisKeyEncoder NONE = new RedisKeyEncoder(null);
+
+    private final String prefix;
+    private final byte[] prefixBytes;
+
+    public RedisKeyEncoder(@Nullable String namespace) {
+        this.prefix = Objects.isNull(namespace) || namespace.isBlank() ? "" : namespace + ":";
+        this.prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The namespace and its separator, or an empty string without a namespace.
+     */
+    public String prefix() {
+        return prefix;
+    }
+
+    public byte[] encode(String key) {
+        var length = key.length();
+        var encoded = Arrays.copyOf(prefixBytes, prefixBytes.length + length);
+        for (int i = 0; i < length; i++) {
+            var c = key.charAt(i);
+            if (c >= 0x80) {
+                var utf8 = key.getBytes(StandardCharsets.UTF_8);
+                encoded = Arrays.copyOf(prefixBytes, prefixBytes.length + utf8.length);
+                System.arraycopy(utf8, 0, encoded, prefixBytes.length, utf8.length);
+                return encoded;
+            }
+            encoded[prefixBytes.length + i] = (byte) c;
+        }
+        return encoded;
+    }
+
+    /**
+     * The storage key of a Redis key, as found by SCAN.
+     */
+    public String decode(byte[] encoded) {
+        var key = new String(encoded, StandardCharsets.UTF_8);
+        return key.startsWith(prefix) ? key.substring(prefix.length()) : key;
+    }
+
+    /**
+     * A SCAN MATCH pattern for the Redis keys of the storage keys matching {@code pattern}.
+     */
+    public String pattern(String pattern) {
+        var escaped = new StringBuilder();
+        for (var c : prefix.toCharArray()) {
+            if ("*?[]\\".indexOf(c) >= 0) {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.append(pattern).toString();
+    }
+}
@@ -0,0 +1,76 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A Lua script run with EVALSHA.
+ * The script body is only sent when Redis does not have it cached yet (NOSCRIPT), after which
+ * EVALSHA succeeds again.
+ */
+public class RedisScript {
+
+    private final String source;
+    private final String sha;
+
+    RedisScript(String source) {
+        this.source = source;
+        this.sha = sha1(source);
+    }
+
+    /**
+     * Loads a script from the classpath.
+     *
+     * @param path the resource path, e.g. {@code redis/patch-sections.lua}
+     */
+    public static RedisScript fromResource(String path) {
+        try (var in = RedisScript.class.getClassLoader().getResourceAsStream(path)) {
+            if (Objects.isNull(in)) {
+                throw new IllegalStateException("Missing Redis script " + path);
+            }
+            return new RedisScript(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String sha1(String source) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-1").digest(source.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public String sha() {
+        return sha;
+    }
+
+    public <T> CompletableFuture<T> run(
+            RedisAsyncCommands<byte[], byte[]> command,
+            ScriptOutputType type,
+            byte[][] keys,
+            byte[]... args) {
+        return command.<T>evalsha(sha, type, keys, args)
+            .toCompletableFuture()
+            .exceptionallyCompose(e -> {
+                var cause = e instanceof CompletionException ? e.getCause() : e;
+                if (cause instanceof RedisNoScriptException) {
+                    return command.<T>eval(source, type, keys, args).toCompletableFuture();
+                }
+                return CompletableFuture.failedFuture(cause);
+            });
+    }
+}
@@ -0,0 +1,235 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micronaut.core.annotation.Nullable;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+import vvu.centrauthz.storages.keyvalue.redis.configurations.RedisBatchingConfig;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * One Redis node of the storage, with its own connections, and the replicas reads may go to.
+ *
+ * <p>Published meters, tagged with the {@code shard} name:
+ * <ul>
+ *   <li>{@code redis.shard.commands} - latency of single commands and pipelines, by {@code type} and {@code outcome}</li>
+ *   <li>{@code redis.shard.fallback.reads} - lookups of a moving key on this node, its previous one</li>
+ *   <li>{@code redis.shard.moves} - keys moved from this node to their new one</li>
+ *   <li>{@code redis.shard.replica.misses} - reads with a consistency token sent to this
+ *   primary because no replica had caught up</li>
+ * </ul>
+ */
+public class RedisShard implements AutoCloseable {
+
+    private final String name;
+    private final ConnectionPool pool;
+    private final CommandContext context;
+    private final AsyncConnContext pipelineContext;
+    private final GetBatcher batcher;
+    private final Timer commandSucceeded;
+    private final Timer commandFailed;
+    private final Timer pipelineSucceeded;
+    private final Timer pipelineFailed;
+    private final Counter fallbackReads;
+    private final Counter moves;
+    private final Counter replicaMisses;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private List<RedisShard> replicas = List.of();
+    private Disposable replicaPolling;
+    // how far this node has applied writes, as last polled; null while unknown or unreachable
+    private volatile ReplicationOffset replication;
+
+    public RedisShard(
+            String name,
+            @Nullable ConnectionPool pool,
+            CommandContext context,
+            RedisBatchingConfig batchingConfig,
+            MeterRegistry registry) {
+        this.name = Objects.requireNonNull(name);
+        this.pool = pool;
+        this.context = Objects.requireNonNull(context);
+        this.pipelineContext = new AsyncConnContext(pool);
+        this.batcher = batchingConfig.enabled()
+                ? new GetBatcher(context, batchingConfig, registry)
+                : null;
+        this.commandSucceeded = timer(registry, "command", "success");
+        this.commandFailed = timer(registry, "command", "error");
+        this.pipelineSucceeded = timer(registry, "pipeline", "success");
+        this.pipelineFailed = timer(registry, "pipeline", "error");
+        this.fallbackReads = Counter.builder("redis.shard.fallback.reads")
+                .description("Lookups of a moving key on its previous shard")
+                .tag("shard", name)
+                .register(registry);
+        this.moves = Counter.builder("redis.shard.moves")
+                .description("Keys moved from this shard to their new one")
+                .tag("shard", name)
+                .register(registry);
+        this.replicaMisses = Counter.builder("redis.shard.replica.misses")
+                .description("Reads with a consistency token sent to the primary because no replica had caught up")
+                .tag("shard", name)
+                .register(registry);
+    }
+
+    /**
+     * Lets reads go to replicas of this node, whose replication offsets are then polled
+     * every {@code pollInterval}. Call once, before the node serves requests.
+     */
+    public RedisShard withReplicas(List<RedisShard> replicas, Duration pollInterval) {
+        this.replicas = List.copyOf(replicas);
+        if (!this.replicas.isEmpty()) {
+            var interval = pollInterval.toMillis();
+            this.replicaPolling = Schedulers.parallel()
+                    .schedulePeriodically(this::pollReplicas, 0, interval, TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    private void pollReplicas() {
+        replicas.forEach(replica -> replica.replicationOffset()
+                .whenComplete((offset, e) -> replica.replicatedTo(Objects.isNull(e) ? offset : null)));
+    }
+
+    void replicatedTo(@Nullable ReplicationOffset offset) {
+        this.replication = offset;
+    }
+
+    public boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    /**
+     * The replication position of this node, asked with {@code INFO replication}.
+     *
+     * @return a future completed with the position, or {@code null} for a replica cut off from its primary
+     */
+    public CompletableFuture<ReplicationOffset> replicationOffset() {
+        return execute(command -> command.info("replication").toCompletableFuture())
+                .thenApply(ReplicationOffset::fromInfo);
+    }
+
+    /**
+     * The node to read from: a replica, picked round-robin among those reachable, that has
+     * applied the writes of the consistency token if there is one; this primary otherwise.
+     *
+     * @param token a consistency token, or {@code null} when any replica will do
+     */
+    public RedisShard reader(@Nullable String token) {
+        var candidates = replicas;
+        if (candidates.isEmpty()) {
+            return this;
+        }
+        var required = ReplicationOffset.parse(token);
+        if (Objects.nonNull(token) && Objects.isNull(required)) {
+            return this;
+        }
+        var start = Math.floorMod(nextReplica.getAndIncrement(), candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            var replica = candidates.get((start + i) % candidates.size());
+            var at = replica.replication;
+            if (Objects.nonNull(at) && (Objects.isNull(required) || at.covers(required))) {
+                return replica;
+            }
+        }
+        if (Objects.nonNull(required)) {
+            replicaMisses.increment();
+        }
+        return this;
+    }
+
+    private Timer timer(MeterRegistry registry, String type, String outcome) {
+        return Timer.builder("redis.shard.commands")
+                .description("Latency of Redis commands by shard")
+                .tags("shard", name, "type", type, "outcome", outcome)
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(registry);
+    }
+
+    private static <R> CompletableFuture<R> timed(CompletableFuture<R> future, Timer succeeded, Timer failed) {
+        var start = System.nanoTime();
+        return future.whenComplete((r, e) -> (Objects.isNull(e) ? succeeded : failed)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * The pooled connections of this node, used for pipelines and, in pooled mode, every command.
+     */
+    @Nullable
+    public ConnectionPool pool() {
+        return pool;
+    }
+
+    /**
+     * This node and its replicas.
+     */
+    public List<RedisShard> withItsReplicas() {
+        var nodes = new ArrayList<RedisShard>(replicas.size() + 1);
+        nodes.add(this);
+        nodes.addAll(replicas);
+        return nodes;
+    }
+
+    public <R> CompletableFuture<R> execute(Function<RedisAsyncCommands<byte[], byte[]>, CompletableFuture<R>> action) {
+        return timed(context.execute(action), commandSucceeded, commandFailed);
+    }
+
+    /**
+     * Runs several commands on one connection in a single flush, see {@link AsyncConnContext#pipeline}.
+     */
+    public <R> CompletableFuture<List<CompletableFuture<R>>> pipeline(
+            Function<RedisAsyncCommands<byte[], byte[]>, List<? extends CompletionStage<R>>> commands) {
+        return timed(pipelineContext.pipeline(commands), pipelineSucceeded, pipelineFailed);
+    }
+
+    /**
+     * GET, batched with concurrent GETs to this node when {@code redis.batching} is enabled.
+     *
+     * @return a future completed with the value, or {@code null} when the key does not exist
+     */
+    public CompletableFuture<byte[]> get(byte[] key) {
+        if (Objects.nonNull(batcher)) {
+            return timed(batcher.get(key), commandSucceeded, commandFailed);
+        }
+        return execute(command -> command.get(key).toCompletableFuture());
+    }
+
+    void recordFallbackRead() {
+        fallbackReads.increment();
+    }
+
+    void recordMove() {
+        moves.increment();
+    }
+
+    @Override
+    public void close() {
+        if (Objects.nonNull(replicaPolling)) {
+            replicaPolling.dispose();
+        }
+        replicas.forEach(RedisShard::close);
+        context.close();
+        if (Objects.nonNull(pool)) {
+            pool.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,213 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.micronaut.core.annotation.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Routes storage keys to the Redis nodes of the storage.
+ *
+ * <p>Keys are placed on a {@link HashRing} by their hash tag, the application key in front of
+ * the first {@code :}, so all keys of one application share a node. While nodes are being
+ * added or removed, a previous ring tells where a key lived before: {@link #settle} moves
+ * such a key to its new node with DUMP/RESTORE before it is used there. A delete of a moving
+ * key first leaves a short-lived tombstone on its new node, see {@link #markDeleted}, so that a
+ * move already under way does not bring the value back.
+ *
+ * <p>Keys are routed by their storage key; {@link #keys()} turns them into Redis keys.
+ */
+public class RedisShards implements AutoCloseable {
+
+    private static final CompletableFuture<Boolean> NOT_MOVED = CompletableFuture.completedFuture(false);
+    private static final RedisScript RESTORE_MOVED = RedisScript.fromResource("redis/restore-moved.lua");
+    // outside the keys of any application, so that SCANs of an application do not list them
+    private static final String TOMBSTONE_PREFIX = "deleted-while-moving:";
+    private static final byte[] TOMBSTONE = {'1'};
+    // outlives any move under way: DUMP and RESTORE are each bounded by redis.timeout
+    private static final Duration TOMBSTONE_TTL = Duration.ofMinutes(1);
+
+    private final List<RedisShard> shards;
+    private final List<RedisShard> previous;
+    private final HashRing<RedisShard> ring;
+    private final HashRing<RedisShard> previousRing;
+    private final RedisKeyEncoder keys;
+
+    public RedisShards(List<RedisShard> current, List<RedisShard> previous, int virtualNodes) {
+        this(current, previous, virtualNodes, RedisKeyEncoder.NONE);
+    }
+
+    /**
+     * @param current  the nodes keys are routed to
+     * @param previous the nodes before the current change, empty when no keys are moving
+     */
+    public RedisShards(List<RedisShard> current, List<RedisShard> previous, int virtualNodes, RedisKeyEncoder keys) {
+        this.keys = keys;
+        var all = new LinkedHashSet<RedisShard>(current);
+        all.addAll(previous);
+        this.shards = List.copyOf(all);
+        this.previous = List.copyOf(previous);
+        this.ring = new HashRing<>(byName(current), virtualNodes);
+        this.previousRing = previous.isEmpty() ? null : new HashRing<>(byName(previous), virtualNodes);
+    }
+
+    public static RedisShards single(RedisShard shard) {
+        return single(shard, RedisKeyEncoder.NONE);
+    }
+
+    public static RedisShards single(RedisShard shard, RedisKeyEncoder keys) {
+        return new RedisShards(List.of(shard), List.of(), 1, keys);
+    }
+
+    public RedisKeyEncoder keys() {
+        return keys;
+    }
+
+    private static Map<String, RedisShard> byName(List<RedisShard> shards) {
+        return shards.stream().collect(Collectors.toMap(RedisShard::name, Function.identity(), (a, b) -> a));
+    }
+
+    /**
+     * The part of a key that decides its node: keys are {@code <applicationKey>:<id>}.
+     */
+    public static String hashTagOf(String key) {
+        var separator = key.indexOf(':');
+        return separator < 0 ? key : key.substring(0, separator);
+    }
+
+    public List<RedisShard> all() {
+        return shards;
+    }
+
+    /**
+     * The nodes before the current change, empty when no keys are moving.
+     */
+    public List<RedisShard> previous() {
+        return previous;
+    }
+
+    /**
+     * Whether keys are moving between nodes, see {@link #previousOf}.
+     */
+    public boolean rebalancing() {
+        return Objects.nonNull(previousRing);
+    }
+
+    /**
+     * The node a key is read from and written to.
+     */
+    public RedisShard of(String key) {
+        return shards.size() == 1 ? shards.getFirst() : ring.locate(hashTagOf(key));
+    }
+
+    /**
+     * The node a key lived on before the current change, if it is not the same as now.
+     */
+    @Nullable
+    public RedisShard previousOf(String key) {
+        if (Objects.isNull(previousRing)) {
+            return null;
+        }
+        var tag = hashTagOf(key);
+        var previous = previousRing.locate(tag);
+        return previous == ring.locate(tag) ? null : previous;
+    }
+
+    public boolean moving(String key) {
+        return Objects.nonNull(previousOf(key));
+    }
+
+    /**
+     * Groups key positions by the node the keys are routed to, keeping their order.
+     */
+    public Map<RedisShard, List<Integer>> groupByShard(List<String> keys) {
+        if (shards.size() == 1) {
+            return Map.of(shards.getFirst(), IntStream.range(0, keys.size()).boxed().toList());
+        }
+        var groups = new LinkedHashMap<RedisShard, List<Integer>>();
+        for (int i = 0; i < keys.size(); i++) {
+            groups.computeIfAbsent(of(keys.get(i)), s -> new ArrayList<>()).add(i);
+        }
+        return groups;
+    }
+
+    private byte[] tombstoneOf(String key) {
+        return keys.encode(TOMBSTONE_PREFIX + key);
+    }
+
+    /**
+     * Moves a key from its previous node to its current one, if it is moving and still there.
+     * A value already on the current node is newer and is kept, and so is a tombstone; the old
+     * value is dropped either way.
+     *
+     * @return a future completed with {@code true} when a value was found on the previous node
+     */
+    public CompletableFuture<Boolean> settle(String key) {
+        var from = previousOf(key);
+        if (Objects.isNull(from)) {
+            return NOT_MOVED;
+        }
+        var to = of(key);
+        var encoded = keys.encode(key);
+        from.recordFallbackRead();
+        return from.<byte[]>execute(command -> command.dump(encoded).toCompletableFuture())
+            .thenCompose(dump -> {
+                if (Objects.isNull(dump)) {
+                    return NOT_MOVED;
+                }
+                return to.<Long>execute(command -> RESTORE_MOVED.<Long>run(
+                        command, ScriptOutputType.INTEGER, new byte[][]{encoded, tombstoneOf(key)}, dump))
+                    .thenCompose(v -> from.<Long>execute(command -> command.del(encoded).toCompletableFuture()))
+                    .thenApply(v -> {
+                        from.recordMove();
+                        return true;
+                    });
+            });
+    }
+
+    /**
+     * {@link #settle}s every moving key of a batch.
+     */
+    public CompletableFuture<?> settleAll(Collection<String> keys) {
+        if (Objects.isNull(previousRing)) {
+            return NOT_MOVED;
+        }
+        return CompletableFuture.allOf(keys.stream()
+            .filter(this::moving)
+            .map(this::settle)
+            .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Leaves a tombstone on the current node of the moving keys among those about to be deleted,
+     * once they are {@link #settle}d: a move of them under way can no longer restore them.
+     */
+    public CompletableFuture<?> markDeleted(Collection<String> keys) {
+        if (Objects.isNull(previousRing)) {
+            return NOT_MOVED;
+        }
+        return CompletableFuture.allOf(keys.stream()
+            .filter(this::moving)
+            .map(key -> of(key).<String>execute(command -> command
+                .set(tombstoneOf(key), TOMBSTONE, SetArgs.Builder.px(TOMBSTONE_TTL.toMillis()))
+                .toCompletableFuture()))
+            .toArray(CompletableFuture[]::new));
+    }
+
+    @Override
+    public void close() {
+        shards.forEach(RedisShard::close);
+    }
+}
@@ -0,0 +1,75 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import io.micronaut.core.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Objects;
+
+/**
+ * A position in the replication stream of a Redis primary: its replication ID and the
+ * number of bytes of writes it has sent so far. A replica that reached the position has
+ * applied every write the primary had acknowledged at that point.
+ *
+ * <p>As a token, the position reads {@code <replicationId>:<offset>}. A failover starts a
+ * new replication ID, after which old tokens are covered by no replica.
+ */
+public record ReplicationOffset(String replicationId, long offset) {
+
+    /**
+     * The position of a node from the reply to {@code INFO replication}: how far a primary
+     * has written, or how far a replica has applied.
+     *
+     * @return the position, or {@code null} for a replica whose link to its primary is down
+     */
+    @Nullable
+    public static ReplicationOffset fromInfo(String info) {
+        var fields = new HashMap<String, String>();
+        info.lines().forEach(line -> {
+            var separator = line.indexOf(':');
+            if (separator > 0) {
+                fields.put(line.substring(0, separator), line.substring(separator + 1).trim());
+            }
+        });
+        var replicationId = fields.get("master_replid");
+        if (Objects.isNull(replicationId)) {
+            return null;
+        }
+        if ("slave".equals(fields.get("role"))) {
+            if (!"up".equals(fields.get("master_link_status"))) {
+                return null;
+            }
+            return new ReplicationOffset(replicationId, Long.parseLong(fields.getOrDefault("slave_repl_offset", "0")));
+        }
+        return new ReplicationOffset(replicationId, Long.parseLong(fields.getOrDefault("master_repl_offset", "0")));
+    }
+
+    /**
+     * @return the position of a token, or {@code null} when it is not one
+     */
+    @Nullable
+    public static ReplicationOffset parse(@Nullable String token) {
+        if (Objects.isNull(token)) {
+            return null;
+        }
+        var separator = token.lastIndexOf(':');
+        if (separator <= 0) {
+            return null;
+        }
+        try {
+            return new ReplicationOffset(token.substring(0, separator), Long.parseLong(token.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public String token() {
+        return replicationId + ":" + offset;
+    }
+
+    /**
+     * Whether this position is at or past another one of the same replication stream.
+     */
+    public boolean covers(ReplicationOffset other) {
+        return replicationId.equals(other.replicationId()) && offset >= other.offset();
+    }
+}
@@ -0,0 +1,152 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import vvu.centrauthz.exceptions.IllegalStoredValue;
+import vvu.centrauthz.storages.codecs.ByteReader;
+import vvu.centrauthz.storages.codecs.ByteWriter;
+import vvu.centrauthz.storages.keyvalue.redis.configurations.RedisCompressionConfig;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflates values above the configured threshold.
+ *
+ * <p>A compressed value starts with {@code 0xC7 'Z'}, an algorithm byte and the varint length
+ * of the original value, followed by the raw deflate stream. Anything else is returned as is
+ * on read, so values written before compression was enabled stay readable.
+ *
+ * <p>Published meters, tagged with {@code application}:
+ * <ul>
+ *   <li>{@code redis.compression.ratio} - original size divided by stored size</li>
+ *   <li>{@code redis.compression.cpu} - thread CPU time spent, tagged with {@code operation}</li>
+ * </ul>
+ */
+public class ValueCompressor {
+
+    static final byte MAGIC = (byte) 0xC7;
+    static final byte KIND = 'Z';
+    static final byte DEFLATE = 1;
+    static final int HEADER_SIZE = 3;
+    // Redis refuses strings above 512 MB, so a larger header can only come from corrupt data
+    static final long MAX_VALUE_SIZE = 512L * 1024 * 1024;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final RedisCompressionConfig config;
+    private final MeterRegistry registry;
+
+    public ValueCompressor(RedisCompressionConfig config, MeterRegistry registry) {
+        this.config = config;
+        this.registry = registry;
+    }
+
+    public static boolean isCompressed(byte[] value) {
+        return isCompressed(value, 0);
+    }
+
+    public static boolean isCompressed(byte[] value, int offset) {
+        return value.length - offset >= HEADER_SIZE && value[offset] == MAGIC && value[offset + 1] == KIND;
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    private void recordCpu(String application, String operation, long start) {
+        Timer.builder("redis.compression.cpu")
+            .description("CPU time spent compressing or decompressing stored values")
+            .tag("application", application)
+            .tag("operation", operation)
+            .register(registry)
+            .record(cpuTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Compresses a value about to be written.
+     *
+     * @param application the application the value belongs to, used to tag the meters
+     * @return the compressed value, or {@code value} when it is under the threshold or does not shrink
+     */
+    public byte[] compress(String application, byte[] value) {
+        if (!config.enabled() || value.length < config.threshold()) {
+            return value;
+        }
+        var start = cpuTime();
+        var deflater = new Deflater(config.level(), true);
+        try {
+            deflater.setInput(value);
+            deflater.finish();
+            var out = new ByteWriter(value.length / 2)
+                .writeByte(MAGIC)
+                .writeByte(KIND)
+                .writeByte(DEFLATE)
+                .writeVarLong(value.length);
+            var chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.writeBytes(chunk, 0, deflater.deflate(chunk));
+            }
+            recordCpu(application, "compress", start);
+            if (out.size() >= value.length) {
+                return value;
+            }
+            DistributionSummary.builder("redis.compression.ratio")
+                .description("Original size of compressed values divided by their stored size")
+                .tag("application", application)
+                .register(registry)
+                .record((double) value.length / out.size());
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Restores a value read from storage.
+     *
+     * @param application the application the value belongs to, used to tag the meters
+     * @return the original value; values without the compression header are returned as is
+     */
+    public byte[] decompress(String application, byte[] value) {
+        if (!isCompressed(value)) {
+            return value;
+        }
+        if (value[2] != DEFLATE) {
+            throw new IllegalStoredValue("Unsupported compression algorithm " + value[2]);
+        }
+        var start = cpuTime();
+        var in = new ByteReader(value, HEADER_SIZE, value.length);
+        var length = in.readVarLong();
+        if (length > MAX_VALUE_SIZE) {
+            throw new IllegalStoredValue("Compressed value claims " + length + " bytes");
+        }
+        var inflater = new Inflater(true);
+        try {
+            inflater.setInput(value, in.position(), in.remaining());
+            var out = new byte[(int) length];
+            var read = 0;
+            while (read < out.length && !inflater.finished()) {
+                var n = inflater.inflate(out, read, out.length - read);
+                if (n == 0 && inflater.needsInput()) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != out.length) {
+                throw new IllegalStoredValue("Compressed value is truncated");
+            }
+            recordCpu(application, "decompress", start);
+            return out;
+        } catch (DataFormatException e) {
+            throw new IllegalStoredValue(e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package vvu.centrauthz.storages.keyvalue.tiered;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.context.annotation.Bean;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import vvu.centrauthz.exceptions.PreconditionFailedError;
+import vvu.centrauthz.models.Void;
+import vvu.centrauthz.storages.codecs.VersionEnvelope;
+import vvu.centrauthz.storages.interfaces.Readable;
+import vvu.centrauthz.storages.interfaces.Removable;
+import vvu.centrauthz.storages.interfaces.StoredValue;
+import vvu.centrauthz.storages.interfaces.VersionedWritable;
+import vvu.centrauthz.storages.interfaces.Writable;
+import vvu.centrauthz.storages.interfaces.WriteResult;
+import vvu.centrauthz.storages.keyvalue.embedded.utilities.SegmentedLog;
+import vvu.centrauthz.storages.keyvalue.tiered.configurations.TieringConfig;
+import vvu.centrauthz.storages.keyvalue.tiered.utilities.AccessTracker;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Two tiers in front of the storage engine: recently used keys stay in the engine, the hot tier,
+ * and the others are moved to a {@link SegmentedLog} on local disk, the cold tier.
+ *
+ * <p>Every read and write records the access time and size of its key. Every sweep interval,
+ * keys idle for longer than the cold-after period, and the least recently used keys of
+ * applications above their hot byte limit, are copied to the cold tier and then deleted from
+ * the engine if their version did not change meanwhile. A read that misses the engine looks in
+ * the cold tier and moves the key back; so does a write, before the engine checks its version.
+ *
+ * <p>Moves between the tiers and deletes of a key take turns, so that a key deleted while a read
+ * moves it back to the hot tier stays deleted. The cold tier is read and written on the
+ * {@code tier-cold} threads, as it does disk IO.
+ *
+ * <p>The cold tier is local to this node, so the keys going through this store must be served
+ * by this node only. Keys written before tiering was enabled are unknown to it until they are
+ * accessed again. Sizes are those of the uncompressed values, so the byte limits are an upper
+ * bound of the memory used in Redis.
+ *
+ * <p>This store is not one of the engine beans, so that it can wrap them; the caller picks it
+ * for the keys that are tiered.
+ *
+ * <p>Published meters:
+ * <ul>
+ *   <li>{@code storage.tier.reads} - reads by the tier that answered them: hot, cold or none</li>
+ *   <li>{@code storage.tier.demotions} - keys moved to the cold tier</li>
+ *   <li>{@code storage.tier.promotions} - keys moved back to the hot tier</li>
+ *   <li>{@code storage.tier.hot.bytes} - bytes of the tracked keys of the hot tier</li>
+ *   <li>{@code storage.tier.cold.keys} - keys in the cold tier</li>
+ * </ul>
+ */
+@Singleton
+@Bean(typed = TieredStorage.class)
+@Requires(property = "storage.tiering.enabled", value = "true")
+@Slf4j
+public class TieredStorage implements Readable<byte[]>, Removable, VersionedWritable {
+
+    private static final String ACCESS_FILE = "access.snapshot";
+    private static final int DEMOTION_CONCURRENCY = 16;
+
+    private final Readable<byte[]> hot;
+    private final Writable<byte[]> hotWritable;
+    private final VersionedWritable hotVersioned;
+    private final Removable hotRemovable;
+    private final TieringConfig config;
+    private final SegmentedLog cold;
+    private final Scheduler coldScheduler;
+    private final Map<String, CompletableFuture<Boolean>> turns = new ConcurrentHashMap<>();
+    private final Path accessFile;
+    private final AccessTracker accesses;
+    private final Counter hotReads;
+    private final Counter coldReads;
+    private final Counter missedReads;
+    private final Counter demotions;
+    private final Counter promotions;
+    private final Disposable sweeping;
+
+    public TieredStorage(TieringConfig config,
+                         Readable<byte[]> hot,
+                         Writable<byte[]> hotWritable,
+                         VersionedWritable hotVersioned,
+                         Removable hotRemovable,
+                         MeterRegistry registry) {
+        this.hot = hot;
+        this.hotWritable = hotWritable;
+        this.hotVersioned = hotVersioned;
+        this.hotRemovable = hotRemovable;
+        this.config = config;
+        var directory = Path.of(config.directory());
+        this.cold = SegmentedLog.open(directory, config.segmentSize(), false);
+        this.coldScheduler = Schedulers.newBoundedElastic(
+                Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "tier-cold");
+        this.accessFile = directory.resolve(ACCESS_FILE);
+        this.accesses = AccessTracker.load(accessFile);
+
+        this.hotReads = readCounter(registry, "hot");
+        this.coldReads = readCounter(registry, "cold");
+        this.missedReads = readCounter(registry, "none");
+        this.demotions = Counter.builder("storage.tier.demotions")
+                .description("Keys moved to the cold tier")
+                .register(registry);
+        this.promotions = Counter.builder("storage.tier.promotions")
+                .description("Keys moved back to the hot tier")
+                .register(registry);
+        Gauge.builder("storage.tier.hot.bytes", accesses, AccessTracker::bytes)
+                .description("Bytes of the keys tracked in the hot tier")
+                .register(registry);
+        Gauge.builder("storage.tier.cold.keys", cold, SegmentedLog::size)
+                .description("Keys in the cold tier")
+                .register(registry);
+
+        this.sweeping = Flux.interval(config.sweepInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> sweep(), 1)
+                .subscribe();
+    }
+
+    private static Counter readCounter(MeterRegistry registry, String tier) {
+        return Counter.builder("storage.tier.reads")
+                .description("Reads by the tier that answered them")
+                .tag("tier", tier)
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void close() {
+        sweeping.dispose();
+        accesses.save(accessFile);
+        coldScheduler.dispose();
+        cold.close();
+    }
+
+    static String applicationOf(String key) {
+        var separator = key.indexOf(':');
+        return separator < 0 ? key : key.substring(0, separator);
+    }
+
+    private static long versionOf(byte[] value) {
+        return VersionEnvelope.of(value).version();
+    }
+
+    private void touch(String key, int size) {
+        accesses.touch(key, size, System.currentTimeMillis());
+    }
+
+    private <T> Mono<T> onCold(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(coldScheduler);
+    }
+
+    /**
+     * Runs an operation once the operations of the key started before it are done.
+     */
+    private <T> Mono<T> inTurn(String key, Mono<T> operation) {
+        return Mono.defer(() -> {
+            var done = new CompletableFuture<Boolean>();
+            var previous = turns.put(key, done);
+            var waited = Objects.isNull(previous) ? Mono.<Boolean>empty() : Mono.fromFuture(previous);
+            return waited.then(operation).doFinally(signal -> {
+                turns.remove(key, done);
+                done.complete(true);
+            });
+        });
+    }
+
+    /**
+     * Runs an operation once it has the turn of every key, taken one after the other in key
+     * order so that two operations never wait for each other.
+     */
+    private <T> Mono<T> inTurn(List<String> keys, Mono<T> operation) {
+        var ordered = keys.stream().distinct().sorted().toList();
+        var chained = operation;
+        for (int i = ordered.size() - 1; i >= 0; i--) {
+            chained = inTurn(ordered.get(i), chained);
+        }
+        return chained;
+    }
+
+    /**
+     * Moves the idle keys and the keys above the limits of their application to the cold tier.
+     *
+     * @return the number of keys moved
+     */
+    public Mono<Long> sweep() {
+        return Mono.defer(() -> {
+            var idleSince = System.currentTimeMillis() - config.coldAfter().toMillis();
+            var candidates = accesses.demotionCandidates(idleSince, TieredStorage::applicationOf, config::maxHotBytesOf);
+            return Flux.fromIterable(candidates)
+                    .flatMap(this::demote, DEMOTION_CONCURRENCY)
+                    .filter(Boolean::booleanValue)
+                    .count();
+        })
+        .publishOn(coldScheduler)
+        .doOnNext(moved -> {
+            cold.compact(0.5);
+            accesses.save(accessFile);
+            if (moved > 0) {
+                log.info("Moved {} keys to the cold tier", moved);
+            }
+        })
+        .onErrorResume(e -> {
+            log.error("Sweep of the hot tier failed", e);
+            return Mono.just(0L);
+        });
+    }
+
+    /**
+     * Copies a key to the cold tier, then deletes it from the hot one unless it was written
+     * meanwhile, in which case the copy is dropped.
+     */
+    private Mono<Boolean> demote(String key) {
+        return inTurn(key, hot.get(key)
+                .flatMap(value -> onCold(() -> {
+                            cold.put(key, value);
+                            return value;
+                        })
+                        .flatMap(copied -> hotVersioned.remove(key, versionOf(copied)))
+                        .onErrorResume(PreconditionFailedError.class, e -> Mono.just(false)))
+                .flatMap(removed -> {
+                    if (removed) {
+                        accesses.forget(key);
+                        demotions.increment();
+                        return Mono.just(true);
+                    }
+                    return onCold(() -> cold.delete(key)).thenReturn(false);
+                })
+                .switchIfEmpty(Mono.fromCallable(() -> {
+                    accesses.forget(key);
+                    return false;
+                })));
+    }
+
+    /**
+     * Moves a key of the cold tier back to the hot one, in its turn so that the value read from
+     * the cold tier is still its value. When the hot tier got the key meanwhile, its value wins.
+     *
+     * @param onRead called with the value of the cold tier, {@code null} when it misses the key
+     */
+    private Mono<byte[]> promote(String key, Function<byte[], byte[]> onRead) {
+        return inTurn(key, onCold(() -> onRead.apply(cold.get(key)))
+                .flatMap(value -> hotWritable.create(key, value).flatMap(created -> {
+                    var moved = onCold(() -> cold.delete(key));
+                    if (!created) {
+                        return moved.then(hot.get(key)).doOnNext(current -> touch(key, current.length));
+                    }
+                    promotions.increment();
+                    touch(key, value.length);
+                    return moved.thenReturn(value);
+                })));
+    }
+
+    private Mono<Void> promoteIfCold(String key) {
+        return promote(key, Function.identity()).then();
+    }
+
+    /**
+     * Looks a key missing from the hot tier up in the cold one, and moves it back if found.
+     */
+    private Mono<byte[]> fromCold(String key) {
+        return promote(key, value -> {
+            if (Objects.isNull(value)) {
+                missedReads.increment();
+            } else {
+                coldReads.increment();
+            }
+            return value;
+        });
+    }
+
+    @Override
+    public Mono<byte[]> get(String key) {
+        return hot.get(key)
+                .doOnNext(value -> {
+                    hotReads.increment();
+                    touch(key, value.length);
+                })
+                .switchIfEmpty(fromCold(key));
+    }
+
+    @Override
+    public Flux<StoredValue<byte[]>> getAll(List<String> keys) {
+        return hot.getAll(keys).flatMapSequential(stored -> {
+            if (stored.exists()) {
+                hotReads.increment();
+                touch(stored.key(), stored.value().length);
+                return Mono.just(stored);
+            }
+            return fromCold(stored.key())
+                    .map(promoted -> new StoredValue<>(stored.key(), promoted))
+                    .defaultIfEmpty(stored);
+        });
+    }
+
+    @Override
+    public Mono<Long> write(String key, Mode mode, @Nullable Long expectedVersion, byte[] payload) {
+        return promoteIfCold(key)
+                .then(Mono.defer(() -> hotVersioned.write(key, mode, expectedVersion, payload)))
+                .doOnNext(version -> {
+                    if (version > 0) {
+                        touch(key, payload.length);
+                    }
+                });
+    }
+
+    @Override
+    public Flux<WriteResult> writeAll(List<Write> writes) {
+        var sizes = new HashMap<String, Integer>();
+        writes.forEach(w -> sizes.put(w.key(), w.payload().length));
+        return Flux.fromIterable(writes)
+                .concatMap(w -> promoteIfCold(w.key()))
+                .thenMany(Flux.defer(() -> hotVersioned.writeAll(writes)))
+                .doOnNext(result -> {
+                    if (result.isSuccess()) {
+                        touch(result.key(), sizes.get(result.key()));
+                    }
+                });
+    }
+
+    @Override
+    public Mono<Boolean> remove(String key, long expectedVersion) {
+        return promoteIfCold(key)
+                .then(Mono.defer(() -> hotVersioned.remove(key, expectedVersion)))
+                .doOnNext(removed -> accesses.forget(key));
+    }
+
+    @Override
+    public Mono<Void> remove(String key) {
+        return inTurn(key, hotRemovable.remove(key)
+                .flatMap(v -> onCold(() -> cold.delete(key)).thenReturn(v))
+                .doOnNext(v -> accesses.forget(key)));
+    }
+
+    @Override
+    public Flux<WriteResult> removeAll(List<String> keys) {
+        return inTurn(keys, hotRemovable.removeAll(keys)
+                .concatMap(result -> {
+                    if (!result.isSuccess()) {
+                        return Mono.just(result);
+                    }
+                    accesses.forget(result.key());
+                    return onCold(() -> cold.delete(result.key())).thenReturn(result);
+                })
+                .collectList())
+                .flatMapIterable(Function.identity());
+    }
+
+    /**
+     * @return whether a key is in the cold tier
+     */
+    public boolean isCold(String key) {
+        return Objects.nonNull(cold.get(key));
+    }
+}
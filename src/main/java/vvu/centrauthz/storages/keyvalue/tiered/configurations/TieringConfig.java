@@ -0,0 +1,53 @@
+package vvu.centrauthz.storages.keyvalue.tiered.configurations;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Hot and cold tiers for the applications listed in {@code resources.storage.tiered}.
+ * Keys not accessed for {@code coldAfter} are moved from the storage engine to a local log of
+ * {@code segmentSize} bytes segments under {@code directory}. An application keeping more than
+ * {@code maxHotBytes} in the engine, or its own limit in {@code maxHotBytesPerApplication}, has
+ * its least recently used keys moved as well; {@code 0} means no limit. Both checks run every
+ * {@code sweepInterval}.
+ */
+@ConfigurationProperties("storage.tiering")
+public record TieringConfig(boolean enabled,
+                            String directory,
+                            int segmentSize,
+                            Duration coldAfter,
+                            Duration sweepInterval,
+                            long maxHotBytes,
+                            Map<String, Long> maxHotBytesPerApplication) {
+    public TieringConfig {
+        if (Objects.isNull(directory) || directory.isBlank()) {
+            directory = "cold";
+        }
+        if (segmentSize <= 0) {
+            segmentSize = 64 * 1024 * 1024;
+        }
+        if (Objects.isNull(coldAfter)) {
+            coldAfter = Duration.ofDays(7);
+        }
+        if (Objects.isNull(sweepInterval)) {
+            sweepInterval = Duration.ofMinutes(1);
+        }
+        if (maxHotBytes < 0) {
+            maxHotBytes = 0;
+        }
+        maxHotBytesPerApplication = Objects.isNull(maxHotBytesPerApplication)
+            ? Map.of()
+            : Map.copyOf(maxHotBytesPerApplication);
+    }
+
+    public TieringConfig() {
+        this(false, "cold", 64 * 1024 * 1024, Duration.ofDays(7), Duration.ofMinutes(1), 0, Map.of());
+    }
+
+    public long maxHotBytesOf(String appKey) {
+        return maxHotBytesPerApplication.getOrDefault(appKey, maxHotBytes);
+    }
+}
@@ -0,0 +1,138 @@
+package vvu.centrauthz.storages.keyvalue.tiered.utilities;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Last access time and size of the keys of the hot tier.
+ *
+ * <p>Only keys read or written since tracking started are known; the table is saved to a file
+ * so that it survives restarts.
+ */
+public class AccessTracker {
+
+    private final Map<String, Access> accesses = new ConcurrentHashMap<>();
+
+    /**
+     * @param lastAccess epoch milliseconds of the last read or write
+     * @param size       bytes of the value
+     */
+    public record Access(long lastAccess, int size) {
+    }
+
+    public void touch(String key, int size, long now) {
+        accesses.put(key, new Access(now, size));
+    }
+
+    public void forget(String key) {
+        accesses.remove(key);
+    }
+
+    public int size() {
+        return accesses.size();
+    }
+
+    public long bytes() {
+        return accesses.values().stream().mapToLong(Access::size).sum();
+    }
+
+    /**
+     * Keys to move to the cold tier: those not accessed after {@code idleSince}, then, for every
+     * group above its byte limit, its least recently accessed keys until it is within it.
+     *
+     * @param groupOf the group of a key, which the limit applies to
+     * @param limitOf the byte limit of a group, {@code 0} for none
+     */
+    public Set<String> demotionCandidates(long idleSince, Function<String, String> groupOf, ToLongFunction<String> limitOf) {
+        var candidates = new LinkedHashSet<String>();
+        var groups = new HashMap<String, List<Map.Entry<String, Access>>>();
+        accesses.forEach((key, access) -> {
+            if (access.lastAccess() <= idleSince) {
+                candidates.add(key);
+            } else {
+                groups.computeIfAbsent(groupOf.apply(key), g -> new ArrayList<>()).add(Map.entry(key, access));
+            }
+        });
+        groups.forEach((group, entries) -> {
+            var limit = limitOf.applyAsLong(group);
+            var bytes = entries.stream().mapToLong(e -> e.getValue().size()).sum();
+            if (limit <= 0 || bytes <= limit) {
+                return;
+            }
+            entries.sort(Comparator.comparingLong(e -> e.getValue().lastAccess()));
+            for (var entry : entries) {
+                if (bytes <= limit) {
+                    break;
+                }
+                candidates.add(entry.getKey());
+                bytes -= entry.getValue().size();
+            }
+        });
+        return candidates;
+    }
+
+    /**
+     * Writes the table to a file, replacing it atomically.
+     */
+    public void save(Path file) {
+        var temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                var snapshot = Map.copyOf(accesses);
+                out.writeInt(snapshot.size());
+                for (var entry : snapshot.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().lastAccess());
+                    out.writeInt(entry.getValue().size());
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a table written by {@link #save}; an empty one when the file does not exist.
+     */
+    public static AccessTracker load(Path file) {
+        var tracker = new AccessTracker();
+        if (!Files.exists(file)) {
+            return tracker;
+        }
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            var count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                var key = in.readUTF();
+                tracker.accesses.put(key, new Access(in.readLong(), in.readInt()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return tracker;
+    }
+
+    /**
+     * @return the last access of a key, or {@code null} when it is not tracked
+     */
+    public Access get(String key) {
+        return accesses.get(key);
+    }
+}
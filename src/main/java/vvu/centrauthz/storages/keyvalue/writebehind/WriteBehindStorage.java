@@ -0,0 +1,477 @@
+package vvu.centrauthz.storages.keyvalue.writebehind;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import io.micronaut.context.annotation.Bean;
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.core.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import vvu.centrauthz.exceptions.PreconditionFailedError;
+import vvu.centrauthz.models.Void;
+import vvu.centrauthz.storages.codecs.VersionEnvelope;
+import vvu.centrauthz.storages.interfaces.Readable;
+import vvu.centrauthz.storages.interfaces.Removable;
+import vvu.centrauthz.storages.interfaces.StoredValue;
+import vvu.centrauthz.storages.interfaces.VersionedWritable;
+import vvu.centrauthz.storages.interfaces.Writable;
+import vvu.centrauthz.storages.interfaces.WriteResult;
+import vvu.centrauthz.storages.keyvalue.writebehind.configurations.WriteBehindConfig;
+import vvu.centrauthz.storages.keyvalue.writebehind.utilities.WriteJournal;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Write-behind in front of the storage engine: writes are acknowledged once appended to a local
+ * {@link WriteJournal} and forced to disk, then flushed to the engine in batches by a background
+ * task. Writes not yet flushed are kept in memory and served to reads, and are replayed from the
+ * journal after a restart.
+ *
+ * <p>Versions are checked and bumped here, against the pending write of a key or else its value
+ * in the engine, so the keys going through this store must not be written by another node.
+ *
+ * <p>Journal appends take the journal lock and may force a full segment to disk, so they run on
+ * the {@code write-behind-append} threads; callers resume on the parallel scheduler once the
+ * append is durable, not on the journal sync thread. A key whose flush fails is left out of the
+ * batches for a while, doubling each time, so that it does not hold back the keys behind it.
+ *
+ * <p>This store is not one of the engine beans, so that it can wrap them; the caller picks it
+ * for the keys that use write-behind.
+ *
+ * <p>Published meters:
+ * <ul>
+ *   <li>{@code storage.write-behind.queue.depth} - writes not yet flushed</li>
+ *   <li>{@code storage.write-behind.flush.lag} - age of the oldest write not yet flushed</li>
+ *   <li>{@code storage.write-behind.flush} - duration of one flushed batch</li>
+ *   <li>{@code storage.write-behind.flush.failures} - writes whose flush failed, to be retried</li>
+ * </ul>
+ */
+@Singleton
+@Bean(typed = WriteBehindStorage.class)
+@Requires(property = "storage.write-behind.enabled", value = "true")
+@Slf4j
+public class WriteBehindStorage implements Readable<byte[]>, Removable, VersionedWritable {
+
+    private static final int STRIPES = 64;
+
+    private final Readable<byte[]> readable;
+    private final Writable<byte[]> writable;
+    private final Removable removable;
+    private final WriteJournal journal;
+    private final int maxBatchSize;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final Map<String, Parked> parked = new ConcurrentHashMap<>();
+    private final long retryBackoffNanos;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final Scheduler appendScheduler;
+    private final Scheduler syncScheduler;
+    private final Disposable syncing;
+    private final Disposable flushing;
+    private final Timer flushTimer;
+    private final Counter flushFailures;
+
+    /**
+     * A write not yet flushed.
+     *
+     * @param segment   the journal segment holding it
+     * @param value     the value, or {@code null} for a delete
+     * @param writtenAt {@link System#nanoTime()} of the write
+     */
+    private record Pending(long segment, @Nullable byte[] value, long writtenAt) {
+    }
+
+    /**
+     * A key whose flush failed, left out of the batches until {@code until}.
+     *
+     * @param failures flushes of the key that failed in a row
+     * @param until    {@link System#nanoTime()} from which the key is flushed again
+     */
+    private record Parked(int failures, long until) {
+    }
+
+    /**
+     * Serializes the writes of its keys, and counts them so that a read of the engine made
+     * while a write of the key was queued and flushed can be told apart. The count is read
+     * without the lock, so that reads never wait for a journal append.
+     */
+    private static final class Stripe {
+        private volatile long writes;
+    }
+
+    /**
+     * What a write makes of the current value of a key.
+     */
+    private record Update<T>(T result, boolean write, @Nullable byte[] value) {
+        static <T> Update<T> none(T result) {
+            return new Update<>(result, false, null);
+        }
+
+        static <T> Update<T> put(T result, byte[] value) {
+            return new Update<>(result, true, value);
+        }
+
+        static <T> Update<T> delete(T result) {
+            return new Update<>(result, true, null);
+        }
+    }
+
+    public WriteBehindStorage(WriteBehindConfig config,
+                              Readable<byte[]> readable,
+                              Writable<byte[]> writable,
+                              Removable removable,
+                              MeterRegistry registry) {
+        this.readable = readable;
+        this.writable = writable;
+        this.removable = removable;
+        this.maxBatchSize = config.maxBatchSize();
+        this.retryBackoffNanos = config.flushInterval().toNanos();
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+
+        this.journal = WriteJournal.open(Path.of(config.directory()), config.segmentSize());
+        var now = System.nanoTime();
+        journal.recovered().forEach(entry -> pending.put(entry.key(), new Pending(entry.segment(), entry.value(), now)));
+        if (!pending.isEmpty()) {
+            log.info("Replaying {} journaled writes", pending.size());
+        }
+
+        Gauge.builder("storage.write-behind.queue.depth", pending, Map::size)
+                .description("Writes acknowledged but not yet flushed to the storage engine")
+                .register(registry);
+        TimeGauge.builder("storage.write-behind.flush.lag", this, TimeUnit.NANOSECONDS, WriteBehindStorage::flushLagNanos)
+                .description("Age of the oldest write not yet flushed to the storage engine")
+                .register(registry);
+        this.flushTimer = Timer.builder("storage.write-behind.flush")
+                .description("Time to flush one batch of writes to the storage engine")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(registry);
+        this.flushFailures = Counter.builder("storage.write-behind.flush.failures")
+                .description("Writes whose flush to the storage engine failed and will be retried")
+                .register(registry);
+
+        this.appendScheduler = Schedulers.newBoundedElastic(
+                Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "write-behind-append");
+        this.syncScheduler = Schedulers.newSingle("write-behind-journal");
+        var syncInterval = config.syncInterval().toNanos();
+        this.syncing = syncScheduler.schedulePeriodically(journal::sync, syncInterval, syncInterval, TimeUnit.NANOSECONDS);
+        this.flushing = Flux.interval(config.flushInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> drain(), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void close() {
+        flushing.dispose();
+        try {
+            drain().block(Duration.ofSeconds(30));
+        } catch (RuntimeException e) {
+            log.error("Could not flush every journaled write on shutdown; they will be replayed on start", e);
+        }
+        if (!pending.isEmpty()) {
+            log.warn("{} journaled writes left to replay on start", pending.size());
+        }
+        appendScheduler.dispose();
+        syncing.dispose();
+        syncScheduler.dispose();
+        journal.close();
+    }
+
+    private double flushLagNanos() {
+        var oldest = pending.values().stream().mapToLong(Pending::writtenAt).min();
+        return oldest.isPresent() ? System.nanoTime() - oldest.getAsLong() : 0;
+    }
+
+    public int queueDepth() {
+        return pending.size();
+    }
+
+    private Stripe stripeOf(String key) {
+        return stripes[Math.floorMod(key.hashCode(), STRIPES)];
+    }
+
+    private static PreconditionFailedError versionMismatch(String key, Long expectedVersion) {
+        return new PreconditionFailedError(String.format("Version of %s is not %s", key, expectedVersion));
+    }
+
+    private static long versionOf(byte[] value) {
+        return VersionEnvelope.of(value).version();
+    }
+
+    /**
+     * Journals a write and makes it the pending one of its key. Called under the lock of the
+     * stripe of the key.
+     */
+    private WriteJournal.Append enqueue(Stripe stripe, String key, @Nullable byte[] value) {
+        var append = journal.append(key, value);
+        var previous = pending.put(key, new Pending(append.segment(), value, System.nanoTime()));
+        if (Objects.nonNull(previous)) {
+            journal.done(previous.segment());
+        }
+        stripe.writes++;
+        return append;
+    }
+
+    /**
+     * Waits for an append to be durable, then moves off the journal sync thread that completes it.
+     */
+    private static <T> Mono<T> durable(WriteJournal.Append append, T result) {
+        return Mono.fromFuture(append.durable())
+                .publishOn(Schedulers.parallel())
+                .thenReturn(result);
+    }
+
+    /**
+     * Writes a key whatever its current value.
+     */
+    private Mono<Void> blindWrite(String key, @Nullable byte[] value) {
+        return Mono.fromCallable(() -> {
+                    var stripe = stripeOf(key);
+                    synchronized (stripe) {
+                        return enqueue(stripe, key, value);
+                    }
+                })
+                .subscribeOn(appendScheduler)
+                .flatMap(append -> durable(append, Void.INSTANCE));
+    }
+
+    /**
+     * Writes a key depending on its current value: the pending write of the key if any, its
+     * value in the engine otherwise.
+     *
+     * @param change what to write given the current value, {@code null} when the key does not exist
+     */
+    private <T> Mono<T> update(String key, Function<byte[], Update<T>> change) {
+        return Mono.defer(() -> {
+            var stripe = stripeOf(key);
+            var seen = stripe.writes;
+            var queued = pending.get(key);
+            Mono<Optional<byte[]>> current = Objects.nonNull(queued)
+                    ? Mono.just(Optional.ofNullable(queued.value()))
+                    : readable.get(key)
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty());
+            return current.flatMap(value -> apply(key, stripe, seen, value.orElse(null), change));
+        });
+    }
+
+    private <T> Mono<T> apply(String key, Stripe stripe, long seen, @Nullable byte[] read, Function<byte[], Update<T>> change) {
+        return Mono.fromCallable(() -> {
+                    synchronized (stripe) {
+                        var queued = pending.get(key);
+                        if (Objects.isNull(queued) && stripe.writes != seen) {
+                            // the key may have been written and flushed since it was read
+                            return update(key, change);
+                        }
+                        var update = change.apply(Objects.nonNull(queued) ? queued.value() : read);
+                        if (!update.write()) {
+                            return Mono.just(update.result());
+                        }
+                        return durable(enqueue(stripe, key, update.value()), update.result());
+                    }
+                })
+                .subscribeOn(appendScheduler)
+                .flatMap(Function.identity());
+    }
+
+    @Override
+    public Mono<byte[]> get(String key) {
+        return Mono.defer(() -> {
+            var queued = pending.get(key);
+            if (Objects.isNull(queued)) {
+                return readable.get(key);
+            }
+            if (Objects.isNull(queued.value())) {
+                return Mono.empty();
+            }
+            return Mono.just(queued.value());
+        });
+    }
+
+    @Override
+    public Flux<StoredValue<byte[]>> getAll(List<String> keys) {
+        return Flux.defer(() -> {
+            var queued = keys.stream().map(pending::get).toList();
+            var unqueued = new ArrayList<String>();
+            for (int i = 0; i < keys.size(); i++) {
+                if (Objects.isNull(queued.get(i))) {
+                    unqueued.add(keys.get(i));
+                }
+            }
+            var stored = unqueued.isEmpty() ? Flux.<StoredValue<byte[]>>empty() : readable.getAll(unqueued);
+            return stored.collectList().flatMapIterable(values -> {
+                var fromEngine = values.iterator();
+                var merged = new ArrayList<StoredValue<byte[]>>(keys.size());
+                for (int i = 0; i < keys.size(); i++) {
+                    var write = queued.get(i);
+                    merged.add(Objects.nonNull(write) ? new StoredValue<>(keys.get(i), write.value()) : fromEngine.next());
+                }
+                return merged;
+            });
+        });
+    }
+
+    /**
+     * Same rules as redis/versioned-set.lua.
+     */
+    @Override
+    public Mono<Long> write(String key, Mode mode, @Nullable Long expectedVersion, byte[] payload) {
+        return update(key, current -> {
+            var version = 0L;
+            if (Objects.nonNull(current)) {
+                if (mode == Mode.CREATE) {
+                    return Update.none(0L);
+                }
+                version = versionOf(current);
+            } else if (mode == Mode.REPLACE || Objects.nonNull(expectedVersion)) {
+                return Update.none(0L);
+            }
+            if (Objects.nonNull(expectedVersion) && expectedVersion != version) {
+                throw versionMismatch(key, expectedVersion);
+            }
+            return Update.put(version + 1, VersionEnvelope.wrap(version + 1, payload));
+        });
+    }
+
+    @Override
+    public Flux<WriteResult> writeAll(List<Write> writes) {
+        return Flux.fromIterable(writes).flatMapSequential(w -> write(w.key(), w.mode(), w.expectedVersion(), w.payload())
+                .map(version -> new WriteResult(w.key(), version > 0 ? null : VersionedWritable.unmet(w.key(), w.mode())))
+                .onErrorResume(e -> Mono.just(new WriteResult(w.key(), e))));
+    }
+
+    @Override
+    public Mono<Boolean> remove(String key, long expectedVersion) {
+        return update(key, current -> {
+            if (Objects.isNull(current)) {
+                return Update.none(false);
+            }
+            if (versionOf(current) != expectedVersion) {
+                throw versionMismatch(key, expectedVersion);
+            }
+            return Update.delete(true);
+        });
+    }
+
+    @Override
+    public Mono<Void> remove(String key) {
+        return blindWrite(key, null);
+    }
+
+    @Override
+    public Flux<WriteResult> removeAll(List<String> keys) {
+        return Flux.fromIterable(keys).flatMapSequential(key -> blindWrite(key, null)
+                .map(v -> new WriteResult(key, null))
+                .onErrorResume(e -> Mono.just(new WriteResult(key, e))));
+    }
+
+    /**
+     * Flushes batches until fewer than a full batch is pending.
+     */
+    Mono<Void> drain() {
+        return flush()
+                .expand(flushed -> flushed >= maxBatchSize ? flush() : Mono.empty())
+                .then();
+    }
+
+    private boolean isDue(String key, long now) {
+        var parking = parked.get(key);
+        return Objects.isNull(parking) || parking.until() - now <= 0;
+    }
+
+    /**
+     * Leaves a key whose flush failed out of the batches for the flush interval, doubled for
+     * every failure in a row up to 64 times.
+     */
+    private void park(String key) {
+        parked.compute(key, (k, parking) -> {
+            var failures = Objects.isNull(parking) ? 1 : parking.failures() + 1;
+            return new Parked(failures, System.nanoTime() + (retryBackoffNanos << Math.min(failures - 1, 6)));
+        });
+    }
+
+    /**
+     * Sends one batch of pending writes to the engine, values in one call and deletes in
+     * another. Flushed writes are dropped from the pending ones unless the key was written again
+     * meanwhile; failed ones stay pending and are parked before their next flush.
+     *
+     * @return the number of writes flushed
+     */
+    private Mono<Integer> flush() {
+        return Mono.defer(() -> {
+            var now = System.nanoTime();
+            var batch = pending.entrySet().stream()
+                    .filter(e -> isDue(e.getKey(), now))
+                    .limit(maxBatchSize)
+                    .map(e -> Map.entry(e.getKey(), e.getValue()))
+                    .toList();
+            if (batch.isEmpty()) {
+                return Mono.just(0);
+            }
+            var values = batch.stream().filter(e -> Objects.nonNull(e.getValue().value())).toList();
+            var deletes = batch.stream().filter(e -> Objects.isNull(e.getValue().value())).toList();
+            var sample = Timer.start();
+
+            var written = settle(values, Flux.defer(() -> writable.saveAll(values.stream()
+                    .map(e -> new StoredValue<>(e.getKey(), e.getValue().value()))
+                    .toList())));
+            var removed = settle(deletes, Flux.defer(() -> removable.removeAll(deletes.stream()
+                    .map(Map.Entry::getKey)
+                    .toList())));
+            return Mono.zip(written, removed, Integer::sum)
+                    .doOnNext(flushed -> {
+                        journal.release();
+                        sample.stop(flushTimer);
+                    });
+        });
+    }
+
+    private Mono<Integer> settle(List<Map.Entry<String, Pending>> batch, Flux<WriteResult> results) {
+        if (batch.isEmpty()) {
+            return Mono.just(0);
+        }
+        return Flux.zip(Flux.fromIterable(batch), results)
+                .filter(t -> {
+                    if (!t.getT2().isSuccess()) {
+                        flushFailures.increment();
+                        park(t.getT1().getKey());
+                        log.warn("Flush of {} failed, will retry", t.getT1().getKey(), t.getT2().error());
+                        return false;
+                    }
+                    return true;
+                })
+                .doOnNext(t -> {
+                    parked.remove(t.getT1().getKey());
+                    if (pending.remove(t.getT1().getKey(), t.getT1().getValue())) {
+                        journal.done(t.getT1().getValue().segment());
+                    }
+                })
+                .count()
+                .map(Long::intValue)
+                .onErrorResume(e -> {
+                    flushFailures.increment(batch.size());
+                    batch.forEach(e -> park(e.getKey()));
+                    log.warn("Flush of {} writes failed, will retry", batch.size(), e);
+                    return Mono.just(0);
+                });
+    }
+}
@@ -0,0 +1,44 @@
+package vvu.centrauthz.storages.keyvalue.writebehind.configurations;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Write-behind in front of the storage engine, for the applications listed in
+ * {@code resources.storage.write-behind}.
+ * Writes are appended to journal segments of {@code segmentSize} bytes under {@code directory},
+ * which are forced to disk every {@code syncInterval}; a write is acknowledged once forced.
+ * Every {@code flushInterval}, pending writes are sent to the engine in batches of at most
+ * {@code maxBatchSize}.
+ */
+@ConfigurationProperties("storage.write-behind")
+public record WriteBehindConfig(boolean enabled,
+                                String directory,
+                                int segmentSize,
+                                Duration syncInterval,
+                                Duration flushInterval,
+                                int maxBatchSize) {
+    public WriteBehindConfig {
+        if (Objects.isNull(directory) || directory.isBlank()) {
+            directory = "journal";
+        }
+        if (segmentSize <= 0) {
+            segmentSize = 16 * 1024 * 1024;
+        }
+        if (Objects.isNull(syncInterval)) {
+            syncInterval = Duration.ofMillis(2);
+        }
+        if (Objects.isNull(flushInterval)) {
+            flushInterval = Duration.ofMillis(50);
+        }
+        if (maxBatchSize <= 0) {
+            maxBatchSize = 512;
+        }
+    }
+
+    public WriteBehindConfig() {
+        this(false, "journal", 16 * 1024 * 1024, Duration.ofMillis(2), Duration.ofMillis(50), 512);
+    }
+}
@@ -0,0 +1,241 @@
+package vvu.centrauthz.storages.keyvalue.writebehind.utilities;
+
+import io.micronaut.core.annotation.Nullable;
+import lombok.extern.slf4j.Slf4j;
+import vvu.centrauthz.storages.keyvalue.embedded.utilities.LogSegment;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Journal of the writes a write-behind store has acknowledged but not yet flushed, kept in
+ * {@link LogSegment}s of a local directory.
+ *
+ * <p>An append is durable once the future it returns completes. Appends are not forced one by
+ * one: {@link #sync} forces the active segment once for all the appends made since the last
+ * sync. A segment is forced as well when it is full and the next one is started.
+ *
+ * <p>Every segment counts its live records, those not yet flushed nor overwritten by a later
+ * write of the same key; the owner reports both with {@link #done}. {@link #release} deletes
+ * the oldest segments as long as they have no live record left. Segments are only deleted in
+ * order, so that recovery never sees a write without the later writes of the same key.
+ */
+@Slf4j
+public class WriteJournal implements Closeable {
+
+    private static final Pattern SEGMENT_FILE = Pattern.compile("journal-(\\d+)\\.log");
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final List<Entry> recovered = new ArrayList<>();
+    private List<CompletableFuture<Void>> unsynced = new ArrayList<>();
+    private volatile Segment active;
+
+    private record Segment(LogSegment log, AtomicInteger live) {
+    }
+
+    /**
+     * A journaled write.
+     *
+     * @param segment the segment holding it
+     * @param value   the value written, or {@code null} for a delete
+     */
+    public record Entry(long segment, String key, @Nullable byte[] value) {
+        public boolean isDelete() {
+            return Objects.isNull(value);
+        }
+    }
+
+    /**
+     * @param segment the segment the write was appended to, to report to {@link #done}
+     * @param durable completed once the write is on disk
+     */
+    public record Append(long segment, CompletableFuture<Void> durable) {
+    }
+
+    private WriteJournal(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Opens the journal stored in a directory. The writes it still holds are available from
+     * {@link #recovered}.
+     */
+    public static WriteJournal open(Path directory, int segmentSize) {
+        var journal = new WriteJournal(directory, segmentSize);
+        journal.recover();
+        return journal;
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("journal-%012d.log", id));
+    }
+
+    private void recover() {
+        List<Long> ids = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            try (var files = Files.list(directory)) {
+                files.forEach(file -> {
+                    var matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+                    if (matcher.matches()) {
+                        ids.add(Long.parseLong(matcher.group(1)));
+                    }
+                });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ids.sort(Long::compare);
+
+        var latest = new LinkedHashMap<String, Entry>();
+        for (var id : ids) {
+            var segment = newSegment(id);
+            var clean = segment.log().scan(record -> {
+                segment.live().incrementAndGet();
+                var previous = latest.remove(record.key());
+                if (Objects.nonNull(previous)) {
+                    done(previous.segment());
+                }
+                latest.put(record.key(), new Entry(id, record.key(), record.isDelete() ? null : record.value()));
+            });
+            if (!clean) {
+                log.warn("Dropped a torn record at {} in journal segment {}", segment.log().writePosition(), id);
+            }
+        }
+        recovered.addAll(latest.values());
+        active = segments.isEmpty() ? newSegment(1) : segments.lastEntry().getValue();
+        log.info("Opened journal in {} with {} unflushed writes in {} segments", directory, recovered.size(), segments.size());
+    }
+
+    private Segment newSegment(long id) {
+        var segment = new Segment(LogSegment.open(id, segmentPath(id), segmentSize), new AtomicInteger());
+        segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * The latest write of every key found in the journal when it was opened, oldest first.
+     */
+    public List<Entry> recovered() {
+        return List.copyOf(recovered);
+    }
+
+    /**
+     * Appends a write. It is durable once {@link Append#durable()} completes.
+     *
+     * @param value the value, or {@code null} to journal a delete
+     */
+    public Append append(String key, @Nullable byte[] value) {
+        var keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        var type = Objects.isNull(value) ? LogSegment.DELETE : LogSegment.PUT;
+        var body = Objects.isNull(value) ? EMPTY : value;
+        writeLock.lock();
+        try {
+            if (active.log().append(type, keyBytes, body) < 0) {
+                active.log().force();
+                active = newSegment(active.log().id() + 1);
+                if (active.log().append(type, keyBytes, body) < 0) {
+                    throw new IllegalArgumentException("Record of " + key + " is larger than a journal segment");
+                }
+            }
+            active.live().incrementAndGet();
+            var durable = new CompletableFuture<Void>();
+            unsynced.add(durable);
+            return new Append(active.log().id(), durable);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Forces the appends made since the last sync to disk and completes their futures.
+     */
+    public void sync() {
+        List<CompletableFuture<Void>> waiting;
+        Segment segment;
+        writeLock.lock();
+        try {
+            if (unsynced.isEmpty()) {
+                return;
+            }
+            waiting = unsynced;
+            unsynced = new ArrayList<>();
+            segment = active;
+        } finally {
+            writeLock.unlock();
+        }
+        try {
+            // earlier segments were forced when they were sealed
+            segment.log().force();
+            waiting.forEach(future -> future.complete(null));
+        } catch (RuntimeException e) {
+            waiting.forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Reports that a record of a segment is no longer live: it was flushed, or overwritten by
+     * a later write of the same key.
+     */
+    public void done(long segment) {
+        var owner = segments.get(segment);
+        if (Objects.nonNull(owner)) {
+            owner.live().decrementAndGet();
+        }
+    }
+
+    /**
+     * Deletes the oldest sealed segments that have no live record left.
+     *
+     * @return the number of segments deleted
+     */
+    public int release() {
+        var released = 0;
+        for (var first = segments.firstEntry(); Objects.nonNull(first); first = segments.firstEntry()) {
+            var segment = first.getValue();
+            if (segment == active || segment.live().get() > 0) {
+                break;
+            }
+            segments.remove(first.getKey());
+            segment.log().delete();
+            released++;
+        }
+        return released;
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() {
+        sync();
+        writeLock.lock();
+        try {
+            segments.values().forEach(segment -> {
+                segment.log().force();
+                segment.log().close();
+            });
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
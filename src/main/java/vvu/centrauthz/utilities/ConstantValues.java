@@ -6,4 +6,6 @@ public class ConstantValues {
     }
 
     public static final String X_USER_ID_HEADER = "X-UserId";
+    public static final String X_CONSISTENCY_TOKEN_HEADER = "X-Consistency-Token";
+    public static final String X_NEXT_CURSOR_HEADER = "X-Next-Cursor";
 }
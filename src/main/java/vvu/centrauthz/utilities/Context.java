@@ -1,5 +1,6 @@
 package vvu.centrauthz.utilities;
 
+import io.micronaut.core.annotation.Nullable;
 import lombok.Builder;
 import vvu.centrauthz.models.User;
 
@@ -7,7 +8,7 @@ import java.util.Objects;
 import java.util.UUID;
 
 @Builder(toBuilder = true)
-public record Context(User user, String appKey) {
+public record Context(User user, String appKey, @Nullable String consistencyToken) {
     public Context {
         if (Objects.isNull(user)) {
             user = User.builder().build();
@@ -35,11 +35,15 @@ public class JsonTools {
         return jsonContext(() -> mapper.readValue(object, JsonNode.class));
     }
 
-    public static byte[] toBytes(JsonMapper mapper, JsonNode object) {
+    public static <T> byte[] toBytes(JsonMapper mapper, T object) {
         return jsonContext(() -> mapper.writeValueAsBytes(object));
     }
 
     public static JsonNode fromBytes(JsonMapper mapper, byte[] object) {
         return jsonContext(() -> mapper.readValue(object, JsonNode.class));
     }
+
+    public static <T> T fromBytes(JsonMapper mapper, byte[] object, Class<T> clazz) {
+        return jsonContext(() -> mapper.readValue(object, clazz));
+    }
 }
@@ -0,0 +1,89 @@
+package vvu.centrauthz.utilities;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller starts the call, and callers
+ * arriving while it runs get its result too, or its error.
+ *
+ * <p>A call leaves the table once it completes, fails, or every caller has cancelled, which
+ * also cancels it. Callers that arrive later start a new call, and so do callers arriving after
+ * it was {@link #forget forgotten}.
+ *
+ * <p>Published meters, tagged with the {@code name} of the table:
+ * <ul>
+ *   <li>{@code single-flight.calls} - calls by {@code role}: leader, which started the call,
+ *   or follower, which joined one in flight; followers over all calls is the coalescing ratio</li>
+ *   <li>{@code single-flight.in-flight} - calls running</li>
+ * </ul>
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter followers;
+
+    public SingleFlight(String name, MeterRegistry registry) {
+        this.leaders = callCounter(registry, name, "leader");
+        this.followers = callCounter(registry, name, "follower");
+        Gauge.builder("single-flight.in-flight", inFlight, Map::size)
+                .description("Calls running")
+                .tag("name", name)
+                .register(registry);
+    }
+
+    private static Counter callCounter(MeterRegistry registry, String name, String role) {
+        return Counter.builder("single-flight.calls")
+                .description("Calls that started or joined a call in flight")
+                .tags("name", name, "role", role)
+                .register(registry);
+    }
+
+    /**
+     * Runs a call, or joins the one running for the same key.
+     */
+    public Mono<V> run(K key, Supplier<Mono<V>> call) {
+        return Mono.defer(() -> {
+            var started = new boolean[1];
+            var flight = inFlight.computeIfAbsent(key, k -> {
+                started[0] = true;
+                return start(k, call);
+            });
+            (started[0] ? leaders : followers).increment();
+            return flight;
+        });
+    }
+
+    /**
+     * Keeps callers arriving from now on out of the calls in flight for the matching keys: they
+     * start a new call. Callers already in still get the result of theirs.
+     */
+    public void forget(Predicate<K> keys) {
+        inFlight.keySet().removeIf(keys);
+    }
+
+    private Mono<V> start(K key, Supplier<Mono<V>> call) {
+        var self = new AtomicReference<Mono<V>>();
+        var flight = Mono.defer(call)
+                .doFinally(signal -> inFlight.remove(key, self.get()))
+                .flux()
+                .replay(1)
+                .refCount()
+                .singleOrEmpty();
+        self.set(flight);
+        return flight;
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+}
@@ -2,6 +2,7 @@ package vvu.centrauthz.utilities.executors;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
+import vvu.centrauthz.exceptions.AppError;
 import vvu.centrauthz.utilities.Context;
 
 import java.util.Objects;
@@ -53,7 +54,8 @@ public class Executor<T> {
     /**
      * Executes the wrapped operation and returns its result.
      * If an exception occurs during execution, the error handler will be called
-     * and its result will be returned instead.
+     * and its result will be returned instead. Expected errors, such as a missing resource,
+     * are logged at debug level only.
      *
      * @return the result of the operation or the error handler
      */
@@ -63,7 +65,9 @@ public class Executor<T> {
         } catch (Exception e) {
 
             Optional.ofNullable(logger).ifPresent(l -> {
-                if (Objects.nonNull(e.getMessage())) {
+                if (e instanceof AppError appError && appError.isExpected()) {
+                    l.debug(e.getMessage());
+                } else if (Objects.nonNull(e.getMessage())) {
                     l.error(e.getMessage());
                 } else {
                     l.error(ExceptionUtils.getStackTrace(e));
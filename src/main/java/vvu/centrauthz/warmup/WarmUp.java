@@ -0,0 +1,174 @@
+package vvu.centrauthz.warmup;
+
+import io.micronaut.context.event.ApplicationEventListener;
+import io.micronaut.context.event.StartupEvent;
+import io.micronaut.http.HttpResponse;
+import io.micronaut.json.JsonMapper;
+import io.micronaut.json.tree.JsonNode;
+import jakarta.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import vvu.centrauthz.domains.resources.controllers.ResourceController;
+import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.domains.resources.models.ResourceBatchGet;
+import vvu.centrauthz.domains.resources.models.ResourceForPatch;
+import vvu.centrauthz.storages.interfaces.Warmable;
+import vvu.centrauthz.utilities.JsonTools;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Warms the service up at startup, before {@link WarmUpIndicator} reports it ready.
+ *
+ * <p>It first waits for the storage to be warm, see {@link Warmable}, then sends rounds of
+ * synthetic requests straight to {@link ResourceController}. Each round encodes and decodes a
+ * throwaway resource with the JSON mapper request bodies go through, creates it, reads it whole
+ * and by fields, replaces and patches it, reads it in a batch and deletes it, so that the JIT
+ * has compiled the codecs, the storage and the controller path before real traffic comes.
+ *
+ * <p>A failure ends the warm-up early and is logged, and so does running out of the time
+ * budget; the service is then ready, as it would be without a warm-up. The resource of a round
+ * cut short either way is deleted. Resources are written to the configured storage, so the
+ * warm-up is disabled unless turned on where throwaway resources are acceptable.
+ */
+@Slf4j
+@Singleton
+public class WarmUp implements ApplicationEventListener<StartupEvent> {
+
+    public enum State {
+        DISABLED, RUNNING, DONE, OUT_OF_BUDGET, FAILED
+    }
+
+    private static final UUID USER_ID = UUID.fromString("00000000-0000-0000-0000-00000000beef");
+    private static final List<String> FIELDS = List.of("type", "tags");
+
+    private final WarmUpConfig config;
+    private final List<Warmable> warmables;
+    private final ResourceController controller;
+    private final JsonMapper mapper;
+    private final AtomicInteger rounds = new AtomicInteger();
+    private volatile State state;
+    private volatile long elapsedMillis;
+
+    public WarmUp(WarmUpConfig config, List<Warmable> warmables, ResourceController controller, JsonMapper mapper) {
+        this.config = config;
+        this.warmables = warmables;
+        this.controller = controller;
+        this.mapper = mapper;
+        this.state = config.enabled() ? State.RUNNING : State.DISABLED;
+    }
+
+    @Override
+    public void onApplicationEvent(StartupEvent event) {
+        if (state == State.RUNNING) {
+            run().subscribe();
+        }
+    }
+
+    /**
+     * Runs the warm-up.
+     *
+     * @return the state it ended in
+     */
+    Mono<State> run() {
+        var start = System.nanoTime();
+        return Flux.fromIterable(warmables)
+                .flatMap(Warmable::warmUp)
+                .thenMany(Flux.range(0, config.rounds()).flatMap(this::round, config.concurrency()))
+                .then(Mono.just(State.DONE))
+                .timeout(config.budget(), Mono.just(State.OUT_OF_BUDGET))
+                .onErrorResume(e -> {
+                    log.warn("Warm-up failed after {} rounds", rounds.get(), e);
+                    return Mono.just(State.FAILED);
+                })
+                .doOnNext(ended -> {
+                    elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    state = ended;
+                    log.info("Warm-up ended {} after {} rounds in {} millis", ended, rounds.get(), elapsedMillis);
+                });
+    }
+
+    private static <T> Mono<T> lazily(Supplier<Mono<T>> request) {
+        return Mono.defer(request);
+    }
+
+    private Mono<Void> round(int round) {
+        var appKey = config.applicationKey();
+        var id = UUID.randomUUID();
+        var body = JsonTools.toBytes(mapper, sample(id, round));
+        var resource = JsonTools.fromBytes(mapper, body, Resource.class);
+        var patch = ResourceForPatch.builder()
+                .updatedFields(List.of("tags"))
+                .data(ResourceForPatch.ResourcePatchData.builder().tags(List.of("patched")).build())
+                .build();
+
+        return lazily(() -> controller.createResource(USER_ID, appKey, resource))
+                .then(lazily(() -> controller.getResource(USER_ID, appKey, id, null, null)))
+                .doOnNext(this::encode)
+                .then(lazily(() -> controller.getResource(USER_ID, appKey, id, FIELDS, null)))
+                .doOnNext(this::encode)
+                .then(lazily(() -> controller.updateResource(USER_ID, appKey, id, null, resource)))
+                .then(lazily(() -> controller.patchResource(USER_ID, appKey, id, null, patch)))
+                .thenMany(Flux.defer(() -> controller.batchGetResources(USER_ID, appKey, null, new ResourceBatchGet(List.of(id)))))
+                .doOnNext(item -> JsonTools.toBytes(mapper, item))
+                .then(lazily(() -> controller.deleteResource(USER_ID, appKey, id, null)))
+                .doOnSuccess(deleted -> rounds.incrementAndGet())
+                .onErrorResume(e -> discard(appKey, id).then(Mono.error(e)))
+                .doOnCancel(() -> discard(appKey, id).subscribe())
+                .then();
+    }
+
+    private Mono<Void> discard(String appKey, UUID id) {
+        return lazily(() -> controller.deleteResource(USER_ID, appKey, id, null))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private void encode(HttpResponse<Resource> response) {
+        var resource = response.body();
+        if (Objects.nonNull(resource)) {
+            JsonTools.toBytes(mapper, resource);
+        }
+    }
+
+    private Resource sample(UUID id, int round) {
+        return Resource.builder()
+                .id(id)
+                .applicationKey(config.applicationKey())
+                .type("WARM_UP")
+                .ownerId(USER_ID)
+                .parentId(USER_ID)
+                .sharedWith(List.of(USER_ID))
+                .tags(List.of("warm", "up"))
+                .details(JsonNode.createObjectNode(Map.of(
+                        "round", JsonNode.createNumberNode(round),
+                        "note", JsonNode.createStringNode("throwaway"))))
+                .build();
+    }
+
+    public State state() {
+        return state;
+    }
+
+    /**
+     * Whether requests may be served: the warm-up ended, or is disabled.
+     */
+    public boolean isReady() {
+        return state != State.RUNNING;
+    }
+
+    public int rounds() {
+        return rounds.get();
+    }
+
+    public long elapsedMillis() {
+        return elapsedMillis;
+    }
+}
@@ -0,0 +1,38 @@
+package vvu.centrauthz.warmup;
+
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Warm-up of the service at startup, see {@link WarmUp}.
+ * {@code rounds} rounds of synthetic requests run, {@code concurrency} at a time, against
+ * throwaway resources of {@code applicationKey}; the service is reported ready once they are
+ * done, or once {@code budget} has passed.
+ */
+@ConfigurationProperties("warm-up")
+public record WarmUpConfig(boolean enabled,
+                           Duration budget,
+                           int rounds,
+                           int concurrency,
+                           String applicationKey) {
+    public WarmUpConfig {
+        if (Objects.isNull(budget) || budget.isNegative()) {
+            budget = Duration.ofSeconds(30);
+        }
+        if (rounds < 0) {
+            rounds = 0;
+        }
+        if (concurrency <= 0) {
+            concurrency = 4;
+        }
+        if (Objects.isNull(applicationKey) || applicationKey.isBlank()) {
+            applicationKey = "warm-up";
+        }
+    }
+
+    public WarmUpConfig() {
+        this(false, Duration.ofSeconds(30), 2000, 4, "warm-up");
+    }
+}
@@ -0,0 +1,42 @@
+package vvu.centrauthz.warmup;
+
+import io.micronaut.context.annotation.Requires;
+import io.micronaut.health.HealthStatus;
+import io.micronaut.management.endpoint.health.HealthEndpoint;
+import io.micronaut.management.health.indicator.HealthIndicator;
+import io.micronaut.management.health.indicator.HealthResult;
+import io.micronaut.management.health.indicator.annotation.Readiness;
+import jakarta.inject.Singleton;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Readiness of the service: DOWN while the {@link WarmUp} runs, UP once it has ended.
+ * Served at {@code /health/readiness}, and part of {@code /health}.
+ */
+@Singleton
+@Readiness
+@Requires(beans = HealthEndpoint.class)
+public class WarmUpIndicator implements HealthIndicator {
+
+    static final String NAME = "warmUp";
+
+    private final WarmUp warmUp;
+
+    public WarmUpIndicator(WarmUp warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    @Override
+    public Publisher<HealthResult> getResult() {
+        return Mono.fromSupplier(() -> HealthResult
+                .builder(NAME, warmUp.isReady() ? HealthStatus.UP : HealthStatus.DOWN)
+                .details(Map.of(
+                        "state", warmUp.state(),
+                        "rounds", warmUp.rounds(),
+                        "elapsedMillis", warmUp.elapsedMillis()))
+                .build());
+    }
+}
@@ -0,0 +1,24 @@
+-- Reads a value stored as a hash, or a value still stored whole under the key.
+-- KEYS[1]  the key
+-- ARGV     the fields to read, none for all of them
+-- Returns a flat list of field names and values for a hash, with the version field '_v' always
+-- included; a list of one element for a value stored whole; an empty list when the key does not exist.
+local kind = redis.call('TYPE', KEYS[1]).ok
+if kind == 'hash' then
+  if #ARGV == 0 then
+    return redis.call('HGETALL', KEYS[1])
+  end
+  local values = redis.call('HMGET', KEYS[1], '_v', unpack(ARGV))
+  local reply = { '_v', values[1] or '0' }
+  for i, name in ipairs(ARGV) do
+    if values[i + 1] then
+      reply[#reply + 1] = name
+      reply[#reply + 1] = values[i + 1]
+    end
+  end
+  return reply
+end
+if kind == 'string' then
+  return { redis.call('GET', KEYS[1]) }
+end
+return {}
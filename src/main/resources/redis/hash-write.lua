@@ -0,0 +1,64 @@
+-- Writes a value as a hash and bumps its version, kept in the field '_v'.
+-- A value still stored whole has the version of its envelope (0 without one) and is replaced
+-- by the hash on a full write.
+-- KEYS[1]  the key
+-- ARGV[1]  create (key must not exist), replace (key must exist), upsert,
+--          or update (key must exist; only the given fields change)
+-- ARGV[2]  the expected current version, or '' for any
+-- ARGV[3]  '1' to keep the version in '_v'; otherwise the hash has no '_v' and stays at
+--          version 0, as values written bare by versioned-set.lua
+-- ARGV[4]  n, the number of fields to delete (update only)
+-- ARGV[5 .. 4+n]  the fields to delete
+-- ARGV[5+n ..]    field name, value, field name, value...
+-- Returns the new version, 0 when the existence condition of the mode does not hold,
+-- -1 when an update meets a value stored whole (the caller writes it in full),
+-- -2 when the current version is not the expected one.
+local kind = redis.call('TYPE', KEYS[1]).ok
+local mode = ARGV[1]
+local version = 0
+if kind == 'hash' then
+  if mode == 'create' then
+    return 0
+  end
+  version = tonumber(redis.call('HGET', KEYS[1], '_v')) or 0
+elseif kind == 'string' then
+  if mode == 'create' then
+    return 0
+  end
+  if mode == 'update' then
+    return -1
+  end
+  version = tonumber(string.match(redis.call('GET', KEYS[1]), '^\167V(%d+);')) or 0
+elseif mode == 'replace' or mode == 'update' or ARGV[2] ~= '' then
+  return 0
+end
+
+if ARGV[2] ~= '' and tonumber(ARGV[2]) ~= version then
+  return -2
+end
+
+version = version + 1
+local versioned = ARGV[3] == '1'
+local removed = tonumber(ARGV[4])
+if mode == 'update' then
+  if removed > 0 then
+    redis.call('HDEL', KEYS[1], unpack(ARGV, 5, 4 + removed))
+  end
+  if not versioned then
+    redis.call('HDEL', KEYS[1], '_v')
+  end
+else
+  redis.call('DEL', KEYS[1])
+end
+
+local fields = {}
+if versioned then
+  fields = { '_v', string.format('%d', version) }
+end
+for i = 5 + removed, #ARGV do
+  fields[#fields + 1] = ARGV[i]
+end
+if #fields > 0 then
+  redis.call('HSET', KEYS[1], unpack(fields))
+end
+return version
@@ -0,0 +1,73 @@
+-- Replaces sections of a value stored in the tagged-section layout:
+--   [version envelope] header, then repeated (tag byte, varint length, payload)
+-- and bumps its version.
+-- KEYS[1]  the key
+-- ARGV[1]  expected header, compared byte for byte
+-- ARGV[2]  comma-separated tags of the sections to drop
+-- ARGV[3]  encoded sections to append
+-- ARGV[4]  the expected current version, or '' for any
+-- ARGV[5]  '1' to write the envelope; otherwise the value is written bare, at version 0
+-- Returns the new version, 0 when the key does not exist,
+-- -1 when the value is not in the expected layout (the caller patches it itself),
+-- -2 when the current version is not the expected one.
+local value = redis.call('GET', KEYS[1])
+if not value then
+  return 0
+end
+
+local version = 0
+local pos = 1
+local _, envelopeEnd, digits = string.find(value, '^\167V(%d+);')
+if envelopeEnd then
+  version = tonumber(digits)
+  pos = envelopeEnd + 1
+end
+
+if ARGV[4] ~= '' and tonumber(ARGV[4]) ~= version then
+  return -2
+end
+
+local header = ARGV[1]
+if string.sub(value, pos, pos + #header - 1) ~= header then
+  return -1
+end
+
+local drop = {}
+for tag in string.gmatch(ARGV[2], '%d+') do
+  drop[tonumber(tag)] = true
+end
+
+version = version + 1
+local envelope = ''
+if ARGV[5] == '1' then
+  envelope = '\167V' .. string.format('%d', version) .. ';'
+end
+local parts = { envelope, header }
+pos = pos + #header
+local size = #value
+while pos <= size do
+  local start = pos
+  local tag = string.byte(value, pos)
+  pos = pos + 1
+  local length, shift = 0, 1
+  repeat
+    local b = string.byte(value, pos)
+    if not b then
+      return -1
+    end
+    pos = pos + 1
+    length = length + (b % 128) * shift
+    shift = shift * 128
+  until b < 128
+  pos = pos + length
+  if pos - 1 > size then
+    return -1
+  end
+  if not drop[tag] then
+    parts[#parts + 1] = string.sub(value, start, pos - 1)
+  end
+end
+parts[#parts + 1] = ARGV[3]
+
+redis.call('SET', KEYS[1], table.concat(parts))
+return version
@@ -0,0 +1,11 @@
+-- Restores a value moved from the previous node of its key, unless the key was written here
+-- since, or deleted while it was moving.
+-- KEYS[1]  the key
+-- KEYS[2]  the tombstone a delete of the key leaves while it is moving
+-- ARGV[1]  the DUMP of the value on the previous node
+-- Returns 1 when restored, 0 when the key exists or was deleted.
+if redis.call('EXISTS', KEYS[1]) == 1 or redis.call('EXISTS', KEYS[2]) == 1 then
+  return 0
+end
+redis.call('RESTORE', KEYS[1], 0, ARGV[1])
+return 1
@@ -0,0 +1,22 @@
+-- Deletes a value if its version is the expected one.
+-- The value may be stored whole, under a version envelope, or as a hash with the field '_v'.
+-- KEYS[1]  the key
+-- ARGV[1]  the expected current version
+-- Returns 1 when deleted, 0 when the key does not exist,
+-- -2 when the current version is not the expected one.
+local kind = redis.call('TYPE', KEYS[1]).ok
+local version
+if kind == 'hash' then
+  version = tonumber(redis.call('HGET', KEYS[1], '_v')) or 0
+elseif kind == 'string' then
+  version = tonumber(string.match(redis.call('GET', KEYS[1]), '^\167V(%d+);')) or 0
+else
+  return 0
+end
+
+if tonumber(ARGV[1]) ~= version then
+  return -2
+end
+
+redis.call('DEL', KEYS[1])
+return 1
@@ -0,0 +1,33 @@
+-- Writes a payload under a version envelope: 0xA7 'V' <decimal version> ';' <payload>.
+-- Values written before versions existed have version 0.
+-- KEYS[1]  the key
+-- ARGV[1]  create (key must not exist), replace (key must exist) or upsert
+-- ARGV[2]  the expected current version, or '' for any
+-- ARGV[3]  the payload
+-- ARGV[4]  '1' to write the envelope; otherwise the payload is written bare, at version 0,
+--          for nodes that predate versions
+-- Returns the new version, 0 when the existence condition of the mode does not hold,
+-- -2 when the current version is not the expected one.
+local current = redis.call('GET', KEYS[1])
+local mode = ARGV[1]
+local version = 0
+if current then
+  if mode == 'create' then
+    return 0
+  end
+  version = tonumber(string.match(current, '^\167V(%d+);')) or 0
+elseif mode == 'replace' or ARGV[2] ~= '' then
+  return 0
+end
+
+if ARGV[2] ~= '' and tonumber(ARGV[2]) ~= version then
+  return -2
+end
+
+version = version + 1
+if ARGV[4] == '1' then
+  redis.call('SET', KEYS[1], '\167V' .. string.format('%d', version) .. ';' .. ARGV[3])
+else
+  redis.call('SET', KEYS[1], ARGV[3])
+end
+return version
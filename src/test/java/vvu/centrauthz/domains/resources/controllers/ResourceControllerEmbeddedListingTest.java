@@ -0,0 +1,53 @@
+package vvu.centrauthz.domains.resources.controllers;
+
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.client.HttpClient;
+import io.micronaut.http.client.annotation.Client;
+import io.micronaut.http.client.exceptions.HttpClientResponseException;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import io.micronaut.test.support.TestPropertyProvider;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import vvu.centrauthz.utilities.ConstantValues;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The embedded engine keeps no ordered sets, so listing resources by owner is not implemented.
+ */
+@MicronautTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ResourceControllerEmbeddedListingTest implements TestPropertyProvider {
+
+    @Inject
+    @Client("/")
+    HttpClient client;
+
+    @Override
+    public Map<String, String> getProperties() {
+        try {
+            var directory = Files.createTempDirectory("resources-embedded");
+            directory.toFile().deleteOnExit();
+            return Map.of("storage.engine", "embedded", "storage.embedded.directory", directory.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Test
+    void list_onEmbeddedEngine_notImplemented() {
+        var uri = "/v0/applications/app/resources?ownerId=" + UUID.randomUUID();
+        var e = assertThrows(HttpClientResponseException.class, () -> client.toBlocking()
+                .exchange(HttpRequest.GET(uri).header(ConstantValues.X_USER_ID_HEADER, UUID.randomUUID().toString())));
+
+        assertEquals(HttpStatus.NOT_IMPLEMENTED, e.getStatus());
+    }
+}
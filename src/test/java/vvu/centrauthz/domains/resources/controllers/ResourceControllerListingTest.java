@@ -0,0 +1,89 @@
+package vvu.centrauthz.domains.resources.controllers;
+
+import io.micronaut.core.type.Argument;
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.client.HttpClient;
+import io.micronaut.http.client.annotation.Client;
+import io.micronaut.http.client.exceptions.HttpClientResponseException;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.utilities.ConstantValues;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Listing resources by owner over HTTP, on the in-memory engine of the test environment.
+ */
+@MicronautTest
+class ResourceControllerListingTest {
+
+    private final String appKey = UUID.randomUUID().toString().split("-")[0];
+    private final UUID userId = UUID.randomUUID();
+
+    @Inject
+    @Client("/")
+    HttpClient client;
+
+    private String path() {
+        return "/v0/applications/" + appKey + "/resources";
+    }
+
+    private Resource create(UUID ownerId) {
+        var resource = Resource.builder().applicationKey(appKey).type("doc").ownerId(ownerId).build();
+        return client.toBlocking().retrieve(
+                HttpRequest.POST(path(), resource).header(ConstantValues.X_USER_ID_HEADER, userId.toString()),
+                Resource.class);
+    }
+
+    private HttpStatus statusOf(String uri) {
+        var e = assertThrows(HttpClientResponseException.class, () -> client.toBlocking()
+                .exchange(HttpRequest.GET(uri).header(ConstantValues.X_USER_ID_HEADER, userId.toString())));
+        return e.getStatus();
+    }
+
+    @Test
+    void list_pagesWithTheNextCursor() {
+        var ownerId = UUID.randomUUID();
+        var created = List.of(create(ownerId), create(ownerId), create(ownerId));
+        create(UUID.randomUUID());
+
+        var listed = new ArrayList<UUID>();
+        String cursor = null;
+        var pages = 0;
+        do {
+            var uri = path() + "?ownerId=" + ownerId + "&limit=2" + (cursor == null ? "" : "&after=" + cursor);
+            var response = client.toBlocking().exchange(
+                    HttpRequest.GET(uri).header(ConstantValues.X_USER_ID_HEADER, userId.toString()),
+                    Argument.listOf(Resource.class));
+            assertEquals(HttpStatus.OK, response.getStatus());
+            response.getBody().orElseThrow().forEach(r -> listed.add(r.id()));
+            cursor = response.header(ConstantValues.X_NEXT_CURSOR_HEADER);
+            pages++;
+        } while (cursor != null && pages < 5);
+
+        assertEquals(created.stream().map(Resource::id).sorted().toList(), listed.stream().sorted().toList());
+        assertTrue(pages >= 2);
+    }
+
+    @Test
+    void list_whenLimitBelowOne_badRequest() {
+        assertEquals(HttpStatus.BAD_REQUEST, statusOf(path() + "?ownerId=" + UUID.randomUUID() + "&limit=0"));
+    }
+
+    @Test
+    void list_whenLimitAboveThousand_badRequest() {
+        assertEquals(HttpStatus.BAD_REQUEST, statusOf(path() + "?ownerId=" + UUID.randomUUID() + "&limit=1001"));
+    }
+
+    @Test
+    void list_withoutOwnerId_badRequest() {
+        assertEquals(HttpStatus.BAD_REQUEST, statusOf(path()));
+    }
+}
@@ -1,16 +1,24 @@
 package vvu.centrauthz.domains.resources.controllers;
 
+import io.micronaut.http.HttpHeaders;
 import io.micronaut.http.HttpStatus;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.domains.resources.models.ResourceBatch;
+import vvu.centrauthz.domains.resources.models.ResourceBatchGet;
+import vvu.centrauthz.domains.resources.models.ResourceBatchGetItem;
 import vvu.centrauthz.domains.resources.models.ResourceForPatch;
+import vvu.centrauthz.domains.resources.models.ResourceOperation;
+import vvu.centrauthz.domains.resources.models.ResourceOperationResult;
 import vvu.centrauthz.domains.resources.services.ResourceService;
 import vvu.centrauthz.exceptions.BadRequestError;
 import vvu.centrauthz.models.Void;
+import vvu.centrauthz.utilities.ConstantValues;
 import vvu.centrauthz.utilities.Context;
 
 import java.util.List;
@@ -18,14 +26,21 @@ import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 
 class ResourceControllerTest {
 
+    private static ResourceService mockService() {
+        ResourceService service = Mockito.mock(ResourceService.class);
+        Mockito.when(service.consistencyToken(anyString())).thenReturn(Mono.empty());
+        return service;
+    }
+
     @Test
     void testGetResource() {
 
-        ResourceService service = Mockito.mock(ResourceService.class);
+        ResourceService service = mockService();
         ResourceController controller = new ResourceController(service);
         var appKey = UUID.randomUUID().toString().split("-")[0];
         var userId = UUID.randomUUID();
@@ -39,9 +54,9 @@ class ResourceControllerTest {
         var idCaptor = ArgumentCaptor.forClass(UUID.class);
         var contextCaptor = ArgumentCaptor.forClass(Context.class);
 
-        Mockito.when(service.get(appKeyCaptor.capture() ,idCaptor.capture(), contextCaptor.capture())).thenReturn(Mono.just(expectedResource));
+        Mockito.when(service.get(appKeyCaptor.capture() ,idCaptor.capture(), any(), contextCaptor.capture())).thenReturn(Mono.just(expectedResource));
 
-        StepVerifier.create(controller.getResource(userId, appKey, expectedResource.id()))
+        StepVerifier.create(controller.getResource(userId, appKey, expectedResource.id(), null, null))
                 .assertNext( response -> {
                     assertEquals(HttpStatus.OK, response.status());
                     assertSame(expectedResource, response.body());
@@ -49,13 +64,141 @@ class ResourceControllerTest {
                 .verifyComplete();
         assertEquals(expectedResource.id(), idCaptor.getValue());
         assertEquals(appKey, appKeyCaptor.getValue());
-        Mockito.verify(service, Mockito.times(1)).get(anyString(), any(UUID.class), any(Context.class));
+        Mockito.verify(service, Mockito.times(1)).get(anyString(), any(UUID.class), any(), any(Context.class));
+    }
+
+    @Test
+    void getResource_whenVersioned_ETag() {
+        ResourceService service = mockService();
+        ResourceController controller = new ResourceController(service);
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var resource = Resource.builder()
+                .id(UUID.randomUUID())
+                .type(UUID.randomUUID().toString().split("-")[0])
+                .applicationKey(appKey)
+                .version(7L)
+                .build();
+
+        Mockito.when(service.get(anyString(), any(UUID.class), any(), any(Context.class))).thenReturn(Mono.just(resource));
+
+        StepVerifier.create(controller.getResource(UUID.randomUUID(), appKey, resource.id(), null, null))
+                .assertNext(response -> assertEquals("\"7\"", response.getHeaders().get(HttpHeaders.ETAG)))
+                .verifyComplete();
+    }
+
+    @Test
+    void getResource_whenFields_passesProjection() {
+        ResourceService service = mockService();
+        ResourceController controller = new ResourceController(service);
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var resource = Resource.builder().id(UUID.randomUUID()).tags(List.of("tag1")).build();
+        var fields = List.of("tags");
+
+        Mockito.when(service.get(anyString(), any(UUID.class), any(), any(Context.class))).thenReturn(Mono.just(resource));
+
+        StepVerifier.create(controller.getResource(UUID.randomUUID(), appKey, resource.id(), fields, null))
+                .assertNext(response -> assertSame(resource, response.body()))
+                .verifyComplete();
+        Mockito.verify(service, Mockito.times(1)).get(Mockito.eq(appKey), Mockito.eq(resource.id()), Mockito.eq(fields), any(Context.class));
+    }
+
+    @Test
+    void getResource_whenConsistencyToken_passesItToService() {
+        ResourceService service = mockService();
+        ResourceController controller = new ResourceController(service);
+        var resource = Resource.builder().id(UUID.randomUUID()).build();
+        var contextCaptor = ArgumentCaptor.forClass(Context.class);
+
+        Mockito.when(service.get(anyString(), any(UUID.class), any(), contextCaptor.capture())).thenReturn(Mono.just(resource));
+
+        StepVerifier.create(controller.getResource(UUID.randomUUID(), "app", resource.id(), null, "abc:42"))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals("abc:42", contextCaptor.getValue().consistencyToken());
+    }
+
+    @Test
+    void deleteResource_whenReplicated_returnsConsistencyToken() {
+        ResourceService service = mockService();
+        ResourceController controller = new ResourceController(service);
+
+        Mockito.when(service.remove(anyString(), any(UUID.class), any(), any(Context.class))).thenReturn(Mono.just(Void.create()));
+        Mockito.when(service.consistencyToken("app")).thenReturn(Mono.just("abc:42"));
+
+        StepVerifier.create(controller.deleteResource(UUID.randomUUID(), "app", UUID.randomUUID(), null))
+                .assertNext(response -> assertEquals(
+                        "abc:42", response.getHeaders().get(ConstantValues.X_CONSISTENCY_TOKEN_HEADER)))
+                .verifyComplete();
+    }
+
+    @Test
+    void expectedVersion_parsesIfMatch() {
+        assertNull(ResourceController.expectedVersion(null));
+        assertNull(ResourceController.expectedVersion("*"));
+        assertEquals(3L, ResourceController.expectedVersion("\"3\""));
+        assertEquals(3L, ResourceController.expectedVersion("W/\"3\""));
+        var e = assertThrows(BadRequestError.class, () -> ResourceController.expectedVersion("\"abc\""));
+        assertEquals("INVALID_IF_MATCH", e.getError().code());
+    }
+
+
+    @Test
+    void batchGetResources_streamsFoundAndMissingItems() {
+        ResourceService service = mockService();
+        ResourceController controller = new ResourceController(service);
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var userId = UUID.randomUUID();
+        var found = Resource.builder()
+                .id(UUID.randomUUID())
+                .type(UUID.randomUUID().toString().split("-")[0])
+                .applicationKey(appKey)
+                .build();
+        var missingId = UUID.randomUUID();
+        var request = ResourceBatchGet.builder().ids(List.of(found.id(), missingId)).build();
+
+        Mockito.when(service.getAll(anyString(), anyList(), any(Context.class)))
+                .thenReturn(Flux.just(ResourceBatchGetItem.of(found.id(), found), ResourceBatchGetItem.of(missingId, null)));
+
+        StepVerifier.create(controller.batchGetResources(userId, appKey, null, request))
+                .assertNext(item -> {
+                    assertTrue(item.found());
+                    assertSame(found, item.resource());
+                })
+                .assertNext(item -> {
+                    assertFalse(item.found());
+                    assertEquals(missingId, item.id());
+                    assertNull(item.resource());
+                })
+                .verifyComplete();
+        Mockito.verify(service, Mockito.times(1)).getAll(Mockito.eq(appKey), Mockito.eq(request.ids()), any(Context.class));
     }
 
+    @Test
+    void batchResources_streamsOneResultPerOperation() {
+        ResourceService service = mockService();
+        ResourceController controller = new ResourceController(service);
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var userId = UUID.randomUUID();
+        var id = UUID.randomUUID();
+        var batch = ResourceBatch.builder()
+                .operations(List.of(ResourceOperation.builder().op(ResourceOperation.Type.DELETE).id(id).build()))
+                .build();
+
+        Mockito.when(service.batch(anyString(), anyList(), any(Context.class)))
+                .thenReturn(Flux.just(ResourceOperationResult.builder().id(id).status(204).build()));
+
+        StepVerifier.create(controller.batchResources(userId, appKey, batch))
+                .assertNext(result -> {
+                    assertEquals(id, result.id());
+                    assertEquals(204, result.status());
+                })
+                .verifyComplete();
+        Mockito.verify(service, Mockito.times(1)).batch(Mockito.eq(appKey), Mockito.eq(batch.operations()), any(Context.class));
+    }
 
     @Test
     void updateResource_whenNoId_success() {
-        ResourceService service = Mockito.mock(ResourceService.class);
+        ResourceService service = mockService();
         ResourceController controller = new ResourceController(service);
         var userId = UUID.randomUUID();
         var appKey = UUID.randomUUID().toString().split("-")[0];
@@ -69,9 +212,9 @@ class ResourceControllerTest {
         var contextCaptor = ArgumentCaptor.forClass(Context.class);
         var resourceCaptor = ArgumentCaptor.forClass(Resource.class);
 
-        Mockito.when(service.save(appKeyCaptor.capture() ,resourceCaptor.capture(), contextCaptor.capture())).thenReturn(Mono.just(Void.create()));
+        Mockito.when(service.save(appKeyCaptor.capture() ,resourceCaptor.capture(), any(), contextCaptor.capture())).thenReturn(Mono.just(Void.create()));
 
-        StepVerifier.create(controller.updateResource(userId, appKey, id, expectedResource))
+        StepVerifier.create(controller.updateResource(userId, appKey, id, null, expectedResource))
                 .assertNext( response -> {
                     assertEquals(HttpStatus.NO_CONTENT, response.status());
                     assertNull(response.body());
@@ -80,12 +223,12 @@ class ResourceControllerTest {
         assertNotNull(contextCaptor.getValue());
         assertEquals(appKey, appKeyCaptor.getValue());
         assertEquals(id, resourceCaptor.getAllValues().getLast().id());
-        Mockito.verify(service, Mockito.times(1)).save(anyString(), any(Resource.class), any(Context.class));
+        Mockito.verify(service, Mockito.times(1)).save(anyString(), any(Resource.class), any(), any(Context.class));
     }
 
     @Test
     void updateResource_whenIdMatched_success() {
-        ResourceService service = Mockito.mock(ResourceService.class);
+        ResourceService service = mockService();
         ResourceController controller = new ResourceController(service);
         var appKey = UUID.randomUUID().toString().split("-")[0];
         var expectedResource = Resource.builder()
@@ -99,9 +242,9 @@ class ResourceControllerTest {
         var resourceCaptor = ArgumentCaptor.forClass(Resource.class);
         var userId = UUID.randomUUID();
 
-        Mockito.when(service.save(appKeyCaptor.capture() ,resourceCaptor.capture(), contextCaptor.capture())).thenReturn(Mono.just(Void.create()));
+        Mockito.when(service.save(appKeyCaptor.capture() ,resourceCaptor.capture(), any(), contextCaptor.capture())).thenReturn(Mono.just(Void.create()));
 
-        StepVerifier.create(controller.updateResource(userId, appKey, expectedResource.id(), expectedResource))
+        StepVerifier.create(controller.updateResource(userId, appKey, expectedResource.id(), null, expectedResource))
                 .assertNext( response -> {
                     assertEquals(HttpStatus.NO_CONTENT, response.status());
                     assertNull(response.body());
@@ -109,12 +252,12 @@ class ResourceControllerTest {
                 .verifyComplete();
         assertNotNull(contextCaptor.getValue());
         assertEquals(appKey, appKeyCaptor.getAllValues().getLast());
-        Mockito.verify(service, Mockito.times(1)).save(anyString(), any(Resource.class), any(Context.class));
+        Mockito.verify(service, Mockito.times(1)).save(anyString(), any(Resource.class), any(), any(Context.class));
     }
 
     @Test
     void updateResource_whenIdNotMatched_BadRequest() {
-        ResourceService service = Mockito.mock(ResourceService.class);
+        ResourceService service = mockService();
         ResourceController controller = new ResourceController(service);
         var userId = UUID.randomUUID();
         var appKey = UUID.randomUUID().toString().split("-")[0];
@@ -128,20 +271,41 @@ class ResourceControllerTest {
         var contextCaptor = ArgumentCaptor.forClass(Context.class);
         var resourceCaptor = ArgumentCaptor.forClass(Resource.class);
 
-        Mockito.when(service.save(appKeyCaptor.capture() ,resourceCaptor.capture(), contextCaptor.capture())).thenReturn(Mono.just(Void.create()));
+        Mockito.when(service.save(appKeyCaptor.capture() ,resourceCaptor.capture(), any(), contextCaptor.capture())).thenReturn(Mono.just(Void.create()));
 
-        StepVerifier.create(controller.updateResource(userId, appKey, UUID.randomUUID(), expectedResource))
+        StepVerifier.create(controller.updateResource(userId, appKey, UUID.randomUUID(), null, expectedResource))
                 .expectErrorSatisfies( e -> {
                     assertInstanceOf(BadRequestError.class, e);
                     assertEquals("INVALID_ID", ((BadRequestError)e).getError().code());
                 })
                 .verify();
-        Mockito.verify(service, Mockito.times(0)).save(anyString(), any(Resource.class), any(Context.class));
+        Mockito.verify(service, Mockito.times(0)).save(anyString(), any(Resource.class), any(), any(Context.class));
+    }
+
+    @Test
+    void updateResource_whenIfMatch_passesVersion() {
+        ResourceService service = mockService();
+        ResourceController controller = new ResourceController(service);
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var resource = Resource.builder()
+                .id(UUID.randomUUID())
+                .type(UUID.randomUUID().toString().split("-")[0])
+                .applicationKey(appKey)
+                .build();
+
+        Mockito.when(service.save(anyString(), any(Resource.class), any(), any(Context.class)))
+                .thenReturn(Mono.just(Void.create()));
+
+        StepVerifier.create(controller.updateResource(UUID.randomUUID(), appKey, resource.id(), "\"4\"", resource))
+                .assertNext(response -> assertEquals(HttpStatus.NO_CONTENT, response.status()))
+                .verifyComplete();
+        Mockito.verify(service, Mockito.times(1))
+                .save(anyString(), any(Resource.class), Mockito.eq(4L), any(Context.class));
     }
 
     @Test
     void testPatchResource() {
-        ResourceService service = Mockito.mock(ResourceService.class);
+        ResourceService service = mockService();
         ResourceController controller = new ResourceController(service);
         var userId = UUID.randomUUID();
         var appKey = UUID.randomUUID().toString().split("-")[0];
@@ -167,10 +331,11 @@ class ResourceControllerTest {
                         appKeyCaptor.capture(),
                         idCaptor.capture(),
                         resourceCaptor.capture(),
+                        any(),
                         contextCaptor.capture()))
                 .thenReturn(Mono.just(Void.create()));
 
-        StepVerifier.create(controller.patchResource(userId, appKey, id, patcher))
+        StepVerifier.create(controller.patchResource(userId, appKey, id, null, patcher))
                 .assertNext( response -> {
                     assertEquals(HttpStatus.NO_CONTENT, response.status());
                     assertNull(response.body());
@@ -180,12 +345,12 @@ class ResourceControllerTest {
         assertEquals(appKey, appKeyCaptor.getValue());
         assertEquals(id, idCaptor.getValue());
         assertEquals(patcher, resourceCaptor.getAllValues().getLast());
-        Mockito.verify(service, Mockito.times(1)).patch(anyString(), any(UUID.class), any(ResourceForPatch.class), any(Context.class));
+        Mockito.verify(service, Mockito.times(1)).patch(anyString(), any(UUID.class), any(ResourceForPatch.class), any(), any(Context.class));
     }
 
     @Test
     void testDeleteResource() {
-        ResourceService service = Mockito.mock(ResourceService.class);
+        ResourceService service = mockService();
         ResourceController controller = new ResourceController(service);
         var appKey = UUID.randomUUID().toString().split("-")[0];
         var id = UUID.randomUUID();
@@ -196,9 +361,9 @@ class ResourceControllerTest {
 
         Mockito.when(service.remove(
                         appKeyCaptor.capture(),
-                        idCaptor.capture(), contextCaptor.capture()))
+                        idCaptor.capture(), any(), contextCaptor.capture()))
                 .thenReturn(Mono.just(Void.create()));
-        StepVerifier.create(controller.deleteResource(userId, appKey, id))
+        StepVerifier.create(controller.deleteResource(userId, appKey, id, null))
                 .assertNext( response -> {
                     assertEquals(HttpStatus.NO_CONTENT, response.status());
                     assertNull(response.body());
@@ -207,12 +372,12 @@ class ResourceControllerTest {
         assertEquals(appKey, appKeyCaptor.getValue());
 
         assertEquals(id, idCaptor.getValue());
-        Mockito.verify(service, Mockito.times(1)).remove(anyString(), any(UUID.class), any(Context.class));
+        Mockito.verify(service, Mockito.times(1)).remove(anyString(), any(UUID.class), any(), any(Context.class));
     }
 
     @Test
     void testCreateResource() {
-        ResourceService service = Mockito.mock(ResourceService.class);
+        ResourceService service = mockService();
         ResourceController controller = new ResourceController(service);
         var userId = UUID.randomUUID();
         var appKey = UUID.randomUUID().toString().split("-")[0];
@@ -244,4 +409,42 @@ class ResourceControllerTest {
         assertEquals(expectedResource, resourceCaptor.getValue());
         Mockito.verify(service, Mockito.times(1)).create(anyString(), any(Resource.class), any(Context.class));
     }
+
+    @Test
+    void listResourcesByOwner_whenMoreMayFollow_nextCursorHeader() {
+        ResourceService service = mockService();
+        ResourceController controller = new ResourceController(service);
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var ownerId = UUID.randomUUID();
+        var resource = Resource.builder().id(UUID.randomUUID()).type("doc").ownerId(ownerId).build();
+
+        Mockito.when(service.listOwned(Mockito.eq(appKey), Mockito.eq(ownerId), Mockito.eq("c1"), Mockito.eq(2), any(Context.class)))
+                .thenReturn(Mono.just(new ResourceService.OwnedResources("c2", Flux.just(resource))));
+
+        StepVerifier.create(controller.listResourcesByOwner(UUID.randomUUID(), appKey, ownerId, "c1", 2, null))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.OK, response.status());
+                    assertEquals("c2", response.header(ConstantValues.X_NEXT_CURSOR_HEADER));
+                    StepVerifier.create(response.body()).expectNext(resource).verifyComplete();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void listResourcesByOwner_onLastPage_noNextCursorHeader() {
+        ResourceService service = mockService();
+        ResourceController controller = new ResourceController(service);
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var ownerId = UUID.randomUUID();
+
+        Mockito.when(service.listOwned(Mockito.eq(appKey), Mockito.eq(ownerId), Mockito.isNull(), Mockito.eq(100), any(Context.class)))
+                .thenReturn(Mono.just(new ResourceService.OwnedResources(null, Flux.empty())));
+
+        StepVerifier.create(controller.listResourcesByOwner(UUID.randomUUID(), appKey, ownerId, null, 100, null))
+                .assertNext(response -> {
+                    assertEquals(HttpStatus.OK, response.status());
+                    assertNull(response.header(ConstantValues.X_NEXT_CURSOR_HEADER));
+                })
+                .verifyComplete();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package vvu.centrauthz.domains.resources.models;
+
+import io.micronaut.context.env.Environment;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@MicronautTest(environments = Environment.TEST, startApplication = false)
+class ResourceBatchGetTest {
+
+    @Inject
+    Validator validator;
+
+    @Test
+    void validate_whenIdsAreUuids_noViolation() {
+        var request = ResourceBatchGet.builder().ids(List.of(UUID.randomUUID(), UUID.randomUUID())).build();
+
+        assertTrue(validator.validate(request).isEmpty());
+    }
+
+    @Test
+    void validate_whenAnIdIsNull_violation() {
+        var request = ResourceBatchGet.builder().ids(Arrays.asList(UUID.randomUUID(), null)).build();
+
+        var violations = validator.validate(request);
+
+        assertEquals(1, violations.size());
+        assertEquals("IDs cannot be null", violations.iterator().next().getMessage());
+    }
+}
@@ -0,0 +1,171 @@
+package vvu.centrauthz.domains.resources.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.domains.resources.models.ResourceBatchGetItem;
+import vvu.centrauthz.domains.resources.models.ResourceOperation;
+import vvu.centrauthz.domains.resources.repositories.ResourceWritable;
+import vvu.centrauthz.exceptions.ConflictError;
+import vvu.centrauthz.exceptions.NotFoundError;
+import vvu.centrauthz.exceptions.PreconditionFailedError;
+import vvu.centrauthz.storages.interfaces.VersionedWritable;
+import vvu.centrauthz.storages.keyvalue.redis.exceptions.RedisError;
+import vvu.centrauthz.utilities.Context;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+
+@DisplayName("ResourceService batch method tests")
+class ResourceServiceBatchTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void batch_whenMixedOperations_resultsInRequestOrder() {
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var userId = UUID.randomUUID();
+        var context = Context.from(userId, appKey);
+        var existing = Resource.builder().id(UUID.randomUUID()).applicationKey(appKey).type("doc").createdBy(userId).version(3L).build();
+        var missingId = UUID.randomUUID();
+        var deletedId = UUID.randomUUID();
+        var operations = List.of(
+                ResourceOperation.builder().op(ResourceOperation.Type.CREATE).resource(Resource.builder().type("doc").build()).build(),
+                ResourceOperation.builder().op(ResourceOperation.Type.PUT).id(existing.id()).resource(Resource.builder().type("folder").build()).build(),
+                ResourceOperation.builder().op(ResourceOperation.Type.PUT).id(missingId).resource(Resource.builder().type("doc").build()).build(),
+                ResourceOperation.builder().op(ResourceOperation.Type.DELETE).id(deletedId).build());
+        ArgumentCaptor<List<ResourceWritable.Write>> savedCaptor = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<UUID>> removedCaptor = ArgumentCaptor.forClass(List.class);
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .forReadable(r -> Mockito.when(r.getAll(anyString(), anyList()))
+                        .thenReturn(Flux.just(
+                                ResourceBatchGetItem.of(existing.id(), existing),
+                                ResourceBatchGetItem.of(missingId, null))))
+                .forWritable(w -> Mockito.when(w.saveAll(anyString(), savedCaptor.capture())).thenReturn(Mono.just(Map.of())))
+                .forRemovable(r -> Mockito.when(r.removeAll(anyString(), removedCaptor.capture())).thenReturn(Mono.just(Map.of())))
+                .build();
+
+        StepVerifier.create(resourceService.batch(appKey, operations, context))
+                .assertNext(result -> {
+                    assertEquals(201, result.status());
+                    assertNotNull(result.id());
+                    assertEquals(userId, result.resource().createdBy());
+                })
+                .assertNext(result -> assertEquals(204, result.status()))
+                .assertNext(result -> {
+                    assertEquals(404, result.status());
+                    assertNotNull(result.error());
+                })
+                .assertNext(result -> assertEquals(204, result.status()))
+                .verifyComplete();
+
+        assertEquals(2, savedCaptor.getValue().size());
+        assertEquals(VersionedWritable.Mode.CREATE, savedCaptor.getValue().get(0).mode());
+        assertNull(savedCaptor.getValue().get(0).expectedVersion());
+        assertEquals(VersionedWritable.Mode.REPLACE, savedCaptor.getValue().get(1).mode());
+        assertEquals(3L, savedCaptor.getValue().get(1).expectedVersion());
+        var replaced = savedCaptor.getValue().get(1).resource();
+        assertEquals(existing.id(), replaced.id());
+        assertEquals("folder", replaced.type());
+        assertEquals(userId, replaced.createdBy());
+        assertEquals(userId, replaced.updatedBy());
+        assertEquals(List.of(deletedId), removedCaptor.getValue());
+    }
+
+    @Test
+    void batch_whenWriteFails_onlyThatOperationFails() {
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var context = Context.from(UUID.randomUUID(), appKey);
+        var firstId = UUID.randomUUID();
+        var secondId = UUID.randomUUID();
+        var operations = List.of(
+                ResourceOperation.builder().op(ResourceOperation.Type.DELETE).id(firstId).build(),
+                ResourceOperation.builder().op(ResourceOperation.Type.DELETE).id(secondId).build());
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .forReadable(r -> Mockito.when(r.getAll(anyString(), anyList())).thenReturn(Flux.empty()))
+                .forWritable(w -> Mockito.when(w.saveAll(anyString(), anyList())).thenReturn(Mono.just(Map.of())))
+                .forRemovable(r -> Mockito.when(r.removeAll(anyString(), anyList()))
+                        .thenReturn(Mono.just(Map.of(secondId, new RedisError(new RuntimeException())))))
+                .build();
+
+        StepVerifier.create(resourceService.batch(appKey, operations, context))
+                .assertNext(result -> assertEquals(204, result.status()))
+                .assertNext(result -> {
+                    assertEquals(500, result.status());
+                    assertEquals(secondId, result.id());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void batch_whenCreateWithExistingId_conflict() {
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var context = Context.from(UUID.randomUUID(), appKey);
+        var existing = Resource.builder().id(UUID.randomUUID()).applicationKey(appKey).build();
+        var operations = List.of(
+                ResourceOperation.builder().op(ResourceOperation.Type.CREATE).resource(Resource.builder().id(existing.id()).build()).build());
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .forReadable(r -> Mockito.when(r.getAll(anyString(), anyList()))
+                        .thenReturn(Flux.just(ResourceBatchGetItem.of(existing.id(), existing))))
+                .forWritable(w -> Mockito.when(w.saveAll(anyString(), anyList())).thenReturn(Mono.just(Map.of())))
+                .forRemovable(r -> Mockito.when(r.removeAll(anyString(), anyList())).thenReturn(Mono.just(Map.of())))
+                .build();
+
+        StepVerifier.create(resourceService.batch(appKey, operations, context))
+                .assertNext(result -> assertEquals(409, result.status()))
+                .verifyComplete();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void batch_whenResourcesChangedSinceRead_thoseOperationsFail() {
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var context = Context.from(UUID.randomUUID(), appKey);
+        var createdId = UUID.randomUUID();
+        var deleted = Resource.builder().id(UUID.randomUUID()).applicationKey(appKey).type("doc").version(1L).build();
+        var updated = Resource.builder().id(UUID.randomUUID()).applicationKey(appKey).type("doc").version(2L).build();
+        var operations = List.of(
+                ResourceOperation.builder().op(ResourceOperation.Type.CREATE).resource(Resource.builder().id(createdId).ownerId(UUID.randomUUID()).type("doc").build()).build(),
+                ResourceOperation.builder().op(ResourceOperation.Type.PUT).id(deleted.id()).resource(Resource.builder().type("doc").build()).build(),
+                ResourceOperation.builder().op(ResourceOperation.Type.PUT).id(updated.id()).resource(Resource.builder().type("doc").build()).build());
+        ArgumentCaptor<List<Resource>> unindexedCaptor = ArgumentCaptor.forClass(List.class);
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .forReadable(r -> Mockito.when(r.getAll(anyString(), anyList()))
+                        .thenReturn(Flux.just(
+                                ResourceBatchGetItem.of(createdId, null),
+                                ResourceBatchGetItem.of(deleted.id(), deleted),
+                                ResourceBatchGetItem.of(updated.id(), updated))))
+                .forWritable(w -> Mockito.when(w.saveAll(anyString(), anyList())).thenReturn(Mono.just(Map.of(
+                        createdId, new ConflictError("Key exists"),
+                        deleted.id(), new NotFoundError("NOT_FOUND", "Key does not exist"),
+                        updated.id(), new PreconditionFailedError("Version mismatch")))))
+                .forRemovable(r -> Mockito.when(r.removeAll(anyString(), anyList())).thenReturn(Mono.just(Map.of())))
+                .withOwnerIndexVerifier(index -> Mockito.verify(index).unindex(anyString(), unindexedCaptor.capture()))
+                .build();
+
+        StepVerifier.create(resourceService.batch(appKey, operations, context))
+                .assertNext(result -> {
+                    assertEquals(409, result.status());
+                    assertEquals(createdId, result.id());
+                })
+                .assertNext(result -> assertEquals(404, result.status()))
+                .assertNext(result -> assertEquals(412, result.status()))
+                .verifyComplete();
+
+        mocker.verify();
+        assertEquals(List.of(createdId), unindexedCaptor.getValue().stream().map(Resource::id).toList());
+    }
+}
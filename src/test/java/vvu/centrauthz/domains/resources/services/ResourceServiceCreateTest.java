@@ -10,7 +10,6 @@ import reactor.test.StepVerifier;
 import vvu.centrauthz.domains.resources.models.Resource;
 import vvu.centrauthz.models.User;
 import vvu.centrauthz.exceptions.ConflictError;
-import vvu.centrauthz.models.Void;
 import vvu.centrauthz.utilities.Context;
 
 import java.util.UUID;
@@ -34,21 +33,14 @@ class ResourceServiceCreateTest {
                 .ownerId(UUID.randomUUID())
                 .build();
         ArgumentCaptor<String> appKeyCaptor = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<UUID> uuidCaptor = ArgumentCaptor.forClass(UUID.class);
         ArgumentCaptor<Resource> resourceCaptor = ArgumentCaptor.forClass(Resource.class);
         var mocker = ResourceServiceMocker.create();
         var resourceService =
                 mocker
-                        .forReadable(r -> Mockito.when(r.get(appKeyCaptor.capture(), uuidCaptor.capture())).thenReturn(Mono.empty()))
-                        .withReadableVerifier(r -> {
-                            Mockito.verify(r, Mockito.only()).get(anyString(), any(UUID.class));
-                            var capturedAppKey = appKeyCaptor.getAllValues().getFirst();
-                            var capturedId = uuidCaptor.getAllValues().getFirst();
-                            assertEquals(capturedAppKey, appKey);
-                            assertEquals(capturedId, resource.id());
-                        }).forWritable( w -> Mockito.when(w.save(appKeyCaptor.capture(), resourceCaptor.capture())).thenReturn(Mono.just(vvu.centrauthz.models.Void.create())))
+                        .withReadableVerifier(r -> Mockito.verifyNoInteractions(r))
+                        .forWritable( w -> Mockito.when(w.create(appKeyCaptor.capture(), resourceCaptor.capture())).thenReturn(Mono.just(true)))
                         .withWritableVerifier( v -> {
-                            Mockito.verify(v, Mockito.only()).save(anyString(), any(Resource.class));
+                            Mockito.verify(v, Mockito.only()).create(anyString(), any(Resource.class));
                             var capturedAppKey = appKeyCaptor.getAllValues().getLast();
                             var capturedResource = resourceCaptor.getValue();
                             assertEquals(capturedAppKey, appKey);
@@ -80,17 +72,14 @@ class ResourceServiceCreateTest {
                 .ownerId(UUID.randomUUID())
                 .build();
         ArgumentCaptor<String> appKeyCaptor = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<UUID> uuidCaptor = ArgumentCaptor.forClass(UUID.class);
         ArgumentCaptor<Resource> resourceCaptor = ArgumentCaptor.forClass(Resource.class);
         var mocker = ResourceServiceMocker.create();
         var resourceService =
                 mocker
-                        .forReadable(r -> Mockito.when(r.get(appKeyCaptor.capture(), uuidCaptor.capture())).thenReturn(Mono.empty()))
-                        .withReadableVerifier(r -> {
-                            Mockito.verify(r, Mockito.times(0)).get(anyString(), any(UUID.class));
-                        }).forWritable( w -> Mockito.when(w.save(appKeyCaptor.capture(), resourceCaptor.capture())).thenReturn(Mono.just(vvu.centrauthz.models.Void.create())))
+                        .withReadableVerifier(r -> Mockito.verifyNoInteractions(r))
+                        .forWritable( w -> Mockito.when(w.create(appKeyCaptor.capture(), resourceCaptor.capture())).thenReturn(Mono.just(true)))
                         .withWritableVerifier( v -> {
-                            Mockito.verify(v, Mockito.only()).save(anyString(), any(Resource.class));
+                            Mockito.verify(v, Mockito.only()).create(anyString(), any(Resource.class));
                             var capturedAppKey = appKeyCaptor.getAllValues().getFirst();
                             var capturedResource = resourceCaptor.getValue();
                             assertEquals(capturedAppKey, appKey);
@@ -123,21 +112,16 @@ class ResourceServiceCreateTest {
                 .ownerId(UUID.randomUUID())
                 .build();
         ArgumentCaptor<String> appKeyCaptor = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<UUID> uuidCaptor = ArgumentCaptor.forClass(UUID.class);
         ArgumentCaptor<Resource> resourceCaptor = ArgumentCaptor.forClass(Resource.class);
         var mocker = ResourceServiceMocker.create();
         var resourceService =
                 mocker
-                        .forReadable(r -> Mockito.when(r.get(appKeyCaptor.capture(), uuidCaptor.capture())).thenReturn(Mono.just(resource)))
-                        .withReadableVerifier(r -> {
-                            Mockito.verify(r, Mockito.only()).get(anyString(), any(UUID.class));
-                            var capturedAppKey = appKeyCaptor.getAllValues().getFirst();
-                            var capturedId = uuidCaptor.getAllValues().getFirst();
-                            assertEquals(capturedAppKey, appKey);
-                            assertNotNull(capturedId);
-                        }).forWritable( w -> Mockito.when(w.save(appKeyCaptor.capture(), resourceCaptor.capture())).thenReturn(Mono.just(Void.create())))
+                        .withReadableVerifier(r -> Mockito.verifyNoInteractions(r))
+                        .forWritable( w -> Mockito.when(w.create(appKeyCaptor.capture(), resourceCaptor.capture())).thenReturn(Mono.just(false)))
                         .withWritableVerifier( v -> {
-                            Mockito.verify(v, Mockito.times(0)).save(anyString(), any(Resource.class));
+                            Mockito.verify(v, Mockito.only()).create(anyString(), any(Resource.class));
+                            assertEquals(appKey, appKeyCaptor.getValue());
+                            assertEquals(resource.id(), resourceCaptor.getValue().id());
                         }).build();
 
         // When & Then
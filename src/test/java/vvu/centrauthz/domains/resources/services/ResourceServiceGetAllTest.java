@@ -0,0 +1,70 @@
+package vvu.centrauthz.domains.resources.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.domains.resources.models.ResourceBatchGetItem;
+import vvu.centrauthz.utilities.Context;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+
+@DisplayName("ResourceService getAll method tests")
+class ResourceServiceGetAllTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getAll_whenDuplicatedIds_readsEachIdOnce() {
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var context = Context.from(UUID.randomUUID(), appKey);
+        var resource = Resource.builder().id(UUID.randomUUID()).applicationKey(appKey).build();
+        var missingId = UUID.randomUUID();
+        ArgumentCaptor<List<UUID>> idsCaptor = ArgumentCaptor.forClass(List.class);
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .forReadable(r -> Mockito.when(r.getAll(anyString(), idsCaptor.capture()))
+                        .thenReturn(Flux.just(
+                                ResourceBatchGetItem.of(resource.id(), resource),
+                                ResourceBatchGetItem.of(missingId, null))))
+                .withReadableVerifier(r -> {
+                    Mockito.verify(r, Mockito.only()).getAll(anyString(), anyList());
+                    assertEquals(List.of(resource.id(), missingId), idsCaptor.getValue());
+                })
+                .build();
+
+        StepVerifier.create(resourceService.getAll(appKey, List.of(resource.id(), missingId, resource.id()), context))
+                .assertNext(item -> {
+                    assertTrue(item.found());
+                    assertSame(resource, item.resource());
+                })
+                .assertNext(item -> {
+                    assertFalse(item.found());
+                    assertEquals(missingId, item.id());
+                })
+                .verifyComplete();
+        mocker.verify();
+    }
+
+    @Test
+    void getAll_whenStorageFails_error() {
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var context = Context.from(UUID.randomUUID(), appKey);
+        var theError = new RuntimeException();
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .forReadable(r -> Mockito.when(r.getAll(anyString(), anyList())).thenReturn(Flux.error(theError)))
+                .build();
+
+        StepVerifier.create(resourceService.getAll(appKey, List.of(UUID.randomUUID()), context))
+                .expectErrorSatisfies(e -> assertSame(theError, e))
+                .verify();
+    }
+}
@@ -5,9 +5,11 @@ import org.mockito.Mockito;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.exceptions.BadRequestError;
 import vvu.centrauthz.exceptions.NotFoundError;
 import vvu.centrauthz.utilities.Context;
 
+import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -110,4 +112,42 @@ class ResourceServiceGetTest {
 
     }
 
+    @Test
+    void get_whenFields_readsProjection() {
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var id = UUID.randomUUID();
+        var fields = List.of("tags", "ownerId");
+        var projected = Resource.builder().id(id).tags(List.of("tag1")).build();
+        var context = Context.from(UUID.randomUUID(), appKey);
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .forReadable(r -> Mockito.when(r.get(appKey, id, fields)).thenReturn(Mono.just(projected)))
+                .withReadableVerifier(r -> Mockito.verify(r, Mockito.only()).get(appKey, id, fields))
+                .build();
+
+        StepVerifier.create(resourceService.get(appKey, id, fields, context))
+                .expectNext(projected)
+                .verifyComplete();
+        mocker.verify();
+    }
+
+    @Test
+    void get_whenUnknownFields_BadRequestError() {
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var id = UUID.randomUUID();
+        var context = Context.from(UUID.randomUUID(), appKey);
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .withReadableVerifier(Mockito::verifyNoInteractions)
+                .build();
+
+        StepVerifier.create(resourceService.get(appKey, id, List.of("tags", "password"), context))
+                .expectErrorSatisfies(e -> {
+                    Assertions.assertInstanceOf(BadRequestError.class, e);
+                    assertEquals("INVALID_FIELDS", ((BadRequestError) e).getError().code());
+                })
+                .verify();
+        mocker.verify();
+    }
+
 }
@@ -1,25 +1,37 @@
 package vvu.centrauthz.domains.resources.services;
 
 import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+import vvu.centrauthz.domains.resources.repositories.ResourceOwnerIndex;
 import vvu.centrauthz.domains.resources.repositories.ResourceReadable;
 import vvu.centrauthz.domains.resources.repositories.ResourceRemovable;
 import vvu.centrauthz.domains.resources.repositories.ResourceWritable;
+import vvu.centrauthz.models.Void;
 
 import java.util.Optional;
 import java.util.function.Consumer;
 
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+
 public class ResourceServiceMocker {
 
     private final ResourceReadable resourceReadableMock = Mockito.mock(ResourceReadable.class);
     private final ResourceWritable resourceWritableMock = Mockito.mock(ResourceWritable.class);
     private final ResourceRemovable resourceRemovableMock = Mockito.mock(ResourceRemovable.class);
+    private final ResourceOwnerIndex ownerIndexMock = Mockito.mock(ResourceOwnerIndex.class);
     private Consumer<ResourceReadable> readableVerifier = null;
     private Consumer<ResourceWritable> writableVerifier = null;
     private Consumer<ResourceRemovable> removableVerifier = null;
+    private Consumer<ResourceOwnerIndex> ownerIndexVerifier = null;
 
+    ResourceServiceMocker() {
+        Mockito.when(ownerIndexMock.index(anyString(), anyList())).thenReturn(Mono.just(Void.create()));
+        Mockito.when(ownerIndexMock.unindex(anyString(), anyList())).thenReturn(Mono.just(Void.create()));
+    }
 
     ResourceService build() {
-        return new ResourceService(resourceReadableMock, resourceWritableMock, resourceRemovableMock);
+        return new ResourceService(resourceReadableMock, resourceWritableMock, resourceRemovableMock, ownerIndexMock);
     }
 
     ResourceServiceMocker forReadable(Consumer<ResourceReadable> consumer) {
@@ -37,6 +49,11 @@ public class ResourceServiceMocker {
         return this;
     }
 
+    ResourceServiceMocker forOwnerIndex(Consumer<ResourceOwnerIndex> consumer) {
+        consumer.accept(ownerIndexMock);
+        return this;
+    }
+
     ResourceServiceMocker withReadableVerifier(Consumer<ResourceReadable> verifier) {
         this.readableVerifier = verifier;
         return this;
@@ -52,6 +69,11 @@ public class ResourceServiceMocker {
         return this;
     }
 
+    ResourceServiceMocker withOwnerIndexVerifier(Consumer<ResourceOwnerIndex> verifier) {
+        this.ownerIndexVerifier = verifier;
+        return this;
+    }
+
     void verify() {
         Optional
                 .ofNullable(readableVerifier)
@@ -62,6 +84,9 @@ public class ResourceServiceMocker {
         Optional
                 .ofNullable(removableVerifier)
                 .ifPresent(v -> v.accept(resourceRemovableMock));
+        Optional
+                .ofNullable(ownerIndexVerifier)
+                .ifPresent(v -> v.accept(ownerIndexMock));
     }
 
     static ResourceServiceMocker create() {
@@ -0,0 +1,188 @@
+package vvu.centrauthz.domains.resources.services;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.domains.resources.models.ResourceBatchGetItem;
+import vvu.centrauthz.domains.resources.models.ResourceForPatch;
+import vvu.centrauthz.domains.resources.repositories.ResourceOwnerIndex;
+import vvu.centrauthz.exceptions.ConflictError;
+import vvu.centrauthz.exceptions.PreconditionFailedError;
+import vvu.centrauthz.models.Void;
+import vvu.centrauthz.utilities.Context;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+
+@DisplayName("ResourceService owner index tests")
+class ResourceServiceOwnerIndexTest {
+
+    private final String appKey = UUID.randomUUID().toString().split("-")[0];
+    private final Context context = Context.from(UUID.randomUUID(), appKey);
+
+    private static boolean isOnly(List<Resource> resources, UUID id, UUID ownerId) {
+        return resources.size() == 1 && id.equals(resources.getFirst().id()) && ownerId.equals(resources.getFirst().ownerId());
+    }
+
+    @Test
+    void create_indexesTheNewResource() {
+        var resource = Resource.builder().id(UUID.randomUUID()).type("doc").ownerId(UUID.randomUUID()).build();
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .forWritable(w -> Mockito.when(w.create(anyString(), any(Resource.class))).thenReturn(Mono.just(true)))
+                .withOwnerIndexVerifier(index -> {
+                    Mockito.verify(index).index(eq(appKey), argThat(r -> isOnly(r, resource.id(), resource.ownerId())));
+                    Mockito.verify(index, Mockito.never()).unindex(anyString(), anyList());
+                })
+                .build();
+
+        StepVerifier.create(resourceService.create(appKey, resource, context))
+                .assertNext(created -> assertEquals(resource.id(), created.id()))
+                .verifyComplete();
+        mocker.verify();
+    }
+
+    @Test
+    void create_whenConflict_unindexes() {
+        var resource = Resource.builder().id(UUID.randomUUID()).type("doc").ownerId(UUID.randomUUID()).build();
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .forWritable(w -> Mockito.when(w.create(anyString(), any(Resource.class))).thenReturn(Mono.just(false)))
+                .withOwnerIndexVerifier(index -> Mockito.verify(index)
+                        .unindex(eq(appKey), argThat(r -> isOnly(r, resource.id(), resource.ownerId()))))
+                .build();
+
+        StepVerifier.create(resourceService.create(appKey, resource, context))
+                .expectError(ConflictError.class)
+                .verify();
+        mocker.verify();
+    }
+
+    @Test
+    void patch_whenOwnerChanges_movesEntryToNewOwner() {
+        var stored = Resource.builder().id(UUID.randomUUID()).type("doc").ownerId(UUID.randomUUID()).version(3L).build();
+        var newOwner = UUID.randomUUID();
+        var patcher = ResourceForPatch.builder()
+                .updatedFields(List.of("ownerId"))
+                .data(ResourceForPatch.ResourcePatchData.builder().ownerId(newOwner).build())
+                .build();
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .forReadable(r -> Mockito.when(r.get(appKey, stored.id())).thenReturn(Mono.just(stored)))
+                .forWritable(w -> Mockito.when(w.replace(anyString(), any(Resource.class), eq(3L))).thenReturn(Mono.just(true)))
+                .withWritableVerifier(w -> Mockito.verify(w, Mockito.never())
+                        .patch(anyString(), any(UUID.class), any(ResourceForPatch.class), any(UUID.class), anyLong(), any()))
+                .withOwnerIndexVerifier(index -> {
+                    Mockito.verify(index).index(eq(appKey), argThat(r -> isOnly(r, stored.id(), newOwner)));
+                    Mockito.verify(index).unindex(eq(appKey), argThat(r -> isOnly(r, stored.id(), stored.ownerId())));
+                })
+                .build();
+
+        StepVerifier.create(resourceService.patch(appKey, stored.id(), patcher, context))
+                .expectNext(Void.create())
+                .verifyComplete();
+        mocker.verify();
+    }
+
+    @Test
+    void remove_unindexesFromTheIndexedFieldsOnly() {
+        var stored = Resource.builder().id(UUID.randomUUID()).ownerId(UUID.randomUUID()).createdAt(10L).version(2L).build();
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .forReadable(r -> Mockito.when(r.get(appKey, stored.id(), List.of("ownerId", "createdAt")))
+                        .thenReturn(Mono.just(stored)))
+                .forRemovable(r -> Mockito.when(r.remove(appKey, stored.id(), 2L)).thenReturn(Mono.just(true)))
+                .withReadableVerifier(r -> Mockito.verify(r, Mockito.never()).get(anyString(), any(UUID.class)))
+                .withOwnerIndexVerifier(index -> Mockito.verify(index)
+                        .unindex(eq(appKey), argThat(r -> isOnly(r, stored.id(), stored.ownerId()))))
+                .build();
+
+        StepVerifier.create(resourceService.remove(appKey, stored.id(), 2L, context))
+                .expectNext(Void.create())
+                .verifyComplete();
+        mocker.verify();
+    }
+
+    @Test
+    void remove_whenVersionDiffers_keepsTheEntry() {
+        var stored = Resource.builder().id(UUID.randomUUID()).ownerId(UUID.randomUUID()).createdAt(10L).version(3L).build();
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .forReadable(r -> Mockito.when(r.get(anyString(), any(UUID.class), anyList())).thenReturn(Mono.just(stored)))
+                .forRemovable(r -> Mockito.when(r.remove(appKey, stored.id(), 2L))
+                        .thenReturn(Mono.error(new PreconditionFailedError("Version mismatch"))))
+                .withOwnerIndexVerifier(index -> Mockito.verify(index, Mockito.never()).unindex(anyString(), anyList()))
+                .build();
+
+        StepVerifier.create(resourceService.remove(appKey, stored.id(), 2L, context))
+                .expectError(PreconditionFailedError.class)
+                .verify();
+        mocker.verify();
+    }
+
+    @Test
+    void listOwned_skipsStaleEntriesAndRemovesOldMissingOnes() {
+        var ownerId = UUID.randomUUID();
+        var owned = Resource.builder().id(UUID.randomUUID()).type("doc").ownerId(ownerId).createdAt(10L).build();
+        var given = Resource.builder().id(UUID.randomUUID()).type("doc").ownerId(UUID.randomUUID()).createdAt(20L).build();
+        var deletedId = UUID.randomUUID();
+        var page = new ResourceOwnerIndex.Page(List.of(
+                new ResourceOwnerIndex.Entry(owned.id(), 10L),
+                new ResourceOwnerIndex.Entry(given.id(), 20L),
+                new ResourceOwnerIndex.Entry(deletedId, 30L)), "next");
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .forOwnerIndex(index -> Mockito.when(index.owned(appKey, ownerId, null, 3)).thenReturn(Mono.just(page)))
+                .forReadable(r -> Mockito.when(r.getAll(appKey, List.of(owned.id(), given.id(), deletedId)))
+                        .thenReturn(Flux.just(
+                                ResourceBatchGetItem.of(owned.id(), owned),
+                                ResourceBatchGetItem.of(given.id(), given),
+                                ResourceBatchGetItem.of(deletedId, null))))
+                .withOwnerIndexVerifier(index -> Mockito.verify(index)
+                        .unindex(eq(appKey), argThat(r -> isOnly(r, deletedId, ownerId))))
+                .build();
+
+        var result = resourceService.listOwned(appKey, ownerId, null, 3, context).block();
+
+        assertNotNull(result);
+        assertEquals("next", result.next());
+        StepVerifier.create(result.resources())
+                .expectNext(owned)
+                .verifyComplete();
+        mocker.verify();
+    }
+
+    @Test
+    void listOwned_removesOldEntriesOfRecreatedResources() {
+        var ownerId = UUID.randomUUID();
+        var recreated = Resource.builder().id(UUID.randomUUID()).type("doc").ownerId(ownerId).createdAt(50L).build();
+        var page = new ResourceOwnerIndex.Page(List.of(new ResourceOwnerIndex.Entry(recreated.id(), 10L)), null);
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .forOwnerIndex(index -> Mockito.when(index.owned(appKey, ownerId, null, 1)).thenReturn(Mono.just(page)))
+                .forReadable(r -> Mockito.when(r.getAll(appKey, List.of(recreated.id())))
+                        .thenReturn(Flux.just(ResourceBatchGetItem.of(recreated.id(), recreated))))
+                .withOwnerIndexVerifier(index -> Mockito.verify(index).unindex(eq(appKey), argThat(r ->
+                        isOnly(r, recreated.id(), ownerId) && r.getFirst().createdAt() == 10L)))
+                .build();
+
+        var result = resourceService.listOwned(appKey, ownerId, null, 1, context).block();
+
+        assertNotNull(result);
+        StepVerifier.create(result.resources())
+                .verifyComplete();
+        mocker.verify();
+    }
+}
@@ -12,7 +12,9 @@ import vvu.centrauthz.domains.resources.models.ResourceForPatch;
 import vvu.centrauthz.models.User;
 import vvu.centrauthz.exceptions.EUtils;
 import vvu.centrauthz.exceptions.NotFoundError;
+import vvu.centrauthz.exceptions.PreconditionFailedError;
 import vvu.centrauthz.models.Void;
+import vvu.centrauthz.storages.interfaces.PatchResult;
 import vvu.centrauthz.utilities.Context;
 
 import java.util.List;
@@ -20,6 +22,7 @@ import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 
 @DisplayName("ResourceService patch method tests")
@@ -56,9 +59,11 @@ public class ResourceServicePatchTest {
                 .withReadableVerifier(r -> {
                     Mockito.verify(r, Mockito.only()).get(anyString(), any(UUID.class));
                 })
-                .forWritable( w -> Mockito.when(w.save(anyString(), any(Resource.class))).thenReturn(Mono.just(Void.create())))
+                .forWritable(w -> Mockito.when(w.patch(anyString(), any(UUID.class), any(ResourceForPatch.class), any(UUID.class), anyLong(), any()))
+                        .thenReturn(Mono.just(PatchResult.UNSUPPORTED)))
+                .forWritable( w -> Mockito.when(w.replace(anyString(), any(Resource.class), any())).thenReturn(Mono.just(true)))
                 .withWritableVerifier( v -> {
-                    Mockito.verify(v, Mockito.never()).save(anyString(), any(Resource.class));
+                    Mockito.verify(v, Mockito.never()).replace(anyString(), any(Resource.class), any());
                 })
                 .build();
 
@@ -108,9 +113,11 @@ public class ResourceServicePatchTest {
                     assertEquals(appKeyCaptor.getAllValues().getFirst(), appKey);
                     assertEquals(idCaptor.getAllValues().getFirst(), updatedResource.id());
                 })
-                .forWritable( w -> Mockito.when(w.save(appKeyCaptor.capture(), resourceCaptor.capture())).thenReturn(Mono.just(Void.create())))
+                .forWritable(w -> Mockito.when(w.patch(anyString(), any(UUID.class), any(ResourceForPatch.class), any(UUID.class), anyLong(), any()))
+                        .thenReturn(Mono.just(PatchResult.UNSUPPORTED)))
+                .forWritable( w -> Mockito.when(w.replace(appKeyCaptor.capture(), resourceCaptor.capture(), any())).thenReturn(Mono.just(true)))
                 .withWritableVerifier( v -> {
-                    Mockito.verify(v, Mockito.times(1)).save(anyString(), any(Resource.class));
+                    Mockito.verify(v, Mockito.times(1)).replace(anyString(), any(Resource.class), any());
                     assertEquals(appKeyCaptor.getAllValues().getLast(), appKey);
                     assertEquals(resourceCaptor.getAllValues().getLast().id(), updatedResource.id());
                     assertEquals(resourceCaptor.getAllValues().getLast().ownerId(), patchedData.ownerId());
@@ -123,4 +130,111 @@ public class ResourceServicePatchTest {
                 .expectNext(Void.create()).verifyComplete();
         mocker.verify();
     }
+
+    @Test
+    void patch_whenPatchedInStorage_noRead() {
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var id = UUID.randomUUID();
+        var patcher = ResourceForPatch.builder()
+                .updatedFields(List.of("tags"))
+                .data(ResourceForPatch.ResourcePatchData.builder().tags(List.of("tag1")).build())
+                .build();
+        var user = User.builder().id(UUID.randomUUID()).build();
+        var context = Context.builder().user(user).build();
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .withReadableVerifier(r -> Mockito.verifyNoInteractions(r))
+                .forWritable(w -> Mockito.when(w.patch(anyString(), any(UUID.class), any(ResourceForPatch.class), any(UUID.class), anyLong(), any()))
+                        .thenReturn(Mono.just(PatchResult.PATCHED)))
+                .withWritableVerifier(v -> Mockito.verify(v, Mockito.only())
+                        .patch(Mockito.eq(appKey), Mockito.eq(id), Mockito.same(patcher), Mockito.eq(user.id()), anyLong(), any()))
+                .build();
+
+        StepVerifier.create(resourceService.patch(appKey, id, patcher, context))
+                .expectNext(Void.create()).verifyComplete();
+        mocker.verify();
+    }
+
+    @Test
+    void patch_whenStorageReportsNotFound_NotFoundError() {
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var patcher = ResourceForPatch.builder()
+                .updatedFields(List.of("tags"))
+                .data(ResourceForPatch.ResourcePatchData.builder().tags(List.of("tag1")).build())
+                .build();
+        var context = Context.builder().user(User.builder().id(UUID.randomUUID()).build()).build();
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .withReadableVerifier(r -> Mockito.verifyNoInteractions(r))
+                .forWritable(w -> Mockito.when(w.patch(anyString(), any(UUID.class), any(ResourceForPatch.class), any(UUID.class), anyLong(), any()))
+                        .thenReturn(Mono.just(PatchResult.NOT_FOUND)))
+                .build();
+
+        StepVerifier.create(resourceService.patch(appKey, UUID.randomUUID(), patcher, context))
+                .expectErrorSatisfies(e -> Assertions.assertInstanceOf(NotFoundError.class, e))
+                .verify();
+        mocker.verify();
+    }
+
+    @Test
+    void patch_whenConcurrentWrite_retriedOnFreshRead() {
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var stored = Resource.builder()
+                .id(UUID.randomUUID())
+                .type("RESOURCE")
+                .applicationKey(appKey)
+                .build();
+        var patcher = ResourceForPatch.builder()
+                .updatedFields(List.of("tags"))
+                .data(ResourceForPatch.ResourcePatchData.builder().tags(List.of("tag1")).build())
+                .build();
+        var context = Context.builder().user(User.builder().id(UUID.randomUUID()).build()).build();
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .forReadable(r -> Mockito.when(r.get(appKey, stored.id()))
+                        .thenReturn(Mono.just(stored.toBuilder().version(1L).build()))
+                        .thenReturn(Mono.just(stored.toBuilder().version(2L).build())))
+                .forWritable(w -> Mockito.when(w.patch(anyString(), any(UUID.class), any(ResourceForPatch.class), any(UUID.class), anyLong(), any()))
+                        .thenReturn(Mono.just(PatchResult.UNSUPPORTED)))
+                .forWritable(w -> Mockito.when(w.replace(anyString(), any(Resource.class), Mockito.eq(1L)))
+                        .thenReturn(Mono.error(new PreconditionFailedError("changed"))))
+                .forWritable(w -> Mockito.when(w.replace(anyString(), any(Resource.class), Mockito.eq(2L)))
+                        .thenReturn(Mono.just(true)))
+                .withReadableVerifier(r -> Mockito.verify(r, Mockito.times(2)).get(appKey, stored.id()))
+                .build();
+
+        StepVerifier.create(resourceService.patch(appKey, stored.id(), patcher, context))
+                .expectNext(Void.create())
+                .verifyComplete();
+        mocker.verify();
+    }
+
+    @Test
+    void patch_whenIfMatchStale_PreconditionFailedWithoutRetry() {
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var stored = Resource.builder()
+                .id(UUID.randomUUID())
+                .type("RESOURCE")
+                .applicationKey(appKey)
+                .version(5L)
+                .build();
+        var patcher = ResourceForPatch.builder()
+                .updatedFields(List.of("tags"))
+                .data(ResourceForPatch.ResourcePatchData.builder().tags(List.of("tag1")).build())
+                .build();
+        var context = Context.builder().user(User.builder().id(UUID.randomUUID()).build()).build();
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .forReadable(r -> Mockito.when(r.get(appKey, stored.id())).thenReturn(Mono.just(stored)))
+                .forWritable(w -> Mockito.when(w.patch(anyString(), any(UUID.class), any(ResourceForPatch.class), any(UUID.class), anyLong(), any()))
+                        .thenReturn(Mono.just(PatchResult.UNSUPPORTED)))
+                .withReadableVerifier(r -> Mockito.verify(r, Mockito.times(1)).get(appKey, stored.id()))
+                .withWritableVerifier(v -> Mockito.verify(v, Mockito.never()).replace(anyString(), any(Resource.class), any()))
+                .build();
+
+        StepVerifier.create(resourceService.patch(appKey, stored.id(), patcher, 4L, context))
+                .expectErrorSatisfies(e -> assertInstanceOf(PreconditionFailedError.class, e))
+                .verify();
+        mocker.verify();
+    }
 }
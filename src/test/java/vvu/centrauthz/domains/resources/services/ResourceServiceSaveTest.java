@@ -11,12 +11,15 @@ import vvu.centrauthz.domains.resources.models.Resource;
 import vvu.centrauthz.models.User;
 import vvu.centrauthz.exceptions.EUtils;
 import vvu.centrauthz.exceptions.NotFoundError;
+import vvu.centrauthz.exceptions.PreconditionFailedError;
 import vvu.centrauthz.models.Void;
 import vvu.centrauthz.utilities.Context;
 
+import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -41,9 +44,9 @@ class ResourceServiceSaveTest {
                 .withReadableVerifier(r -> {
                     Mockito.verify(r, Mockito.only()).get(appKey, updatedResource.id());
                 })
-                .forWritable( w -> Mockito.when(w.save(anyString(), any(Resource.class))).thenReturn(Mono.just(Void.create())))
+                .forWritable( w -> Mockito.when(w.replace(anyString(), any(Resource.class), any())).thenReturn(Mono.just(true)))
                 .withWritableVerifier( v -> {
-                    Mockito.verify(v, Mockito.never()).save(anyString(), any(Resource.class));
+                    Mockito.verify(v, Mockito.never()).replace(anyString(), any(Resource.class), any());
                 })
                 .build();
 
@@ -84,10 +87,10 @@ class ResourceServiceSaveTest {
                 })
                 .forWritable( w ->
                         Mockito.when(
-                                w.save(appKeyCaptor.capture(), resourceCaptor.capture()))
-                                .thenReturn(Mono.just(Void.create())))
+                                w.replace(appKeyCaptor.capture(), resourceCaptor.capture(), any()))
+                                .thenReturn(Mono.just(true)))
                 .withWritableVerifier( v -> {
-                    Mockito.verify(v, Mockito.times(1)).save(anyString(), any(Resource.class));
+                    Mockito.verify(v, Mockito.times(1)).replace(anyString(), any(Resource.class), any());
                     assertEquals(appKey, appKeyCaptor.getAllValues().getLast());
                     assertEquals(updatedResource.id(), resourceCaptor.getValue().id());
                     assertEquals(user.id(), resourceCaptor.getValue().updatedBy());
@@ -101,4 +104,137 @@ class ResourceServiceSaveTest {
                 .verifyComplete();
         mocker.verify();
     }
+
+    @Test
+    void save_whenRemovedBeforeReplace_NotFoundError() {
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var updatedResource = Resource.builder()
+                .id(UUID.randomUUID())
+                .type("RESOURCE")
+                .applicationKey(appKey)
+                .ownerId(UUID.randomUUID()).build();
+        var context = Context.builder().user(User.builder().id(UUID.randomUUID()).build()).build();
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .forReadable(r -> Mockito.when(r.get(appKey, updatedResource.id())).thenReturn(Mono.just(updatedResource)))
+                .forWritable( w -> Mockito.when(w.replace(anyString(), any(Resource.class), any())).thenReturn(Mono.just(false)))
+                .build();
+
+        StepVerifier.create(resourceService.save(appKey, updatedResource, context))
+                .expectErrorSatisfies(e -> Assertions.assertInstanceOf(NotFoundError.class, e))
+                .verify();
+    }
+
+    @Test
+    void save_whenIfMatchStale_PreconditionFailedWithoutWrite() {
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var updatedResource = Resource.builder()
+                .id(UUID.randomUUID())
+                .type("RESOURCE")
+                .applicationKey(appKey)
+                .build();
+        var context = Context.builder().user(User.builder().id(UUID.randomUUID()).build()).build();
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .forReadable(r -> Mockito.when(r.get(appKey, updatedResource.id()))
+                        .thenReturn(Mono.just(updatedResource.toBuilder().version(2L).build())))
+                .withWritableVerifier(v -> Mockito.verify(v, Mockito.never()).replace(anyString(), any(Resource.class), any()))
+                .build();
+
+        StepVerifier.create(resourceService.save(appKey, updatedResource, 1L, context))
+                .expectErrorSatisfies(e -> Assertions.assertInstanceOf(PreconditionFailedError.class, e))
+                .verify();
+        mocker.verify();
+    }
+
+    @Test
+    void replaced_storesTheBodyWithTheStoredCreationAudit() {
+        var creator = UUID.randomUUID();
+        var updater = UUID.randomUUID();
+        var stored = Resource.builder()
+                .id(UUID.randomUUID())
+                .type("doc")
+                .tags(List.of("old"))
+                .createdAt(100L)
+                .createdBy(creator)
+                .updatedAt(200L)
+                .updatedBy(creator)
+                .build();
+        var body = Resource.builder()
+                .id(stored.id())
+                .type("folder")
+                .tags(List.of("new"))
+                .createdAt(1L)
+                .createdBy(updater)
+                .build();
+        var context = Context.builder().user(User.builder().id(updater).build()).build();
+
+        var replaced = ResourceService.replaced(stored, body, context, 300L);
+
+        assertEquals("folder", replaced.type());
+        assertEquals(List.of("new"), replaced.tags());
+        assertEquals(100L, replaced.createdAt());
+        assertEquals(creator, replaced.createdBy());
+        assertEquals(300L, replaced.updatedAt());
+        assertEquals(updater, replaced.updatedBy());
+    }
+
+    @Test
+    void save_replacesTheStoredResourceWithTheBody() {
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var creator = UUID.randomUUID();
+        var stored = Resource.builder()
+                .id(UUID.randomUUID())
+                .type("doc")
+                .applicationKey(appKey)
+                .createdAt(100L)
+                .createdBy(creator)
+                .build();
+        var body = stored.toBuilder().type("folder").createdAt(null).createdBy(null).build();
+        var user = User.builder().id(UUID.randomUUID()).build();
+        var context = Context.builder().user(user).build();
+        var resourceCaptor = ArgumentCaptor.forClass(Resource.class);
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .forReadable(r -> Mockito.when(r.get(appKey, stored.id())).thenReturn(Mono.just(stored)))
+                .forWritable(w -> Mockito.when(w.replace(anyString(), resourceCaptor.capture(), any())).thenReturn(Mono.just(true)))
+                .withWritableVerifier(v -> {
+                    var written = resourceCaptor.getValue();
+                    assertEquals("folder", written.type());
+                    assertEquals(100L, written.createdAt());
+                    assertEquals(creator, written.createdBy());
+                    assertEquals(user.id(), written.updatedBy());
+                    assertNotNull(written.updatedAt());
+                })
+                .build();
+
+        StepVerifier.create(resourceService.save(appKey, body, context))
+                .expectNext(Void.create())
+                .verifyComplete();
+        mocker.verify();
+    }
+
+    @Test
+    void save_whenIfMatchCurrent_replacesAtThatVersion() {
+        var appKey = UUID.randomUUID().toString().split("-")[0];
+        var updatedResource = Resource.builder()
+                .id(UUID.randomUUID())
+                .type("RESOURCE")
+                .applicationKey(appKey)
+                .build();
+        var context = Context.builder().user(User.builder().id(UUID.randomUUID()).build()).build();
+        var mocker = ResourceServiceMocker.create();
+        var resourceService = mocker
+                .forReadable(r -> Mockito.when(r.get(appKey, updatedResource.id()))
+                        .thenReturn(Mono.just(updatedResource.toBuilder().version(2L).build())))
+                .forWritable(w -> Mockito.when(w.replace(anyString(), any(Resource.class), any())).thenReturn(Mono.just(true)))
+                .withWritableVerifier(v -> Mockito.verify(v, Mockito.times(1))
+                        .replace(Mockito.eq(appKey), any(Resource.class), Mockito.eq(2L)))
+                .build();
+
+        StepVerifier.create(resourceService.save(appKey, updatedResource, 2L, context))
+                .expectNext(Void.create())
+                .verifyComplete();
+        mocker.verify();
+    }
 }
@@ -0,0 +1,188 @@
+package vvu.centrauthz.domains.resources.storages;
+
+import io.micronaut.json.JsonMapper;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.domains.resources.models.ResourceForPatch;
+import vvu.centrauthz.exceptions.IllegalStoredValue;
+import vvu.centrauthz.storages.codecs.ByteReader;
+import vvu.centrauthz.storages.codecs.ByteWriter;
+import vvu.centrauthz.utilities.JsonTools;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@MicronautTest(startApplication = false)
+class ResourceCodecTest {
+
+    @Inject
+    JsonMapper jsonMapper;
+
+    private Resource fullResource() {
+        return Resource.builder()
+                .id(UUID.randomUUID())
+                .applicationKey(UUID.randomUUID().toString().split("-")[0])
+                .type("RESOURCE")
+                .ownerId(UUID.randomUUID())
+                .parentId(UUID.randomUUID())
+                .sharedWith(IntStream.range(0, 100).mapToObj(i -> UUID.randomUUID()).toList())
+                .tags(List.of("alpha", "bêta", ""))
+                .details(JsonTools.toJson(jsonMapper, Map.of("title", "report", "pages", 42)))
+                .createdAt(System.currentTimeMillis())
+                .createdBy(UUID.randomUUID())
+                .updatedAt(-1L)
+                .updatedBy(UUID.randomUUID())
+                .build();
+    }
+
+    private ResourceCodec codec(ResourceValueFormat writeFormat) {
+        return new ResourceCodec(jsonMapper, ResourceStorageConfig.builder().writeFormat(writeFormat).build());
+    }
+
+    @Test
+    void binary_roundTrip() {
+        var codec = codec(ResourceValueFormat.BINARY);
+        var resource = fullResource();
+
+        var bytes = codec.encode(resource);
+
+        assertTrue(ResourceBinaryCodec.matches(bytes));
+        assertEquals(resource, codec.decode(bytes));
+    }
+
+    @Test
+    void binary_whenOptionalFieldsAreNull_roundTrip() {
+        var codec = codec(ResourceValueFormat.BINARY);
+        var resource = Resource.builder().id(UUID.randomUUID()).type("RESOURCE").sharedWith(List.of()).build();
+
+        assertEquals(resource, codec.decode(codec.encode(resource)));
+    }
+
+    @Test
+    void binary_isSmallerThanJson() {
+        var json = codec(ResourceValueFormat.JSON);
+        var binary = codec(ResourceValueFormat.BINARY);
+        var resource = fullResource();
+
+        assertTrue(binary.encode(resource).length * 2 < json.encode(resource).length);
+    }
+
+    @Test
+    void decode_whenLegacyJson_fallsBackToJson() {
+        var jsonWriter = codec(ResourceValueFormat.JSON);
+        var binaryWriter = codec(ResourceValueFormat.BINARY);
+        var resource = fullResource();
+
+        assertEquals(resource, binaryWriter.decode(jsonWriter.encode(resource)));
+    }
+
+    @Test
+    void decode_whenTruncated_IllegalStoredValue() {
+        var codec = codec(ResourceValueFormat.BINARY);
+        var bytes = codec.encode(fullResource());
+
+        assertThrows(IllegalStoredValue.class, () -> codec.decode(Arrays.copyOf(bytes, bytes.length - 5)));
+    }
+
+    /**
+     * Same splice as redis/patch-sections.lua: drop the patched sections, append the new ones.
+     */
+    private static byte[] splice(byte[] value, ResourceBinaryCodec.Patch patch) {
+        var out = new ByteWriter(value.length).writeBytes(ResourceBinaryCodec.header());
+        var in = new ByteReader(value, ResourceBinaryCodec.HEADER_SIZE, value.length);
+        while (in.hasRemaining()) {
+            var start = in.position();
+            var tag = in.readByte();
+            in.skip(in.readLength());
+            if (!patch.tags().contains(tag)) {
+                out.writeBytes(value, start, in.position() - start);
+            }
+        }
+        return out.writeBytes(patch.sections()).toByteArray();
+    }
+
+    @Test
+    void patchOf_splicedSections_sameAsResourcePatch() {
+        var binary = new ResourceBinaryCodec(jsonMapper);
+        var resource = fullResource();
+        var updatedBy = UUID.randomUUID();
+        var patch = ResourceForPatch.builder()
+                .updatedFields(List.of("ownerId", "parentId", "tags", "details"))
+                .data(ResourceForPatch.ResourcePatchData.builder()
+                        .ownerId(UUID.randomUUID())
+                        .tags(List.of("patched"))
+                        .details(JsonTools.toJson(jsonMapper, Map.of("title", "patched")))
+                        .build())
+                .build();
+
+        var sections = binary.patchOf(patch, updatedBy, 1234L);
+        var patched = binary.decode(splice(binary.encode(resource), sections));
+
+        var expected = resource.patch(patch).toBuilder().updatedBy(updatedBy).updatedAt(1234L).build();
+        assertEquals(expected, patched);
+        assertNull(patched.parentId());
+    }
+
+    @Test
+    void hash_roundTrip() {
+        var hash = new ResourceHashCodec(jsonMapper);
+        var resource = fullResource();
+
+        var fields = hash.encode(resource);
+
+        assertEquals(Resource.FIELDS.size(), fields.size());
+        assertEquals(resource, hash.decode(fields));
+    }
+
+    @Test
+    void hash_whenOptionalFieldsAreNull_notStored() {
+        var hash = new ResourceHashCodec(jsonMapper);
+        var resource = Resource.builder().id(UUID.randomUUID()).type("RESOURCE").tags(List.of()).build();
+
+        var fields = hash.encode(resource);
+
+        assertEquals(List.of("id", "type", "tags"), List.copyOf(fields.keySet()));
+        assertEquals(resource, hash.decode(fields));
+    }
+
+    @Test
+    void hash_patchOfAppliedToFields_sameAsResourcePatch() {
+        var hash = new ResourceHashCodec(jsonMapper);
+        var resource = fullResource();
+        var updatedBy = UUID.randomUUID();
+        var patch = ResourceForPatch.builder()
+                .updatedFields(List.of("ownerId", "parentId", "tags"))
+                .data(ResourceForPatch.ResourcePatchData.builder()
+                        .ownerId(UUID.randomUUID())
+                        .tags(List.of("patched"))
+                        .build())
+                .build();
+
+        var changes = hash.patchOf(patch, updatedBy, 1234L);
+        var fields = hash.encode(resource);
+        fields.keySet().removeAll(changes.removed());
+        fields.putAll(changes.changed());
+
+        assertEquals(List.of("parentId"), changes.removed());
+        assertEquals(Set.of("ownerId", "tags", "updatedBy", "updatedAt"), changes.changed().keySet());
+        assertEquals(resource.patch(patch).toBuilder().updatedBy(updatedBy).updatedAt(1234L).build(), hash.decode(fields));
+    }
+
+    @Test
+    void hash_project_keepsSelectedFieldsAndVersion() {
+        var hash = new ResourceHashCodec(jsonMapper);
+        var resource = fullResource().toBuilder().version(3L).build();
+
+        var projected = hash.project(resource, List.of("id", "tags"));
+
+        assertEquals(Resource.builder().id(resource.id()).tags(resource.tags()).version(3L).build(), projected);
+    }
+}
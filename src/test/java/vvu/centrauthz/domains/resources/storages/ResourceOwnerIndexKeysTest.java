@@ -0,0 +1,41 @@
+package vvu.centrauthz.domains.resources.storages;
+
+import org.junit.jupiter.api.Test;
+import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.exceptions.BadRequestError;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourceOwnerIndexKeysTest {
+
+    private static Resource resource(long createdAt) {
+        return Resource.builder().id(UUID.randomUUID()).ownerId(UUID.randomUUID()).createdAt(createdAt).build();
+    }
+
+    @Test
+    void ownerIndexKey_isOnTheNodeOfTheApplication() {
+        var ownerId = UUID.randomUUID();
+
+        assertEquals("app:owner:" + ownerId, ResourceStorage.ownerIndexKey("app", ownerId));
+    }
+
+    @Test
+    void ownerIndexMember_sortsByCreationTime() {
+        var older = ResourceStorage.ownerIndexMember(resource(9));
+        var newer = ResourceStorage.ownerIndexMember(resource(10));
+
+        assertTrue(older.compareTo(newer) < 0);
+        assertTrue(older.startsWith("0000000000000009:"));
+    }
+
+    @Test
+    void cursor_roundTripsAndRejectsGarbage() {
+        var member = ResourceStorage.ownerIndexMember(resource(1_700_000_000_000L));
+
+        assertEquals(member, ResourceStorage.memberOfCursor(ResourceStorage.cursorOf(member)));
+        assertThrows(BadRequestError.class, () -> ResourceStorage.memberOfCursor("not a cursor"));
+        assertThrows(BadRequestError.class, () -> ResourceStorage.memberOfCursor(ResourceStorage.cursorOf("12:x")));
+    }
+}
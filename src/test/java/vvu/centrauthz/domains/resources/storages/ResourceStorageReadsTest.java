@@ -0,0 +1,85 @@
+package vvu.centrauthz.domains.resources.storages;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micronaut.json.JsonMapper;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.storages.interfaces.Readable;
+import vvu.centrauthz.storages.interfaces.Removable;
+import vvu.centrauthz.storages.interfaces.VersionedWritable;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+
+@MicronautTest(startApplication = false)
+class ResourceStorageReadsTest {
+
+    @Inject
+    JsonMapper jsonMapper;
+
+    @SuppressWarnings("unchecked")
+    private final Readable<byte[]> readable = Mockito.mock(Readable.class);
+    private final VersionedWritable writable = Mockito.mock(VersionedWritable.class);
+    private final Removable removable = Mockito.mock(Removable.class);
+
+    private final String appKey = UUID.randomUUID().toString().split("-")[0];
+
+    private ResourceStorage storage(ResourceCodec codec) {
+        return new ResourceStorage(codec, jsonMapper, ResourceStorageConfig.builder().build(),
+                readable, writable, removable, new SimpleMeterRegistry(),
+                null, null, null, null, null, null, null);
+    }
+
+    private Resource resource(UUID id, String type) {
+        return Resource.builder().id(id).applicationKey(appKey).type(type).ownerId(UUID.randomUUID()).build();
+    }
+
+    @Test
+    void get_concurrentReads_shareOneStorageRead() {
+        var codec = new ResourceCodec(jsonMapper, ResourceStorageConfig.builder().build());
+        var storage = storage(codec);
+        var id = UUID.randomUUID();
+        Sinks.One<byte[]> stored = Sinks.one();
+        Mockito.when(readable.get(anyString())).thenReturn(stored.asMono());
+
+        var first = storage.get(appKey, id).toFuture();
+        var second = storage.get(appKey, id).toFuture();
+        stored.tryEmitValue(codec.encode(resource(id, "doc")));
+
+        assertEquals("doc", first.join().type());
+        assertEquals("doc", second.join().type());
+        Mockito.verify(readable, Mockito.times(1)).get(anyString());
+    }
+
+    @Test
+    void get_afterAWrite_doesNotJoinAReadStartedBeforeIt() {
+        var codec = new ResourceCodec(jsonMapper, ResourceStorageConfig.builder().build());
+        var storage = storage(codec);
+        var id = UUID.randomUUID();
+        Sinks.One<byte[]> beforeWrite = Sinks.one();
+        Mockito.when(readable.get(anyString()))
+                .thenReturn(beforeWrite.asMono())
+                .thenReturn(Mono.just(codec.encode(resource(id, "written"))));
+        Mockito.when(writable.write(anyString(), eq(VersionedWritable.Mode.UPSERT), isNull(), any()))
+                .thenReturn(Mono.just(2L));
+
+        var concurrent = storage.get(appKey, id).toFuture();
+        storage.save(appKey, resource(id, "written")).block();
+        var afterWrite = storage.get(appKey, id).toFuture();
+        beforeWrite.tryEmitValue(codec.encode(resource(id, "old")));
+
+        assertEquals("written", afterWrite.join().type());
+        assertEquals("old", concurrent.join().type());
+        Mockito.verify(readable, Mockito.times(2)).get(anyString());
+    }
+}
@@ -0,0 +1,49 @@
+package vvu.centrauthz.exceptions;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AppErrorTest {
+
+    @Test
+    void expectedErrors_haveNoStackTrace() {
+        var errors = new AppError[] {
+            new NotFoundError("NOT_FOUND", "missing"),
+            new ConflictError("exists"),
+            new BadRequestError("bad"),
+            new PreconditionFailedError("changed")
+        };
+
+        for (var error : errors) {
+            assertTrue(error.isExpected());
+            assertEquals(0, error.getStackTrace().length);
+        }
+    }
+
+    @Test
+    void expectedErrors_keepTheirMessageAndBody() {
+        var error = new ConflictError();
+
+        assertEquals("CONFLICT", error.getMessage());
+        assertEquals("CONFLICT", error.getError().code());
+        assertNull(error.getError().message());
+    }
+
+    @Test
+    void expectedErrors_ignoreSuppressedErrors() {
+        var error = new NotFoundError("NOT_FOUND", "missing");
+
+        error.addSuppressed(new IllegalStateException());
+
+        assertEquals(0, error.getSuppressed().length);
+    }
+
+    @Test
+    void failures_keepTheirStackTrace() {
+        var error = new IllegalStoredValue(new IllegalStateException("corrupt"));
+
+        assertFalse(error.isExpected());
+        assertTrue(error.getStackTrace().length > 0);
+    }
+}
@@ -0,0 +1,39 @@
+package vvu.centrauthz.storages.codecs;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyBuilderTest {
+
+    private final KeyBuilder keys = new KeyBuilder();
+
+    @Test
+    void build_isPrefixColonUuid() {
+        for (int i = 0; i < 100; i++) {
+            var id = UUID.randomUUID();
+            assertEquals("my-app:" + id, keys.build("my-app", id));
+        }
+        var edges = new UUID(0, -1L);
+        assertEquals("my-app:" + edges, keys.build("my-app", edges));
+    }
+
+    @Test
+    void build_withNonAsciiPrefix_concatenates() {
+        var id = UUID.randomUUID();
+        assertEquals("ứng-dụng:" + id, keys.build("ứng-dụng", id));
+    }
+
+    @Test
+    void writeUuid_writesItsString() {
+        var id = UUID.randomUUID();
+        var target = new byte[40];
+
+        KeyBuilder.writeUuid(id, target, 2);
+
+        assertEquals(id.toString(), new String(target, 2, 36, StandardCharsets.US_ASCII));
+    }
+}
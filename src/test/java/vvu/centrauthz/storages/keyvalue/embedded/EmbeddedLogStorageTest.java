@@ -0,0 +1,96 @@
+package vvu.centrauthz.storages.keyvalue.embedded;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.test.StepVerifier;
+import vvu.centrauthz.exceptions.PreconditionFailedError;
+import vvu.centrauthz.storages.codecs.VersionEnvelope;
+import vvu.centrauthz.storages.interfaces.VersionedWritable.Mode;
+import vvu.centrauthz.storages.interfaces.VersionedWritable.Write;
+import vvu.centrauthz.storages.keyvalue.embedded.configurations.EmbeddedStorageConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmbeddedLogStorageTest {
+
+    @TempDir
+    Path directory;
+
+    private EmbeddedLogStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        storage = new EmbeddedLogStorage(
+            new EmbeddedStorageConfig(directory.toString(), 1024 * 1024, 0.5, Duration.ofHours(1), false));
+    }
+
+    @AfterEach
+    void tearDown() {
+        storage.close();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void write_bumpsVersionAndChecksExpected() {
+        StepVerifier.create(storage.write("app:1", Mode.CREATE, null, bytes("a"))).expectNext(1L).verifyComplete();
+        StepVerifier.create(storage.write("app:1", Mode.CREATE, null, bytes("b"))).expectNext(0L).verifyComplete();
+        StepVerifier.create(storage.write("app:1", Mode.REPLACE, 1L, bytes("b"))).expectNext(2L).verifyComplete();
+        StepVerifier.create(storage.write("app:1", Mode.REPLACE, 1L, bytes("c")))
+            .expectError(PreconditionFailedError.class)
+            .verify();
+        StepVerifier.create(storage.write("app:2", Mode.REPLACE, null, bytes("x"))).expectNext(0L).verifyComplete();
+
+        StepVerifier.create(storage.get("app:1"))
+            .assertNext(value -> {
+                assertEquals(2L, VersionEnvelope.of(value).version());
+                assertEquals("b", new String(value, VersionEnvelope.of(value).payloadOffset(), 1, StandardCharsets.UTF_8));
+            })
+            .verifyComplete();
+    }
+
+    @Test
+    void remove_withExpectedVersion() {
+        storage.write("app:1", Mode.CREATE, null, bytes("a")).block();
+
+        StepVerifier.create(storage.remove("app:1", 2L)).expectError(PreconditionFailedError.class).verify();
+        StepVerifier.create(storage.remove("app:1", 1L)).expectNext(true).verifyComplete();
+        StepVerifier.create(storage.remove("app:1", 1L)).expectNext(false).verifyComplete();
+        StepVerifier.create(storage.get("app:1")).verifyComplete();
+    }
+
+    @Test
+    void getAll_inKeyOrderWithMisses() {
+        storage.writeAll(List.of(
+                new Write("app:1", Mode.UPSERT, null, bytes("a")),
+                new Write("app:2", Mode.UPSERT, null, bytes("b"))))
+            .collectList()
+            .block();
+
+        StepVerifier.create(storage.getAll(List.of("app:2", "app:3", "app:1")))
+            .assertNext(v -> assertTrue(v.exists()))
+            .assertNext(v -> assertFalse(v.exists()))
+            .assertNext(v -> assertEquals("app:1", v.key()))
+            .verifyComplete();
+    }
+
+    @Test
+    void calls_runOffTheCallingThread() {
+        StepVerifier.create(storage.write("app:1", Mode.CREATE, null, bytes("a"))
+                .map(version -> Thread.currentThread().getName()))
+            .assertNext(thread -> assertTrue(thread.startsWith("embedded-io"), thread))
+            .verifyComplete();
+        StepVerifier.create(storage.removeAll(List.of("app:1")).map(result -> Thread.currentThread().getName()))
+            .assertNext(thread -> assertTrue(thread.startsWith("embedded-io"), thread))
+            .verifyComplete();
+    }
+}
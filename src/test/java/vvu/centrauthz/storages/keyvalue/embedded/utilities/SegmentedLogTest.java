@@ -0,0 +1,119 @@
+package vvu.centrauthz.storages.keyvalue.embedded.utilities;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentedLogTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void putGetDelete() {
+        try (var log = SegmentedLog.open(directory, SEGMENT_SIZE, false)) {
+            log.put("app:1", bytes("one"));
+            log.put("app:1", bytes("uno"));
+
+            assertArrayEquals(bytes("uno"), log.get("app:1"));
+            assertTrue(log.delete("app:1"));
+            assertFalse(log.delete("app:1"));
+            assertNull(log.get("app:1"));
+        }
+    }
+
+    @Test
+    void open_whenReopened_recoversLatestValues() {
+        try (var log = SegmentedLog.open(directory, SEGMENT_SIZE, false)) {
+            for (int i = 0; i < 200; i++) {
+                log.put("app:" + (i % 20), bytes("value-" + i));
+            }
+            log.delete("app:0");
+            assertTrue(log.segmentCount() > 1);
+        }
+
+        try (var log = SegmentedLog.open(directory, SEGMENT_SIZE, false)) {
+            assertEquals(19, log.size());
+            assertNull(log.get("app:0"));
+            assertArrayEquals(bytes("value-199"), log.get("app:19"));
+            log.put("app:0", bytes("back"));
+            assertArrayEquals(bytes("back"), log.get("app:0"));
+        }
+    }
+
+    @Test
+    void open_whenLastRecordTorn_dropsIt() throws IOException {
+        try (var log = SegmentedLog.open(directory, SEGMENT_SIZE, true)) {
+            log.put("app:1", bytes("kept"));
+            log.put("app:2", bytes("torn"));
+        }
+        // corrupt the last byte of the value of the second record
+        Path segment;
+        try (var files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        var first = 8 + 5 + "app:1".length() + "kept".length();
+        var offset = first + 8 + 5 + "app:2".length() + "torn".length() - 1;
+        try (var file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(offset);
+            file.write('X');
+        }
+
+        try (var log = SegmentedLog.open(directory, SEGMENT_SIZE, false)) {
+            assertArrayEquals(bytes("kept"), log.get("app:1"));
+            assertNull(log.get("app:2"));
+            log.put("app:3", bytes("new"));
+        }
+        try (var log = SegmentedLog.open(directory, SEGMENT_SIZE, false)) {
+            assertEquals(2, log.size());
+            assertArrayEquals(bytes("new"), log.get("app:3"));
+        }
+    }
+
+    @Test
+    void compact_deletesDeadSegmentsAndKeepsLiveValues() {
+        try (var log = SegmentedLog.open(directory, SEGMENT_SIZE, false)) {
+            log.put("app:stable", bytes("stable"));
+            log.put("app:gone", bytes("gone"));
+            for (int i = 0; i < 500; i++) {
+                log.put("app:hot", bytes("value-" + i));
+            }
+            log.delete("app:gone");
+            var before = log.segmentCount();
+
+            var deleted = log.compact(0.5);
+
+            assertTrue(deleted > 0);
+            assertTrue(log.segmentCount() < before);
+            assertArrayEquals(bytes("stable"), log.get("app:stable"));
+            assertArrayEquals(bytes("value-499"), log.get("app:hot"));
+            assertNull(log.get("app:gone"));
+        }
+
+        try (var log = SegmentedLog.open(directory, SEGMENT_SIZE, false)) {
+            assertEquals(2, log.size());
+            assertNull(log.get("app:gone"));
+            assertArrayEquals(bytes("stable"), log.get("app:stable"));
+        }
+    }
+
+    @Test
+    void put_whenLargerThanSegment_IllegalArgumentException() {
+        try (var log = SegmentedLog.open(directory, SEGMENT_SIZE, false)) {
+            assertThrows(IllegalArgumentException.class, () -> log.put("app:1", new byte[SEGMENT_SIZE]));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package vvu.centrauthz.storages.keyvalue.memory;
+
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+import vvu.centrauthz.exceptions.ConflictError;
+import vvu.centrauthz.exceptions.NotFoundError;
+import vvu.centrauthz.exceptions.PreconditionFailedError;
+import vvu.centrauthz.storages.codecs.VersionEnvelope;
+import vvu.centrauthz.storages.interfaces.StoredValue;
+import vvu.centrauthz.storages.interfaces.VersionedWritable.Mode;
+import vvu.centrauthz.storages.interfaces.VersionedWritable.Write;
+import vvu.centrauthz.storages.keyvalue.memory.configurations.InMemoryStorageConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryStorageTest {
+
+    private final InMemoryStorage storage = new InMemoryStorage(new InMemoryStorageConfig());
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void write_bumpsVersionAndChecksExpected() {
+        StepVerifier.create(storage.write("app:1", Mode.CREATE, null, bytes("a"))).expectNext(1L).verifyComplete();
+        StepVerifier.create(storage.write("app:1", Mode.CREATE, null, bytes("b"))).expectNext(0L).verifyComplete();
+        StepVerifier.create(storage.write("app:1", Mode.REPLACE, 1L, bytes("b"))).expectNext(2L).verifyComplete();
+        StepVerifier.create(storage.write("app:1", Mode.REPLACE, 1L, bytes("c")))
+            .expectError(PreconditionFailedError.class)
+            .verify();
+        StepVerifier.create(storage.write("app:2", Mode.REPLACE, null, bytes("x"))).expectNext(0L).verifyComplete();
+
+        StepVerifier.create(storage.get("app:1"))
+            .assertNext(value -> assertEquals(2L, VersionEnvelope.of(value).version()))
+            .verifyComplete();
+    }
+
+    @Test
+    void createAndReplace_dependOnExistence() {
+        StepVerifier.create(storage.replace("app:1", bytes("a"))).expectNext(false).verifyComplete();
+        StepVerifier.create(storage.create("app:1", bytes("a"))).expectNext(true).verifyComplete();
+        StepVerifier.create(storage.create("app:1", bytes("b"))).expectNext(false).verifyComplete();
+        StepVerifier.create(storage.replace("app:1", bytes("b"))).expectNext(true).verifyComplete();
+        StepVerifier.create(storage.get("app:1")).assertNext(v -> assertArrayEquals(bytes("b"), v)).verifyComplete();
+    }
+
+    @Test
+    void writeAll_checksTheConditionsOfEachWrite() {
+        storage.write("app:1", Mode.CREATE, null, bytes("a")).block();
+        storage.write("app:2", Mode.CREATE, null, bytes("a")).block();
+
+        StepVerifier.create(storage.writeAll(List.of(
+                new Write("app:1", Mode.CREATE, null, bytes("b")),
+                new Write("app:2", Mode.REPLACE, 2L, bytes("b")),
+                new Write("app:3", Mode.REPLACE, 1L, bytes("b")),
+                new Write("app:2", Mode.REPLACE, 1L, bytes("b")),
+                new Write("app:4", Mode.CREATE, null, bytes("b")))))
+            .assertNext(r -> assertInstanceOf(ConflictError.class, r.error()))
+            .assertNext(r -> assertInstanceOf(PreconditionFailedError.class, r.error()))
+            .assertNext(r -> assertInstanceOf(NotFoundError.class, r.error()))
+            .assertNext(r -> assertTrue(r.isSuccess()))
+            .assertNext(r -> assertTrue(r.isSuccess()))
+            .verifyComplete();
+
+        StepVerifier.create(storage.get("app:1")).assertNext(v -> assertEquals(1L, VersionEnvelope.of(v).version())).verifyComplete();
+        StepVerifier.create(storage.get("app:2")).assertNext(v -> assertEquals(2L, VersionEnvelope.of(v).version())).verifyComplete();
+    }
+
+    @Test
+    void remove_withExpectedVersion() {
+        storage.write("app:1", Mode.CREATE, null, bytes("a")).block();
+
+        StepVerifier.create(storage.remove("app:1", 2L)).expectError(PreconditionFailedError.class).verify();
+        StepVerifier.create(storage.remove("app:1", 1L)).expectNext(true).verifyComplete();
+        StepVerifier.create(storage.remove("app:1", 1L)).expectNext(false).verifyComplete();
+        StepVerifier.create(storage.get("app:1")).verifyComplete();
+    }
+
+    @Test
+    void getAll_inKeyOrderWithMisses() {
+        storage.saveAll(List.of(new StoredValue<>("app:1", bytes("a")), new StoredValue<>("app:2", bytes("b"))))
+            .collectList()
+            .block();
+
+        StepVerifier.create(storage.getAll(List.of("app:2", "app:3", "app:1")))
+            .assertNext(v -> assertTrue(v.exists()))
+            .assertNext(v -> assertFalse(v.exists()))
+            .assertNext(v -> assertEquals("app:1", v.key()))
+            .verifyComplete();
+    }
+
+    @Test
+    void members_inOrderAfterCursor() {
+        storage.addMembers(List.of(
+                new StoredValue<>("app:set", "b"),
+                new StoredValue<>("app:set", "a"),
+                new StoredValue<>("app:set", "c"),
+                new StoredValue<>("app:other", "a")))
+            .block();
+
+        StepVerifier.create(storage.members("app:set", null, 2)).expectNext("a", "b").verifyComplete();
+        StepVerifier.create(storage.members("app:set", "b", 2)).expectNext("c").verifyComplete();
+        StepVerifier.create(storage.members("app:none", null, 2)).verifyComplete();
+
+        storage.removeMembers(List.of(new StoredValue<>("app:set", "a"), new StoredValue<>("app:set", "x"))).block();
+        StepVerifier.create(storage.members("app:set", null, 10)).expectNext("b", "c").verifyComplete();
+    }
+
+    @Test
+    void get_withLatency_isDelayed() {
+        var slow = new InMemoryStorage(new InMemoryStorageConfig(4, Duration.ofMillis(50), Duration.ZERO));
+        slow.save("app:1", bytes("a")).block();
+
+        var started = System.nanoTime();
+        StepVerifier.create(slow.get("app:1")).assertNext(v -> assertArrayEquals(bytes("a"), v)).verifyComplete();
+        assertTrue(Duration.ofNanos(System.nanoTime() - started).toMillis() >= 50);
+    }
+}
@@ -0,0 +1,67 @@
+package vvu.centrauthz.storages.keyvalue.memory.utilities;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedMapTest {
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void stripeCount_roundedUpToPowerOfTwo() {
+        assertEquals(1, new StripedMap(1).stripeCount());
+        assertEquals(4, new StripedMap(3).stripeCount());
+        assertEquals(64, new StripedMap(64).stripeCount());
+    }
+
+    @Test
+    void putGetRemove() {
+        var map = new StripedMap(4);
+        map.put("app:1", bytes("one"));
+        map.put("app:2", bytes("two"));
+
+        assertArrayEquals(bytes("one"), map.get("app:1"));
+        assertEquals(2, map.size());
+        assertTrue(map.remove("app:1"));
+        assertFalse(map.remove("app:1"));
+        assertNull(map.get("app:1"));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void atomically_concurrentIncrementsAreNotLost() throws Exception {
+        var map = new StripedMap(2);
+        var keys = 4;
+        var increments = 1_000;
+
+        try (var executor = Executors.newFixedThreadPool(8)) {
+            var tasks = IntStream.range(0, 8)
+                .mapToObj(t -> executor.submit(() -> {
+                    for (int i = 0; i < increments; i++) {
+                        map.atomically("counter:" + (i % keys), slot -> {
+                            var current = slot.get();
+                            var next = (current == null ? 0 : ByteBuffer.wrap(current).getInt()) + 1;
+                            slot.set(ByteBuffer.allocate(4).putInt(next).array());
+                            return null;
+                        });
+                    }
+                }))
+                .toList();
+            for (var task : tasks) {
+                task.get();
+            }
+        }
+
+        for (int k = 0; k < keys; k++) {
+            assertEquals(8 * increments / keys, ByteBuffer.wrap(map.get("counter:" + k)).getInt());
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package vvu.centrauthz.storages.keyvalue.nearcache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+import vvu.centrauthz.storages.codecs.VersionEnvelope;
+import vvu.centrauthz.storages.interfaces.InvalidationSource;
+import vvu.centrauthz.storages.interfaces.Replicated;
+import vvu.centrauthz.storages.interfaces.StoredValue;
+import vvu.centrauthz.storages.interfaces.VersionedWritable.Mode;
+import vvu.centrauthz.storages.keyvalue.memory.InMemoryStorage;
+import vvu.centrauthz.storages.keyvalue.memory.configurations.InMemoryStorageConfig;
+import vvu.centrauthz.storages.keyvalue.nearcache.configurations.NearCacheConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NearCachedStorageTest {
+
+    private final InMemoryStorage engine = new InMemoryStorage(new InMemoryStorageConfig());
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Invalidations invalidations = new Invalidations();
+    private final NearCachedStorage storage = new NearCachedStorage(
+        new NearCacheConfig(true, 1 << 20, null, 4, List.of()), engine, engine, engine, invalidations, registry);
+
+    private static final class Invalidations implements InvalidationSource {
+        private Listener listener;
+        private boolean listening = true;
+        private String covered = "";
+
+        @Override
+        public void addListener(Listener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public boolean isListening() {
+            return listening;
+        }
+
+        @Override
+        public boolean covers(String key) {
+            return key.startsWith(covered);
+        }
+    }
+
+    private static final Context PRIMARY_READS = Context.of(Replicated.CONSISTENCY_TOKEN, Replicated.PRIMARY);
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String payloadOf(byte[] stored) {
+        var offset = VersionEnvelope.of(stored).payloadOffset();
+        return new String(Arrays.copyOfRange(stored, offset, stored.length), StandardCharsets.UTF_8);
+    }
+
+    private double hits() {
+        return registry.get("storage.near-cache.requests").tag("result", "hit").counter().count();
+    }
+
+    @Test
+    void get_keepsTheValueRead() {
+        engine.write("app:1", Mode.CREATE, null, bytes("a")).block();
+
+        assertEquals("a", payloadOf(storage.get("app:1").block()));
+        assertEquals("a", payloadOf(storage.get("app:1").block()));
+
+        assertEquals(1.0, hits());
+    }
+
+    @Test
+    void get_whenNotListening_keepsNothing() {
+        engine.write("app:1", Mode.CREATE, null, bytes("a")).block();
+        invalidations.listening = false;
+
+        storage.get("app:1").block();
+        storage.get("app:1").block();
+
+        assertEquals(0.0, hits());
+        assertEquals(0, storage.cache().size());
+    }
+
+    @Test
+    void get_ofAKeyNotCovered_keepsNothing() {
+        engine.write("app:1", Mode.CREATE, null, bytes("a")).block();
+        invalidations.covered = "other-app:";
+
+        storage.get("app:1").block();
+        storage.get("app:1").block();
+
+        assertEquals(0.0, hits());
+        assertEquals(0, storage.cache().size());
+    }
+
+    @Test
+    void get_withAConsistencyToken_readsTheEngine() {
+        engine.write("app:1", Mode.CREATE, null, bytes("a")).block();
+        storage.get("app:1").block();
+        engine.write("app:1", Mode.REPLACE, 1L, bytes("b")).block();
+
+        assertEquals("b", payloadOf(storage.get("app:1").contextWrite(PRIMARY_READS).block()));
+        assertEquals(0.0, hits());
+    }
+
+    @Test
+    void getAll_withAConsistencyToken_readsTheEngine() {
+        engine.write("app:1", Mode.CREATE, null, bytes("a")).block();
+        storage.get("app:1").block();
+        engine.write("app:1", Mode.REPLACE, 1L, bytes("b")).block();
+
+        var values = storage.getAll(List.of("app:1")).contextWrite(PRIMARY_READS).collectList().block();
+
+        assertEquals("b", payloadOf(values.get(0).value()));
+        assertEquals(0.0, hits());
+    }
+
+    @Test
+    void get_ofAMissingKey_isEmptyAndKeepsNothing() {
+        StepVerifier.create(storage.get("app:1"))
+            .verifyComplete();
+
+        assertEquals(0, storage.cache().size());
+        assertEquals(0, storage.cache().bytes());
+    }
+
+    @Test
+    void write_dropsTheValue() {
+        storage.write("app:1", Mode.CREATE, null, bytes("a")).block();
+        storage.get("app:1").block();
+
+        storage.write("app:1", Mode.REPLACE, 1L, bytes("b")).block();
+
+        assertEquals("b", payloadOf(storage.get("app:1").block()));
+    }
+
+    @Test
+    void remove_dropsTheValue() {
+        storage.write("app:1", Mode.CREATE, null, bytes("a")).block();
+        storage.get("app:1").block();
+
+        storage.remove("app:1").block();
+
+        StepVerifier.create(storage.get("app:1"))
+            .verifyComplete();
+    }
+
+    @Test
+    void invalidation_byAnotherClient_dropsTheValue() {
+        engine.write("app:1", Mode.CREATE, null, bytes("a")).block();
+        storage.get("app:1").block();
+
+        engine.write("app:1", Mode.REPLACE, 1L, bytes("b")).block();
+        assertEquals("a", payloadOf(storage.get("app:1").block()));
+
+        invalidations.listener.invalidated("app:1");
+        assertEquals("b", payloadOf(storage.get("app:1").block()));
+    }
+
+    @Test
+    void getAll_mergesCachedAndReadValuesInOrder() {
+        engine.write("app:1", Mode.CREATE, null, bytes("a")).block();
+        engine.write("app:3", Mode.CREATE, null, bytes("c")).block();
+        storage.get("app:3").block();
+
+        var values = storage.getAll(List.of("app:1", "app:2", "app:3")).collectList().block();
+
+        assertEquals(List.of("app:1", "app:2", "app:3"), values.stream().map(StoredValue::key).toList());
+        assertEquals("a", payloadOf(values.get(0).value()));
+        assertFalse(values.get(1).exists());
+        assertEquals("c", payloadOf(values.get(2).value()));
+        assertEquals(2, storage.cache().size());
+    }
+}
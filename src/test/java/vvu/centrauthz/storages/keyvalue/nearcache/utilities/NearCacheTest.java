@@ -0,0 +1,120 @@
+package vvu.centrauthz.storages.keyvalue.nearcache.utilities;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import vvu.centrauthz.storages.keyvalue.nearcache.configurations.NearCacheConfig;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NearCacheTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong();
+
+    private NearCache cache(long maxBytes) {
+        return new NearCache(new NearCacheConfig(true, maxBytes, Duration.ofSeconds(10), 1, List.of()), registry, now::get);
+    }
+
+    private double evictions(String cause) {
+        return registry.get("storage.near-cache.evictions").tag("cause", cause).counter().count();
+    }
+
+    private static void put(NearCache cache, String key, byte[] value) {
+        cache.fill(key, cache.reserve(key), value);
+    }
+
+    @Test
+    void fill_keepsTheValueRead() {
+        var cache = cache(1 << 20);
+
+        assertNull(cache.get("app:1"));
+        put(cache, "app:1", new byte[]{1});
+
+        assertArrayEquals(new byte[]{1}, cache.get("app:1"));
+        assertEquals(1, cache.size());
+        assertEquals(1.0, registry.get("storage.near-cache.requests").tag("result", "hit").counter().count());
+        assertEquals(1.0, registry.get("storage.near-cache.requests").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void fill_afterAnInvalidation_keepsNothing() {
+        var cache = cache(1 << 20);
+        var token = cache.reserve("app:1");
+
+        cache.invalidate("app:1");
+        cache.fill("app:1", token, new byte[]{1});
+
+        assertNull(cache.get("app:1"));
+    }
+
+    @Test
+    void fill_ofAnOlderRead_keepsNothing() {
+        var cache = cache(1 << 20);
+        var older = cache.reserve("app:1");
+        var newer = cache.reserve("app:1");
+
+        cache.fill("app:1", older, new byte[]{1});
+        assertNull(cache.get("app:1"));
+
+        cache.fill("app:1", newer, new byte[]{2});
+        assertArrayEquals(new byte[]{2}, cache.get("app:1"));
+    }
+
+    @Test
+    void get_afterTheTtl_missesAndDropsTheValue() {
+        var cache = cache(1 << 20);
+        put(cache, "app:1", new byte[]{1});
+
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        assertNull(cache.get("app:1"));
+        assertEquals(0, cache.size());
+        assertEquals(1.0, evictions("expired"));
+    }
+
+    @Test
+    void fill_aboveTheLimit_evictsTheLeastRecentlyUsed() {
+        var entry = NearCache.ENTRY_OVERHEAD + 2 * "app:1".length() + 100;
+        var cache = cache(3L * entry);
+        put(cache, "app:1", new byte[100]);
+        put(cache, "app:2", new byte[100]);
+        put(cache, "app:3", new byte[100]);
+        cache.get("app:1");
+
+        put(cache, "app:4", new byte[100]);
+
+        assertNotNull(cache.get("app:1"));
+        assertNull(cache.get("app:2"));
+        assertNotNull(cache.get("app:3"));
+        assertNotNull(cache.get("app:4"));
+        assertEquals(1.0, evictions("size"));
+        assertEquals(3L * entry, cache.bytes());
+    }
+
+    @Test
+    void fill_ofAValueAboveTheLimit_keepsNothing() {
+        var cache = cache(1024);
+
+        put(cache, "app:1", new byte[2048]);
+
+        assertNull(cache.get("app:1"));
+        assertEquals(0, cache.bytes());
+    }
+
+    @Test
+    void invalidateAll_dropsEverything() {
+        var cache = cache(1 << 20);
+        put(cache, "app:1", new byte[]{1});
+        put(cache, "app:2", new byte[]{2});
+
+        cache.invalidateAll();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+        assertEquals(2.0, evictions("invalidated"));
+    }
+}
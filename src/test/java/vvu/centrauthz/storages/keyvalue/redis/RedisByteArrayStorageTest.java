@@ -0,0 +1,119 @@
+package vvu.centrauthz.storages.keyvalue.redis;
+
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import vvu.centrauthz.storages.codecs.VersionEnvelope;
+import vvu.centrauthz.storages.interfaces.VersionedWritable;
+import vvu.centrauthz.storages.keyvalue.redis.configurations.RedisBatchingConfig;
+import vvu.centrauthz.storages.keyvalue.redis.configurations.RedisCompressionConfig;
+import vvu.centrauthz.storages.keyvalue.redis.configurations.RedisVersionsConfig;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.CommandContext;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.RedisShard;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.RedisShards;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.ValueCompressor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+class RedisByteArrayStorageTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    // the arguments of every command sent, by command name
+    private final List<Call> calls = new CopyOnWriteArrayList<>();
+
+    private record Call(String command, Object[] args) {
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisByteArrayStorage storage(RedisCompressionConfig compression, RedisVersionsConfig versions) {
+        RedisAsyncCommands<byte[], byte[]> commands = Mockito.mock(RedisAsyncCommands.class, invocation -> {
+            calls.add(new Call(invocation.getMethod().getName(), invocation.getRawArguments()));
+            var reply = invocation.getMethod().getName().startsWith("eval") ? (Object) 1L : "OK";
+            return Mockito.mock(RedisFuture.class, future -> future.getMethod().getName().equals("toCompletableFuture")
+                ? CompletableFuture.completedFuture(reply)
+                : null);
+        });
+        var context = Mockito.mock(CommandContext.class);
+        Mockito.when(context.execute(any())).thenAnswer(i -> i.<Function<RedisAsyncCommands<byte[], byte[]>, CompletableFuture<?>>>getArgument(0).apply(commands));
+        var shard = new RedisShard("default", null, context, new RedisBatchingConfig(), registry);
+        return new RedisByteArrayStorage(RedisShards.single(shard), compression, versions, registry);
+    }
+
+    private Call last(String command) {
+        return calls.stream().filter(c -> c.command().equals(command)).reduce((a, b) -> b).orElseThrow();
+    }
+
+    private static byte[] envelopeArgOf(Call evalsha) {
+        var args = (byte[][]) evalsha.args()[3];
+        return args[args.length - 1];
+    }
+
+    @Test
+    void write_whenVersionsDisabled_asksForTheBarePayload() {
+        var storage = storage(new RedisCompressionConfig(), new RedisVersionsConfig(false));
+
+        storage.write("app:1", VersionedWritable.Mode.UPSERT, null, "v".getBytes(StandardCharsets.UTF_8)).block();
+
+        assertEquals(0, envelopeArgOf(last("evalsha")).length);
+    }
+
+    @Test
+    void write_whenVersionsEnabled_asksForTheEnvelope() {
+        var storage = storage(new RedisCompressionConfig(), new RedisVersionsConfig(true));
+
+        storage.write("app:1", VersionedWritable.Mode.UPSERT, null, "v".getBytes(StandardCharsets.UTF_8)).block();
+
+        assertArrayEquals("1".getBytes(StandardCharsets.US_ASCII), envelopeArgOf(last("evalsha")));
+    }
+
+    @Test
+    void writeFields_whenVersionsDisabled_asksForAHashWithoutVersion() {
+        var storage = storage(new RedisCompressionConfig(), new RedisVersionsConfig(false));
+
+        storage.writeFields("app:1", VersionedWritable.Mode.UPSERT, null, Map.of("type", new byte[]{'d'})).block();
+
+        assertEquals(0, ((byte[][]) last("evalsha").args()[3])[2].length);
+    }
+
+    @Test
+    void writeFields_whenVersionsEnabled_asksForTheVersionField() {
+        var storage = storage(new RedisCompressionConfig(), new RedisVersionsConfig(true));
+
+        storage.writeFields("app:1", VersionedWritable.Mode.UPSERT, null, Map.of("type", new byte[]{'d'})).block();
+
+        assertArrayEquals("1".getBytes(StandardCharsets.US_ASCII), ((byte[][]) last("evalsha").args()[3])[2]);
+    }
+
+    @Test
+    void versions_areOnByDefault() {
+        assertTrue(new RedisVersionsConfig().enabled());
+    }
+
+    @Test
+    void create_compressedVersionedValue_keepsTheEnvelopeReadableByTheScripts() {
+        var storage = storage(new RedisCompressionConfig(true, 16, 1), new RedisVersionsConfig(true));
+        var payload = "compressible ".repeat(32).getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(storage.create("app:1", VersionEnvelope.wrap(3, payload)).block());
+
+        var stored = (byte[]) last("set").args()[1];
+        // what versioned-set.lua and versioned-del.lua match: ^\167V(%d+);
+        var version = Pattern.compile("^\u00A7V(\\d+);").matcher(new String(stored, StandardCharsets.ISO_8859_1));
+        assertTrue(version.find());
+        assertEquals("3", version.group(1));
+        var envelope = VersionEnvelope.of(stored);
+        assertEquals(3, envelope.version());
+        assertTrue(ValueCompressor.isCompressed(stored, envelope.payloadOffset()));
+    }
+}
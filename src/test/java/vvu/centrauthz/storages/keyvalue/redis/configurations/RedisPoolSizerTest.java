@@ -0,0 +1,41 @@
+package vvu.centrauthz.storages.keyvalue.redis.configurations;
+
+import org.junit.jupiter.api.Test;
+import vvu.centrauthz.storages.keyvalue.redis.utilities.ConnectionPool;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedisPoolSizerTest {
+
+    private final RedisPoolSizingConfig config = new RedisPoolSizingConfig(
+        true, 2, 12, 0.99, Duration.ofMillis(2), Duration.ofNanos(200_000), Duration.ofSeconds(10), 4);
+
+    private static ConnectionPool.Usage usage(int limit, int peakActive, Duration wait) {
+        return new ConnectionPool.Usage(limit, peakActive, 100, wait.toNanos());
+    }
+
+    @Test
+    void nextLimit_whenSaturatedAndWaiting_grows() {
+        assertEquals(10, RedisPoolSizer.nextLimit(usage(6, 6, Duration.ofMillis(5)), config));
+        assertEquals(12, RedisPoolSizer.nextLimit(usage(10, 10, Duration.ofMillis(5)), config));
+    }
+
+    @Test
+    void nextLimit_whenWaitingWithSpareConnections_stays() {
+        // waits then come from opening connections, not from the limit
+        assertEquals(6, RedisPoolSizer.nextLimit(usage(6, 4, Duration.ofMillis(5)), config));
+    }
+
+    @Test
+    void nextLimit_whenSaturatedWithoutWaits_stays() {
+        assertEquals(6, RedisPoolSizer.nextLimit(usage(6, 6, Duration.ofNanos(100_000)), config));
+    }
+
+    @Test
+    void nextLimit_whenUnderused_shrinks() {
+        assertEquals(5, RedisPoolSizer.nextLimit(usage(6, 3, Duration.ofNanos(100_000)), config));
+        assertEquals(2, RedisPoolSizer.nextLimit(usage(2, 0, Duration.ZERO), config));
+    }
+}
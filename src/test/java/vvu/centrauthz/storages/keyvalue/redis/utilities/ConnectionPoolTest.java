@@ -0,0 +1,124 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.support.BoundedAsyncPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+class ConnectionPoolTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @SuppressWarnings("unchecked")
+    private ConnectionPool pool(int maxLimit, int limit, Duration maxWait) {
+        BoundedAsyncPool<StatefulRedisConnection<byte[], byte[]>> lettuce = Mockito.mock(BoundedAsyncPool.class);
+        Mockito.when(lettuce.acquire()).thenAnswer(i -> CompletableFuture.completedFuture(Mockito.mock(StatefulRedisConnection.class)));
+        Mockito.when(lettuce.release(any())).thenReturn(CompletableFuture.completedFuture(null));
+        return new ConnectionPool("node:6379", CompletableFuture.completedFuture(lettuce), maxLimit, limit, maxWait, registry);
+    }
+
+    @Test
+    void acquire_aboveTheLimit_waitsForARelease() {
+        var pool = pool(2, 1, Duration.ofSeconds(10));
+
+        var first = pool.acquire().join();
+        var second = pool.acquire();
+
+        assertFalse(second.isDone());
+        assertEquals(1, pool.pending());
+        assertEquals(1.0, registry.get("redis.pool.pending").gauge().value());
+
+        pool.release(first).join();
+
+        assertNotNull(second.join());
+        assertEquals(0, pool.pending());
+        assertEquals(1, pool.active());
+    }
+
+    @Test
+    void acquire_whenNothingIsReleased_timesOutAfterMaxWait() {
+        var pool = pool(1, 1, Duration.ofMillis(20));
+        pool.acquire().join();
+
+        var waiting = pool.acquire();
+
+        var e = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+        assertEquals(1.0, registry.get("redis.pool.timeouts").counter().count());
+        assertEquals(0, pool.pending());
+        assertEquals(1, pool.active());
+    }
+
+    @Test
+    void resize_up_servesTheWaiters() {
+        var pool = pool(4, 1, Duration.ofSeconds(10));
+        pool.acquire().join();
+        var second = pool.acquire();
+        var third = pool.acquire();
+
+        assertEquals(3, pool.resize(3));
+
+        assertNotNull(second.join());
+        assertNotNull(third.join());
+        assertEquals(3, pool.active());
+    }
+
+    @Test
+    void resize_down_letsTheConnectionsInUseFinish() {
+        var pool = pool(4, 2, Duration.ofSeconds(10));
+        var first = pool.acquire().join();
+        var second = pool.acquire().join();
+        var waiting = pool.acquire();
+
+        assertEquals(1, pool.resize(1));
+        pool.release(first).join();
+
+        assertFalse(waiting.isDone());
+        assertEquals(1, pool.active());
+
+        pool.release(second).join();
+
+        assertNotNull(waiting.join());
+        assertEquals(1, pool.active());
+    }
+
+    @Test
+    void resize_staysWithinThePool() {
+        var pool = pool(4, 2, Duration.ofSeconds(1));
+
+        assertEquals(4, pool.resize(10));
+        assertEquals(1, pool.resize(0));
+        assertEquals(1.0, registry.get("redis.pool.max.active").gauge().value());
+    }
+
+    @Test
+    void usage_coversTheInterval() {
+        var pool = pool(4, 4, Duration.ofSeconds(1));
+        var first = pool.acquire().join();
+        pool.acquire().join();
+        pool.release(first).join();
+
+        var usage = pool.usage(0.99);
+
+        assertEquals(4, usage.limit());
+        assertEquals(2, usage.peakActive());
+        assertEquals(2, usage.acquires());
+        assertEquals(2, registry.get("redis.pool.acquire.wait").timer().count());
+
+        var next = pool.usage(0.99);
+
+        assertEquals(1, next.peakActive());
+        assertEquals(0, next.acquires());
+        assertEquals(0, next.waitNanos());
+    }
+}
@@ -0,0 +1,108 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import io.lettuce.core.KeyValue;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import vvu.centrauthz.storages.keyvalue.redis.configurations.RedisBatchingConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+class GetBatcherTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    // one future per MGET sent, completed by the tests
+    private final List<CompletableFuture<List<KeyValue<byte[], byte[]>>>> mgets = new CopyOnWriteArrayList<>();
+
+    private GetBatcher batcher(int maxBatchSize, Duration window) {
+        var context = Mockito.mock(CommandContext.class);
+        Mockito.when(context.execute(any())).thenAnswer(i -> {
+            var mget = new CompletableFuture<List<KeyValue<byte[], byte[]>>>();
+            mgets.add(mget);
+            return mget;
+        });
+        return new GetBatcher(context, new RedisBatchingConfig(true, maxBatchSize, window), registry);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void awaitMgets(int count) throws InterruptedException {
+        var deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (mgets.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, mgets.size());
+    }
+
+    @Test
+    void get_atMaxBatchSize_sendsTheBatchAtOnce() {
+        var batcher = batcher(2, Duration.ofHours(1));
+
+        var first = batcher.get(bytes("app:1"));
+        assertTrue(mgets.isEmpty());
+        var second = batcher.get(bytes("app:2"));
+        assertEquals(1, mgets.size());
+
+        mgets.getFirst().complete(List.of(KeyValue.just(bytes("app:1"), bytes("a")), KeyValue.empty(bytes("app:2"))));
+
+        assertArrayEquals(bytes("a"), first.join());
+        assertNull(second.join());
+        var sizes = registry.get("redis.batch.size").summary();
+        assertEquals(1, sizes.count());
+        assertEquals(2.0, sizes.totalAmount());
+    }
+
+    @Test
+    void get_belowMaxBatchSize_sendsTheBatchAfterTheWindow() throws InterruptedException {
+        var batcher = batcher(64, Duration.ofMillis(20));
+
+        var first = batcher.get(bytes("app:1"));
+        var second = batcher.get(bytes("app:2"));
+        assertTrue(mgets.isEmpty());
+
+        awaitMgets(1);
+        mgets.getFirst().complete(List.of(KeyValue.just(bytes("app:1"), bytes("a")), KeyValue.just(bytes("app:2"), bytes("b"))));
+
+        assertArrayEquals(bytes("a"), first.join());
+        assertArrayEquals(bytes("b"), second.join());
+        Thread.sleep(50);
+        assertEquals(1, mgets.size());
+    }
+
+    @Test
+    void get_afterABatchIsSent_startsTheNextOne() {
+        var batcher = batcher(2, Duration.ofHours(1));
+
+        batcher.get(bytes("app:1"));
+        batcher.get(bytes("app:2"));
+        batcher.get(bytes("app:3"));
+        assertEquals(1, mgets.size());
+
+        batcher.get(bytes("app:4"));
+        assertEquals(2, mgets.size());
+    }
+
+    @Test
+    void get_whenTheMgetFails_failsEveryWaiter() {
+        var batcher = batcher(3, Duration.ofHours(1));
+        var error = new IllegalStateException("connection lost");
+
+        var waiters = List.of(batcher.get(bytes("app:1")), batcher.get(bytes("app:2")), batcher.get(bytes("app:3")));
+        mgets.getFirst().completeExceptionally(error);
+
+        waiters.forEach(waiter -> {
+            var thrown = assertThrows(CompletionException.class, waiter::join);
+            assertSame(error, thrown.getCause());
+        });
+    }
+}
@@ -0,0 +1,61 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashRingTest {
+
+    private static final int KEYS = 30_000;
+
+    private static Map<String, String> nodes(String... names) {
+        var nodes = new HashMap<String, String>();
+        for (var name : names) {
+            nodes.put(name, name);
+        }
+        return nodes;
+    }
+
+    @Test
+    void locate_isStableAcrossInstances() {
+        var a = new HashRing<>(nodes("redis-1:6379", "redis-2:6379", "redis-3:6379"), 160);
+        var b = new HashRing<>(nodes("redis-3:6379", "redis-1:6379", "redis-2:6379"), 160);
+
+        IntStream.range(0, 1_000).forEach(i -> assertEquals(a.locate("app-" + i), b.locate("app-" + i)));
+    }
+
+    @Test
+    void locate_spreadsKeysEvenly() {
+        var ring = new HashRing<>(nodes("redis-1:6379", "redis-2:6379", "redis-3:6379"), 160);
+        var counts = new HashMap<String, Integer>();
+        IntStream.range(0, KEYS).forEach(i -> counts.merge(ring.locate("app-" + i), 1, Integer::sum));
+
+        assertEquals(3, counts.size());
+        counts.values().forEach(count -> assertTrue(Math.abs(count - KEYS / 3) < KEYS / 3 * 0.2, "count " + count));
+    }
+
+    @Test
+    void locate_whenNodeAdded_movesOnlyItsShareToIt() {
+        var before = new HashRing<>(nodes("redis-1:6379", "redis-2:6379", "redis-3:6379"), 160);
+        var after = new HashRing<>(nodes("redis-1:6379", "redis-2:6379", "redis-3:6379", "redis-4:6379"), 160);
+
+        var moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            var key = "app-" + i;
+            if (!before.locate(key).equals(after.locate(key))) {
+                assertEquals("redis-4:6379", after.locate(key));
+                moved++;
+            }
+        }
+        assertTrue(moved > KEYS * 0.15 && moved < KEYS * 0.35, "moved " + moved);
+    }
+
+    @Test
+    void constructor_withoutNodes_fails() {
+        assertThrows(IllegalArgumentException.class, () -> new HashRing<>(Map.of(), 160));
+    }
+}
@@ -0,0 +1,99 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiplexedConnContextTest {
+
+    private final List<StatefulRedisConnection<byte[], byte[]>> opened = new ArrayList<>();
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<StatefulRedisConnection<byte[], byte[]>> connect() {
+        StatefulRedisConnection<byte[], byte[]> connection = Mockito.mock(StatefulRedisConnection.class);
+        RedisAsyncCommands<byte[], byte[]> commands = Mockito.mock(RedisAsyncCommands.class);
+        Mockito.when(connection.async()).thenReturn(commands);
+        opened.add(connection);
+        return CompletableFuture.completedFuture(connection);
+    }
+
+    private static CompletableFuture<RedisAsyncCommands<byte[], byte[]>> commandsOf(MultiplexedConnContext context) {
+        return context.execute(CompletableFuture::completedFuture);
+    }
+
+    @Test
+    void execute_picksTheConnectionsRoundRobin() {
+        var context = new MultiplexedConnContext(this::connect, 2);
+
+        var used = List.of(
+            commandsOf(context).join(), commandsOf(context).join(), commandsOf(context).join(), commandsOf(context).join());
+
+        assertEquals(2, opened.size());
+        assertSame(opened.get(0).async(), used.get(0));
+        assertSame(opened.get(1).async(), used.get(1));
+        assertSame(used.get(0), used.get(2));
+        assertSame(used.get(1), used.get(3));
+    }
+
+    @Test
+    void execute_whileConnecting_sharesTheAttempt() {
+        var pending = new CompletableFuture<StatefulRedisConnection<byte[], byte[]>>();
+        var attempts = new ArrayList<CompletableFuture<StatefulRedisConnection<byte[], byte[]>>>();
+        Supplier<CompletionStage<StatefulRedisConnection<byte[], byte[]>>> connector = () -> {
+            attempts.add(pending);
+            return pending;
+        };
+        var context = new MultiplexedConnContext(connector, 1);
+
+        var first = commandsOf(context);
+        var second = commandsOf(context);
+        assertFalse(first.isDone());
+        assertEquals(1, attempts.size());
+
+        pending.complete(connect().join());
+
+        assertSame(first.join(), second.join());
+    }
+
+    @Test
+    void execute_afterAFailedConnect_reconnectsTheSlot() {
+        var failures = new ArrayList<Throwable>();
+        Supplier<CompletionStage<StatefulRedisConnection<byte[], byte[]>>> connector = () -> {
+            if (failures.isEmpty()) {
+                var error = new IllegalStateException("refused");
+                failures.add(error);
+                return CompletableFuture.failedFuture(error);
+            }
+            return connect();
+        };
+        var context = new MultiplexedConnContext(connector, 1);
+
+        var thrown = assertThrows(CompletionException.class, () -> commandsOf(context).join());
+        assertSame(failures.getFirst(), thrown.getCause());
+
+        assertSame(opened.getFirst().async(), commandsOf(context).join());
+        assertSame(opened.getFirst().async(), commandsOf(context).join());
+        assertEquals(1, opened.size());
+    }
+
+    @Test
+    void close_closesEveryOpenedConnection() {
+        var context = new MultiplexedConnContext(this::connect, 2);
+        commandsOf(context).join();
+        commandsOf(context).join();
+
+        context.close();
+
+        opened.forEach(connection -> Mockito.verify(connection).closeAsync());
+    }
+}
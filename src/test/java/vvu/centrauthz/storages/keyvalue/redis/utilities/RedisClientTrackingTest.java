@@ -0,0 +1,35 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import io.lettuce.core.RedisClient;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class RedisClientTrackingTest {
+
+    private final RedisClient client = mock(RedisClient.class);
+
+    @Test
+    void new_withoutNamespaceOrPrefixes_fails() {
+        assertThrows(IllegalStateException.class,
+            () -> new RedisClientTracking(client, List.of(), RedisKeyEncoder.NONE, List.of()));
+    }
+
+    @Test
+    void covers_onlyTheTrackedPrefixes() {
+        var tracking = new RedisClientTracking(client, List.of(), RedisKeyEncoder.NONE, List.of("my-app:"));
+
+        assertTrue(tracking.covers("my-app:1"));
+        assertFalse(tracking.covers("other-app:1"));
+    }
+
+    @Test
+    void covers_everyKeyOfTheNamespace_withoutPrefixes() {
+        var tracking = new RedisClientTracking(client, List.of(), new RedisKeyEncoder("centrauthz"), List.of());
+
+        assertTrue(tracking.covers("other-app:1"));
+    }
+}
@@ -0,0 +1,36 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedisKeyEncoderTest {
+
+    private static String string(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void encode_prefixesTheNamespace() {
+        var keys = new RedisKeyEncoder("centrauthz:resources");
+
+        assertEquals("centrauthz:resources:app:1", string(keys.encode("app:1")));
+        assertEquals("centrauthz:resources:ứng-dụng:1", string(keys.encode("ứng-dụng:1")));
+        assertEquals("app:1", keys.decode(keys.encode("app:1")));
+    }
+
+    @Test
+    void encode_withoutNamespace_isTheKey() {
+        assertEquals("app:1", string(RedisKeyEncoder.NONE.encode("app:1")));
+        assertEquals("app:1", string(new RedisKeyEncoder(" ").encode("app:1")));
+        assertEquals("app:1", RedisKeyEncoder.NONE.decode("app:1".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void pattern_escapesTheNamespace() {
+        assertEquals("ns:*:?", new RedisKeyEncoder("ns").pattern("*:?"));
+        assertEquals("a\\*b:*", new RedisKeyEncoder("a*b").pattern("*"));
+    }
+}
@@ -0,0 +1,72 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import vvu.centrauthz.storages.interfaces.Replicated;
+import vvu.centrauthz.storages.keyvalue.redis.configurations.RedisBatchingConfig;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+class RedisShardTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RedisShard primary = shard("primary:6379");
+    private final RedisShard replica = shard("replica:6379");
+
+    private RedisShard shard(String name) {
+        var context = Mockito.mock(CommandContext.class);
+        // replication offsets are set by the tests, polls never complete
+        Mockito.when(context.execute(any())).thenReturn(new CompletableFuture<>());
+        return new RedisShard(
+            name, null, context, new RedisBatchingConfig(), registry);
+    }
+
+    @AfterEach
+    void close() {
+        primary.close();
+    }
+
+    @Test
+    void reader_withoutReplicas_isThePrimary() {
+        assertFalse(primary.hasReplicas());
+        assertSame(primary, primary.reader(null));
+        assertSame(primary, primary.reader("8f1d2c:10"));
+    }
+
+    @Test
+    void reader_withoutToken_usesAReachableReplica() {
+        primary.withReplicas(List.of(replica), Duration.ofHours(1));
+
+        assertSame(primary, primary.reader(null));
+
+        replica.replicatedTo(new ReplicationOffset("8f1d2c", 10));
+        assertSame(replica, primary.reader(null));
+    }
+
+    @Test
+    void reader_withToken_waitsForTheReplicaToCatchUp() {
+        primary.withReplicas(List.of(replica), Duration.ofHours(1));
+        replica.replicatedTo(new ReplicationOffset("8f1d2c", 10));
+
+        assertSame(primary, primary.reader("8f1d2c:11"));
+        assertEquals(1.0, registry.get("redis.shard.replica.misses").counter().count());
+
+        replica.replicatedTo(new ReplicationOffset("8f1d2c", 11));
+        assertSame(replica, primary.reader("8f1d2c:11"));
+    }
+
+    @Test
+    void reader_forPrimaryToken_isThePrimary() {
+        primary.withReplicas(List.of(replica), Duration.ofHours(1));
+        replica.replicatedTo(new ReplicationOffset("8f1d2c", 10));
+
+        assertSame(primary, primary.reader(Replicated.PRIMARY));
+    }
+}
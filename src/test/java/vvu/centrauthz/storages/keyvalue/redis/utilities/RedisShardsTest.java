@@ -0,0 +1,203 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import vvu.centrauthz.storages.keyvalue.redis.configurations.RedisBatchingConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+class RedisShardsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private RedisShard shard(String name) {
+        return new RedisShard(
+            name, null, Mockito.mock(CommandContext.class),
+            new RedisBatchingConfig(), registry);
+    }
+
+    /**
+     * A Redis node keeping its keys in a map, with the commands a move uses; the script that
+     * restores a moved value is played by its Java equivalent.
+     */
+    private final class FakeNode {
+        private final Map<String, byte[]> data = new ConcurrentHashMap<>();
+        private final AtomicReference<CompletableFuture<Void>> heldDump = new AtomicReference<>();
+        private final RedisShard shard;
+
+        @SuppressWarnings("unchecked")
+        FakeNode(String name) {
+            RedisAsyncCommands<byte[], byte[]> commands = Mockito.mock(RedisAsyncCommands.class, this::answer);
+            var context = Mockito.mock(CommandContext.class);
+            Mockito.when(context.execute(any())).thenAnswer(i ->
+                i.<Function<RedisAsyncCommands<byte[], byte[]>, CompletableFuture<?>>>getArgument(0).apply(commands));
+            this.shard = new RedisShard(name, null, context, new RedisBatchingConfig(), registry);
+        }
+
+        /**
+         * Answers the next DUMP with the value at that time, once {@code release} completes.
+         */
+        void holdNextDump(CompletableFuture<Void> release) {
+            heldDump.set(release);
+        }
+
+        private static String keyOf(Object encoded) {
+            return new String((byte[]) encoded, StandardCharsets.UTF_8);
+        }
+
+        private Object answer(InvocationOnMock invocation) {
+            var args = invocation.getRawArguments();
+            CompletableFuture<Object> reply = switch (invocation.getMethod().getName()) {
+                case "dump" -> {
+                    var value = data.get(keyOf(args[0]));
+                    var release = heldDump.getAndSet(null);
+                    yield Objects.isNull(release)
+                        ? CompletableFuture.completedFuture(value)
+                        : release.thenApply(v -> value);
+                }
+                case "del" -> CompletableFuture.completedFuture(
+                    Objects.isNull(data.remove(keyOf(((byte[][]) args[0])[0]))) ? 0L : 1L);
+                case "set" -> {
+                    data.put(keyOf(args[0]), (byte[]) args[1]);
+                    yield CompletableFuture.completedFuture("OK");
+                }
+                case "evalsha" -> {
+                    var keys = (byte[][]) args[2];
+                    var key = keyOf(keys[0]);
+                    if (data.containsKey(key) || data.containsKey(keyOf(keys[1]))) {
+                        yield CompletableFuture.completedFuture(0L);
+                    }
+                    data.put(key, ((byte[][]) args[3])[0]);
+                    yield CompletableFuture.completedFuture(1L);
+                }
+                default -> throw new UnsupportedOperationException(invocation.getMethod().getName());
+            };
+            return Mockito.mock(RedisFuture.class, future -> future.getMethod().getName().equals("toCompletableFuture")
+                ? reply
+                : null);
+        }
+    }
+
+    private static String movingKey(RedisShards shards) {
+        return IntStream.range(0, 100)
+            .mapToObj(i -> "app-" + i + ":1")
+            .filter(shards::moving)
+            .findFirst()
+            .orElseThrow();
+    }
+
+    @Test
+    void hashTagOf_isTheApplicationKey() {
+        assertEquals("my-app", RedisShards.hashTagOf("my-app:0b7e7c1e-2f0e-4c4e-9d55-3f0a9a2b3c4d"));
+        assertEquals("plain", RedisShards.hashTagOf("plain"));
+    }
+
+    @Test
+    void of_keepsAnApplicationOnOneShard() {
+        var shards = new RedisShards(List.of(shard("a:6379"), shard("b:6379"), shard("c:6379")), List.of(), 160);
+
+        var owners = IntStream.range(0, 100)
+            .mapToObj(i -> shards.of("my-app:" + i))
+            .collect(Collectors.toSet());
+        assertEquals(1, owners.size());
+
+        var spread = IntStream.range(0, 100)
+            .mapToObj(i -> shards.of("app-" + i + ":1"))
+            .collect(Collectors.toSet());
+        assertEquals(Set.copyOf(shards.all()), spread);
+    }
+
+    @Test
+    void groupByShard_keepsKeyOrderWithinShards() {
+        var shards = new RedisShards(List.of(shard("a:6379"), shard("b:6379")), List.of(), 160);
+        var keys = IntStream.range(0, 50).mapToObj(i -> "app-" + i + ":1").toList();
+
+        var groups = shards.groupByShard(keys);
+
+        assertEquals(keys.size(), groups.values().stream().mapToInt(List::size).sum());
+        groups.forEach((shard, indexes) -> {
+            assertEquals(indexes.stream().sorted().toList(), indexes);
+            indexes.forEach(i -> assertSame(shard, shards.of(keys.get(i))));
+        });
+    }
+
+    @Test
+    void previousOf_onlyForKeysThatMoved() {
+        var a = shard("a:6379");
+        var b = shard("b:6379");
+        var shards = new RedisShards(List.of(a, b), List.of(a), 160);
+
+        assertTrue(shards.rebalancing());
+        assertEquals(List.of(a), shards.previous());
+        IntStream.range(0, 100).mapToObj(i -> "app-" + i + ":1").forEach(key -> {
+            if (shards.of(key) == b) {
+                assertSame(a, shards.previousOf(key));
+            } else {
+                assertNull(shards.previousOf(key));
+            }
+        });
+    }
+
+    @Test
+    void settle_whenNotMoving_doesNothing() {
+        var shards = RedisShards.single(shard("default"));
+
+        assertFalse(shards.rebalancing());
+        assertFalse(shards.settle("app:1").join());
+        assertNull(shards.previousOf("app:1"));
+    }
+
+    @Test
+    void settle_movesTheValueOffThePreviousNode() {
+        var a = new FakeNode("a:6379");
+        var b = new FakeNode("b:6379");
+        var shards = new RedisShards(List.of(a.shard, b.shard), List.of(a.shard), 160);
+        var key = movingKey(shards);
+        a.data.put(key, "v".getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(shards.settle(key).join());
+
+        assertArrayEquals("v".getBytes(StandardCharsets.UTF_8), b.data.get(key));
+        assertFalse(a.data.containsKey(key));
+    }
+
+    @Test
+    void settle_whenDeletedWhileMoving_doesNotBringTheValueBack() {
+        var a = new FakeNode("a:6379");
+        var b = new FakeNode("b:6379");
+        var shards = new RedisShards(List.of(a.shard, b.shard), List.of(a.shard), 160);
+        var key = movingKey(shards);
+        a.data.put(key, "v".getBytes(StandardCharsets.UTF_8));
+        var release = new CompletableFuture<Void>();
+        a.holdNextDump(release);
+
+        // a read starts moving the key and is held between DUMP and RESTORE
+        var read = shards.settle(key);
+        // meanwhile a delete settles the key, leaves its tombstone, then deletes it
+        assertTrue(shards.settle(key).join());
+        shards.markDeleted(List.of(key)).join();
+        b.data.remove(key);
+        release.complete(null);
+
+        assertTrue(read.join());
+        assertFalse(b.data.containsKey(key));
+        assertFalse(a.data.containsKey(key));
+    }
+}
@@ -0,0 +1,66 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationOffsetTest {
+
+    @Test
+    void fromInfo_onPrimary_readsItsOffset() {
+        var info = """
+            # Replication
+            role:master
+            connected_slaves:1
+            master_replid:8f1d2c
+            master_repl_offset:1234
+            """;
+
+        assertEquals(new ReplicationOffset("8f1d2c", 1234), ReplicationOffset.fromInfo(info));
+    }
+
+    @Test
+    void fromInfo_onReplica_readsTheAppliedOffset() {
+        var info = """
+            role:slave
+            master_link_status:up
+            slave_repl_offset:1200
+            master_replid:8f1d2c
+            master_repl_offset:1200
+            """;
+
+        assertEquals(new ReplicationOffset("8f1d2c", 1200), ReplicationOffset.fromInfo(info));
+    }
+
+    @Test
+    void fromInfo_onReplicaWithLinkDown_isNull() {
+        var info = """
+            role:slave
+            master_link_status:down
+            slave_repl_offset:1200
+            master_replid:8f1d2c
+            """;
+
+        assertNull(ReplicationOffset.fromInfo(info));
+    }
+
+    @Test
+    void parse_roundTripsTokens() {
+        var offset = new ReplicationOffset("8f1d2c", 42);
+
+        assertEquals(offset, ReplicationOffset.parse(offset.token()));
+        assertNull(ReplicationOffset.parse(null));
+        assertNull(ReplicationOffset.parse("primary"));
+        assertNull(ReplicationOffset.parse("8f1d2c:x"));
+    }
+
+    @Test
+    void covers_onlyWithinOneReplicationStream() {
+        var at = new ReplicationOffset("a", 10);
+
+        assertTrue(at.covers(new ReplicationOffset("a", 10)));
+        assertTrue(at.covers(new ReplicationOffset("a", 9)));
+        assertFalse(at.covers(new ReplicationOffset("a", 11)));
+        assertFalse(at.covers(new ReplicationOffset("b", 1)));
+    }
+}
@@ -0,0 +1,74 @@
+package vvu.centrauthz.storages.keyvalue.redis.utilities;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import vvu.centrauthz.exceptions.IllegalStoredValue;
+import vvu.centrauthz.storages.keyvalue.redis.configurations.RedisCompressionConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValueCompressorTest {
+
+    private static byte[] compressible(int size) {
+        var value = new byte[size];
+        var text = "{\"sharedWith\":[\"0b1c4d9e-2f3a-4b5c-8d7e-9f0a1b2c3d4e\"]}".getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < size; i++) {
+            value[i] = text[i % text.length];
+        }
+        return value;
+    }
+
+    @Test
+    void compress_whenAboveThreshold_roundTripAndMetrics() {
+        var registry = new SimpleMeterRegistry();
+        var compressor = new ValueCompressor(new RedisCompressionConfig(true, 1024, 1), registry);
+        var value = compressible(64 * 1024);
+
+        var stored = compressor.compress("app", value);
+
+        assertTrue(ValueCompressor.isCompressed(stored));
+        assertTrue(stored.length < value.length);
+        assertArrayEquals(value, compressor.decompress("app", stored));
+        assertEquals(1, registry.get("redis.compression.ratio").tag("application", "app").summary().count());
+        assertEquals(1, registry.get("redis.compression.cpu").tag("operation", "decompress").timer().count());
+    }
+
+    @Test
+    void compress_whenBelowThreshold_untouched() {
+        var compressor = new ValueCompressor(new RedisCompressionConfig(true, 1024, 1), new SimpleMeterRegistry());
+        var value = compressible(100);
+
+        assertSame(value, compressor.compress("app", value));
+        assertSame(value, compressor.decompress("app", value));
+    }
+
+    @Test
+    void compress_whenDisabled_untouched() {
+        var compressor = new ValueCompressor(new RedisCompressionConfig(), new SimpleMeterRegistry());
+        var value = compressible(64 * 1024);
+
+        assertSame(value, compressor.compress("app", value));
+    }
+
+    @Test
+    void compress_whenIncompressible_untouched() {
+        var compressor = new ValueCompressor(new RedisCompressionConfig(true, 1024, 1), new SimpleMeterRegistry());
+        var value = new byte[4096];
+        new Random(42).nextBytes(value);
+        value[0] = '{';
+
+        assertSame(value, compressor.compress("app", value));
+    }
+
+    @Test
+    void decompress_whenTruncated_IllegalStoredValue() {
+        var compressor = new ValueCompressor(new RedisCompressionConfig(true, 1024, 1), new SimpleMeterRegistry());
+        var stored = compressor.compress("app", compressible(64 * 1024));
+
+        assertThrows(IllegalStoredValue.class, () -> compressor.decompress("app", Arrays.copyOf(stored, stored.length / 2)));
+    }
+}
@@ -0,0 +1,148 @@
+package vvu.centrauthz.storages.keyvalue.tiered;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import vvu.centrauthz.storages.codecs.VersionEnvelope;
+import vvu.centrauthz.storages.interfaces.Writable;
+import vvu.centrauthz.storages.interfaces.VersionedWritable.Mode;
+import vvu.centrauthz.storages.keyvalue.memory.InMemoryStorage;
+import vvu.centrauthz.storages.keyvalue.memory.configurations.InMemoryStorageConfig;
+import vvu.centrauthz.storages.keyvalue.tiered.configurations.TieringConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+
+class TieredStorageTest {
+
+    @TempDir
+    Path directory;
+
+    private final InMemoryStorage engine = new InMemoryStorage(new InMemoryStorageConfig());
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private TieredStorage storage;
+
+    private TieredStorage open(Duration coldAfter, long maxHotBytes) {
+        return open(coldAfter, maxHotBytes, engine);
+    }
+
+    private TieredStorage open(Duration coldAfter, long maxHotBytes, Writable<byte[]> hotWritable) {
+        // swept by the tests only
+        var config = new TieringConfig(
+            true, directory.toString(), 64 * 1024, coldAfter, Duration.ofHours(1), maxHotBytes, Map.of());
+        return new TieredStorage(config, engine, hotWritable, engine, engine, registry);
+    }
+
+    @AfterEach
+    void close() {
+        if (storage != null) {
+            storage.close();
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private double reads(String tier) {
+        return registry.get("storage.tier.reads").tag("tier", tier).counter().count();
+    }
+
+    @Test
+    void sweep_movesIdleKeysToTheColdTier_andReadsMoveThemBack() {
+        storage = open(Duration.ZERO, 0);
+        storage.write("app:1", Mode.CREATE, null, bytes("a")).block();
+
+        StepVerifier.create(storage.sweep()).expectNext(1L).verifyComplete();
+
+        assertTrue(storage.isCold("app:1"));
+        StepVerifier.create(engine.get("app:1")).verifyComplete();
+        StepVerifier.create(storage.get("app:1"))
+            .assertNext(v -> assertEquals(1L, VersionEnvelope.of(v).version()))
+            .verifyComplete();
+        assertFalse(storage.isCold("app:1"));
+        StepVerifier.create(storage.get("app:1")).expectNextCount(1).verifyComplete();
+        StepVerifier.create(storage.get("app:2")).verifyComplete();
+
+        assertEquals(1.0, reads("cold"));
+        assertEquals(1.0, reads("hot"));
+        assertEquals(1.0, reads("none"));
+    }
+
+    @Test
+    void sweep_keepsApplicationsWithinTheirLimit() throws InterruptedException {
+        storage = open(Duration.ofDays(1), 250);
+        for (int i = 0; i < 5; i++) {
+            storage.write("app:" + i, Mode.CREATE, null, new byte[100]).block();
+            // distinct access times
+            Thread.sleep(2);
+        }
+
+        StepVerifier.create(storage.sweep()).expectNext(3L).verifyComplete();
+
+        assertTrue(storage.isCold("app:0"));
+        assertFalse(storage.isCold("app:4"));
+        StepVerifier.create(storage.getAll(List.of("app:0", "app:4")))
+            .assertNext(v -> assertTrue(v.exists()))
+            .assertNext(v -> assertTrue(v.exists()))
+            .verifyComplete();
+    }
+
+    @Test
+    void write_onAColdKey_continuesItsVersions() {
+        storage = open(Duration.ZERO, 0);
+        storage.write("app:1", Mode.CREATE, null, bytes("a")).block();
+        storage.sweep().block();
+
+        StepVerifier.create(storage.write("app:1", Mode.CREATE, null, bytes("b"))).expectNext(0L).verifyComplete();
+        StepVerifier.create(storage.write("app:1", Mode.REPLACE, 1L, bytes("b"))).expectNext(2L).verifyComplete();
+        assertFalse(storage.isCold("app:1"));
+    }
+
+    @Test
+    void remove_deletesFromBothTiers() {
+        storage = open(Duration.ZERO, 0);
+        storage.write("app:1", Mode.CREATE, null, bytes("a")).block();
+        storage.sweep().block();
+
+        storage.remove("app:1").block();
+
+        assertFalse(storage.isCold("app:1"));
+        StepVerifier.create(storage.get("app:1")).verifyComplete();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void remove_whileAReadMovesTheKeyBack_keepsItDeleted() {
+        var promoting = new CompletableFuture<Boolean>();
+        Writable<byte[]> hotWritable = Mockito.mock(Writable.class);
+        Mockito.when(hotWritable.create(anyString(), any())).thenAnswer(invocation -> Mono.fromFuture(promoting)
+            .then(engine.create(invocation.getArgument(0), invocation.getArgument(1))));
+        storage = open(Duration.ZERO, 0, hotWritable);
+        storage.write("app:1", Mode.CREATE, null, bytes("a")).block();
+        storage.sweep().block();
+
+        var read = storage.get("app:1").toFuture();
+        var removed = storage.remove("app:1").toFuture();
+        assertFalse(removed.isDone());
+        promoting.complete(true);
+        read.join();
+        removed.join();
+
+        assertFalse(storage.isCold("app:1"));
+        StepVerifier.create(engine.get("app:1")).verifyComplete();
+        StepVerifier.create(storage.get("app:1")).verifyComplete();
+    }
+}
@@ -0,0 +1,58 @@
+package vvu.centrauthz.storages.keyvalue.tiered.utilities;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccessTrackerTest {
+
+    @TempDir
+    Path directory;
+
+    private static String groupOf(String key) {
+        return key.substring(0, key.indexOf(':'));
+    }
+
+    @Test
+    void demotionCandidates_areIdleKeys() {
+        var tracker = new AccessTracker();
+        tracker.touch("a:1", 10, 100);
+        tracker.touch("a:2", 10, 200);
+        tracker.touch("b:1", 10, 50);
+
+        assertEquals(Set.of("a:1", "b:1"), tracker.demotionCandidates(150, AccessTrackerTest::groupOf, g -> 0));
+    }
+
+    @Test
+    void demotionCandidates_bringGroupsWithinTheirLimit() {
+        var tracker = new AccessTracker();
+        for (int i = 0; i < 10; i++) {
+            tracker.touch("a:" + i, 100, 1000 + i);
+            tracker.touch("b:" + i, 100, 1000 + i);
+        }
+
+        var candidates = tracker.demotionCandidates(0, AccessTrackerTest::groupOf, g -> g.equals("a") ? 700 : 0);
+
+        assertEquals(Set.of("a:0", "a:1", "a:2"), candidates);
+    }
+
+    @Test
+    void save_andLoad_keepAccesses() {
+        var tracker = new AccessTracker();
+        tracker.touch("a:1", 10, 100);
+        tracker.touch("a:2", 20, 200);
+        tracker.forget("a:1");
+        var file = directory.resolve("access.snapshot");
+
+        tracker.save(file);
+        var loaded = AccessTracker.load(file);
+
+        assertEquals(1, loaded.size());
+        assertEquals(new AccessTracker.Access(200, 20), loaded.get("a:2"));
+        assertEquals(0, AccessTracker.load(directory.resolve("missing")).size());
+    }
+}
@@ -0,0 +1,173 @@
+package vvu.centrauthz.storages.keyvalue.writebehind;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import reactor.test.StepVerifier;
+import vvu.centrauthz.exceptions.PreconditionFailedError;
+import vvu.centrauthz.storages.codecs.VersionEnvelope;
+import vvu.centrauthz.storages.interfaces.StoredValue;
+import vvu.centrauthz.storages.interfaces.Writable;
+import vvu.centrauthz.storages.interfaces.WriteResult;
+import vvu.centrauthz.storages.interfaces.VersionedWritable.Mode;
+import vvu.centrauthz.storages.interfaces.VersionedWritable.Write;
+import vvu.centrauthz.storages.keyvalue.memory.InMemoryStorage;
+import vvu.centrauthz.storages.keyvalue.memory.configurations.InMemoryStorageConfig;
+import vvu.centrauthz.storages.keyvalue.writebehind.configurations.WriteBehindConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+
+class WriteBehindStorageTest {
+
+    @TempDir
+    Path directory;
+
+    private final InMemoryStorage engine = new InMemoryStorage(new InMemoryStorageConfig());
+    private WriteBehindStorage storage;
+
+    private WriteBehindStorage open() {
+        return open(engine);
+    }
+
+    private WriteBehindStorage open(Writable<byte[]> writable) {
+        // flushed by the tests only
+        var config = new WriteBehindConfig(
+            true, directory.toString(), 64 * 1024, Duration.ofMillis(1), Duration.ofHours(1), 2);
+        return new WriteBehindStorage(config, engine, writable, engine, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void close() {
+        if (storage != null) {
+            storage.close();
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long versionOf(byte[] value) {
+        return VersionEnvelope.of(value).version();
+    }
+
+    @Test
+    void write_isReadBeforeItIsFlushed() {
+        storage = open();
+
+        StepVerifier.create(storage.write("app:1", Mode.CREATE, null, bytes("a"))).expectNext(1L).verifyComplete();
+
+        StepVerifier.create(engine.get("app:1")).verifyComplete();
+        StepVerifier.create(storage.get("app:1")).assertNext(v -> assertEquals(1L, versionOf(v))).verifyComplete();
+        StepVerifier.create(storage.getAll(List.of("app:2", "app:1")))
+            .assertNext(v -> assertFalse(v.exists()))
+            .assertNext(v -> assertTrue(v.exists()))
+            .verifyComplete();
+        assertEquals(1, storage.queueDepth());
+    }
+
+    @Test
+    void write_checksVersionsAgainstPendingAndFlushedValues() {
+        storage = open();
+        storage.write("app:1", Mode.CREATE, null, bytes("a")).block();
+
+        StepVerifier.create(storage.write("app:1", Mode.CREATE, null, bytes("b"))).expectNext(0L).verifyComplete();
+        StepVerifier.create(storage.write("app:1", Mode.REPLACE, 1L, bytes("b"))).expectNext(2L).verifyComplete();
+        storage.drain().block();
+
+        assertEquals(0, storage.queueDepth());
+        StepVerifier.create(storage.write("app:1", Mode.REPLACE, 1L, bytes("c")))
+            .expectError(PreconditionFailedError.class)
+            .verify();
+        StepVerifier.create(storage.write("app:1", Mode.REPLACE, 2L, bytes("c"))).expectNext(3L).verifyComplete();
+    }
+
+    @Test
+    void drain_flushesWritesAndDeletesToTheEngine() {
+        storage = open();
+        engine.write("app:0", Mode.CREATE, null, bytes("old")).block();
+        storage.writeAll(List.of(
+            new Write("app:1", Mode.CREATE, null, bytes("a")),
+            new Write("app:2", Mode.CREATE, null, bytes("b")),
+            new Write("app:3", Mode.CREATE, null, bytes("c")))).blockLast();
+        StepVerifier.create(storage.remove("app:0", 1L)).expectNext(true).verifyComplete();
+
+        StepVerifier.create(storage.get("app:0")).verifyComplete();
+        storage.drain().block();
+
+        assertEquals(0, storage.queueDepth());
+        StepVerifier.create(engine.get("app:0")).verifyComplete();
+        StepVerifier.create(engine.getAll(List.of("app:1", "app:2", "app:3")))
+            .expectNextCount(3)
+            .verifyComplete();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void drain_leavesAFailingKeyOutOfTheNextBatches() {
+        var badFlushes = new AtomicInteger();
+        Writable<byte[]> writable = Mockito.mock(Writable.class);
+        Mockito.when(writable.saveAll(anyList())).thenAnswer(invocation -> {
+            List<StoredValue<byte[]>> values = invocation.getArgument(0);
+            return engine.saveAll(values).map(result -> {
+                if (!result.key().equals("app:bad")) {
+                    return result;
+                }
+                badFlushes.incrementAndGet();
+                return new WriteResult(result.key(), new IllegalStateException("down"));
+            });
+        });
+        storage = open(writable);
+        storage.write("app:bad", Mode.CREATE, null, bytes("x")).block();
+        storage.drain().block();
+        storage.writeAll(List.of(
+            new Write("app:1", Mode.CREATE, null, bytes("a")),
+            new Write("app:2", Mode.CREATE, null, bytes("b")))).blockLast();
+
+        storage.drain().block();
+
+        assertEquals(1, badFlushes.get());
+        assertEquals(1, storage.queueDepth());
+        StepVerifier.create(engine.getAll(List.of("app:1", "app:2")))
+            .assertNext(v -> assertTrue(v.exists()))
+            .assertNext(v -> assertTrue(v.exists()))
+            .verifyComplete();
+    }
+
+    @Test
+    void write_resumesOffTheJournalThread() {
+        storage = open();
+
+        StepVerifier.create(storage.write("app:1", Mode.CREATE, null, bytes("a"))
+                .map(version -> Thread.currentThread().getName()))
+            .assertNext(thread -> assertFalse(thread.startsWith("write-behind-journal"), thread))
+            .verifyComplete();
+    }
+
+    @Test
+    void open_replaysWritesNotFlushedBeforeACrash() {
+        var crashed = open();
+        crashed.write("app:1", Mode.CREATE, null, bytes("a")).block();
+        crashed.remove("app:2").block();
+        // no close: the writes were acknowledged, so they are in the journal
+
+        storage = open();
+
+        assertEquals(2, storage.queueDepth());
+        StepVerifier.create(storage.get("app:1")).assertNext(v -> assertEquals(1L, versionOf(v))).verifyComplete();
+        storage.drain().block();
+        StepVerifier.create(engine.get("app:1"))
+            .assertNext(v -> assertArrayEquals(bytes("a"), Arrays.copyOfRange(v, VersionEnvelope.of(v).payloadOffset(), v.length)))
+            .verifyComplete();
+    }
+}
@@ -0,0 +1,79 @@
+package vvu.centrauthz.storages.keyvalue.writebehind.utilities;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteJournalTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void append_isDurableAfterSync() throws Exception {
+        try (var journal = WriteJournal.open(directory, SEGMENT_SIZE)) {
+            var append = journal.append("app:1", bytes("one"));
+            assertFalse(append.durable().isDone());
+
+            journal.sync();
+
+            append.durable().get(1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void open_recoversTheLatestWriteOfEveryKey() {
+        try (var journal = WriteJournal.open(directory, SEGMENT_SIZE)) {
+            for (int i = 0; i < 100; i++) {
+                journal.append("app:" + (i % 10), bytes("value-" + i));
+            }
+            journal.append("app:0", null);
+            assertTrue(journal.segmentCount() > 1);
+        }
+
+        try (var journal = WriteJournal.open(directory, SEGMENT_SIZE)) {
+            var recovered = journal.recovered();
+            assertEquals(10, recovered.size());
+            var first = recovered.stream().filter(e -> e.key().equals("app:0")).findFirst().orElseThrow();
+            assertTrue(first.isDelete());
+            var last = recovered.stream().filter(e -> e.key().equals("app:9")).findFirst().orElseThrow();
+            assertArrayEquals(bytes("value-99"), last.value());
+        }
+    }
+
+    @Test
+    void release_deletesOldSegmentsOnceTheirWritesAreDone() {
+        try (var journal = WriteJournal.open(directory, SEGMENT_SIZE)) {
+            var first = journal.append("app:1", bytes("x".repeat(3000)));
+            var second = journal.append("app:2", bytes("y".repeat(3000)));
+            var third = journal.append("app:3", bytes("z".repeat(3000)));
+            assertEquals(3, journal.segmentCount());
+
+            journal.done(second.segment());
+            assertEquals(0, journal.release());
+
+            journal.done(first.segment());
+            assertEquals(2, journal.release());
+
+            // the active segment is kept even when done
+            journal.done(third.segment());
+            assertEquals(0, journal.release());
+            assertEquals(1, journal.segmentCount());
+        }
+
+        try (var journal = WriteJournal.open(directory, SEGMENT_SIZE)) {
+            assertEquals(1, journal.recovered().size());
+        }
+    }
+}
@@ -152,4 +152,20 @@ class JsonToolsTest {
         assertEquals(sSrcValue, sFromBytesValue);
 
     }
+
+    @Test
+    void fromBytes_toValue() {
+        Resource resource = Resource.builder()
+                .id(UUID.randomUUID())
+                .type("RESOURCE")
+                .applicationKey(UUID.randomUUID().toString().split("-")[0])
+                .ownerId(UUID.randomUUID())
+                .createdAt(System.currentTimeMillis())
+                .build();
+
+        var bytes = JsonTools.toBytes(jsonMapper, resource);
+        var outRes = JsonTools.fromBytes(jsonMapper, bytes, Resource.class);
+
+        assertEquals(resource, outRes);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,127 @@
+package vvu.centrauthz.utilities;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final SingleFlight<String, String> flights = new SingleFlight<>("test", registry);
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private Mono<String> call(Sinks.One<String> result) {
+        calls.incrementAndGet();
+        return result.asMono();
+    }
+
+    private double calls(String role) {
+        return registry.get("single-flight.calls").tag("role", role).counter().count();
+    }
+
+    @Test
+    void run_concurrentCallers_shareOneCall() {
+        Sinks.One<String> result = Sinks.one();
+        var first = flights.run("app:1", () -> call(result)).toFuture();
+        var second = flights.run("app:1", () -> call(result)).toFuture();
+        var third = flights.run("app:1", () -> call(result)).toFuture();
+
+        assertEquals(1, flights.inFlight());
+        result.tryEmitValue("value");
+
+        assertEquals("value", first.join());
+        assertEquals("value", second.join());
+        assertEquals("value", third.join());
+        assertEquals(1, calls.get());
+        assertEquals(1.0, calls("leader"));
+        assertEquals(2.0, calls("follower"));
+        assertEquals(0, flights.inFlight());
+    }
+
+    @Test
+    void run_afterTheCallCompleted_startsAnother() {
+        StepVerifier.create(flights.run("app:1", () -> Mono.just("first")))
+            .expectNext("first")
+            .verifyComplete();
+
+        StepVerifier.create(flights.run("app:1", () -> Mono.just("second")))
+            .expectNext("second")
+            .verifyComplete();
+
+        assertEquals(2.0, calls("leader"));
+        assertEquals(0.0, calls("follower"));
+    }
+
+    @Test
+    void run_keysApart_doNotShare() {
+        Sinks.One<String> one = Sinks.one();
+        Sinks.One<String> two = Sinks.one();
+        var first = flights.run("app:1", () -> call(one)).toFuture();
+        var second = flights.run("app:2", () -> call(two)).toFuture();
+
+        one.tryEmitValue("1");
+        two.tryEmitValue("2");
+
+        assertEquals("1", first.join());
+        assertEquals("2", second.join());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void forget_laterCallersStartANewCall() {
+        Sinks.One<String> before = Sinks.one();
+        Sinks.One<String> after = Sinks.one();
+        var first = flights.run("app:1", () -> call(before)).toFuture();
+        var other = flights.run("app:2", () -> call(before)).toFuture();
+
+        flights.forget("app:1"::equals);
+        var second = flights.run("app:1", () -> call(after)).toFuture();
+        before.tryEmitValue("old");
+        after.tryEmitValue("new");
+
+        assertEquals("old", first.join());
+        assertEquals("old", other.join());
+        assertEquals("new", second.join());
+        assertEquals(3, calls.get());
+        assertEquals(0, flights.inFlight());
+    }
+
+    @Test
+    void run_sharesErrors() {
+        Sinks.One<String> result = Sinks.one();
+        var first = flights.run("app:1", () -> call(result));
+        var second = flights.run("app:1", () -> call(result));
+        var firstResult = first.toFuture();
+        var secondResult = second.toFuture();
+
+        result.tryEmitError(new IllegalStateException("down"));
+
+        assertInstanceOf(IllegalStateException.class, assertThrows(Exception.class, firstResult::join).getCause());
+        assertInstanceOf(IllegalStateException.class, assertThrows(Exception.class, secondResult::join).getCause());
+        assertEquals(1, calls.get());
+        assertEquals(0, flights.inFlight());
+    }
+
+    @Test
+    void run_whenEveryCallerCancels_cancelsTheCall() {
+        var cancelled = new AtomicBoolean();
+        Sinks.One<String> result = Sinks.one();
+        var first = flights.run("app:1", () -> call(result).doOnCancel(() -> cancelled.set(true))).subscribe();
+        var second = flights.run("app:1", () -> call(result)).subscribe();
+
+        first.dispose();
+        assertFalse(cancelled.get());
+        assertEquals(1, flights.inFlight());
+
+        second.dispose();
+        assertTrue(cancelled.get());
+        assertEquals(0, flights.inFlight());
+    }
+}
@@ -6,6 +6,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.slf4j.Logger;
+import vvu.centrauthz.exceptions.NotFoundError;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
@@ -102,6 +103,23 @@ class ExecutorTest {
         verify(mockLogger, times(1)).error(anyString());
     }
 
+    @Test
+    void execute_shouldLogExpectedErrorsAtDebugLevel() {
+
+        Logger mockLogger = Mockito.mock(Logger.class);
+        Executor<String> executor = new Executor<String>(() -> {
+            throw new NotFoundError("NOT_FOUND", ERROR_MESSAGE);
+        }, errorHandler).withLogger(mockLogger);
+
+        // When
+        var result = executor.execute();
+
+        // Then
+        assertEquals(FALLBACK_RESULT, result);
+        verify(mockLogger).debug(ERROR_MESSAGE);
+        verify(mockLogger, never()).error(anyString());
+    }
+
     @Test
     void withSupplier_shouldReplaceSupplier() {
 
@@ -0,0 +1,120 @@
+package vvu.centrauthz.warmup;
+
+import io.micronaut.http.HttpResponse;
+import io.micronaut.json.JsonMapper;
+import io.micronaut.test.extensions.junit5.annotation.MicronautTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import vvu.centrauthz.domains.resources.controllers.ResourceController;
+import vvu.centrauthz.domains.resources.models.Resource;
+import vvu.centrauthz.exceptions.AppError;
+import vvu.centrauthz.storages.interfaces.Warmable;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@MicronautTest(startApplication = false)
+class WarmUpTest {
+
+    @Inject
+    JsonMapper jsonMapper;
+
+    private final ResourceController controller = Mockito.mock(ResourceController.class);
+
+    private WarmUpConfig config(int rounds, Duration budget) {
+        return new WarmUpConfig(true, budget, rounds, 2, "warm-up");
+    }
+
+    private void stubController() {
+        when(controller.createResource(any(), eq("warm-up"), any()))
+            .thenAnswer(i -> Mono.just(HttpResponse.created(i.<Resource>getArgument(2))));
+        when(controller.getResource(any(), eq("warm-up"), any(), any(), any()))
+            .thenReturn(Mono.just(HttpResponse.ok(Resource.builder().type("WARM_UP").build())));
+        when(controller.updateResource(any(), any(), any(), any(), any())).thenReturn(Mono.just(HttpResponse.noContent()));
+        when(controller.patchResource(any(), any(), any(), any(), any())).thenReturn(Mono.just(HttpResponse.noContent()));
+        when(controller.batchGetResources(any(), any(), any(), any())).thenReturn(Flux.empty());
+        when(controller.deleteResource(any(), any(), any(), any())).thenReturn(Mono.just(HttpResponse.noContent()));
+    }
+
+    @Test
+    void run_sendsEveryRoundThroughTheController() {
+        stubController();
+        var warmable = Mockito.mock(Warmable.class);
+        when(warmable.warmUp()).thenReturn(Mono.empty());
+        var warmUp = new WarmUp(config(10, Duration.ofSeconds(30)), List.of(warmable), controller, jsonMapper);
+
+        assertFalse(warmUp.isReady());
+
+        StepVerifier.create(warmUp.run())
+            .expectNext(WarmUp.State.DONE)
+            .verifyComplete();
+
+        assertTrue(warmUp.isReady());
+        assertEquals(10, warmUp.rounds());
+        verify(warmable).warmUp();
+        verify(controller, times(10)).createResource(any(), eq("warm-up"), any());
+        verify(controller, times(20)).getResource(any(), eq("warm-up"), any(), any(), any());
+        verify(controller, times(10)).deleteResource(any(), eq("warm-up"), any(), any());
+    }
+
+    @Test
+    void run_whenOutOfBudget_isReadyAnyway() {
+        var warmable = Mockito.mock(Warmable.class);
+        when(warmable.warmUp()).thenReturn(Mono.never());
+        var warmUp = new WarmUp(config(10, Duration.ofMillis(50)), List.of(warmable), controller, jsonMapper);
+
+        StepVerifier.create(warmUp.run())
+            .expectNext(WarmUp.State.OUT_OF_BUDGET)
+            .verifyComplete();
+
+        assertTrue(warmUp.isReady());
+        verifyNoInteractions(controller);
+    }
+
+    @Test
+    void run_whenOutOfBudgetMidRound_deletesItsResource() {
+        stubController();
+        when(controller.patchResource(any(), any(), any(), any(), any())).thenReturn(Mono.never());
+        var warmUp = new WarmUp(config(1, Duration.ofMillis(50)), List.of(), controller, jsonMapper);
+
+        StepVerifier.create(warmUp.run())
+            .expectNext(WarmUp.State.OUT_OF_BUDGET)
+            .verifyComplete();
+
+        assertEquals(0, warmUp.rounds());
+        verify(controller).deleteResource(any(), eq("warm-up"), any(), any());
+    }
+
+    @Test
+    void run_whenARequestFails_deletesItsResourceAndEnds() {
+        stubController();
+        when(controller.patchResource(any(), any(), any(), any(), any()))
+            .thenReturn(Mono.error(new AppError("STORAGE_ERROR")));
+        var warmUp = new WarmUp(config(1, Duration.ofSeconds(30)), List.of(), controller, jsonMapper);
+
+        StepVerifier.create(warmUp.run())
+            .expectNext(WarmUp.State.FAILED)
+            .verifyComplete();
+
+        assertTrue(warmUp.isReady());
+        assertEquals(0, warmUp.rounds());
+        verify(controller).deleteResource(any(), eq("warm-up"), any(), any());
+    }
+
+    @Test
+    void disabled_isReady() {
+        var warmUp = new WarmUp(new WarmUpConfig(), List.of(), controller, jsonMapper);
+
+        assertTrue(warmUp.isReady());
+        assertEquals(WarmUp.State.DISABLED, warmUp.state());
+    }
+}